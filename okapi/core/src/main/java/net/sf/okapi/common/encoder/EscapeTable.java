@@ -0,0 +1,163 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.encoder;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup table of the characters an encoder cannot copy as they are to its output.
+ * <p>Encoders use {@link #scan(CharSequence, int)} to find the runs of characters
+ * that need no escaping, copy them in one go, and process only the remaining characters
+ * one by one. The table covers the whole Basic Multilingual Plane. Surrogates are always
+ * in the table, so surrogate pairs always go through the normal processing of the encoder.
+ * <p>The characters a given charset cannot encode are computed once per charset
+ * and shared by all tables (see {@link #setUnencodable(CharsetEncoder)}).
+ */
+public class EscapeTable {
+
+	private static final int SIZE = Character.MAX_VALUE+1;
+
+	private static final ConcurrentHashMap<Charset, long[]> unencodable = new ConcurrentHashMap<Charset, long[]>();
+
+	private final long[] bits = new long[SIZE >>> 6];
+
+	/**
+	 * Creates a new table with only the surrogates set.
+	 */
+	public EscapeTable () {
+		setRange(Character.MIN_SURROGATE, Character.MAX_SURROGATE);
+	}
+
+	/**
+	 * Adds a character to this table.
+	 * @param ch the character to add.
+	 * @return this table.
+	 */
+	public EscapeTable set (char ch) {
+		bits[ch >>> 6] |= (1L << ch);
+		return this;
+	}
+
+	/**
+	 * Adds each character of a given string to this table.
+	 * @param chars the characters to add (can be null).
+	 * @return this table.
+	 */
+	public EscapeTable set (String chars) {
+		if ( chars == null ) return this;
+		for ( int i=0; i<chars.length(); i++ ) {
+			set(chars.charAt(i));
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a range of characters to this table.
+	 * @param from the first character to add.
+	 * @param to the last character to add (inclusive).
+	 * @return this table.
+	 */
+	public EscapeTable setRange (char from,
+		char to)
+	{
+		for ( int ch=from; ch<=to; ch++ ) {
+			set((char)ch);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds to this table all the characters of the Basic Multilingual Plane
+	 * that the charset of a given encoder cannot encode.
+	 * @param encoder the encoder to use (can be null, then nothing is added).
+	 * @return this table.
+	 */
+	public EscapeTable setUnencodable (CharsetEncoder encoder) {
+		if ( encoder == null ) return this;
+		long[] cs = getUnencodable(encoder.charset());
+		for ( int i=0; i<bits.length; i++ ) {
+			bits[i] |= cs[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Indicates if a given character is in this table.
+	 * @param ch the character to check.
+	 * @return true if the character is in this table (it needs to be processed
+	 * by the encoder), false if it can be copied as it is.
+	 */
+	public boolean isSet (char ch) {
+		return (bits[ch >>> 6] & (1L << ch)) != 0;
+	}
+
+	/**
+	 * Finds the first character of a given text that is in this table.
+	 * @param text the text to scan.
+	 * @param start the position where to start.
+	 * @return the position of the first character in this table at or after the given start,
+	 * or the length of the text if there is none.
+	 */
+	public int scan (CharSequence text,
+		int start)
+	{
+		int len = text.length();
+		for ( int i=start; i<len; i++ ) {
+			char ch = text.charAt(i);
+			if ( (bits[ch >>> 6] & (1L << ch)) != 0 ) return i;
+		}
+		return len;
+	}
+
+	/**
+	 * Indicates if the charset of a given encoder can encode a given character.
+	 * This gives the same result as {@link CharsetEncoder#canEncode(char)}, but the results
+	 * are computed once per charset.
+	 * @param encoder the encoder to use (can be null, then the character is assumed to be encodable).
+	 * @param ch the character to check.
+	 * @return true if the character can be encoded, false otherwise.
+	 */
+	public static boolean canEncode (CharsetEncoder encoder,
+		char ch)
+	{
+		if ( encoder == null ) return true;
+		if ( Character.isSurrogate(ch) ) return encoder.canEncode(ch);
+		long[] cs = getUnencodable(encoder.charset());
+		return (cs[ch >>> 6] & (1L << ch)) == 0;
+	}
+
+	private static long[] getUnencodable (Charset charset) {
+		long[] cs = unencodable.get(charset);
+		if ( cs == null ) {
+			// Use our own encoder: CharsetEncoder objects are not thread-safe
+			CharsetEncoder encoder = charset.newEncoder();
+			cs = new long[SIZE >>> 6];
+			for ( int ch=0; ch<SIZE; ch++ ) {
+				if ( Character.isSurrogate((char)ch) ) continue;
+				if ( !encoder.canEncode((char)ch) ) {
+					cs[ch >>> 6] |= (1L << ch);
+				}
+			}
+			long[] prev = unencodable.putIfAbsent(charset, cs);
+			if ( prev != null ) cs = prev;
+		}
+		return cs;
+	}
+
+}
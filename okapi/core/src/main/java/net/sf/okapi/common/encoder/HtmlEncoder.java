@@ -49,6 +49,7 @@ public class HtmlEncoder implements IEncoder {
 	private String charsToCER = null;
 	private HTMLCharacterEntities entities;
 	private IParameters params;
+	private EscapeTable table;
 	
 	public HtmlEncoder(String encoding, String lineBreak, QuoteMode quoteMode) {
 		super();
@@ -91,6 +92,27 @@ public class HtmlEncoder implements IEncoder {
 				}
 			}		
 		}
+		table = null; // Re-build it for the new options
+	}
+
+	/**
+	 * Gets the table of the characters that {@link #encode(String, EncoderContext)} cannot copy
+	 * directly to the output with the current options.
+	 * @return the table for the current options.
+	 */
+	private EscapeTable getEscapeTable () {
+		if ( table == null ) {
+			table = new EscapeTable().set("<>&").setUnencodable(chsEnc);
+			if ( quoteMode != QuoteMode.UNESCAPED ) table.set('"');
+			if (( quoteMode == QuoteMode.ALL ) || ( quoteMode == QuoteMode.NUMERIC_SINGLE_QUOTES )) table.set('\'');
+			if ( !"\n".equals(lineBreak) ) table.set('\n');
+			if ( charsToCER != null ) {
+				for ( int i=0; i<charsToCER.length(); i++ ) {
+					if ( charsToCER.charAt(i) > 127 ) table.set(charsToCER.charAt(i));
+				}
+			}
+		}
+		return table;
 	}
 
 	@Override
@@ -99,10 +121,21 @@ public class HtmlEncoder implements IEncoder {
 	{
 		if ( text == null ) return "";
 		boolean escapeGT = false;
+		EscapeTable table = getEscapeTable();
+		int len = text.length();
+		int end = table.scan(text, 0);
+		if ( end == len ) return text; // Nothing to escape
 		
-		StringBuffer sbTmp = new StringBuffer(text.length());
+		StringBuilder sbTmp = new StringBuilder(len+16);
 		char ch;
-		for ( int i=0; i<text.length(); i++ ) {
+		for ( int i=0; i<len; i++ ) {
+			// Copy the run of characters that need no escaping
+			if ( end < i ) end = table.scan(text, i);
+			if ( end > i ) {
+				sbTmp.append(text, i, end);
+				i = end;
+				if ( i == len ) break;
+			}
 			ch = text.charAt(i);
 			switch ( ch ) {
 			case '<':
@@ -158,7 +191,7 @@ public class HtmlEncoder implements IEncoder {
 							continue;
 						}
 						// Else: fall back to normal character process
-						if (( chsEnc != null ) && !chsEnc.canEncode(ch) ) {
+						if ( !EscapeTable.canEncode(chsEnc, ch) ) {
 							sbTmp.append(String.format("&#x%04x;", (int)ch));
 						}
 						else { // No encoder or char is supported
@@ -224,7 +257,7 @@ public class HtmlEncoder implements IEncoder {
 					return cer;
 				}
 				// Else: fall back to normal character process
-				if (( chsEnc != null ) && ( !chsEnc.canEncode(value) )) {
+				if ( !EscapeTable.canEncode(chsEnc, value) ) {
 					return String.format("&#x%04x;", (int)value);
 				}
 				else { // No encoder or char is supported
@@ -276,7 +309,7 @@ public class HtmlEncoder implements IEncoder {
 				}
 				// Else: fall back to normal character process
 				// Should be able to fold to char, supplementary case will be treated
-				if (( chsEnc != null ) && !chsEnc.canEncode((char)value) ) {
+				if ( !EscapeTable.canEncode(chsEnc, (char)value) ) {
 					return String.format("&#x%04x;", value);
 				}
 				else { // No encoder or char is supported
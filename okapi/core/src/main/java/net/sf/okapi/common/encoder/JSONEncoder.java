@@ -34,6 +34,7 @@ public class JSONEncoder implements IEncoder {
 	private String encoding;
 	private IParameters params;
 	private char last = Character.MAX_VALUE;
+	private EscapeTable table;
 
 	/**
 	 * Creates a new PropertiesEncoder object, with US-ASCII as the encoding.
@@ -57,6 +58,21 @@ public class JSONEncoder implements IEncoder {
 			escapeExtendedChars = params.getBoolean("escapeExtendedChars");
 			escapeForwardSlashes = params.getBoolean("escapeForwardSlashes");
 		}
+		table = null; // Re-build it for the new options
+	}
+
+	/**
+	 * Gets the table of the characters that {@link #encode(String, EncoderContext)} cannot copy
+	 * directly to the output with the current options.
+	 * @return the table for the current options.
+	 */
+	private EscapeTable getEscapeTable () {
+		if ( table == null ) {
+			table = new EscapeTable().set("\b\f\n\r\t\"\\").setUnencodable(chsEnc);
+			if ( escapeForwardSlashes ) table.set('/');
+			if ( escapeExtendedChars ) table.setRange('\u0080', '\uFFFF');
+		}
+		return table;
 	}
 
 	@Override
@@ -64,10 +80,26 @@ public class JSONEncoder implements IEncoder {
 			EncoderContext context)
 	{
 		if ( text == null ) return "";
-
-		StringBuffer sbTmp = new StringBuffer(text.length());
-		for ( int i=0; i<text.length(); i++ ) {
-			sbTmp.append(encode(text.charAt(i), context));
+		EscapeTable table = getEscapeTable();
+		int len = text.length();
+		// A pending high surrogate is combined with the next character
+		int end = Character.isHighSurrogate(last) ? 0 : table.scan(text, 0);
+		if ( end == len ) { // Nothing to escape
+			if ( len > 0 ) last = text.charAt(len-1);
+			return text;
+		}
+		StringBuilder sbTmp = new StringBuilder(len+16);
+		int start = 0;
+		while ( true ) {
+			// Copy the run of characters that need no escaping
+			if ( end > start ) {
+				sbTmp.append(text, start, end);
+				last = text.charAt(end-1);
+			}
+			if ( end == len ) break;
+			sbTmp.append(encode(text.charAt(end), context));
+			start = end+1;
+			end = Character.isHighSurrogate(last) ? start : table.scan(text, start);
 		}
 		return sbTmp.toString();
 	}
@@ -100,7 +132,7 @@ public class JSONEncoder implements IEncoder {
 					return tmp;
 				}
 			}
-			if ( escapeExtendedChars || !chsEnc.canEncode(value) ) {
+			if ( escapeExtendedChars || !EscapeTable.canEncode(chsEnc, value) ) {
 				return String.format("\\u%04x", (int)value);
 			}
 			else {
@@ -31,6 +31,7 @@ public class PropertiesEncoder implements IEncoder {
 	private String lineBreak;
 	private String encoding;
 	private IParameters params;
+	private EscapeTable table;
 	
 	/**
 	 * Creates a new PropertiesEncoder object, with US-ASCII as the encoding.
@@ -55,15 +56,42 @@ public class PropertiesEncoder implements IEncoder {
 		if ( params != null ) {
 			escapeExtendedChars = params.getBoolean("escapeExtendedChars");
 		}
+		table = null; // Re-build it for the new options
+	}
+
+	/**
+	 * Gets the table of the characters that {@link #encode(String, EncoderContext)} cannot copy
+	 * directly to the output with the current options.
+	 * @return the table for the current options.
+	 */
+	private EscapeTable getEscapeTable () {
+		if ( table == null ) {
+			// ':' and '=' are escaped only at the start of the text
+			table = new EscapeTable().set("\n\t:=").setUnencodable(chsEnc);
+			if ( escapeExtendedChars ) table.setRange('\u0080', '\uFFFF');
+		}
+		return table;
 	}
 
 	@Override
 	public String encode (String text,
 			EncoderContext context)
 	{
-		StringBuilder escaped = new StringBuilder();
+		EscapeTable table = getEscapeTable();
+		int len = text.length();
+		int end = table.scan(text, 0);
+		if ( end == len ) return text; // Nothing to escape
+
+		StringBuilder escaped = new StringBuilder(len+16);
 		char ch;
-		for ( int i=0; i<text.length(); i++ ) {
+		for ( int i=0; i<len; i++ ) {
+			// Copy the run of characters that need no escaping
+			if ( end < i ) end = table.scan(text, i);
+			if ( end > i ) {
+				escaped.append(text, i, end);
+				i = end;
+				if ( i == len ) break;
+			}
 			ch = text.charAt(i);
 			
 			if ( ch > 127 ) { // Extended chars
@@ -80,8 +108,7 @@ public class PropertiesEncoder implements IEncoder {
 					}
 				}
 				else { // Should be able to fold to char, supplementary case will be treated
-					if ( escapeExtendedChars
-						|| (( chsEnc != null ) && !chsEnc.canEncode(ch) )) {
+					if ( escapeExtendedChars || !EscapeTable.canEncode(chsEnc, ch) ) {
 						escaped.append(String.format("\\u%04x", (int)ch));
 					}
 					else { // No encoder or char is supported
@@ -115,7 +142,7 @@ public class PropertiesEncoder implements IEncoder {
 			EncoderContext context)
 	{
 		if ( value > 127 ) {
-			if ( escapeExtendedChars || !chsEnc.canEncode(value) ) {
+			if ( escapeExtendedChars || !EscapeTable.canEncode(chsEnc, value) ) {
 				return String.format("\\u%04x", (int)value);
 			}
 			else {
@@ -150,8 +177,7 @@ public class PropertiesEncoder implements IEncoder {
 				}
 			}
 			else { // Extended not supplemental
-				if ( escapeExtendedChars 
-					|| (( chsEnc != null ) && !chsEnc.canEncode((char)value) )) {
+				if ( escapeExtendedChars || !EscapeTable.canEncode(chsEnc, (char)value) ) {
 						return String.format("\\u%04x", value);
 				}
 				else {
@@ -57,6 +57,7 @@ public class XMLEncoder implements IEncoder {
 	private boolean escapeLineBreak = false;
 	private QuoteMode quoteMode = QuoteMode.ALL;
 	private IParameters params;
+	private EscapeTable table;
 
 	public XMLEncoder(String encoding, String lineBreak,
 			boolean escapeGT, boolean escapeNbsp, boolean escapeLineBreak,
@@ -112,6 +113,24 @@ public class XMLEncoder implements IEncoder {
 				quoteMode = QuoteMode.fromValue(params.getInteger(QUOTEMODE));
 			}
 		}
+		table = null; // Re-build it for the new options
+	}
+
+	/**
+	 * Gets the table of the characters that {@link #encode(String, EncoderContext)} cannot copy
+	 * directly to the output with the current options.
+	 * @return the table for the current options.
+	 */
+	private EscapeTable getEscapeTable () {
+		if ( table == null ) {
+			// '>' depends on the previous character
+			table = new EscapeTable().set("<&>\r").setUnencodable(chsEnc);
+			if ( quoteMode != QuoteMode.UNESCAPED ) table.set('"');
+			if (( quoteMode == QuoteMode.ALL ) || ( quoteMode == QuoteMode.NUMERIC_SINGLE_QUOTES )) table.set('\'');
+			if ( escapeLineBreak || !"\n".equals(lineBreak) ) table.set('\n');
+			if ( escapeNbsp ) table.set('\u00A0');
+		}
+		return table;
 	}
 
 	@Override
@@ -119,10 +138,26 @@ public class XMLEncoder implements IEncoder {
 			EncoderContext context)
 	{
 		if ( text == null ) return "";
-		
-		StringBuffer sbTmp = new StringBuffer(text.length());
-		for ( int i=0; i<text.length(); i++ ) {
-			sbTmp.append(encode(text.charAt(i), context));
+		EscapeTable table = getEscapeTable();
+		int len = text.length();
+		// A pending high surrogate is combined with the next character
+		int end = Character.isHighSurrogate(last) ? 0 : table.scan(text, 0);
+		if ( end == len ) { // Nothing to escape
+			if ( len > 0 ) last = text.charAt(len-1);
+			return text;
+		}
+		StringBuilder sbTmp = new StringBuilder(len+16);
+		int start = 0;
+		while ( true ) {
+			// Copy the run of characters that need no escaping
+			if ( end > start ) {
+				sbTmp.append(text, start, end);
+				last = text.charAt(end-1);
+			}
+			if ( end == len ) break;
+			sbTmp.append(encode(text.charAt(end), context));
+			start = end+1;
+			end = Character.isHighSurrogate(last) ? start : table.scan(text, start);
 		}
 		return sbTmp.toString();
 	}
@@ -189,7 +224,7 @@ public class XMLEncoder implements IEncoder {
 						return tmp;
 					}
 				}
-				if (( chsEnc != null ) && ( !chsEnc.canEncode(value) )) {
+				if ( !EscapeTable.canEncode(chsEnc, value) ) {
 					return String.format("&#x%04x;", (int)value);
 				}
 				else { // No encoder or char is supported
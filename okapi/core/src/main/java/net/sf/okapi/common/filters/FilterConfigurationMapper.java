@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
  * of the machine and the value for {@link FilterConfiguration#parametersLocation} for a custom
  * configuration is filename of the parameters file. The directory where the files are
  * located is defined with the {@link #setCustomConfigurationsDirectory(String)}.
+ * <p>Use a {@link FilterPool} to re-use the created filters across documents.
  */
 public class FilterConfigurationMapper extends ParametersEditorMapper implements IFilterConfigurationMapper {
 	private final Logger LOGGER = LoggerFactory.getLogger(getClass());
@@ -0,0 +1,353 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.filters;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.filterwriter.IFilterWriter;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.skeleton.ISkeletonWriter;
+
+/**
+ * Pool of filter instances, keyed by filter configuration identifier.
+ * <p>Creating some filters and loading their parameters can take much longer than processing
+ * a small document. This pool creates the filters through a given {@link IFilterConfigurationMapper}
+ * only when no idle instance is available for the requested configuration, and keeps the
+ * parameters loaded at creation time.
+ * <p>The filters returned by {@link #acquire(String)} go back to the pool when they are closed,
+ * so they are typically used in a try-with-resources statement:
+ * <pre>
+ * try ( IFilter filter = pool.acquire(rawDoc.getFilterConfigId()) ) {
+ *    filter.open(rawDoc);
+ *    while ( filter.hasNext() ) { ... }
+ * }
+ * </pre>
+ * <p>Each call to {@link #acquire(String)} returns a new handle on the pooled instance: once closed,
+ * a handle cannot be used anymore and closing it again has no effect, even if the instance has been
+ * handed out again through another handle.
+ * <p>The number of idle instances kept for each configuration is limited: the filters released
+ * when the limit is reached are discarded. This class is thread-safe.
+ */
+public class FilterPool implements AutoCloseable {
+
+	/**
+	 * Default maximum number of idle instances kept for each configuration.
+	 */
+	public static final int DEFAULT_MAXIMUM_IDLE = 4;
+
+	private final IFilterConfigurationMapper fcMapper;
+	private final Map<String, Deque<Instance>> idleFilters;
+	private final Map<String, Integer> limits;
+	private int defaultLimit;
+
+	/**
+	 * Creates a new pool for a given mapper, with {@link #DEFAULT_MAXIMUM_IDLE} idle instances per configuration.
+	 * @param fcMapper the mapper to use to create the filters.
+	 */
+	public FilterPool (IFilterConfigurationMapper fcMapper) {
+		this(fcMapper, DEFAULT_MAXIMUM_IDLE);
+	}
+
+	/**
+	 * Creates a new pool for a given mapper.
+	 * @param fcMapper the mapper to use to create the filters.
+	 * @param maximumIdle the default maximum number of idle instances kept for each configuration.
+	 */
+	public FilterPool (IFilterConfigurationMapper fcMapper,
+		int maximumIdle)
+	{
+		if ( fcMapper == null ) {
+			throw new IllegalArgumentException("fcMapper cannot be null");
+		}
+		this.fcMapper = fcMapper;
+		idleFilters = new HashMap<String, Deque<Instance>>();
+		limits = new HashMap<String, Integer>();
+		setMaximumIdle(maximumIdle);
+	}
+
+	/**
+	 * Gets a filter for a given configuration. An idle instance is re-used if possible,
+	 * otherwise a new filter is created with {@link IFilterConfigurationMapper#createFilter(String)}.
+	 * @param configId the identifier of the filter configuration.
+	 * @return a filter set with the parameters of the given configuration, or null if the
+	 * configuration cannot be found. Closing the filter returns it to this pool.
+	 * @throws net.sf.okapi.common.exceptions.OkapiFilterCreationException if the filter cannot be created.
+	 */
+	public IFilter acquire (String configId) {
+		synchronized ( this ) {
+			Deque<Instance> deque = idleFilters.get(configId);
+			if (( deque != null ) && !deque.isEmpty() ) {
+				return new PooledFilter(this, deque.pop());
+			}
+		}
+		// Create outside the lock: this is the slow part
+		IFilter filter = fcMapper.createFilter(configId);
+		if ( filter == null ) return null;
+		return new PooledFilter(this, new Instance(configId, filter));
+	}
+
+	/**
+	 * Sets the default maximum number of idle instances kept for each configuration.
+	 * @param maximumIdle the new maximum (0 to not keep any idle instance).
+	 */
+	public synchronized void setMaximumIdle (int maximumIdle) {
+		if ( maximumIdle < 0 ) {
+			throw new IllegalArgumentException("maximumIdle cannot be negative");
+		}
+		defaultLimit = maximumIdle;
+		trim();
+	}
+
+	/**
+	 * Sets the maximum number of idle instances kept for a given configuration.
+	 * @param configId the identifier of the filter configuration.
+	 * @param maximumIdle the new maximum (0 to not keep any idle instance).
+	 */
+	public synchronized void setMaximumIdle (String configId,
+		int maximumIdle)
+	{
+		if ( maximumIdle < 0 ) {
+			throw new IllegalArgumentException("maximumIdle cannot be negative");
+		}
+		limits.put(configId, maximumIdle);
+		trim();
+	}
+
+	/**
+	 * Gets the maximum number of idle instances kept for a given configuration.
+	 * @param configId the identifier of the filter configuration.
+	 * @return the maximum number of idle instances for the given configuration.
+	 */
+	public synchronized int getMaximumIdle (String configId) {
+		Integer limit = limits.get(configId);
+		return (limit == null) ? defaultLimit : limit;
+	}
+
+	/**
+	 * Gets the number of idle instances currently in the pool for a given configuration.
+	 * @param configId the identifier of the filter configuration.
+	 * @return the number of idle instances.
+	 */
+	public synchronized int getIdleCount (String configId) {
+		Deque<Instance> deque = idleFilters.get(configId);
+		return (deque == null) ? 0 : deque.size();
+	}
+
+	/**
+	 * Discards the idle instances of a given configuration, for example after its parameters have changed.
+	 * @param configId the identifier of the filter configuration.
+	 */
+	public synchronized void clear (String configId) {
+		idleFilters.remove(configId);
+	}
+
+	/**
+	 * Discards all the idle instances of this pool.
+	 */
+	public synchronized void clear () {
+		idleFilters.clear();
+	}
+
+	/**
+	 * Discards all the idle instances of this pool. Filters released after this call
+	 * are pooled again: use {@link #setMaximumIdle(int)} with 0 to stop pooling.
+	 */
+	@Override
+	public void close () {
+		clear();
+	}
+
+	private synchronized void release (Instance instance) {
+		Deque<Instance> deque = idleFilters.get(instance.configId);
+		if ( deque == null ) {
+			deque = new ArrayDeque<Instance>();
+			idleFilters.put(instance.configId, deque);
+		}
+		if ( deque.size() < getMaximumIdle(instance.configId) ) {
+			deque.push(instance);
+		}
+	}
+
+	private void trim () {
+		for ( Map.Entry<String, Deque<Instance>> entry : idleFilters.entrySet() ) {
+			int max = getMaximumIdle(entry.getKey());
+			while ( entry.getValue().size() > max ) {
+				entry.getValue().removeLast();
+			}
+		}
+	}
+
+	/**
+	 * Pooled filter instance, with the parameters loaded at its creation.
+	 */
+	private static class Instance {
+
+		final String configId;
+		final IFilter filter;
+		final IParameters params;
+		final String paramsData; // Values of the parameters at creation
+
+		Instance (String configId,
+			IFilter filter)
+		{
+			this.configId = configId;
+			this.filter = filter;
+			params = filter.getParameters();
+			paramsData = (params == null) ? null : params.toString();
+		}
+
+		/**
+		 * Restores the parameters loaded at creation, if the last user replaced them
+		 * or changed their values.
+		 */
+		void restoreParameters () {
+			if ( params == null ) return;
+			if ( filter.getParameters() != params ) {
+				filter.setParameters(params);
+			}
+			if ( !paramsData.equals(params.toString()) ) {
+				params.fromString(paramsData);
+			}
+		}
+	}
+
+	/**
+	 * Filter returned by the pool: a handle that delegates to the pooled instance and
+	 * returns it to the pool when closed. A new handle is created for each acquisition.
+	 */
+	private static class PooledFilter implements IFilter {
+
+		private final FilterPool pool;
+		private final Instance instance;
+		private final IFilter filter;
+		private volatile boolean released;
+
+		PooledFilter (FilterPool pool,
+			Instance instance)
+		{
+			this.pool = pool;
+			this.instance = instance;
+			this.filter = instance.filter;
+		}
+
+		private IFilter filter () {
+			if ( released ) {
+				throw new OkapiException(String.format(
+					"The filter for '%s' has been closed and returned to its pool.", instance.configId));
+			}
+			return filter;
+		}
+
+		@Override
+		public void close () {
+			synchronized ( this ) {
+				if ( released ) return;
+				released = true;
+			}
+			filter.close();
+			instance.restoreParameters();
+			pool.release(instance);
+		}
+
+		@Override
+		public String getName () {
+			return filter().getName();
+		}
+
+		@Override
+		public String getDisplayName () {
+			return filter().getDisplayName();
+		}
+
+		@Override
+		public void open (RawDocument input) {
+			filter().open(input);
+		}
+
+		@Override
+		public void open (RawDocument input,
+			boolean generateSkeleton)
+		{
+			filter().open(input, generateSkeleton);
+		}
+
+		@Override
+		public boolean hasNext () {
+			return filter().hasNext();
+		}
+
+		@Override
+		public Event next () {
+			return filter().next();
+		}
+
+		@Override
+		public void cancel () {
+			filter().cancel();
+		}
+
+		@Override
+		public IParameters getParameters () {
+			return filter().getParameters();
+		}
+
+		@Override
+		public void setParameters (IParameters params) {
+			filter().setParameters(params);
+		}
+
+		@Override
+		public void setFilterConfigurationMapper (IFilterConfigurationMapper fcMapper) {
+			filter().setFilterConfigurationMapper(fcMapper);
+		}
+
+		@Override
+		public ISkeletonWriter createSkeletonWriter () {
+			return filter().createSkeletonWriter();
+		}
+
+		@Override
+		public IFilterWriter createFilterWriter () {
+			return filter().createFilterWriter();
+		}
+
+		@Override
+		public EncoderManager getEncoderManager () {
+			return filter().getEncoderManager();
+		}
+
+		@Override
+		public String getMimeType () {
+			return filter().getMimeType();
+		}
+
+		@Override
+		public List<FilterConfiguration> getConfigurations () {
+			return filter().getConfigurations();
+		}
+
+	}
+
+}
@@ -45,6 +45,8 @@ import net.sf.okapi.common.resource.StartGroup;
 import net.sf.okapi.common.resource.StartSubDocument;
 import net.sf.okapi.common.resource.StartSubfilter;
 import net.sf.okapi.common.skeleton.ISkeletonWriter;
+import net.sf.okapi.common.skeleton.IStreamingSkeletonWriter;
+import net.sf.okapi.common.skeleton.SkeletonWriterAdapter;
 
 /**
  * Implements the IFilterWriter interface for filters that use the
@@ -60,6 +62,7 @@ public class GenericFilterWriter implements IFilterWriter {
 	//private IEncoder parentEncoder;
 	//private EncoderManager nativeEncoderManager;
 	private ISkeletonWriter skelWriter;
+	private IStreamingSkeletonWriter streamingWriter;
 	private OutputStream output;
 	private String outputPath;
 	private EncoderManager encoderManager;
@@ -162,6 +165,18 @@ public class GenericFilterWriter implements IFilterWriter {
 	 */
 	protected void setSkelWriter(ISkeletonWriter skelWriter) {
 		this.skelWriter = skelWriter;
+		streamingWriter = null;
+	}
+
+	/**
+	 * Gets the skeleton writer to use to write the output of the events directly to the writer.
+	 * @return the skeleton writer of this filter writer, or an adapter for it.
+	 */
+	private IStreamingSkeletonWriter getStreamingWriter () {
+		if ( streamingWriter == null ) {
+			streamingWriter = SkeletonWriterAdapter.wrap(skelWriter);
+		}
+		return streamingWriter;
 	}
 
 	@Override
@@ -236,41 +251,41 @@ public class GenericFilterWriter implements IFilterWriter {
 		if ( outputEncoding == null ) {
 			outputEncoding = encoding;
 		}
-		writer.write(skelWriter.processStartDocument(outputLocale,
-			outputEncoding, null, encoderManager, resource));
+		getStreamingWriter().processStartDocument(outputLocale,
+			outputEncoding, null, encoderManager, resource, writer);
 		//parentEncoder = encoderManager.getEncoder(); // The encoder used to write StartDocument of the parent filter
 	}
 
 	protected void processEndDocument(Ending resource) throws IOException {
-		writer.write(skelWriter.processEndDocument(resource));
+		getStreamingWriter().processEndDocument(resource, writer);
 	}
 
 	protected void processStartSubDocument (StartSubDocument resource) throws IOException {
-		writer.write(skelWriter.processStartSubDocument(resource));
+		getStreamingWriter().processStartSubDocument(resource, writer);
 	}
 
 	protected void processEndSubDocument (Ending resource) throws IOException {
-		writer.write(skelWriter.processEndSubDocument(resource));
+		getStreamingWriter().processEndSubDocument(resource, writer);
 	}
 
 	protected void processStartGroup (StartGroup resource) throws IOException {
-		writer.write(skelWriter.processStartGroup(resource));
+		getStreamingWriter().processStartGroup(resource, writer);
 	}
 
 	protected void processEndGroup (Ending resource) throws IOException {
-		writer.write(skelWriter.processEndGroup(resource));
+		getStreamingWriter().processEndGroup(resource, writer);
 	}
 
 	protected void processTextUnit (ITextUnit resource) throws IOException {
-		writer.write(skelWriter.processTextUnit(resource));
+		getStreamingWriter().processTextUnit(resource, writer);
 	}
 
 	protected void processDocumentPart (DocumentPart resource) throws IOException {
-		writer.write(skelWriter.processDocumentPart(resource));
+		getStreamingWriter().processDocumentPart(resource, writer);
 	}
 	
 	protected void processStartSubfilter (StartSubfilter resource) throws IOException {
-		writer.write(skelWriter.processStartSubfilter(resource)); // Stores a ref to SSF
+		getStreamingWriter().processStartSubfilter(resource, writer); // Stores a ref to SSF
 		// When skelWriter refers to a SubFilterSkeletonWriter, writer.write() is called for empty strings and does nothing  
 		//skelWriter = new SubFilterSkeletonWriter(resource, parentEncoder, locale, encoding);		
 		//skelWriter = new SubFilterSkeletonWriter(resource, parentEncoder);
@@ -279,7 +294,7 @@ public class GenericFilterWriter implements IFilterWriter {
 
 	protected void processEndSubfilter (EndSubfilter resource) throws IOException {
 		//skelWriter = parentSkelWriter; // Restore the parent skeleton writer
-		writer.write(skelWriter.processEndSubfilter(resource));
+		getStreamingWriter().processEndSubfilter(resource, writer);
 	}
 
 	@Override
@@ -0,0 +1,255 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.resource;
+
+import java.text.CharacterIterator;
+
+/**
+ * Re-usable view of the text of a {@link TextFragment} without its inline codes.
+ * <p>The text is copied into a buffer that grows as needed and is re-used for the
+ * next fragment, so no object is created for each fragment once the buffer is large enough.
+ * The view can be passed directly to regular expressions (as a {@link CharSequence})
+ * and to break iterators (as a {@link CharacterIterator}).
+ * <p>The content of the view changes with each call to one of the <code>set</code> methods:
+ * this class is not thread-safe.
+ */
+public class PlainTextView implements CharSequence, CharacterIterator {
+
+	private char[] buffer;
+	private int length;
+	private int index;
+
+	/**
+	 * Creates a new empty view.
+	 */
+	public PlainTextView () {
+		buffer = new char[256];
+	}
+
+	/**
+	 * Sets this view to the text of a given fragment, without the inline codes.
+	 * The result is the same as {@link TextUnitUtil#getText(TextFragment)}.
+	 * @param fragment the fragment to view (can be null).
+	 * @return this view.
+	 */
+	public PlainTextView set (TextFragment fragment) {
+		return set(fragment, false);
+	}
+
+	/**
+	 * Sets this view to the text of a given fragment, without the inline codes.
+	 * @param fragment the fragment to view (can be null).
+	 * @param lineBreaks true to replace the codes of type {@link Code#TYPE_LB} by '\n',
+	 * false to remove them like the other codes.
+	 * @return this view.
+	 */
+	public PlainTextView set (TextFragment fragment,
+		boolean lineBreaks)
+	{
+		length = 0;
+		return append(fragment, lineBreaks);
+	}
+
+	/**
+	 * Sets this view to the text of all the parts of a given container, without the inline codes.
+	 * The result is the same as the text of {@link TextContainer#getUnSegmentedContentCopy()}.
+	 * @param container the container to view (can be null).
+	 * @return this view.
+	 */
+	public PlainTextView set (TextContainer container) {
+		length = 0;
+		index = 0;
+		if ( container == null ) return this;
+		for ( TextPart part : container ) {
+			append(part.getContent(), false);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the text of a given fragment to this view, without the inline codes.
+	 * @param fragment the fragment to append (can be null).
+	 * @param lineBreaks true to replace the codes of type {@link Code#TYPE_LB} by '\n',
+	 * false to remove them like the other codes.
+	 * @return this view.
+	 */
+	public PlainTextView append (TextFragment fragment,
+		boolean lineBreaks)
+	{
+		index = 0;
+		if ( fragment == null ) return this;
+		String text = fragment.getCodedText();
+		ensureCapacity(length+text.length());
+		if ( !fragment.hasCode() ) {
+			text.getChars(0, text.length(), buffer, length);
+			length += text.length();
+			return this;
+		}
+		for ( int i=0; i<text.length(); i++ ) {
+			char ch = text.charAt(i);
+			if ( TextFragment.isMarker(ch) ) {
+				if ( lineBreaks && Code.TYPE_LB.equals(fragment.getCode(text.charAt(i+1)).getType()) ) {
+					buffer[length++] = '\n';
+				}
+				i++; // Skip the index
+			}
+			else {
+				buffer[length++] = ch;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets this view to a given text.
+	 * @param text the text to view (can be null).
+	 * @return this view.
+	 */
+	public PlainTextView set (CharSequence text) {
+		length = 0;
+		index = 0;
+		if ( text == null ) return this;
+		ensureCapacity(text.length());
+		for ( int i=0; i<text.length(); i++ ) {
+			buffer[length++] = text.charAt(i);
+		}
+		return this;
+	}
+
+	/**
+	 * Replaces all occurrences of a given character in this view.
+	 * @param oldChar the character to replace.
+	 * @param newChar the replacement character.
+	 * @return this view.
+	 */
+	public PlainTextView replace (char oldChar,
+		char newChar)
+	{
+		for ( int i=0; i<length; i++ ) {
+			if ( buffer[i] == oldChar ) buffer[i] = newChar;
+		}
+		return this;
+	}
+
+	private void ensureCapacity (int capacity) {
+		if ( buffer.length < capacity ) {
+			char[] tmp = new char[Math.max(capacity, buffer.length*2)];
+			System.arraycopy(buffer, 0, tmp, 0, length);
+			buffer = tmp;
+		}
+	}
+
+	@Override
+	public int length () {
+		return length;
+	}
+
+	@Override
+	public char charAt (int index) {
+		if (( index < 0 ) || ( index >= length )) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index);
+		}
+		return buffer[index];
+	}
+
+	@Override
+	public CharSequence subSequence (int start,
+		int end)
+	{
+		if (( start < 0 ) || ( end > length ) || ( start > end )) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new String(buffer, start, end-start);
+	}
+
+	@Override
+	public String toString () {
+		return new String(buffer, 0, length);
+	}
+
+	@Override
+	public char first () {
+		index = 0;
+		return current();
+	}
+
+	@Override
+	public char last () {
+		index = (length > 0) ? length-1 : 0;
+		return current();
+	}
+
+	@Override
+	public char current () {
+		return (index < length) ? buffer[index] : DONE;
+	}
+
+	@Override
+	public char next () {
+		if ( index < length ) index++;
+		return current();
+	}
+
+	@Override
+	public char previous () {
+		if ( index == 0 ) return DONE;
+		index--;
+		return buffer[index];
+	}
+
+	@Override
+	public char setIndex (int position) {
+		if (( position < 0 ) || ( position > length )) {
+			throw new IllegalArgumentException("Invalid index: " + position);
+		}
+		index = position;
+		return current();
+	}
+
+	@Override
+	public int getBeginIndex () {
+		return 0;
+	}
+
+	@Override
+	public int getEndIndex () {
+		return length;
+	}
+
+	@Override
+	public int getIndex () {
+		return index;
+	}
+
+	/**
+	 * Creates a copy of this view, with its own buffer.
+	 * @return a new view with the same text and the same current index.
+	 */
+	@Override
+	public Object clone () {
+		try {
+			PlainTextView copy = (PlainTextView)super.clone();
+			copy.buffer = new char[Math.max(length, 1)];
+			System.arraycopy(buffer, 0, copy.buffer, 0, length);
+			return copy;
+		}
+		catch ( CloneNotSupportedException e ) {
+			throw new InternalError(e.getMessage());
+		}
+	}
+
+}
@@ -16,7 +16,8 @@
 
 package net.sf.okapi.common.skeleton;
 
-import java.util.LinkedHashMap;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -56,9 +57,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Implements ISkeletonWriter for the GenericSkeleton skeleton. 
+ * Implements ISkeletonWriter for the GenericSkeleton skeleton.
+ * <p>The {@link IStreamingSkeletonWriter} methods write the skeleton parts of the text units and
+ * document parts directly to the output. When a sub-class overrides the method creating the string
+ * for an event (or one of the <code>getString()</code> methods used for it), that method is used instead.
  */
-public class GenericSkeletonWriter implements ISkeletonWriter {
+public class GenericSkeletonWriter implements IStreamingSkeletonWriter {
 
 	public static final String ALLOWEMPTYOUTPUTTARGET = "allowEmptyOutputTarget";
 	
@@ -77,8 +81,11 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 	private Map<String, Referent> referents;
 	protected String outputEncoding;
 	private int referentCopies = 1; // Number of copies to have for the referents (min=1)
+	private int maxReferentsInMemory = ReferentStore.DEFAULT_MAXINMEMORY;
 	private SubFilterSkeletonWriter sfWriter; // sub-filter skeleton writer
 	private boolean sfDirectOutput;
+	private Overrides overrides;
+	private char[] copyBuffer;
 
 //	private boolean segmentReferents = false;
 	
@@ -103,6 +110,18 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		this.sfWriter = sfWriter;
 	}
 
+	private void addReferent (String id,
+		Referent ref)
+	{
+		if ( referents instanceof ReferentStore ) {
+			// Does not read back a previous referent written out
+			((ReferentStore)referents).set(id, ref);
+		}
+		else {
+			referents.put(id, ref);
+		}
+	}
+
 	protected IReferenceable getReference (String id) {
 		if ( referents == null ) return null;
 		Referent ref = referents.get(id);
@@ -119,8 +138,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		sfWriter = null;
 		
 		if ( referents != null ) {
-			referents.clear();
-			referents = null;
+			closeReferents();
 		}
 		if ( storageStack != null ) {
 			storageStack.clear();
@@ -139,6 +157,51 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		else this.referentCopies = referentCopies;
 	}
 
+	/**
+	 * Sets the maximum number of referents to hold in memory. When more referents are
+	 * waiting to be referenced, the oldest ones are written to a temporary file
+	 * (see {@link ReferentStore}). This applies to the next document.
+	 * @param maxReferentsInMemory the maximum number of referents in memory (0 or less for no maximum).
+	 */
+	public void setMaxReferentsInMemory (int maxReferentsInMemory) {
+		this.maxReferentsInMemory = maxReferentsInMemory;
+	}
+
+	/**
+	 * Creates the store for the referents of a new document.
+	 * Groups that are still being stored are always kept in memory.
+	 * @return the new referent store.
+	 */
+	protected ReferentStore createReferentStore () {
+		return new ReferentStore(maxReferentsInMemory) {
+			@Override
+			protected boolean canSpill (Referent ref) {
+				if ( ref.ref instanceof StorageList ) {
+					for ( StorageList sl : storageStack ) {
+						if ( sl == ref.ref ) return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	private void closeReferents () {
+		if ( referents instanceof ReferentStore ) {
+			ReferentStore store = (ReferentStore)referents;
+			if ( store.getHeldCount() > 0 ) {
+				logger.debug("Referents: {} held, peak of {} ({} in memory), {} written to disk, {} read back.",
+					store.getHeldCount(), store.getPeakCount(), store.getPeakInMemoryCount(),
+					store.getSpilledCount(), store.getReloadedCount());
+			}
+			store.close();
+		}
+		else {
+			referents.clear();
+		}
+		referents = null;
+	}
+
 	@Override
 	public String processStartDocument (LocaleId outputLocale,
 		String outputEncoding,
@@ -149,8 +212,11 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		if (isSubfilterActive()) {
 			return sfWriter.processStartDocument(outputLocale, outputEncoding, layer, encoderManager, resource);
 		}
-		referents = new LinkedHashMap<String, Referent>();
+		if ( referents != null ) {
+			closeReferents();
+		}
 		storageStack = new Stack<StorageList>();
+		referents = createReferentStore();
 
 		this.inputLoc = resource.getLocale();
 		this.outputLoc = outputLocale;
@@ -222,7 +288,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 	protected String _processStartGroup (StartGroup resource) {
 		if ( resource.isReferent() ) {
 			StorageList sl = new StorageList(resource);
-			referents.put(sl.getId(), new Referent(sl, referentCopies));
+			addReferent(sl.getId(), new Referent(sl, referentCopies));
 			storageStack.push(sl);
 			return "";
 		}
@@ -293,7 +359,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 			return sfWriter.processTextUnit(resource);
 		}
 		if ( resource.isReferent() ) {
-			referents.put(resource.getId(), new Referent(resource, referentCopies));
+			addReferent(resource.getId(), new Referent(resource, referentCopies));
 			return "";
 		}
 		if ( storageStack.size() > 0 ) {
@@ -309,7 +375,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 			return sfWriter.processDocumentPart(resource);
 		}
 		if ( resource.isReferent() ) {
-			referents.put(resource.getId(), new Referent(resource, referentCopies));
+			addReferent(resource.getId(), new Referent(resource, referentCopies));
 			return "";
 		}
 		if ( storageStack.size() > 0 ) {
@@ -319,6 +385,223 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		return getString((GenericSkeleton)resource.getSkeleton(), EncoderContext.SKELETON);
 	}
 	
+	@Override
+	public void processStartDocument (LocaleId outputLocale,
+		String outputEncoding,
+		ILayerProvider layer,
+		EncoderManager encoderManager,
+		StartDocument resource,
+		Appendable output) throws IOException
+	{
+		output.append(processStartDocument(outputLocale, outputEncoding, layer, encoderManager, resource));
+	}
+
+	@Override
+	public void processEndDocument (Ending resource,
+		Appendable output) throws IOException
+	{
+		output.append(processEndDocument(resource));
+	}
+
+	@Override
+	public void processStartSubDocument (StartSubDocument resource,
+		Appendable output) throws IOException
+	{
+		output.append(processStartSubDocument(resource));
+	}
+
+	@Override
+	public void processEndSubDocument (Ending resource,
+		Appendable output) throws IOException
+	{
+		output.append(processEndSubDocument(resource));
+	}
+
+	@Override
+	public void processStartGroup (StartGroup resource,
+		Appendable output) throws IOException
+	{
+		output.append(processStartGroup(resource));
+	}
+
+	@Override
+	public void processEndGroup (Ending resource,
+		Appendable output) throws IOException
+	{
+		output.append(processEndGroup(resource));
+	}
+
+	@Override
+	public void processStartSubfilter (StartSubfilter resource,
+		Appendable output) throws IOException
+	{
+		output.append(processStartSubfilter(resource));
+	}
+
+	@Override
+	public void processEndSubfilter (EndSubfilter resource,
+		Appendable output) throws IOException
+	{
+		output.append(processEndSubfilter(resource));
+	}
+
+	@Override
+	public void processTextUnit (ITextUnit resource,
+		Appendable output) throws IOException
+	{
+		if ( getOverrides().processTextUnit ) {
+			output.append(processTextUnit(resource));
+			return;
+		}
+		if (isSubfilterActive()) {
+			output.append(sfWriter.processTextUnit(resource));
+			return;
+		}
+		if ( resource.isReferent() ) {
+			addReferent(resource.getId(), new Referent(resource, referentCopies));
+			return;
+		}
+		if ( storageStack.size() > 0 ) {
+			storageStack.peek().add(resource);
+			return;
+		}
+		appendString(resource, outputLoc, EncoderContext.TEXT, output);
+	}
+
+	@Override
+	public void processDocumentPart (DocumentPart resource,
+		Appendable output) throws IOException
+	{
+		if ( getOverrides().processDocumentPart ) {
+			output.append(processDocumentPart(resource));
+			return;
+		}
+		if (isSubfilterActive()) {
+			output.append(sfWriter.processDocumentPart(resource));
+			return;
+		}
+		if ( resource.isReferent() ) {
+			addReferent(resource.getId(), new Referent(resource, referentCopies));
+			return;
+		}
+		if ( storageStack.size() > 0 ) {
+			storageStack.peek().add(resource);
+			return;
+		}
+		appendString((GenericSkeleton)resource.getSkeleton(), EncoderContext.SKELETON, output);
+	}
+
+	/**
+	 * Writes the same output as {@link #getString(ITextUnit, LocaleId, EncoderContext)}
+	 * directly to a given output.
+	 */
+	private void appendString (ITextUnit tu,
+		LocaleId locToUse,
+		EncoderContext context,
+		Appendable output) throws IOException
+	{
+		GenericSkeleton skel = (GenericSkeleton)tu.getSkeleton();
+		if (( skel == null ) || getOverrides().textUnitString ) {
+			output.append(getString(tu, locToUse, context));
+			return;
+		}
+		for ( GenericSkeletonPart part : skel.getParts() ) {
+			appendString(part, context, output);
+		}
+	}
+
+	/**
+	 * Writes the same output as {@link #getString(ISkeleton, EncoderContext)}
+	 * directly to a given output.
+	 */
+	private void appendString (ISkeleton skeleton,
+		EncoderContext context,
+		Appendable output) throws IOException
+	{
+		if ( skeleton == null ) return;
+		if ( getOverrides().skeletonString ) {
+			output.append(getString(skeleton, context));
+			return;
+		}
+		for ( GenericSkeletonPart part : ((GenericSkeleton)skeleton).getParts() ) {
+			appendString(part, context, output);
+		}
+	}
+
+	/**
+	 * Writes the same output as {@link #getString(GenericSkeletonPart, EncoderContext)}
+	 * directly to a given output. Only the parts with references create an intermediate string.
+	 */
+	private void appendString (GenericSkeletonPart part,
+		EncoderContext context,
+		Appendable output) throws IOException
+	{
+		if ( getOverrides().partString || ( part.data.indexOf(TextFragment.REFMARKER_START) != -1 )) {
+			output.append(getString(part, context));
+		}
+		else if ( layer != null ) {
+			output.append(layer.encode(part.data.toString(), context));
+		}
+		else if ( output instanceof Writer ) {
+			// Copy through a re-usable buffer: Writer.append() would create a string
+			if ( copyBuffer == null ) copyBuffer = new char[2048];
+			Writer writer = (Writer)output;
+			int length = part.data.length();
+			for ( int start=0; start<length; start+=copyBuffer.length ) {
+				int end = Math.min(length, start+copyBuffer.length);
+				part.data.getChars(start, end, copyBuffer, 0);
+				writer.write(copyBuffer, 0, end-start);
+			}
+		}
+		else {
+			output.append(part.data);
+		}
+	}
+
+	private Overrides getOverrides () {
+		if ( overrides == null ) {
+			overrides = new Overrides(getClass());
+		}
+		return overrides;
+	}
+
+	/**
+	 * Tells which of the methods used to create the output of the streaming methods
+	 * are overridden by the class of this writer.
+	 */
+	private static class Overrides {
+
+		final boolean processTextUnit;
+		final boolean processDocumentPart;
+		final boolean textUnitString;
+		final boolean skeletonString;
+		final boolean partString;
+
+		Overrides (Class<?> cls) {
+			processTextUnit = isOverridden(cls, "processTextUnit", ITextUnit.class);
+			processDocumentPart = isOverridden(cls, "processDocumentPart", DocumentPart.class);
+			textUnitString = isOverridden(cls, "getString", ITextUnit.class, LocaleId.class, EncoderContext.class);
+			skeletonString = isOverridden(cls, "getString", ISkeleton.class, EncoderContext.class);
+			partString = isOverridden(cls, "getString", GenericSkeletonPart.class, EncoderContext.class);
+		}
+
+		private static boolean isOverridden (Class<?> cls,
+			String name,
+			Class<?>... parameterTypes)
+		{
+			for ( Class<?> c=cls; c!=GenericSkeletonWriter.class; c=c.getSuperclass() ) {
+				try {
+					c.getDeclaredMethod(name, parameterTypes);
+					return true;
+				}
+				catch ( NoSuchMethodException e ) {
+					// Check the super-class
+				}
+			}
+			return false;
+		}
+	}
+
 	protected String getString (ISkeleton skeleton,
 			EncoderContext context)
 	{
@@ -335,7 +618,7 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 	{
 		// If it is not a reference marker, just use the data
 		//if ( !part.data.toString().startsWith(TextFragment.REFMARKER_START) ) {
-		if ( !part.data.toString().contains(TextFragment.REFMARKER_START) ) {
+		if ( part.data.indexOf(TextFragment.REFMARKER_START) == -1 ) {
 			if ( layer == null ) {
 				return part.data.toString();
 			}
@@ -1204,27 +1487,27 @@ public class GenericSkeletonWriter implements ISkeletonWriter {
 		IResource resource;
 		if ( event != null ) {
 			if ( referents == null ) {
-				referents = new LinkedHashMap<String, Referent>();
 				storageStack = new Stack<StorageList>();
+				referents = createReferentStore();
 			}
 			resource = event.getResource();
 			if ( resource != null ) {
 				switch( event.getEventType() ) {
 				case TEXT_UNIT:
 					if ( ((ITextUnit)resource).isReferent() ) {
-						referents.put(resource.getId(), new Referent((ITextUnit)resource, referentCopies));
+						addReferent(resource.getId(), new Referent((ITextUnit)resource, referentCopies));
 					}
 					break;
 				case DOCUMENT_PART:
 					if ( ((DocumentPart)resource).isReferent() ) {
-						referents.put(resource.getId(), new Referent((DocumentPart)resource, referentCopies));
+						addReferent(resource.getId(), new Referent((DocumentPart)resource, referentCopies));
 					}
 					break;
 				case START_GROUP:
 				case START_SUBFILTER:
 					if ( ((StartGroup)resource).isReferent() ) {
 						StorageList sl = new StorageList((StartGroup)resource);
-						referents.put(sl.getId(), new Referent(sl, referentCopies));
+						addReferent(sl.getId(), new Referent(sl, referentCopies));
 					}
 					break;
 				default:
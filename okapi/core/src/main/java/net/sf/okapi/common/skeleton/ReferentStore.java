@@ -0,0 +1,728 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.skeleton;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.okapi.common.FileUtil;
+import net.sf.okapi.common.IResource;
+import net.sf.okapi.common.ISkeleton;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.resource.BaseNameable;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.IReferenceable;
+import net.sf.okapi.common.resource.IWithAnnotations;
+import net.sf.okapi.common.resource.IWithProperties;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextPart;
+import net.sf.okapi.common.resource.TextUnit;
+
+/**
+ * Map of the referents waiting to be referenced in a {@link GenericSkeletonWriter},
+ * with a bounded number of entries held in memory.
+ * <p>When more than the given maximum of entries are in memory, the oldest ones are written
+ * to a temporary file and read back when they are looked up. Only the resources that can be
+ * re-created exactly are written out: {@link TextUnit}, {@link DocumentPart}, and the
+ * {@link StorageList} of a {@link StartGroup}, without annotations, with {@link GenericSkeleton}
+ * skeletons that refer only to their own resource, and with inline codes without annotations.
+ * Other referents always stay in memory: they are set apart the first time they fail to be
+ * written out, so they are not serialized again.
+ * <p>Entries read back or replaced leave unused space in the temporary file. The file is
+ * compacted when this space is larger than the space of the entries still written out.
+ * <p>{@link #entrySet()} returns a snapshot where all the entries are loaded in memory.
+ * Use {@link #set(String, Referent)} rather than {@link #put(String, Referent)} when the previous
+ * value is not needed. Call {@link #close()} to delete the temporary file.
+ */
+public class ReferentStore extends AbstractMap<String, Referent> implements Closeable {
+
+	/**
+	 * Default maximum number of referents held in memory.
+	 */
+	public static final int DEFAULT_MAXINMEMORY = 1000;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final long COMPACT_MINSIZE = 1024*1024;
+
+	private static final byte TEXTUNIT = 1;
+	private static final byte DOCUMENTPART = 2;
+	private static final byte STARTGROUP = 3;
+	private static final byte ENDING = 4;
+	private static final byte STORAGELIST = 5;
+
+	private static final byte PARENT_NONE = 0;
+	private static final byte PARENT_SELF = 1;
+
+	private final int maxInMemory;
+	private final LinkedHashMap<String, Referent> inMemory;
+	private final LinkedHashMap<String, Referent> notSpillable;
+	private final LinkedHashMap<String, Spilled> onDisk;
+	private File file;
+	private RandomAccessFile output;
+	private long liveLength; // Length of the entries still in the file
+	private long heldCount;
+	private int peakCount;
+	private int peakInMemoryCount;
+	private long spilledCount;
+	private long reloadedCount;
+
+	/**
+	 * Location of a referent written to the temporary file.
+	 */
+	private static class Spilled {
+		final long position;
+		final int length;
+		final int count;
+
+		Spilled (long position,
+			int length,
+			int count)
+		{
+			this.position = position;
+			this.length = length;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Thrown when a resource cannot be written out (it stays in memory).
+	 */
+	private static class NotSpillableException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Creates a new store with the default maximum number of referents in memory.
+	 */
+	public ReferentStore () {
+		this(DEFAULT_MAXINMEMORY);
+	}
+
+	/**
+	 * Creates a new store.
+	 * @param maxInMemory the maximum number of referents to hold in memory
+	 * before writing the oldest ones to a temporary file (0 or less for no maximum).
+	 */
+	public ReferentStore (int maxInMemory) {
+		this.maxInMemory = maxInMemory;
+		inMemory = new LinkedHashMap<String, Referent>();
+		notSpillable = new LinkedHashMap<String, Referent>();
+		onDisk = new LinkedHashMap<String, Spilled>();
+	}
+
+	/**
+	 * Gets the maximum number of referents held in memory.
+	 * @return the maximum number of referents held in memory (0 or less for no maximum).
+	 */
+	public int getMaxInMemory () {
+		return maxInMemory;
+	}
+
+	/**
+	 * Gets the number of referents stored since this store was created.
+	 * @return the total number of referents stored.
+	 */
+	public long getHeldCount () {
+		return heldCount;
+	}
+
+	/**
+	 * Gets the largest number of referents held at the same time (in memory and on disk).
+	 * @return the peak number of referents.
+	 */
+	public int getPeakCount () {
+		return peakCount;
+	}
+
+	/**
+	 * Gets the largest number of referents held in memory at the same time.
+	 * @return the peak number of referents in memory.
+	 */
+	public int getPeakInMemoryCount () {
+		return peakInMemoryCount;
+	}
+
+	/**
+	 * Gets the number of times a referent was written to the temporary file.
+	 * @return the number of referents written out.
+	 */
+	public long getSpilledCount () {
+		return spilledCount;
+	}
+
+	/**
+	 * Gets the number of times a referent was read back from the temporary file.
+	 * @return the number of referents read back.
+	 */
+	public long getReloadedCount () {
+		return reloadedCount;
+	}
+
+	/**
+	 * Gets the number of referents currently in memory.
+	 * @return the number of referents in memory.
+	 */
+	public int getInMemoryCount () {
+		return inMemory.size() + notSpillable.size();
+	}
+
+	/**
+	 * Gets the current length of the temporary file.
+	 * @return the length of the temporary file, or 0 if there is none.
+	 */
+	long getFileLength () {
+		try {
+			return (output == null) ? 0 : output.length();
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot access the referents file.", e);
+		}
+	}
+
+	@Override
+	public int size () {
+		return getInMemoryCount() + onDisk.size();
+	}
+
+	@Override
+	public boolean containsKey (Object key) {
+		return inMemory.containsKey(key) || notSpillable.containsKey(key) || onDisk.containsKey(key);
+	}
+
+	@Override
+	public Referent get (Object key) {
+		Referent ref = inMemory.get(key);
+		if ( ref != null ) return ref;
+		ref = notSpillable.get(key);
+		if ( ref != null ) return ref;
+		Spilled spilled = removeSpilled(key);
+		if ( spilled == null ) return null;
+		ref = reload(spilled);
+		reloadedCount++;
+		inMemory.put((String)key, ref);
+		updatePeaks();
+		// The caller may update the count of the returned object: keep it in memory
+		spillIfNeeded(ref);
+		return ref;
+	}
+
+	@Override
+	public Referent put (String key,
+		Referent value)
+	{
+		Referent old = remove(key);
+		add(key, value);
+		return old;
+	}
+
+	/**
+	 * Associates a referent with a given key, like {@link #put(String, Referent)}, but without
+	 * returning the previous referent: if it was written to the temporary file it is dropped
+	 * without being read back.
+	 * @param key the key of the referent.
+	 * @param value the referent.
+	 */
+	public void set (String key,
+		Referent value)
+	{
+		if (( inMemory.remove(key) == null ) && ( notSpillable.remove(key) == null )) {
+			removeSpilled(key);
+		}
+		add(key, value);
+	}
+
+	@Override
+	public Referent remove (Object key) {
+		Referent ref = inMemory.remove(key);
+		if ( ref != null ) return ref;
+		ref = notSpillable.remove(key);
+		if ( ref != null ) return ref;
+		Spilled spilled = removeSpilled(key);
+		if ( spilled == null ) return null;
+		return reload(spilled);
+	}
+
+	@Override
+	public void clear () {
+		inMemory.clear();
+		notSpillable.clear();
+		onDisk.clear();
+		liveLength = 0;
+		if ( output != null ) {
+			try {
+				output.setLength(0);
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Cannot reset the referents file.", e);
+			}
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<String, Referent>> entrySet () {
+		LinkedHashMap<String, Referent> all = new LinkedHashMap<String, Referent>();
+		for ( Map.Entry<String, Spilled> entry : onDisk.entrySet() ) {
+			all.put(entry.getKey(), reload(entry.getValue()));
+		}
+		all.putAll(notSpillable);
+		all.putAll(inMemory);
+		return all.entrySet();
+	}
+
+	/**
+	 * Closes this store: removes all its entries and deletes its temporary file.
+	 */
+	@Override
+	public void close () {
+		inMemory.clear();
+		notSpillable.clear();
+		onDisk.clear();
+		liveLength = 0;
+		if ( output != null ) {
+			try {
+				output.close();
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Cannot close the referents file.", e);
+			}
+			finally {
+				output = null;
+				file.delete();
+				file = null;
+			}
+		}
+	}
+
+	/**
+	 * Indicates if a given referent can be written to the temporary file.
+	 * Derived classes can override this method to keep some referents in memory,
+	 * for example the ones still being built.
+	 * @param ref the referent to check.
+	 * @return true if the referent may be written out, false to keep it in memory.
+	 */
+	protected boolean canSpill (Referent ref) {
+		return true;
+	}
+
+	private void add (String key,
+		Referent value)
+	{
+		inMemory.put(key, value);
+		heldCount++;
+		updatePeaks();
+		spillIfNeeded(null);
+	}
+
+	private void updatePeaks () {
+		if ( getInMemoryCount() > peakInMemoryCount ) peakInMemoryCount = getInMemoryCount();
+		if ( size() > peakCount ) peakCount = size();
+	}
+
+	private void spillIfNeeded (Referent keep) {
+		if (( maxInMemory <= 0 ) || ( getInMemoryCount() <= maxInMemory )) return;
+		Iterator<Map.Entry<String, Referent>> iter = inMemory.entrySet().iterator();
+		while ( iter.hasNext() && ( getInMemoryCount() > maxInMemory )) {
+			Map.Entry<String, Referent> entry = iter.next();
+			Referent ref = entry.getValue();
+			if (( ref == keep ) || !canSpill(ref) ) continue;
+			byte[] data = null;
+			if ( ref.ref instanceof IResource ) {
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					DataOutputStream dos = new DataOutputStream(bytes);
+					writeResource(dos, (IResource)ref.ref);
+					dos.flush();
+					data = bytes.toByteArray();
+				}
+				catch ( NotSpillableException e ) {
+					// Set apart: it is not serialized again
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Cannot serialize the referent "+entry.getKey(), e);
+				}
+			}
+			iter.remove();
+			if ( data == null ) {
+				notSpillable.put(entry.getKey(), ref);
+				continue;
+			}
+			onDisk.put(entry.getKey(), new Spilled(append(data), data.length, ref.count));
+			liveLength += data.length;
+			spilledCount++;
+		}
+	}
+
+	private Spilled removeSpilled (Object key) {
+		Spilled spilled = onDisk.remove(key);
+		if ( spilled != null ) {
+			liveLength -= spilled.length;
+		}
+		return spilled;
+	}
+
+	private long append (byte[] data) {
+		try {
+			if ( output == null ) {
+				file = FileUtil.createTempFile("~okapi-73_referents_");
+				file.deleteOnExit();
+				output = new RandomAccessFile(file, "rw");
+			}
+			else {
+				long deadLength = output.length()-liveLength;
+				if (( deadLength > COMPACT_MINSIZE ) && ( deadLength > liveLength )) {
+					compact();
+				}
+			}
+			long position = output.length();
+			output.seek(position);
+			output.write(data);
+			return position;
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot write to the referents file.", e);
+		}
+	}
+
+	/**
+	 * Copies the entries still written out to a new temporary file, without the unused space.
+	 * @throws IOException if an error occurs.
+	 */
+	private void compact ()
+		throws IOException
+	{
+		File newFile = FileUtil.createTempFile("~okapi-73_referents_");
+		newFile.deleteOnExit();
+		RandomAccessFile newOutput = new RandomAccessFile(newFile, "rw");
+		LinkedHashMap<String, Spilled> moved = new LinkedHashMap<String, Spilled>();
+		try {
+			for ( Map.Entry<String, Spilled> entry : onDisk.entrySet() ) {
+				Spilled spilled = entry.getValue();
+				byte[] data = new byte[spilled.length];
+				output.seek(spilled.position);
+				output.readFully(data);
+				moved.put(entry.getKey(), new Spilled(newOutput.getFilePointer(), spilled.length, spilled.count));
+				newOutput.write(data);
+			}
+		}
+		catch ( IOException e ) {
+			newOutput.close();
+			newFile.delete();
+			throw e;
+		}
+		onDisk.putAll(moved);
+		output.close();
+		file.delete();
+		file = newFile;
+		output = newOutput;
+	}
+
+	private Referent reload (Spilled spilled) {
+		try {
+			byte[] data = new byte[spilled.length];
+			output.seek(spilled.position);
+			output.readFully(data);
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+			IResource res = readResource(dis);
+			// The count is restored as it was: the constructor computes it from the resource
+			Referent ref = new Referent((IReferenceable)res, 1);
+			ref.count = spilled.count;
+			return ref;
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Cannot read from the referents file.", e);
+		}
+	}
+
+	private void writeResource (DataOutputStream dos,
+		IResource res) throws IOException, NotSpillableException
+	{
+		if ( res instanceof IWithAnnotations ) {
+			if ( ((IWithAnnotations)res).getAnnotations().iterator().hasNext() ) {
+				throw new NotSpillableException();
+			}
+		}
+		Class<?> cls = res.getClass();
+		if ( cls == TextUnit.class ) {
+			TextUnit tu = (TextUnit)res;
+			dos.writeByte(TEXTUNIT);
+			writeString(dos, tu.getId());
+			writeString(dos, tu.getName());
+			writeString(dos, tu.getType());
+			writeString(dos, tu.getMimeType());
+			dos.writeBoolean(tu.isTranslatable());
+			dos.writeBoolean(tu.preserveWhitespaces());
+			dos.writeInt(tu.getReferenceCount());
+			writeProperties(dos, tu);
+			writeContainer(dos, tu.getSource());
+			dos.writeInt(tu.getTargetLocales().size());
+			for ( LocaleId locId : tu.getTargetLocales() ) {
+				writeString(dos, locId.toString());
+				writeContainer(dos, tu.getTarget(locId));
+			}
+			writeSkeleton(dos, tu.getSkeleton(), tu);
+		}
+		else if (( cls == DocumentPart.class ) || ( cls == StartGroup.class )) {
+			BaseNameable bn = (BaseNameable)res;
+			if ( cls == DocumentPart.class ) {
+				dos.writeByte(DOCUMENTPART);
+				dos.writeInt(((DocumentPart)res).getReferenceCount());
+			}
+			else {
+				dos.writeByte(STARTGROUP);
+				dos.writeInt(((StartGroup)res).getReferenceCount());
+				writeString(dos, ((StartGroup)res).getParentId());
+			}
+			writeString(dos, bn.getId());
+			writeString(dos, bn.getName());
+			writeString(dos, bn.getType());
+			writeString(dos, bn.getMimeType());
+			dos.writeBoolean(bn.isTranslatable());
+			dos.writeBoolean(bn.preserveWhitespaces());
+			writeProperties(dos, bn);
+			dos.writeInt(bn.getSourcePropertyNames().size());
+			for ( String name : bn.getSourcePropertyNames() ) {
+				writeProperty(dos, bn.getSourceProperty(name));
+			}
+			writeSkeleton(dos, bn.getSkeleton(), bn);
+		}
+		else if ( cls == Ending.class ) {
+			dos.writeByte(ENDING);
+			writeString(dos, res.getId());
+			writeSkeleton(dos, res.getSkeleton(), res);
+		}
+		else if ( cls == StorageList.class ) {
+			StorageList list = (StorageList)res;
+			if ( list.getStartGroup().getClass() != StartGroup.class ) {
+				throw new NotSpillableException(); // Sub-filters have their own writer
+			}
+			dos.writeByte(STORAGELIST);
+			writeResource(dos, list.getStartGroup());
+			dos.writeInt(list.size());
+			for ( IResource item : list ) {
+				writeResource(dos, item);
+			}
+		}
+		else {
+			throw new NotSpillableException();
+		}
+	}
+
+	private IResource readResource (DataInputStream dis) throws IOException {
+		byte type = dis.readByte();
+		switch ( type ) {
+		case TEXTUNIT:
+			TextUnit tu = new TextUnit(readString(dis));
+			tu.setName(readString(dis));
+			tu.setType(readString(dis));
+			tu.setMimeType(readString(dis));
+			tu.setIsTranslatable(dis.readBoolean());
+			tu.setPreserveWhitespaces(dis.readBoolean());
+			tu.setReferenceCount(dis.readInt());
+			readProperties(dis, tu);
+			tu.setSource(readContainer(dis));
+			int count = dis.readInt();
+			for ( int i=0; i<count; i++ ) {
+				LocaleId locId = LocaleId.fromString(readString(dis));
+				tu.setTarget(locId, readContainer(dis));
+			}
+			tu.setSkeleton(readSkeleton(dis, tu));
+			return tu;
+		case DOCUMENTPART:
+		case STARTGROUP:
+			BaseNameable bn;
+			int refCount = dis.readInt();
+			if ( type == DOCUMENTPART ) {
+				DocumentPart dp = new DocumentPart();
+				dp.setReferenceCount(refCount);
+				bn = dp;
+			}
+			else {
+				StartGroup sg = new StartGroup(readString(dis));
+				sg.setReferenceCount(refCount);
+				bn = sg;
+			}
+			bn.setId(readString(dis));
+			bn.setName(readString(dis));
+			bn.setType(readString(dis));
+			bn.setMimeType(readString(dis));
+			bn.setIsTranslatable(dis.readBoolean());
+			bn.setPreserveWhitespaces(dis.readBoolean());
+			readProperties(dis, bn);
+			count = dis.readInt();
+			for ( int i=0; i<count; i++ ) {
+				bn.setSourceProperty(readProperty(dis));
+			}
+			bn.setSkeleton(readSkeleton(dis, bn));
+			return bn;
+		case ENDING:
+			Ending ending = new Ending(readString(dis));
+			ending.setSkeleton(readSkeleton(dis, ending));
+			return ending;
+		case STORAGELIST:
+			StorageList list = new StorageList((StartGroup)readResource(dis));
+			count = dis.readInt();
+			for ( int i=0; i<count; i++ ) {
+				list.add(readResource(dis));
+			}
+			return list;
+		default:
+			throw new IOException("Unexpected resource type in the referents file.");
+		}
+	}
+
+	private void writeContainer (DataOutputStream dos,
+		TextContainer tc) throws IOException, NotSpillableException
+	{
+		if ( tc.getAnnotations().iterator().hasNext() ) {
+			throw new NotSpillableException();
+		}
+		for ( TextPart part : tc ) {
+			if ( part.getAnnotations().iterator().hasNext() || !part.getPropertyNames().isEmpty() ) {
+				throw new NotSpillableException();
+			}
+			for ( Code code : part.getContent().getCodes() ) {
+				// Not kept by Code.codesToString()
+				if ( code.hasAnnotation() || ( code.getDisplayText() != null ) || ( code.getMergedData() != null )) {
+					throw new NotSpillableException();
+				}
+			}
+		}
+		writeString(dos, TextContainer.contentToString(tc));
+		writeProperties(dos, tc);
+	}
+
+	private TextContainer readContainer (DataInputStream dis) throws IOException {
+		TextContainer tc = TextContainer.stringToContent(readString(dis));
+		readProperties(dis, tc);
+		return tc;
+	}
+
+	private void writeSkeleton (DataOutputStream dos,
+		ISkeleton skel,
+		IResource owner) throws IOException, NotSpillableException
+	{
+		if ( skel == null ) {
+			dos.writeBoolean(false);
+			return;
+		}
+		if ( skel.getClass() != GenericSkeleton.class ) {
+			throw new NotSpillableException();
+		}
+		dos.writeBoolean(true);
+		GenericSkeleton gs = (GenericSkeleton)skel;
+		dos.writeInt(gs.getParts().size());
+		for ( GenericSkeletonPart part : gs.getParts() ) {
+			if ( part.parent == null ) dos.writeByte(PARENT_NONE);
+			else if ( part.parent == owner ) dos.writeByte(PARENT_SELF);
+			else throw new NotSpillableException();
+			writeString(dos, part.locId == null ? null : part.locId.toString());
+			writeString(dos, part.data.toString());
+		}
+	}
+
+	private GenericSkeleton readSkeleton (DataInputStream dis,
+		IResource owner) throws IOException
+	{
+		if ( !dis.readBoolean() ) return null;
+		GenericSkeleton gs = new GenericSkeleton();
+		int count = dis.readInt();
+		for ( int i=0; i<count; i++ ) {
+			IResource parent = (dis.readByte() == PARENT_SELF) ? owner : null;
+			String locId = readString(dis);
+			gs.getParts().add(new GenericSkeletonPart(readString(dis), parent,
+				(locId == null) ? null : LocaleId.fromString(locId)));
+		}
+		return gs;
+	}
+
+	private void writeProperties (DataOutputStream dos,
+		IWithProperties res) throws IOException, NotSpillableException
+	{
+		Set<String> names = res.getPropertyNames();
+		dos.writeInt(names.size());
+		for ( String name : names ) {
+			writeProperty(dos, res.getProperty(name));
+		}
+	}
+
+	private void readProperties (DataInputStream dis,
+		IWithProperties res) throws IOException
+	{
+		int count = dis.readInt();
+		for ( int i=0; i<count; i++ ) {
+			res.setProperty(readProperty(dis));
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private void writeProperty (DataOutputStream dos,
+		Property prop) throws IOException, NotSpillableException
+	{
+		if ( prop.getAnnotations().iterator().hasNext() ) {
+			throw new NotSpillableException();
+		}
+		writeString(dos, prop.getName());
+		writeString(dos, prop.getValue());
+		dos.writeBoolean(prop.isReadOnly());
+	}
+
+	private Property readProperty (DataInputStream dis) throws IOException {
+		String name = readString(dis);
+		String value = readString(dis);
+		return new Property(name, value, dis.readBoolean());
+	}
+
+	private void writeString (DataOutputStream dos,
+		String value) throws IOException
+	{
+		// Not writeUTF(), which is limited to 64K bytes
+		if ( value == null ) {
+			dos.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF8);
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+
+	private String readString (DataInputStream dis) throws IOException {
+		int length = dis.readInt();
+		if ( length == -1 ) return null;
+		byte[] bytes = new byte[length];
+		dis.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
@@ -0,0 +1,209 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.common.skeleton;
+
+import java.io.IOException;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.layerprovider.ILayerProvider;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.EndSubfilter;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.StartSubDocument;
+import net.sf.okapi.common.resource.StartSubfilter;
+
+/**
+ * Provides the {@link IStreamingSkeletonWriter} interface for a skeleton writer that
+ * only implements {@link ISkeletonWriter}: the string returned by each method of the
+ * wrapped writer is appended to the output.
+ */
+public class SkeletonWriterAdapter implements IStreamingSkeletonWriter {
+
+	private final ISkeletonWriter skelWriter;
+
+	/**
+	 * Gets a streaming skeleton writer for a given skeleton writer.
+	 * @param skelWriter the skeleton writer to use (can be null).
+	 * @return the given skeleton writer itself if it implements {@link IStreamingSkeletonWriter},
+	 * an adapter for it otherwise, or null if the given writer is null.
+	 */
+	public static IStreamingSkeletonWriter wrap (ISkeletonWriter skelWriter) {
+		if ( skelWriter == null ) return null;
+		if ( skelWriter instanceof IStreamingSkeletonWriter ) {
+			return (IStreamingSkeletonWriter)skelWriter;
+		}
+		return new SkeletonWriterAdapter(skelWriter);
+	}
+
+	/**
+	 * Creates a new adapter for a given skeleton writer.
+	 * @param skelWriter the skeleton writer to wrap.
+	 */
+	public SkeletonWriterAdapter (ISkeletonWriter skelWriter) {
+		if ( skelWriter == null ) {
+			throw new IllegalArgumentException("skelWriter cannot be null");
+		}
+		this.skelWriter = skelWriter;
+	}
+
+	/**
+	 * Gets the skeleton writer wrapped by this adapter.
+	 * @return the wrapped skeleton writer.
+	 */
+	public ISkeletonWriter getSkeletonWriter () {
+		return skelWriter;
+	}
+
+	@Override
+	public void close () {
+		skelWriter.close();
+	}
+
+	@Override
+	public String processStartDocument (LocaleId outputLocale,
+		String outputEncoding,
+		ILayerProvider layer,
+		EncoderManager encoderManager,
+		StartDocument resource)
+	{
+		return skelWriter.processStartDocument(outputLocale, outputEncoding, layer, encoderManager, resource);
+	}
+
+	@Override
+	public String processEndDocument (Ending resource) {
+		return skelWriter.processEndDocument(resource);
+	}
+
+	@Override
+	public String processStartSubDocument (StartSubDocument resource) {
+		return skelWriter.processStartSubDocument(resource);
+	}
+
+	@Override
+	public String processEndSubDocument (Ending resource) {
+		return skelWriter.processEndSubDocument(resource);
+	}
+
+	@Override
+	public String processStartGroup (StartGroup resource) {
+		return skelWriter.processStartGroup(resource);
+	}
+
+	@Override
+	public String processEndGroup (Ending resource) {
+		return skelWriter.processEndGroup(resource);
+	}
+
+	@Override
+	public String processTextUnit (ITextUnit resource) {
+		return skelWriter.processTextUnit(resource);
+	}
+
+	@Override
+	public String processDocumentPart (DocumentPart resource) {
+		return skelWriter.processDocumentPart(resource);
+	}
+
+	@Override
+	public String processStartSubfilter (StartSubfilter resource) {
+		return skelWriter.processStartSubfilter(resource);
+	}
+
+	@Override
+	public String processEndSubfilter (EndSubfilter resource) {
+		return skelWriter.processEndSubfilter(resource);
+	}
+
+	@Override
+	public void processStartDocument (LocaleId outputLocale,
+		String outputEncoding,
+		ILayerProvider layer,
+		EncoderManager encoderManager,
+		StartDocument resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processStartDocument(outputLocale, outputEncoding, layer, encoderManager, resource));
+	}
+
+	@Override
+	public void processEndDocument (Ending resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processEndDocument(resource));
+	}
+
+	@Override
+	public void processStartSubDocument (StartSubDocument resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processStartSubDocument(resource));
+	}
+
+	@Override
+	public void processEndSubDocument (Ending resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processEndSubDocument(resource));
+	}
+
+	@Override
+	public void processStartGroup (StartGroup resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processStartGroup(resource));
+	}
+
+	@Override
+	public void processEndGroup (Ending resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processEndGroup(resource));
+	}
+
+	@Override
+	public void processTextUnit (ITextUnit resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processTextUnit(resource));
+	}
+
+	@Override
+	public void processDocumentPart (DocumentPart resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processDocumentPart(resource));
+	}
+
+	@Override
+	public void processStartSubfilter (StartSubfilter resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processStartSubfilter(resource));
+	}
+
+	@Override
+	public void processEndSubfilter (EndSubfilter resource,
+		Appendable output) throws IOException
+	{
+		output.append(skelWriter.processEndSubfilter(resource));
+	}
+
+}
@@ -307,4 +307,36 @@ public class EncodersTest {
 		}
 	}
 	
+	@Test
+	public void testRunsOfSafeCharacters () {
+		String text = "Nothing to escape here";
+		XMLEncoder xml = new XMLEncoder();
+		xml.setOptions(null, "us-ascii", "\r\n");
+		assertSame(text, xml.encode(text, EncoderContext.TEXT));
+		assertEquals("a]]&gt;b&lt;c &amp; &quot;d&quot; &apos;e&apos;\r\n&#x00e9;&#x00a0;&#x20000; > end",
+			xml.encode("a]]>b<c & \"d\" 'e'\n\u00e9\u00a0\uD840\uDC00 > end", EncoderContext.TEXT));
+		// The previous character is kept between calls
+		assertEquals("x]", xml.encode("x]", EncoderContext.TEXT));
+		assertEquals("&gt;", xml.encode(">", EncoderContext.TEXT));
+		// The options are taken into account
+		IParameters params = new DummyParameters();
+		params.setBoolean(XMLEncoder.ESCAPEGT, true);
+		xml.setOptions(params, "UTF-8", "\n");
+		assertEquals("a &gt; b\n\u00e9", xml.encode("a > b\n\u00e9", EncoderContext.TEXT));
+
+		HtmlEncoder html = new HtmlEncoder("iso-8859-1", "\n", QuoteMode.NUMERIC_SINGLE_QUOTES);
+		assertSame(text, html.encode(text, EncoderContext.TEXT));
+		assertEquals("a]&gt;b > c\u00e9&#x0152;&#39;&quot;",
+			html.encode("a]>b > c\u00e9\u0152'\"", EncoderContext.TEXT));
+
+		PropertiesEncoder props = new PropertiesEncoder();
+		assertSame(text, props.encode(text, EncoderContext.TEXT));
+		assertEquals("\\=a:b\\tc\\n\\u00e9", props.encode("=a:b\tc\n\u00e9", EncoderContext.TEXT));
+
+		JSONEncoder json = new JSONEncoder();
+		assertSame(text, json.encode(text, EncoderContext.TEXT));
+		assertEquals("a\\/b\\\"c\\\\d\\n\u00e9\uD840\uDC00",
+			json.encode("a/b\"c\\d\n\u00e9\uD840\uDC00", EncoderContext.TEXT));
+	}
+
 }
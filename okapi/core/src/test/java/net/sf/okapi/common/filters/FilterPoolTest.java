@@ -0,0 +1,125 @@
+package net.sf.okapi.common.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StringParameters;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.resource.RawDocument;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FilterPoolTest {
+
+	private FilterPool pool;
+
+	@Before
+	public void setUp () {
+		FilterConfigurationMapper fcMapper = new FilterConfigurationMapper();
+		fcMapper.addConfigurations(DummyFilter.class.getName());
+		pool = new FilterPool(fcMapper, 2);
+	}
+
+	@Test
+	public void testReuseAfterClose () {
+		IFilter filter = pool.acquire("okf_dummy");
+		IParameters params = filter.getParameters();
+		assertEquals(0, pool.getIdleCount("okf_dummy"));
+		try ( IFilter same = filter ) {
+			same.open(new RawDocument("##def##", LocaleId.ENGLISH, LocaleId.FRENCH));
+			assertTrue(same.hasNext());
+		}
+		assertEquals(1, pool.getIdleCount("okf_dummy"));
+		IFilter filter2 = pool.acquire("okf_dummy");
+		assertNotSame(filter, filter2); // New handle on the same instance
+		assertSame(params, filter2.getParameters());
+		assertEquals(0, pool.getIdleCount("okf_dummy"));
+		// The re-used instance is ready for a new document
+		assertEquals(false, filter2.hasNext());
+		filter2.open(new RawDocument("##def##", LocaleId.ENGLISH, LocaleId.FRENCH));
+		Event event = filter2.next();
+		assertEquals(EventType.START_DOCUMENT, event.getEventType());
+		filter2.close();
+	}
+
+	@Test
+	public void testLimits () {
+		IFilter f1 = pool.acquire("okf_dummy");
+		IFilter f2 = pool.acquire("okf_dummy");
+		IFilter f3 = pool.acquire("okf_dummy");
+		assertNotSame(f1, f2);
+		f1.close();
+		f2.close();
+		f3.close();
+		f3.close(); // No effect
+		assertEquals(2, pool.getIdleCount("okf_dummy"));
+
+		pool.setMaximumIdle("okf_dummy", 1);
+		assertEquals(1, pool.getIdleCount("okf_dummy"));
+		pool.setMaximumIdle("okf_dummy", 0);
+		assertEquals(0, pool.getIdleCount("okf_dummy"));
+		pool.acquire("okf_dummy").close();
+		assertEquals(0, pool.getIdleCount("okf_dummy"));
+	}
+
+	@Test
+	public void testParametersRestored () {
+		IFilter filter = pool.acquire("okf_dummy");
+		IParameters params = filter.getParameters();
+		filter.setParameters(new StringParameters());
+		filter.close();
+		assertSame(params, pool.acquire("okf_dummy").getParameters());
+	}
+
+	@Test
+	public void testParameterValuesRestored () {
+		IFilter filter = pool.acquire("okf_dummy");
+		StringParameters params = (StringParameters)filter.getParameters();
+		String data = params.toString();
+		params.setString("extra", "changed");
+		filter.close();
+		IFilter filter2 = pool.acquire("okf_dummy");
+		assertSame(params, filter2.getParameters());
+		assertEquals(data, params.toString());
+		filter2.close();
+	}
+
+	@Test
+	public void testStaleHandleClose () {
+		IFilter stale = pool.acquire("okf_dummy");
+		stale.close();
+		IFilter current = pool.acquire("okf_dummy");
+		current.open(new RawDocument("##def##", LocaleId.ENGLISH, LocaleId.FRENCH));
+		// Closing the old handle again does nothing: the instance stays with its new user
+		stale.close();
+		assertEquals(0, pool.getIdleCount("okf_dummy"));
+		assertTrue(current.hasNext());
+		assertEquals(EventType.START_DOCUMENT, current.next().getEventType());
+		current.close();
+		assertEquals(1, pool.getIdleCount("okf_dummy"));
+	}
+
+	@Test(expected = OkapiException.class)
+	public void testUseAfterClose () {
+		IFilter filter = pool.acquire("okf_dummy");
+		filter.close();
+		filter.open(new RawDocument("##def##", LocaleId.ENGLISH, LocaleId.FRENCH));
+	}
+
+	@Test
+	public void testUnknownConfiguration () {
+		assertNull(pool.acquire("okf_unknown"));
+	}
+
+}
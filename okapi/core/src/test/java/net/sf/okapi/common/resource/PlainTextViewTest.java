@@ -0,0 +1,67 @@
+package net.sf.okapi.common.resource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.BreakIterator;
+import java.text.CharacterIterator;
+
+import net.sf.okapi.common.resource.TextFragment.TagType;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PlainTextViewTest {
+
+	@Test
+	public void testFragments () {
+		PlainTextView view = new PlainTextView();
+		TextFragment tf = new TextFragment("abc");
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("def");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		tf.append(new Code(TagType.PLACEHOLDER, Code.TYPE_LB, "<br/>"));
+		tf.append("ghi");
+		assertEquals("abcdefghi", view.set(tf).toString());
+		assertEquals(TextUnitUtil.getText(tf), view.toString());
+		assertEquals("abcdef\nghi", view.set(tf, true).toString());
+		assertEquals(10, view.length());
+		assertEquals("def", view.subSequence(3, 6).toString());
+
+		view.set(new TextFragment("xyz"));
+		assertEquals("xyz", view.toString());
+		view.set((TextFragment)null);
+		assertEquals(0, view.length());
+	}
+
+	@Test
+	public void testContainerAndGrowth () {
+		PlainTextView view = new PlainTextView();
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<100; i++ ) tmp.append("word ");
+		TextContainer tc = new TextContainer(tmp.toString());
+		tc.getSegments().append(new TextFragment("end."), true);
+		assertEquals(tc.getUnSegmentedContentCopy().getText(), view.set(tc).toString());
+		assertEquals("a b a b", view.set("a'b a'b").replace('\'', ' ').toString());
+	}
+
+	@Test
+	public void testCharacterIterator () {
+		PlainTextView view = new PlainTextView();
+		view.set("ab");
+		assertEquals('a', view.first());
+		assertEquals('b', view.next());
+		assertEquals(CharacterIterator.DONE, view.next());
+		assertEquals('b', view.last());
+		assertEquals('a', view.previous());
+		assertEquals(CharacterIterator.DONE, view.previous());
+
+		BreakIterator breaker = BreakIterator.getWordInstance();
+		breaker.setText(view.set("Two words"));
+		int count = 0;
+		while ( breaker.next() != BreakIterator.DONE ) count++;
+		assertEquals(3, count);
+	}
+
+}
@@ -2,6 +2,10 @@ package net.sf.okapi.common.skeleton;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,6 +15,7 @@ import net.sf.okapi.common.EventType;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.encoder.EncoderManager;
 import net.sf.okapi.common.filters.FilterTestDriver;
+import net.sf.okapi.common.filterwriter.GenericFilterWriter;
 import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.resource.DocumentPart;
 import net.sf.okapi.common.resource.ITextUnit;
@@ -491,6 +496,96 @@ public class GenericSkeletonWriterTest {
 		assertEquals(expected, result);
 	}
 
+	@Test
+	public void testStreamingOutput () throws Exception {
+		String expected = FilterTestDriver.generateOutput(createStreamingEvents(), locFR, gsw, encMgt);
+		assertEquals(expected, writeEvents(createStreamingEvents(), new GenericSkeletonWriter()));
+		assertTrue(expected.startsWith("<doc>[<ref>text1</ref>]"));
+
+		StringBuilder output = new StringBuilder();
+		IStreamingSkeletonWriter writer = new GenericSkeletonWriter();
+		for ( Event event : createStreamingEvents() ) {
+			switch ( event.getEventType() ) {
+			case START_DOCUMENT:
+				writer.processStartDocument(locFR, "UTF-8", null, encMgt, event.getStartDocument(), output);
+				break;
+			case TEXT_UNIT:
+				writer.processTextUnit(event.getTextUnit(), output);
+				break;
+			case DOCUMENT_PART:
+				writer.processDocumentPart(event.getDocumentPart(), output);
+				break;
+			case END_DOCUMENT:
+				writer.processEndDocument(event.getEnding(), output);
+				break;
+			default:
+				break;
+			}
+		}
+		assertEquals(expected, output.toString());
+	}
+
+	@Test
+	public void testStreamingOutputWithOverrides () throws Exception {
+		ISkeletonWriter writer = new GenericSkeletonWriter() {
+			@Override
+			public String processTextUnit (ITextUnit resource) {
+				return "{" + super.processTextUnit(resource) + "}";
+			}
+		};
+		assertSame(writer, SkeletonWriterAdapter.wrap(writer));
+		String expected = FilterTestDriver.generateOutput(createStreamingEvents(), locFR, writer, encMgt);
+		assertTrue(expected.contains("{<p>text2</p>}"));
+		assertEquals(expected, writeEvents(createStreamingEvents(), writer));
+	}
+
+	private List<Event> createStreamingEvents () {
+		List<Event> events = TestUtil.createStartEvents(false, gsw, encMgt);
+		events.get(0).getStartDocument().setSkeleton(new GenericSkeleton("<doc>"));
+		// Referent
+		ITextUnit tu1 = TestUtil.createSimpleTU();
+		tu1.setIsReferent(true);
+		GenericSkeleton gs = new GenericSkeleton("<ref>");
+		gs.addContentPlaceholder(tu1);
+		gs.add("</ref>");
+		tu1.setSkeleton(gs);
+		events.add(new Event(EventType.TEXT_UNIT, tu1));
+		// Document part with a reference
+		DocumentPart dp = new DocumentPart("dp1", false);
+		gs = new GenericSkeleton("[");
+		gs.addReference(tu1);
+		gs.add("]");
+		dp.setSkeleton(gs);
+		events.add(new Event(EventType.DOCUMENT_PART, dp));
+		// Text unit
+		ITextUnit tu2 = new TextUnit("tu2", "text2");
+		gs = new GenericSkeleton("<p>");
+		gs.addContentPlaceholder(tu2);
+		gs.add("</p>");
+		tu2.setSkeleton(gs);
+		events.add(new Event(EventType.TEXT_UNIT, tu2));
+		// Large document part
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<1000; i++ ) tmp.append("<x>").append(i).append("</x>\n");
+		events.add(new Event(EventType.DOCUMENT_PART, new DocumentPart("dp2", false, new GenericSkeleton(tmp.toString()))));
+		TestUtil.addEndEvents(events);
+		return events;
+	}
+
+	private String writeEvents (List<Event> events,
+		ISkeletonWriter skelWriter) throws Exception
+	{
+		GenericFilterWriter writer = new GenericFilterWriter(skelWriter, encMgt);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.setOptions(locFR, "UTF-8");
+		writer.setOutput(output);
+		for ( Event event : events ) {
+			writer.handleEvent(event);
+		}
+		writer.close();
+		return new String(output.toByteArray(), "UTF-8");
+	}
+
 	protected Event processEvent(Event event, GenericSkeletonSimplifier rs) {
 		return event;
 	}
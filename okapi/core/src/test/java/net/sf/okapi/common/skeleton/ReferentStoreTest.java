@@ -0,0 +1,260 @@
+package net.sf.okapi.common.skeleton;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.annotation.AltTranslationsAnnotation;
+import net.sf.okapi.common.encoder.EncoderManager;
+import net.sf.okapi.common.filters.FilterTestDriver;
+import net.sf.okapi.common.resource.DocumentPart;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.Property;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+import net.sf.okapi.common.resource.TextUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ReferentStoreTest {
+
+	private static final LocaleId locFR = LocaleId.FRENCH;
+
+	@Test
+	public void testSpillAndReload () {
+		ReferentStore store = new ReferentStore(2);
+		try {
+			for ( int i=1; i<=5; i++ ) {
+				ITextUnit tu = createTU("tu"+i);
+				store.put(tu.getId(), new Referent(tu, 2));
+			}
+			assertEquals(5, store.size());
+			assertEquals(2, store.getInMemoryCount());
+			assertEquals(3, store.getSpilledCount());
+			assertEquals(5, store.getPeakCount());
+
+			for ( int i=1; i<=5; i++ ) {
+				ITextUnit expected = createTU("tu"+i);
+				Referent ref = store.get("tu"+i);
+				assertEquals(2, ref.count);
+				ITextUnit tu = (ITextUnit)ref.ref;
+				assertEquals(expected.getId(), tu.getId());
+				assertEquals(expected.getName(), tu.getName());
+				assertEquals(expected.getType(), tu.getType());
+				assertTrue(tu.isReferent());
+				assertFalse(tu.isTranslatable());
+				assertEquals("v"+tu.getId(), tu.getProperty("p1").getValue());
+				assertTrue(tu.getProperty("p1").isReadOnly());
+				assertEquals(TextContainer.contentToString(expected.getSource()),
+					TextContainer.contentToString(tu.getSource()));
+				assertEquals(TextContainer.contentToString(expected.getTarget(locFR)),
+					TextContainer.contentToString(tu.getTarget(locFR)));
+				assertEquals("sp", tu.getSourceProperty("sp").getValue());
+				assertEquals(expected.getSkeleton().toString(), tu.getSkeleton().toString());
+				// The content placeholder still points to its text unit
+				assertSame(tu, ((GenericSkeleton)tu.getSkeleton()).getParts().get(1).getParent());
+			}
+			// Reloaded entries count against the maximum as well
+			assertTrue(store.getReloadedCount() >= 3);
+			assertEquals(2, store.getInMemoryCount());
+			assertEquals(store.getSpilledCount()-store.getReloadedCount(), store.size()-store.getInMemoryCount());
+			assertEquals(5, store.getHeldCount());
+			store.remove("tu1");
+			assertNull(store.get("tu1"));
+			assertEquals(4, store.entrySet().size());
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testKeepResourcesWithAnnotations () {
+		ReferentStore store = new ReferentStore(1);
+		try {
+			ITextUnit tu1 = createTU("tu1");
+			tu1.setAnnotation(new AltTranslationsAnnotation());
+			store.put("tu1", new Referent(tu1, 1));
+			ITextUnit tu2 = createTU("tu2");
+			store.put("tu2", new Referent(tu2, 1));
+			ITextUnit tu3 = createTU("tu3");
+			store.put("tu3", new Referent(tu3, 1));
+			// tu1 cannot be written out: tu2 and tu3 are
+			assertEquals(1, store.getInMemoryCount());
+			assertEquals(2, store.getSpilledCount());
+			assertSame(tu1, store.get("tu1").ref);
+			assertEquals(tu3.getId(), ((ITextUnit)store.get("tu3").ref).getId());
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testNotSpillableSetApart () {
+		final ITextUnit tu1 = createTU("tu1");
+		tu1.setAnnotation(new AltTranslationsAnnotation());
+		final int[] checks = new int[1];
+		ReferentStore store = new ReferentStore(1) {
+			@Override
+			protected boolean canSpill (Referent ref) {
+				if ( ref.ref == tu1 ) checks[0]++;
+				return true;
+			}
+		};
+		try {
+			store.put("tu1", new Referent(tu1, 1));
+			for ( int i=2; i<=5; i++ ) {
+				store.put("tu"+i, new Referent(createTU("tu"+i), 1));
+			}
+			// tu1 is serialized only once
+			assertEquals(1, checks[0]);
+			assertEquals(1, store.getInMemoryCount());
+			assertEquals(4, store.getSpilledCount());
+			assertSame(tu1, store.get("tu1").ref);
+			assertEquals(5, store.entrySet().size());
+			assertSame(tu1, store.remove("tu1").ref);
+			assertEquals(4, store.size());
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testSetWithoutReload () {
+		ReferentStore store = new ReferentStore(1);
+		try {
+			store.put("tu1", new Referent(createTU("tu1"), 1));
+			store.put("tu2", new Referent(createTU("tu2"), 1));
+			assertEquals(1, store.getSpilledCount());
+			store.set("tu1", new Referent(createTU("tu3"), 1));
+			assertEquals(0, store.getReloadedCount());
+			assertEquals(2, store.size());
+			assertEquals("tu3", ((ITextUnit)store.get("tu1").ref).getId());
+			// put() still returns the previous value
+			assertEquals("tu2", ((ITextUnit)store.put("tu2", new Referent(createTU("tu4"), 1)).ref).getId());
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testCompaction () {
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<10000; i++ ) {
+			tmp.append("Long text ");
+		}
+		String text = tmp.toString();
+		ReferentStore store = new ReferentStore(1);
+		try {
+			// k0 and k1 stay written out, the other entries are written out then removed
+			for ( int i=0; i<60; i++ ) {
+				store.put("k"+i, new Referent(new TextUnit("tu"+i, text+i), 1));
+				if ( i > 2 ) store.remove("k"+(i-1));
+			}
+			assertEquals(3, store.size());
+			assertTrue(store.getSpilledCount() > 50);
+			// Without compaction, the file would hold all the entries written out
+			assertTrue(store.getFileLength() < 2*1024*1024);
+			assertEquals(text+"0", ((ITextUnit)store.get("k0").ref).getSource().toString());
+			assertEquals(text+"1", ((ITextUnit)store.get("k1").ref).getSource().toString());
+		}
+		finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testWriterOutputWithSpilledReferents () {
+		EncoderManager encMgt = new EncoderManager();
+		GenericSkeletonWriter writer = new GenericSkeletonWriter();
+		String expected = FilterTestDriver.generateOutput(createEvents(writer, encMgt), locFR, writer, encMgt);
+
+		final ReferentStore[] stores = new ReferentStore[1];
+		writer = new GenericSkeletonWriter() {
+			@Override
+			protected ReferentStore createReferentStore () {
+				stores[0] = super.createReferentStore();
+				return stores[0];
+			}
+		};
+		writer.setMaxReferentsInMemory(3);
+		String result = FilterTestDriver.generateOutput(createEvents(writer, encMgt), locFR, writer, encMgt);
+		assertEquals(expected, result);
+		assertTrue(stores[0].getSpilledCount() > 0);
+		assertEquals(stores[0].getSpilledCount(), stores[0].getReloadedCount());
+		assertEquals(21, stores[0].getHeldCount());
+		assertEquals(0, stores[0].size());
+	}
+
+	private ITextUnit createTU (String id) {
+		TextFragment tf = new TextFragment("Text ");
+		tf.append(TagType.OPENING, "b", "<b>");
+		tf.append("bold");
+		tf.append(TagType.CLOSING, "b", "</b>");
+		ITextUnit tu = new TextUnit(id);
+		tu.setName("n"+id);
+		tu.setType("t"+id);
+		tu.setIsTranslatable(false);
+		tu.setIsReferent(true);
+		tu.setSourceContent(tf);
+		tu.getSource().getSegments().append(new Segment("s2", new TextFragment(" Second "+id)));
+		tu.setSourceProperty(new Property("sp", "sp"));
+		tu.setProperty(new Property("p1", "v"+id, true));
+		tu.setTarget(locFR, new TextContainer("Texte "+id));
+		GenericSkeleton gs = new GenericSkeleton("<"+id+">");
+		gs.addContentPlaceholder(tu);
+		gs.add("</"+id+">");
+		tu.setSkeleton(gs);
+		return tu;
+	}
+
+	private List<Event> createEvents (ISkeletonWriter writer,
+		EncoderManager encMgt)
+	{
+		List<Event> events = TestUtil.createStartEvents(false, writer, encMgt);
+		GenericSkeleton refs = new GenericSkeleton();
+		// Referent text units
+		for ( int i=1; i<=20; i++ ) {
+			ITextUnit tu = createTU("tu"+i);
+			events.add(new Event(EventType.TEXT_UNIT, tu));
+			refs.add("[");
+			refs.addReference(tu);
+			refs.add("]");
+		}
+		// Referent group
+		StartGroup sg = new StartGroup("sd1", "g1", true);
+		sg.setSkeleton(new GenericSkeleton("<g>"));
+		events.add(new Event(EventType.START_GROUP, sg));
+		ITextUnit tu = new TextUnit("tu21", "in group");
+		tu.setSkeleton(new GenericSkeleton());
+		((GenericSkeleton)tu.getSkeleton()).addContentPlaceholder(tu);
+		events.add(new Event(EventType.TEXT_UNIT, tu));
+		events.add(new Event(EventType.DOCUMENT_PART, new DocumentPart("dp1", false, new GenericSkeleton("<br/>"))));
+		Ending ending = new Ending("g1e");
+		ending.setSkeleton(new GenericSkeleton("</g>"));
+		events.add(new Event(EventType.END_GROUP, ending));
+		refs.addReference(sg);
+		// Document part with all the references
+		events.add(new Event(EventType.DOCUMENT_PART, new DocumentPart("dp2", false, refs)));
+		TestUtil.addEndEvents(events);
+		return events;
+	}
+
+}
@@ -18,9 +18,14 @@ package net.sf.okapi.filters.abstractmarkup.config;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -207,6 +212,13 @@ public class TaggedFilterConfiguration {
 	};
 
 	private final YamlConfigurationReader configReader;
+	// Compiled forms of the rules, built on first use and dropped when the reader's rules version changes.
+	// Rule maps are never modified in place, so ruleTypeSets can be keyed by their identity.
+	private final Map<Map, Set<RULE_TYPE>> ruleTypeSets = Collections.synchronizedMap(new IdentityHashMap<Map, Set<RULE_TYPE>>());
+	private final Map<String, RULE_TYPE> elementRuleTypeCandidates = new ConcurrentHashMap<String, RULE_TYPE>();
+	private final Map<String, RULE_TYPE> attributeRuleTypes = new ConcurrentHashMap<String, RULE_TYPE>();
+	private final Map<String, Pattern> conditionPatterns = new ConcurrentHashMap<String, Pattern>();
+	private volatile int rulesVersion;
 
 	public TaggedFilterConfiguration() {
 		configReader = new YamlConfigurationReader();
@@ -313,26 +325,46 @@ public class TaggedFilterConfiguration {
 		return (String) configReader.getProperty(CODEFINDERRULES);
 	}
 
-	private boolean isRuleType(String ruleName, RULE_TYPE ruleType, List<String> ruleTypes) {
-		for (String r : ruleTypes) {
-			if (convertRuleAsStringToRuleType(r).equals(ruleType)) {
-				return true;
-			}
+	/**
+	 * Drops the compiled forms of the rules if the rules have changed since they were built.
+	 */
+	private void checkRulesVersion() {
+		int version = configReader.getRulesVersion();
+		if (version != rulesVersion) {
+			ruleTypeSets.clear();
+			elementRuleTypeCandidates.clear();
+			attributeRuleTypes.clear();
+			rulesVersion = version;
 		}
-		return false;
 	}
 
-	public boolean isRuleType(String ruleName, RULE_TYPE ruleType) {
-		List<Map> rules = configReader.getRules(ruleName.toLowerCase());
-		for (Map rule : rules) {
-			List<String> ruleTypes = (List<String>) rule.get("ruleTypes");
-			for (String r : ruleTypes) {
-				if (convertRuleAsStringToRuleType(r).equals(ruleType)) {
-					return true;
+	/**
+	 * Gets the rule types of a given rule as a set, converted only the first time.
+	 */
+	private Set<RULE_TYPE> getRuleTypes(Map rule) {
+		checkRulesVersion();
+		Set<RULE_TYPE> types = ruleTypeSets.get(rule);
+		if (types == null) {
+			types = EnumSet.noneOf(RULE_TYPE.class);
+			List<String> ruleTypes = (List<String>) rule.get(RULETYPES);
+			if (ruleTypes != null) {
+				for (String r : ruleTypes) {
+					types.add(convertRuleAsStringToRuleType(r));
 				}
 			}
+			ruleTypeSets.put(rule, types);
 		}
-		return false;
+		return types;
+	}
+
+	public boolean isRuleType(String ruleName, RULE_TYPE ruleType) {
+		String name = ruleName.toLowerCase();
+		Map rule = configReader.getElementRule(name);
+		if (rule != null && getRuleTypes(rule).contains(ruleType)) {
+			return true;
+		}
+		rule = configReader.getAttributeRule(name);
+		return (rule != null && getRuleTypes(rule).contains(ruleType));
 	}
 	
 	public boolean hasDefinedInlineRule(String ruleName) {
@@ -341,11 +373,7 @@ public class TaggedFilterConfiguration {
 			return false;
 		}
 		
-		List<String> ruleTypes = (List<String>) rule.get("ruleTypes");
-		if (isRuleType(ruleName, RULE_TYPE.INLINE_ELEMENT, ruleTypes)) {
-			return true;
-		}
-		return false;
+		return getRuleTypes(rule).contains(RULE_TYPE.INLINE_ELEMENT);
 	}
 
 	public String getElementType(Tag element) {
@@ -480,18 +508,31 @@ public class TaggedFilterConfiguration {
 	}
 
 	public RULE_TYPE getAttributeRuleType(String attribute) {
+		checkRulesVersion();
+		// Keyed by the original name to avoid lower-casing it on each call
+		RULE_TYPE type = attributeRuleTypes.get(attribute);
+		if (type == null) {
+			type = computeAttributeRuleType(attribute);
+			if (attributeRuleTypes.size() < YamlConfigurationReader.MAX_CACHED_NAMES) {
+				attributeRuleTypes.put(attribute, type);
+			}
+		}
+		return type;
+	}
+
+	private RULE_TYPE computeAttributeRuleType(String attribute) {
 		Map rule = configReader.getAttributeRule(attribute.toLowerCase());
 		if (rule != null) {
-			List<String> ruleTypes = (List<String>) rule.get("ruleTypes");
-			if (isRuleType(attribute, RULE_TYPE.ATTRIBUTE_TRANS, ruleTypes)) {
+			Set<RULE_TYPE> ruleTypes = getRuleTypes(rule);
+			if (ruleTypes.contains(RULE_TYPE.ATTRIBUTE_TRANS)) {
 				return RULE_TYPE.ATTRIBUTE_TRANS;
-			} else if (isRuleType(attribute, RULE_TYPE.ATTRIBUTE_WRITABLE, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.ATTRIBUTE_WRITABLE)) {
 				return RULE_TYPE.ATTRIBUTE_WRITABLE;
-			} else if (isRuleType(attribute, RULE_TYPE.ATTRIBUTE_READONLY, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.ATTRIBUTE_READONLY)) {
 				return RULE_TYPE.ATTRIBUTE_READONLY;
-			} else if (isRuleType(attribute, RULE_TYPE.ATTRIBUTE_ID, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.ATTRIBUTE_ID)) {
 				return RULE_TYPE.ATTRIBUTE_ID;
-			} else if (isRuleType(attribute, RULE_TYPE.ATTRIBUTE_PRESERVE_WHITESPACE, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.ATTRIBUTE_PRESERVE_WHITESPACE)) {
 				return RULE_TYPE.ATTRIBUTE_PRESERVE_WHITESPACE;
 			}
 		}
@@ -551,18 +592,19 @@ public class TaggedFilterConfiguration {
 	}
 
 	public RULE_TYPE getConditionalElementRuleType(String tag, Map<String, String> attributes) {
-		RULE_TYPE type = getElementRuleTypeCandidate(tag.toLowerCase());		
+		String name = tag.toLowerCase();
+		RULE_TYPE type = getElementRuleTypeCandidate(name);
 		
 		if (type != RULE_TYPE.RULE_NOT_FOUND) {				
 			// make sure this is really an INLINE_EXCLUDED_ELEMENT rule - condition must apply
 			// order of these rules is important!!!
 			if (type == RULE_TYPE.INLINE_EXCLUDED_ELEMENT) {
-				Map ruleRegex = configReader.getRegexElementRule(tag.toLowerCase());
-				Map rule = configReader.getNonRegexElementRule(tag.toLowerCase());
+				Map ruleRegex = configReader.getRegexElementRule(name);
+				Map rule = configReader.getNonRegexElementRule(name);
 				if (doesElementRuleConditionApply(ruleRegex, attributes)) {
 					return type;					
-				} else if (hasDefinedInlineRule(tag.toLowerCase()) && !isRuleType(tag.toLowerCase(), RULE_TYPE.EXCLUDED_ELEMENT)) {
-					if (doesElementRuleConditionApply(configReader.getElementRule(tag.toLowerCase()), attributes)) {
+				} else if (hasDefinedInlineRule(name) && !isRuleType(name, RULE_TYPE.EXCLUDED_ELEMENT)) {
+					if (doesElementRuleConditionApply(configReader.getElementRule(name), attributes)) {
 						return RULE_TYPE.INLINE_ELEMENT;
 					} else {
 						return RULE_TYPE.RULE_NOT_FOUND;
@@ -576,18 +618,18 @@ public class TaggedFilterConfiguration {
 			
 			// short cut test - if the rule depends on a condition and there are no attributes skip
 			if (attributes.isEmpty() && 
-					configReader.getElementRule(tag.toLowerCase()).get(CONDITIONS) != null)  {
+					configReader.getElementRule(name).get(CONDITIONS) != null)  {
 				return RULE_TYPE.RULE_NOT_FOUND;
 			}
 						
 			// short cut test - if there are no conditions and no attributes the default rule applies
 			if (attributes.isEmpty() && 
-					configReader.getElementRule(tag.toLowerCase()).get(CONDITIONS) == null)  {				
+					configReader.getElementRule(name).get(CONDITIONS) == null)  {				
 				return type;
 			}
 			
 			// if we get this far just apply the condition and return the result
-			if (doesElementRuleConditionApply(configReader.getElementRule(tag.toLowerCase()), attributes)) {
+			if (doesElementRuleConditionApply(configReader.getElementRule(name), attributes)) {
 				return type;
 			} else {
 				return RULE_TYPE.RULE_FAILED;
@@ -597,47 +639,58 @@ public class TaggedFilterConfiguration {
 	}
 
 	public RULE_TYPE getElementRuleTypeCandidate(String tag) {
+		checkRulesVersion();
+		// Keyed by the original name to avoid lower-casing it on each call
+		RULE_TYPE type = elementRuleTypeCandidates.get(tag);
+		if (type == null) {
+			type = computeElementRuleTypeCandidate(tag);
+			if (elementRuleTypeCandidates.size() < YamlConfigurationReader.MAX_CACHED_NAMES) {
+				elementRuleTypeCandidates.put(tag, type);
+			}
+		}
+		return type;
+	}
+
+	private RULE_TYPE computeElementRuleTypeCandidate(String tag) {
 		Map rule = configReader.getElementRule(tag.toLowerCase());
 		if (rule != null) {
-			List<String> ruleTypes = (List<String>) rule.get("ruleTypes");
+			Set<RULE_TYPE> ruleTypes = getRuleTypes(rule);
 			// ORDER is important!!! These are matched in priority order
-			if (isRuleType(tag, RULE_TYPE.EXCLUDED_ELEMENT, ruleTypes) && 
-					!isRuleType(tag, RULE_TYPE.INLINE_ELEMENT, ruleTypes)) {
+			if (ruleTypes.contains(RULE_TYPE.EXCLUDED_ELEMENT) && 
+					!ruleTypes.contains(RULE_TYPE.INLINE_ELEMENT)) {
 				return RULE_TYPE.EXCLUDED_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.GROUP_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.GROUP_ELEMENT)) {
 				return RULE_TYPE.GROUP_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.INCLUDED_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.INCLUDED_ELEMENT)) {
 				return RULE_TYPE.INCLUDED_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.INLINE_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.INLINE_ELEMENT)) {
 				// handle case where inline is excluded by a more general rule
 				Map r1 = configReader.getRegexElementRule(tag.toLowerCase());
 				Map r2 = configReader.getNonRegexElementRule(tag.toLowerCase());
 				// test regex rule first
 				if (r1 != null) {
-					List<String> rt = (List<String>) r1.get("ruleTypes");
-					if (isRuleType(tag, RULE_TYPE.EXCLUDED_ELEMENT, rt)) {
+					if (getRuleTypes(r1).contains(RULE_TYPE.EXCLUDED_ELEMENT)) {
 						return RULE_TYPE.INLINE_EXCLUDED_ELEMENT;
 					}
 				} else if (r2 != null) {
-					List<String> rt = (List<String>) r2.get("ruleTypes");
-					if (isRuleType(tag, RULE_TYPE.EXCLUDED_ELEMENT, rt)) {
+					if (getRuleTypes(r2).contains(RULE_TYPE.EXCLUDED_ELEMENT)) {
 						return RULE_TYPE.INLINE_EXCLUDED_ELEMENT;
 					}
 				}
 				return RULE_TYPE.INLINE_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.SCRIPT_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.SCRIPT_ELEMENT)) {
 				return RULE_TYPE.SCRIPT_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.SERVER_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.SERVER_ELEMENT)) {
 				return RULE_TYPE.SERVER_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.ATTRIBUTES_ONLY, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.ATTRIBUTES_ONLY)) {
 				return RULE_TYPE.ATTRIBUTES_ONLY;
-			} else if (isRuleType(tag, RULE_TYPE.TEXT_UNIT_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.TEXT_UNIT_ELEMENT)) {
 				return RULE_TYPE.TEXT_UNIT_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.TEXT_MARKER_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.TEXT_MARKER_ELEMENT)) {
 				return RULE_TYPE.TEXT_MARKER_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.TEXT_RUN_ELEMENT, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.TEXT_RUN_ELEMENT)) {
 				return RULE_TYPE.TEXT_RUN_ELEMENT;
-			} else if (isRuleType(tag, RULE_TYPE.PRESERVE_WHITESPACE, ruleTypes)) {
+			} else if (ruleTypes.contains(RULE_TYPE.PRESERVE_WHITESPACE)) {
 				return RULE_TYPE.PRESERVE_WHITESPACE;
 			}
 		}
@@ -773,7 +826,11 @@ public class TaggedFilterConfiguration {
 				return result;
 			}
 			
-			Pattern matchPattern = Pattern.compile(conditionValue);
+			Pattern matchPattern = conditionPatterns.get(conditionValue);
+			if (matchPattern == null) {
+				matchPattern = Pattern.compile(conditionValue);
+				conditionPatterns.put(conditionValue, matchPattern);
+			}
 			try {
 				Matcher m = matchPattern.matcher(attributeValue);
 				result = m.matches();
@@ -833,10 +890,20 @@ public class TaggedFilterConfiguration {
 		return false;
 	}
 
+	/**
+	 * Gets the attribute rules. The rules must be changed only through the configuration reader
+	 * (see {@link #getConfigReader()}), since the compiled forms of the rules are rebuilt only then.
+	 * @return a read-only view of the attribute rules.
+	 */
 	public Map<String, Object> getAttributeRules() {
 		return configReader.getAttributeRules();
 	}
 
+	/**
+	 * Gets the element rules. The rules must be changed only through the configuration reader
+	 * (see {@link #getConfigReader()}), since the compiled forms of the rules are rebuilt only then.
+	 * @return a read-only view of the element rules.
+	 */
 	public Map<String, Object> getElementRules() {
 		return configReader.getElementRules();
 	}
@@ -23,10 +23,12 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -39,6 +41,12 @@ import org.yaml.snakeyaml.Yaml;
 public class YamlConfigurationReader implements AutoCloseable {
 	private static final String REGEX_META_CHARS_REGEX = "[\\(\\[\\{\\^\\$\\|\\]\\}\\)\\?\\*\\+]+";
 	private static final Pattern REGEX_META_CHARS_PATTERN = Pattern.compile(REGEX_META_CHARS_REGEX);
+	/**
+	 * Maximum number of names for which the rule look-ups are cached.
+	 */
+	static final int MAX_CACHED_NAMES = 4096;
+	// Marks the names without rule in the caches
+	private static final Map NO_RULE = new HashMap(0);
 
 	private boolean preserveWhitespace;
 	private Yaml yaml;
@@ -50,6 +58,12 @@ public class YamlConfigurationReader implements AutoCloseable {
 	private Map<String, Object> attributeRegexRules;
 	private Map<String, Pattern> attributeCompiledRegexRules;
 	private InputStreamReader reader;
+	// Results of the look-ups by name: without them each unknown name is tried against all regex rules
+	private final Map<String, Map> elementRuleCache = new ConcurrentHashMap<String, Map>();
+	private final Map<String, Map> regexElementRuleCache = new ConcurrentHashMap<String, Map>();
+	private final Map<String, Map> attributeRuleCache = new ConcurrentHashMap<String, Map>();
+	private final Map<String, Map> regexAttributeRuleCache = new ConcurrentHashMap<String, Map>();
+	private volatile int rulesVersion;
 
 	public boolean isPreserveWhitespace() {
 		return preserveWhitespace;
@@ -144,18 +158,7 @@ public class YamlConfigurationReader implements AutoCloseable {
 	 * Find element rules only (including regex)
 	 */
 	public Map getElementRule(String ruleName) {
-		Map rule = (Map)elementRules.get(ruleName);
-
-		// check our element regex patterns
-		if (rule == null && !elementRegexRules.isEmpty()) {
-			for (String r : elementRegexRules.keySet()) {
-				Matcher m = elementCompiledRegexRules.get(r).matcher(ruleName);
-				if (m.matches()) {
-					rule = (Map) elementRegexRules.get(r);
-				}
-			}
-		}
-		return rule;
+		return getCachedRule(elementRuleCache, ruleName, elementRules, elementRegexRules, elementCompiledRegexRules);
 	}
 
 	/**
@@ -171,55 +174,73 @@ public class YamlConfigurationReader implements AutoCloseable {
 	 * Find regex element rules only
 	 */
 	public Map getRegexElementRule(String ruleName) {
-		Map rule = null;
-		// check our element regex patterns
-		if (rule == null && !elementRegexRules.isEmpty()) {
-			for (String r : elementRegexRules.keySet()) {
-				Matcher m = elementCompiledRegexRules.get(r).matcher(ruleName);
-				if (m.matches()) {
-					rule = (Map) elementRegexRules.get(r);
-				}
-			}
-		}
-		return rule;
+		return getCachedRule(regexElementRuleCache, ruleName, null, elementRegexRules, elementCompiledRegexRules);
 	}
 
 	/*
 	 * Find attribute rules only (including regex)
 	 */
 	public Map getAttributeRule(String ruleName) {
-		Map rule = (Map)attributeRules.get(ruleName);
-
-		// check our element regex patterns
-		if (rule == null && !attributeRegexRules.isEmpty()) {
-			for (String r : attributeRegexRules.keySet()) {
-				Matcher m = attributeCompiledRegexRules.get(r).matcher(ruleName);
-				if (m.matches()) {
-					rule = (Map) attributeRegexRules.get(r);
-				}
-			}
-		}
-		return rule;
+		return getCachedRule(attributeRuleCache, ruleName, attributeRules, attributeRegexRules, attributeCompiledRegexRules);
 	}
 
 	/*
 	 * Find attribute rules only (including regex)
 	 */
 	public Map getRegexAttributeRule(String ruleName) {
-		Map rule = null;
+		return getCachedRule(regexAttributeRuleCache, ruleName, null, attributeRegexRules, attributeCompiledRegexRules);
+	}
 
-		// check our element regex patterns
-		if (rule == null && !attributeRegexRules.isEmpty()) {
-			for (String r : attributeRegexRules.keySet()) {
-				Matcher m = attributeCompiledRegexRules.get(r).matcher(ruleName);
+	private Map getCachedRule(Map<String, Map> cache, String ruleName, Map<String, Object> rules,
+			Map<String, Object> regexRules, Map<String, Pattern> compiledRegexRules) {
+		if (ruleName == null) {
+			return findRule(ruleName, rules, regexRules, compiledRegexRules);
+		}
+		Map rule = cache.get(ruleName);
+		if (rule == null) {
+			rule = findRule(ruleName, rules, regexRules, compiledRegexRules);
+			if (cache.size() < MAX_CACHED_NAMES) {
+				cache.put(ruleName, (rule == null) ? NO_RULE : rule);
+			}
+			return rule;
+		}
+		return (rule == NO_RULE) ? null : rule;
+	}
+
+	private Map findRule(String ruleName, Map<String, Object> rules, Map<String, Object> regexRules,
+			Map<String, Pattern> compiledRegexRules) {
+		Map rule = (rules == null) ? null : (Map)rules.get(ruleName);
+
+		// check our regex patterns
+		if (rule == null && !regexRules.isEmpty()) {
+			for (String r : regexRules.keySet()) {
+				Matcher m = compiledRegexRules.get(r).matcher(ruleName);
 				if (m.matches()) {
-					rule = (Map) attributeRegexRules.get(r);
+					rule = (Map) regexRules.get(r);
 				}
 			}
 		}
 		return rule;
 	}
 
+	/**
+	 * Gets the version of the rules of this reader. The version changes each time rules are added or cleared,
+	 * so callers can tell when the results they derived from the rules are obsolete.
+	 * Rules must be changed only through this reader: a rule map modified in place does not change the version.
+	 * @return the version of the rules.
+	 */
+	public int getRulesVersion() {
+		return rulesVersion;
+	}
+
+	private void rulesChanged() {
+		elementRuleCache.clear();
+		regexElementRuleCache.clear();
+		attributeRuleCache.clear();
+		regexAttributeRuleCache.clear();
+		rulesVersion++;
+	}
+
 	public Object getProperty(String property) {
 		return config.get(property);
 	}
@@ -234,10 +255,12 @@ public class YamlConfigurationReader implements AutoCloseable {
 
 	public void addElementRule(String ruleName, Map rule) {
 		elementRules.putAll(rule);
+		rulesChanged();
 	}
 
 	public void addAttributeRule(String ruleName, Map rule) {
 		attributeRules.putAll(rule);
+		rulesChanged();
 	}
 
 	public void clearRules() {
@@ -248,6 +271,7 @@ public class YamlConfigurationReader implements AutoCloseable {
 		elementCompiledRegexRules.clear();
 		attributeRegexRules.clear();
 		attributeCompiledRegexRules.clear();
+		rulesChanged();
 	}
 
 	private void findRegexRules() {
@@ -292,12 +316,22 @@ public class YamlConfigurationReader implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Gets the attribute rules. Use {@link #addAttributeRule(String, Map)} or {@link #clearRules()}
+	 * to change them: the rule maps must not be modified in place.
+	 * @return a read-only view of the attribute rules.
+	 */
 	public 	Map<String, Object> getAttributeRules () {
-		return attributeRules;
+		return Collections.unmodifiableMap(attributeRules);
 	}
 
+	/**
+	 * Gets the element rules. Use {@link #addElementRule(String, Map)} or {@link #clearRules()}
+	 * to change them: the rule maps must not be modified in place.
+	 * @return a read-only view of the element rules.
+	 */
 	public 	Map<String, Object> getElementRules () {
-		return elementRules;
+		return Collections.unmodifiableMap(elementRules);
 	}
 
 	@Override
@@ -0,0 +1,87 @@
+package net.sf.okapi.filters.abstractmarkup.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.okapi.filters.abstractmarkup.config.TaggedFilterConfiguration.RULE_TYPE;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TaggedFilterConfigurationTest {
+
+	private static final String CONFIG = "elements:\n"
+		+ "  p:\n"
+		+ "    ruleTypes: [TEXTUNIT]\n"
+		+ "  b:\n"
+		+ "    ruleTypes: [INLINE]\n"
+		+ "  'h[1-6]':\n"
+		+ "    ruleTypes: [TEXTUNIT]\n"
+		+ "  div:\n"
+		+ "    ruleTypes: [GROUP]\n"
+		+ "    conditions: [class, MATCHES, 'g[0-9]+']\n"
+		+ "attributes:\n"
+		+ "  title:\n"
+		+ "    ruleTypes: [ATTRIBUTE_TRANS]\n"
+		+ "    allElementsExcept: [code]\n";
+
+	@Test
+	public void testRepeatedLookups () {
+		TaggedFilterConfiguration config = new TaggedFilterConfiguration(CONFIG);
+		for ( int i=0; i<3; i++ ) {
+			assertEquals(RULE_TYPE.TEXT_UNIT_ELEMENT, config.getElementRuleTypeCandidate("P"));
+			assertEquals(RULE_TYPE.TEXT_UNIT_ELEMENT, config.getElementRuleTypeCandidate("h2"));
+			assertEquals(RULE_TYPE.INLINE_ELEMENT, config.getElementRuleTypeCandidate("b"));
+			assertEquals(RULE_TYPE.RULE_NOT_FOUND, config.getElementRuleTypeCandidate("h7"));
+			assertEquals(RULE_TYPE.ATTRIBUTE_TRANS, config.getAttributeRuleType("Title"));
+			assertEquals(RULE_TYPE.RULE_NOT_FOUND, config.getAttributeRuleType("alt"));
+			assertTrue(config.isTranslatableAttribute("p", "title", Collections.<String, String>emptyMap()));
+			assertFalse(config.isTranslatableAttribute("code", "title", Collections.<String, String>emptyMap()));
+		}
+	}
+
+	@Test
+	public void testConditions () {
+		TaggedFilterConfiguration config = new TaggedFilterConfiguration(CONFIG);
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("class", "g12");
+		assertEquals(RULE_TYPE.GROUP_ELEMENT, config.getConditionalElementRuleType("div", attributes));
+		attributes.put("class", "other");
+		assertEquals(RULE_TYPE.RULE_FAILED, config.getConditionalElementRuleType("div", attributes));
+		attributes.put("class", "g3");
+		assertEquals(RULE_TYPE.GROUP_ELEMENT, config.getConditionalElementRuleType("div", attributes));
+	}
+
+	@Test
+	public void testAddedRulesAreSeen () {
+		TaggedFilterConfiguration config = new TaggedFilterConfiguration(CONFIG);
+		assertEquals(RULE_TYPE.RULE_NOT_FOUND, config.getElementRuleTypeCandidate("span"));
+		YamlConfigurationReader reader = config.getConfigReader();
+		Map<String, Object> rule = new HashMap<String, Object>();
+		rule.put(TaggedFilterConfiguration.RULETYPES, Collections.singletonList(TaggedFilterConfiguration.INLINE));
+		reader.addElementRule("span", Collections.singletonMap("span", rule));
+		assertEquals(RULE_TYPE.INLINE_ELEMENT, config.getElementRuleTypeCandidate("span"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testElementRulesAreReadOnly () {
+		TaggedFilterConfiguration config = new TaggedFilterConfiguration(CONFIG);
+		assertEquals(RULE_TYPE.RULE_NOT_FOUND, config.getElementRuleTypeCandidate("span"));
+		// Changes must go through the reader, otherwise the compiled rules would be stale
+		config.getElementRules().put("span", new HashMap<String, Object>());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testAttributeRulesAreReadOnly () {
+		TaggedFilterConfiguration config = new TaggedFilterConfiguration(CONFIG);
+		config.getAttributeRules().clear();
+	}
+
+}
@@ -19,8 +19,17 @@ package net.sf.okapi.filters.archive;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -44,6 +53,7 @@ import net.sf.okapi.common.filters.AbstractFilter;
 import net.sf.okapi.common.filters.DefaultFilters;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.FilterConfigurationMapper;
+import net.sf.okapi.common.filters.FilterPool;
 import net.sf.okapi.common.filters.FilterUtil;
 import net.sf.okapi.common.filters.IFilter;
 import net.sf.okapi.common.filters.IFilterConfigurationMapper;
@@ -80,6 +90,10 @@ import net.sf.okapi.common.skeleton.ZipSkeleton;
  * configuration is not provided there, you can use setFilterConfigurationMapper() to set your own FilterConfiguationMapper,
  * or alternatively you can get a reference to the default implementation of IFilterConfigurationMapper provided by this class, and
  * use addConfiguration() and other methods to configure it to your desire.
+ * <p>
+ * When the threadCount parameter is greater than 1, several contained files are extracted at the same time, each by its own
+ * sub-filter instance (instances are re-used for the following files of the same configuration). The events of each file
+ * are kept in memory until they are sent, and they are always sent in the order of the files in the archive.
  */
 
 @UsingParameters(Parameters.class)
@@ -113,6 +127,44 @@ public class ArchiveFilter extends AbstractFilter {
 	private StartDocument saveStartDoc;
 	private RawDocument input;
 	private File fromStreamTmpFile;
+	private ExecutorService executor;
+	private LinkedList<PendingEntry> pending;
+	private int pendingExtractions;
+	private FilterPool filterPool;
+	private IFilter extractedFilter; // Filter of the file being sent, in parallel mode
+	private Iterator<Event> subEvents;
+
+	/**
+	 * Contained file waiting to be sent, in parallel mode.
+	 */
+	private static class PendingEntry {
+		final ZipEntry entry;
+		final Future<ExtractedEntry> extraction; // Null if the entry is not extracted
+		final IFilter filter; // Pooled filter of the extraction, null if the entry is not extracted
+
+		PendingEntry (ZipEntry entry, Future<ExtractedEntry> extraction, IFilter filter) {
+			this.entry = entry;
+			this.extraction = extraction;
+			this.filter = filter;
+		}
+	}
+
+	/**
+	 * Events and filter writer of a contained file extracted in parallel mode, with the
+	 * filter that created them. The filter goes back to the pool only once the events have
+	 * been sent, since its writer may share objects with it (e.g. the encoder manager).
+	 */
+	private static class ExtractedEntry {
+		final List<Event> events;
+		final IFilterWriter filterWriter;
+		final IFilter filter;
+
+		ExtractedEntry (List<Event> events, IFilterWriter filterWriter, IFilter filter) {
+			this.events = events;
+			this.filterWriter = filterWriter;
+			this.filter = filter;
+		}
+	}
 
 	public ArchiveFilter() {
 		super();
@@ -141,6 +193,7 @@ public class ArchiveFilter extends AbstractFilter {
 		if (input != null) {
 			input.close();
 		}		
+		stopExtractions();
 		try {
 			nextAction = NextAction.DONE;
 			if ( zipFile != null ) {
@@ -290,6 +343,11 @@ public class ArchiveFilter extends AbstractFilter {
 			entries = zipFile.entries();
 			subDocId = 0;
 			nextAction = NextAction.NEXTINZIP;
+			subEvents = null;
+			int threadCount = params.getThreadCount();
+			if ( threadCount > 1 ) {
+				startExtractions(threadCount);
+			}
 			
 			StartDocument startDoc = new StartDocument(SID);
 			startDoc.setName(docURI.getPath());
@@ -310,6 +368,9 @@ public class ArchiveFilter extends AbstractFilter {
 	}
 	
 	private Event nextInZipFile () {
+		if ( executor != null ) {
+			return nextExtracted();
+		}
 		while( entries.hasMoreElements() ) {
 			entry = entries.nextElement();
 			subFilter = getSubFilter(entry.getName());
@@ -339,28 +400,187 @@ public class ArchiveFilter extends AbstractFilter {
 	 * not be extracted.
 	 */
 	private IFilter getSubFilter (String name) {
+		String configId = getConfigId(name);
+		if ( configId == null ) return null; // File is not to be extracted
+		// Create sub-filter
+		// If there is no instance possible we will get an error
+		// but the process will not be stopped, the file will just be
+		// treated as non-extractable
+		return getFilterConfigurationMapper().createFilter(configId);
+	}
+
+	/**
+	 * Gets the filter configuration id for a given file in the archive.
+	 * @param name the name of the file entry to check.
+	 * @return the configuration id to use for the given file, or null if the file
+	 * should not be extracted.
+	 */
+	private String getConfigId (String name) {
 		for (int i = 0; i < fileNames.length; i++) {
-			String fname = fileNames[i];
-			if ( StringUtil.matchesWildcard(name, fname, true) ) {
-				// Create sub-filter
-				// If there is no instance possible we will get an error
-				// but the process will not be stopped, the file will just be
-				// treated as non-extractable
-				return getFilterConfigurationMapper().createFilter(configIds[i]);
+			if ( StringUtil.matchesWildcard(name, fileNames[i], true) ) {
+				return configIds[i];
+			}
+		}
+		return null;
+	}
+
+	private void startExtractions (int threadCount) {
+		executor = Executors.newFixedThreadPool(threadCount);
+		pending = new LinkedList<PendingEntry>();
+		pendingExtractions = 0;
+		filterPool = new FilterPool(getFilterConfigurationMapper(), threadCount*2);
+	}
+
+	/**
+	 * Stops the extractions and returns all their filters to the pool. This waits for the
+	 * extractions already running, since they read the ZIP file that is closed next.
+	 */
+	private void stopExtractions () {
+		if ( executor == null ) return;
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		// Files extracted but not sent, or never extracted: closing a handle twice has no effect
+		for ( PendingEntry item : pending ) {
+			if ( item.filter != null ) item.filter.close();
+		}
+		pending = null;
+		subEvents = null;
+		releaseExtractedFilter();
+		filterPool.close();
+		filterPool = null;
+	}
+
+	/**
+	 * Returns the filter of the last file sent to the pool: the events of that file,
+	 * including its END_SUBDOCUMENT, have been processed and its writer is done.
+	 */
+	private void releaseExtractedFilter () {
+		if ( extractedFilter != null ) {
+			extractedFilter.close();
+			extractedFilter = null;
+		}
+	}
+
+	/**
+	 * Starts the extraction of the next files of the archive, without going further than
+	 * twice the number of threads of extractions not sent yet.
+	 */
+	private void queueExtractions () {
+		int max = params.getThreadCount()*2;
+		while (( pendingExtractions < max ) && entries.hasMoreElements() ) {
+			ZipEntry zipEntry = entries.nextElement();
+			String configId = getConfigId(zipEntry.getName());
+			IFilter filter = null;
+			if ( configId != null ) {
+				filter = filterPool.acquire(configId);
+			}
+			if ( filter == null ) {
+				pending.add(new PendingEntry(zipEntry, null, null));
+			}
+			else {
+				pending.add(new PendingEntry(zipEntry,
+					executor.submit(new EntryExtraction(zipEntry, filter)), filter));
+				pendingExtractions++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the next event of the archive when the files are extracted in parallel: the sub-document
+	 * events of the next file are sent once its extraction is done.
+	 */
+	private Event nextExtracted () {
+		releaseExtractedFilter();
+		queueExtractions();
+		PendingEntry next = pending.poll();
+		if ( next == null ) {
+			// No more sub-documents: end of the ZIP document
+			close();
+			Ending ending = new Ending(EID);
+			return new Event(EventType.END_DOCUMENT, ending);
+		}
+		entry = next.entry;
+		if ( next.extraction == null ) {
+			DocumentPart dp = new DocumentPart(entry.getName(), false);
+			ZipSkeleton skel = new ZipSkeleton(zipFile, entry);
+			return new Event(EventType.DOCUMENT_PART, dp, skel);
+		}
+		pendingExtractions--;
+		ExtractedEntry extracted;
+		try {
+			extracted = next.extraction.get();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while extracting " + entry.getName(), e);
+		}
+		catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new OkapiException("Error extracting " + entry.getName(), e.getCause());
+		}
+		subFilter = null;
+		extractedFilter = extracted.filter;
+		subEvents = extracted.events.iterator();
+		subDocWriter = extracted.filterWriter;
+		((ZipFilterWriter) createFilterWriter()).setSubDocWriter(subDocWriter);
+		return openSubDocument();
+	}
+
+	/**
+	 * Extracts all the events of a contained file with a given pooled filter. The filter is
+	 * returned to the pool here only if the extraction fails.
+	 */
+	private class EntryExtraction implements Callable<ExtractedEntry> {
+
+		private final ZipEntry zipEntry;
+		private final IFilter filter;
+
+		EntryExtraction (ZipEntry zipEntry, IFilter filter) {
+			this.zipEntry = zipEntry;
+			this.filter = filter;
+		}
+
+		@Override
+		public ExtractedEntry call () throws IOException {
+			List<Event> events = new ArrayList<Event>();
+			boolean done = false;
+			try {
+				filter.open(new RawDocument(zipFile.getInputStream(zipEntry), "UTF-8", srcLoc, trgLoc));
+				while ( filter.hasNext() ) {
+					events.add(filter.next());
+				}
+				ExtractedEntry extracted = new ExtractedEntry(events, filter.createFilterWriter(), filter);
+				done = true;
+				return extracted;
+			}
+			finally {
+				if ( !done ) filter.close();
 			}
 		}
-		return null; // File is not to be extracted
 	}
 
 	private Event openSubDocument () {
-		if (subFilter != null) subFilter.close();
 		Event event;
-		try {
-			subFilter.open(new RawDocument(zipFile.getInputStream(entry), "UTF-8", srcLoc, trgLoc));
-			event = subFilter.next(); // START_DOCUMENT
+		if ( subEvents != null ) {
+			event = subEvents.next(); // START_DOCUMENT (already extracted)
 		}
-		catch (IOException e) {
-			throw new OkapiIOException("Error opening internal file.", e);
+		else {
+			if (subFilter != null) subFilter.close();
+			try {
+				subFilter.open(new RawDocument(zipFile.getInputStream(entry), "UTF-8", srcLoc, trgLoc));
+				event = subFilter.next(); // START_DOCUMENT
+			}
+			catch (IOException e) {
+				throw new OkapiIOException("Error opening internal file.", e);
+			}
 		}
 		
 		// Change the START_DOCUMENT event from sub-filter to START_SUBDOCUMENT
@@ -391,13 +611,14 @@ public class ArchiveFilter extends AbstractFilter {
 		}
 		
 		Event event;
-		while ( subFilter.hasNext() ) {
-			event = subFilter.next();
+		while (( subEvents != null ) ? subEvents.hasNext() : subFilter.hasNext() ) {
+			event = ( subEvents != null ) ? subEvents.next() : subFilter.next();
 			switch ( event.getEventType() ) {
 			case END_DOCUMENT:
 				// Change the END_DOCUMENT to END_SUBDOCUMENT
 				Ending ending = (Ending) event.getResource();
 				nextAction = NextAction.NEXTINZIP;
+				subEvents = null;
 				ZipSkeleton skel = new ZipSkeleton(
 					(GenericSkeleton)event.getResource().getSkeleton(), zipFile, entry);
 				return new Event(EventType.END_SUBDOCUMENT, ending, skel);
@@ -23,6 +23,7 @@ import net.sf.okapi.common.StringParameters;
 import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.uidescription.EditorDescription;
 import net.sf.okapi.common.uidescription.IEditorDescriptionProvider;
+import net.sf.okapi.common.uidescription.SpinInputPart;
 import net.sf.okapi.core.simplifierrules.ParseException;
 import net.sf.okapi.core.simplifierrules.SimplifierRules;
 
@@ -50,6 +51,13 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 	 * Comma-delimited list of configuration Ids corresponding to the extension
 	 */
 	private static final String CONFIGIDS = "configIds";
+
+	/**
+	 * Number of contained files extracted at the same time, each in its own thread and with its own
+	 * sub-filter instance. With 1 (the default) the files are extracted one after the other, as the events
+	 * are requested. The events are always sent in the order of the files in the container.
+	 */
+	private static final String THREADCOUNT = "threadCount";
 		
 	public Parameters () {
 		super();
@@ -61,6 +69,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		setMimeType(ArchiveFilter.MIME_TYPE);
 		setFileNames("*.tmx,*.xlf,*.xlff");
 		setConfigIds("okf_tmx,okf_xliff,okf_xliff");
+		setThreadCount(1);
 		setSimplifierRules(null);
 	}
 		
@@ -80,6 +89,14 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		return getString(CONFIGIDS);
 	}
 
+	public void setThreadCount(int threadCount) {
+		setInteger(THREADCOUNT, threadCount);
+	}
+
+	public int getThreadCount() {
+		return getInteger(THREADCOUNT);
+	}
+
 	public void setMimeType(String mimeType) {
 		setString(MIMETYPE, mimeType);
 	}
@@ -94,6 +111,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		desc.add("mimeType", "MIME type of the filter's container format", null);
 		desc.add("fileNames", "File names", "Comma-delimited list of file names to be processed (wildcards are allowed) in the same order as configuration ids");
 		desc.add("configIds", "Filter configuration ids", "Comma-delimited list of configuration ids corresponding to the file names");
+		desc.add("threadCount", "Number of files extracted in parallel", "Number of contained files extracted at the same time (1 to extract them one after the other)");
 		return desc;
 	}
 	
@@ -105,6 +123,8 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		desc.addTextInputPart(parametersDescription.get("mimeType"));
 		desc.addTextInputPart(parametersDescription.get("fileNames"));
 		desc.addTextInputPart(parametersDescription.get("configIds"));
+		SpinInputPart sip = desc.addSpinInputPart(parametersDescription.get("threadCount"));
+		sip.setRange(1, 64);
 		
 		return desc;
 	}
@@ -24,14 +24,19 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -41,16 +46,19 @@ import org.junit.runners.JUnit4;
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.FileLocation;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.StreamUtil;
 import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filters.FilterConfigurationMapper;
 import net.sf.okapi.common.filters.FilterTestDriver;
 import net.sf.okapi.common.filters.IFilter;
 import net.sf.okapi.common.filters.InputDocument;
 import net.sf.okapi.common.filters.RoundTripComparison;
+import net.sf.okapi.common.filterwriter.IFilterWriter;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.RawDocument;
 import net.sf.okapi.filters.tmx.TmxFilter;
 import net.sf.okapi.filters.xliff.XLIFFFilter;
+import net.sf.okapi.filters.xliff.its.IITSDataStore;
 import net.sf.okapi.lib.extra.pipelinebuilder.XBatch;
 import net.sf.okapi.lib.extra.pipelinebuilder.XBatchItem;
 import net.sf.okapi.lib.extra.pipelinebuilder.XPipeline;
@@ -326,4 +334,169 @@ public class ArchiveFilterTest {
 			assertTrue(rtc.executeCompare(filter, list, "UTF-8", EN, ESES, "outcmp"));
 		}
 	}
+
+	@Test
+	public void testParallelExtraction ()
+		throws IOException
+	{
+		File archive = createParallelArchive();
+
+		String expected = listEvents(archive, 1);
+		assertEquals(expected, listEvents(archive, 4));
+		assertEquals(expected, listEvents(archive, 2));
+		// Same output: the filters are re-used only once their writers are done
+		assertEquals(writeArchive(archive, 1, "seq"), writeArchive(archive, 3, "par"));
+		
+		try ( ArchiveFilter filter = new ArchiveFilter() ) {
+			filter.setFilterConfigurationMapper(fcMapper);
+			((Parameters)filter.getParameters()).setThreadCount(3);
+			ArrayList<InputDocument> list = new ArrayList<InputDocument>();
+			list.add(new InputDocument(archive.getAbsolutePath(), null));
+			list.add(new InputDocument(root.in("/test1_es.archive").asFile().getAbsolutePath(), null));
+			RoundTripComparison rtc = new RoundTripComparison();
+			assertTrue(rtc.executeCompare(filter, list, "UTF-8", EN, ESES, "outpar"));
+		}
+	}
+
+	@Test
+	public void testCloseDuringParallelExtraction ()
+		throws IOException
+	{
+		File archive = createParallelArchive();
+		FilterConfigurationMapper trackedMapper = new FilterConfigurationMapper();
+		trackedMapper.addConfigurations(TrackedXLIFFFilter.class.getName());
+		TrackedXLIFFFilter.OPENED.clear();
+		try ( ArchiveFilter filter = new ArchiveFilter() ) {
+			Parameters params = (Parameters)filter.getParameters();
+			params.setFileNames("*.xlf");
+			params.setConfigIds("okf_xliff");
+			params.setThreadCount(3);
+			filter.setFilterConfigurationMapper(trackedMapper);
+			filter.open(new RawDocument(archive.toURI(), "UTF-8", EN, ESES));
+			// Stop in the second file: the next files are extracted or being extracted
+			int subDocs = 0;
+			while ( filter.hasNext() && ( subDocs < 2 )) {
+				if ( filter.next().isStartSubDocument() ) subDocs++;
+			}
+		}
+		// The filters of the files not sent have been closed too
+		assertTrue(TrackedXLIFFFilter.OPENED.isEmpty());
+	}
+
+	/**
+	 * XLIFF filter that keeps track of the instances opened and not closed yet.
+	 */
+	public static class TrackedXLIFFFilter extends XLIFFFilter {
+
+		static final Set<IFilter> OPENED = Collections.synchronizedSet(new HashSet<IFilter>());
+
+		@Override
+		public void open (RawDocument input,
+			boolean generateSkeleton,
+			IITSDataStore datastore)
+		{
+			OPENED.add(this);
+			super.open(input, generateSkeleton, datastore);
+		}
+
+		@Override
+		public void close () {
+			super.close();
+			OPENED.remove(this);
+		}
+	}
+
+	/**
+	 * Creates an archive with many small files, some of them not extracted.
+	 */
+	private File createParallelArchive ()
+		throws IOException
+	{
+		File archive = root.out("/parallel.archive").asFile();
+		archive.getParentFile().mkdirs();
+		try ( ZipFile source = new ZipFile(root.in("/test3_es.archive").asFile());
+			ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive)) )
+		{
+			for ( int i=0; i<30; i++ ) {
+				Enumeration<? extends ZipEntry> entries = source.entries();
+				while ( entries.hasMoreElements() ) {
+					ZipEntry entry = entries.nextElement();
+					zos.putNextEntry(new ZipEntry(i + "/" + entry.getName()));
+					zos.write(StreamUtil.inputStreamToBytes(source.getInputStream(entry)));
+					zos.closeEntry();
+				}
+				zos.putNextEntry(new ZipEntry(i + "/readme.txt"));
+				zos.write(("file " + i).getBytes("UTF-8"));
+				zos.closeEntry();
+			}
+		}
+		return archive;
+	}
+
+	private String writeArchive (File archive,
+		int threadCount,
+		String outName)
+		throws IOException
+	{
+		File outFile = root.out("/" + outName + ".archive").asFile();
+		try ( ArchiveFilter filter = new ArchiveFilter() ) {
+			Parameters params = (Parameters)filter.getParameters();
+			params.setFileNames("*.xlf, *.tmx");
+			params.setConfigIds("okf_xliff, okf_tmx");
+			params.setThreadCount(threadCount);
+			filter.setFilterConfigurationMapper(fcMapper);
+			filter.open(new RawDocument(archive.toURI(), "UTF-8", EN, ESES));
+			IFilterWriter writer = filter.createFilterWriter();
+			writer.setOptions(ESES, "UTF-8");
+			writer.setOutput(outFile.getAbsolutePath());
+			while ( filter.hasNext() ) {
+				writer.handleEvent(filter.next());
+			}
+			writer.close();
+		}
+		StringBuilder tmp = new StringBuilder();
+		try ( ZipFile zipFile = new ZipFile(outFile) ) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while ( entries.hasMoreElements() ) {
+				ZipEntry entry = entries.nextElement();
+				tmp.append(entry.getName()).append('\n');
+				tmp.append(new String(StreamUtil.inputStreamToBytes(zipFile.getInputStream(entry)), "UTF-8"));
+			}
+		}
+		return tmp.toString();
+	}
+
+	private String listEvents (File archive,
+		int threadCount)
+	{
+		StringBuilder tmp = new StringBuilder();
+		try ( ArchiveFilter filter = new ArchiveFilter() ) {
+			Parameters params = (Parameters)filter.getParameters();
+			params.setFileNames("*.xlf, *.tmx");
+			params.setConfigIds("okf_xliff, okf_tmx");
+			params.setThreadCount(threadCount);
+			filter.setFilterConfigurationMapper(fcMapper);
+			filter.open(new RawDocument(archive.toURI(), "UTF-8", EN, ESES));
+			while ( filter.hasNext() ) {
+				Event event = filter.next();
+				tmp.append(event.getEventType());
+				switch ( event.getEventType() ) {
+				case START_SUBDOCUMENT:
+				case DOCUMENT_PART:
+					tmp.append(' ').append(event.getResource().getId());
+					if ( event.isStartSubDocument() ) {
+						tmp.append(' ').append(event.getStartSubDocument().getName());
+					}
+					break;
+				case TEXT_UNIT:
+					tmp.append(' ').append(event.getTextUnit().getSource().getCodedText());
+					break;
+				default:
+					break;
+				}
+				tmp.append('\n');
+			}
+		}
+		return tmp.toString();
+	}
 }
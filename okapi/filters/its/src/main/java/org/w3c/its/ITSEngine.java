@@ -341,7 +341,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 	{
 		try {
 			// Look for all script elements with ITS MIME type
-			XPathExpression expr = xpath.compile("//"+Namespaces.HTML_NS_PREFIX+":script[@type='"+ITS_MIMETYPE+"']");
+			XPathExpression expr = compileXPath("//"+Namespaces.HTML_NS_PREFIX+":script[@type='"+ITS_MIMETYPE+"']");
 			NodeList nl = (NodeList)expr.evaluate(hostDoc, XPathConstants.NODESET);
 			for ( int i=0; i<nl.getLength(); i++ ) {
 				// Process the rules in the order they are declared
@@ -372,7 +372,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 	{
 		try {
 			// Compile the namespaces
-			XPathExpression expr = xpath.compile("//*[@selector]//namespace::*");
+			XPathExpression expr = compileXPath("//*[@selector]//namespace::*");
 			NodeList nl = (NodeList)expr.evaluate(rulesDoc, XPathConstants.NODESET);
 			for ( int i=0; i<nl.getLength(); i++ ) {
 				String prefix = nl.item(i).getLocalName();
@@ -383,7 +383,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 			
 			// Compile the rules
 			// First: get the its:rules element(s)
-			expr = xpath.compile("//"+Namespaces.ITS_NS_PREFIX+":rules");
+			expr = compileXPath("//"+Namespaces.ITS_NS_PREFIX+":rules");
 			nl = (NodeList)expr.evaluate(rulesDoc, XPathConstants.NODESET);
 			if ( nl.getLength() == 0 ) return; // Nothing to do
 			
@@ -471,7 +471,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 				}
 
 				// Process each rule inside its:rules
-				expr = xpath.compile("//"+Namespaces.ITS_NS_PREFIX+":*|//"+Namespaces.ITSX_NS_PREFIX+":*");
+				expr = compileXPath("//"+Namespaces.ITS_NS_PREFIX+":*|//"+Namespaces.ITSX_NS_PREFIX+":*");
 				NodeList nl2 = (NodeList)expr.evaluate(rulesElem, XPathConstants.NODESET);
 				if ( nl2.getLength() == 0 ) break; // Nothing to do, move to next its:rules
 				
@@ -1506,7 +1506,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 		    	
 		    	// Get the selected nodes for the rule
 		    	String data1;
-				XPathExpression expr = xpath.compile(rule.selector);
+				XPathExpression expr = compileXPath(rule.selector);
 				NodeList NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				
 				// Apply the rule specific action on the selected nodes
@@ -1900,10 +1900,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 		try {
 			if ( (dataCategories & IProcessor.DC_TRANSLATE) > 0 ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@translate");
+					expr = compileXPath("//*/@translate");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":translate|//"+Namespaces.ITS_NS_PREFIX+":span/@translate");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":translate|//"+Namespaces.ITS_NS_PREFIX+":span/@translate");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -1930,10 +1930,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 				if ( isHTML5 ) {
 					//TODO: Do we need more than this?
 					// Values for HTML5 for sir are ltr|rtl|auto (not rlo|lro)
-					expr = xpath.compile("//*/@dir");
+					expr = compileXPath("//*/@dir");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":dir|//"+Namespaces.ITS_NS_PREFIX+":span/@dir");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":dir|//"+Namespaces.ITS_NS_PREFIX+":span/@dir");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -1955,10 +1955,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			
 			if ( (dataCategories & IProcessor.DC_TERMINOLOGY) > 0 ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-term");
+					expr = compileXPath("//*/@its-term");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":term|//"+Namespaces.ITS_NS_PREFIX+":span/@term");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":term|//"+Namespaces.ITS_NS_PREFIX+":span/@term");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -1988,10 +1988,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 
 			if ( (dataCategories & IProcessor.DC_LOCNOTE) > 0 ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-loc-note|//*/@its-loc-note-ref");
+					expr = compileXPath("//*/@its-loc-note|//*/@its-loc-note-ref");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":locNote|//"+Namespaces.ITS_NS_PREFIX+":span/@locNote"
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":locNote|//"+Namespaces.ITS_NS_PREFIX+":span/@locNote"
 						+"|//*/@"+Namespaces.ITS_NS_PREFIX+":locNoteRef|//"+Namespaces.ITS_NS_PREFIX+":span/@locNoteRef");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
@@ -2021,10 +2021,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 
 			if ( (dataCategories & IProcessor.DC_LANGINFO) > 0 ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@lang|//*/@xmlU00003Alang"); // correct: //*/@"+XML_NS_PREFIX+":lang");
+					expr = compileXPath("//*/@lang|//*/@xmlU00003Alang"); // correct: //*/@"+XML_NS_PREFIX+":lang");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.XML_NS_PREFIX+":lang");
+					expr = compileXPath("//*/@"+Namespaces.XML_NS_PREFIX+":lang");
 				}
 				//TODO: xml;lang takes precedence over lang in XHTML if both are on the same node
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
@@ -2053,10 +2053,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Local withinText attribute (ITS 2.0 only)
 			if (( (dataCategories & IProcessor.DC_WITHINTEXT) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-within-text");
+					expr = compileXPath("//*/@its-within-text");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":withinText|//"+Namespaces.ITS_NS_PREFIX+":span/@withinText");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":withinText|//"+Namespaces.ITS_NS_PREFIX+":span/@withinText");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -2077,7 +2077,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 			}
 			
 			// xml:space always applied
-			expr = xpath.compile("//*/@"+Namespaces.XML_NS_PREFIX+":space");
+			expr = compileXPath("//*/@"+Namespaces.XML_NS_PREFIX+":space");
 			NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 			for ( int i=0; i<NL.getLength(); i++ ) {
 				attr = (Attr)NL.item(i);
@@ -2093,10 +2093,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			
 			// its:annotatorsRef always applied
 			if ( isHTML5 ) {
-				expr = xpath.compile("//*/@its-annotators-ref");
+				expr = compileXPath("//*/@its-annotators-ref");
 			}
 			else {
-				expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":annotatorsRef|//"+Namespaces.ITS_NS_PREFIX+":span/@annotatorsRef");
+				expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":annotatorsRef|//"+Namespaces.ITS_NS_PREFIX+":span/@annotatorsRef");
 			}
 			NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 			for ( int i=0; i<NL.getLength(); i++ ) {
@@ -2118,10 +2118,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Locale filter
 			if (( (dataCategories & IProcessor.DC_LOCFILTER) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-locale-filter-list");
+					expr = compileXPath("//*/@its-locale-filter-list");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":localeFilterList|//"+Namespaces.ITS_NS_PREFIX+":span/@localeFilterList");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":localeFilterList|//"+Namespaces.ITS_NS_PREFIX+":span/@localeFilterList");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -2141,7 +2141,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 			}
 			
 			// xml:id always applied
-			expr = xpath.compile("//*/@"+Namespaces.XML_NS_PREFIX+":id");
+			expr = compileXPath("//*/@"+Namespaces.XML_NS_PREFIX+":id");
 			NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 			for ( int i=0; i<NL.getLength(); i++ ) {
 				attr = (Attr)NL.item(i);
@@ -2155,10 +2155,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Localization quality issue
 			if (( (dataCategories & IProcessor.DC_LOCQUALITYISSUE) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-loc-quality-issue-type|//*/@its-loc-quality-issue-comment|//*/@its-loc-quality-issues-ref");
+					expr = compileXPath("//*/@its-loc-quality-issue-type|//*/@its-loc-quality-issue-comment|//*/@its-loc-quality-issues-ref");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityIssueType|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityIssueType"
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityIssueType|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityIssueType"
 						+"|//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityIssueComment|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityIssueComment"
 						+"|//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityIssuesRef|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityIssuesRef");
 				}
@@ -2199,14 +2199,14 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// provenance
 			if ( isVersion2() && ( (dataCategories & IProcessor.DC_PROVENANCE) > 0 )) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-person|//*/@its-org|//*/@its-tool"
+					expr = compileXPath("//*/@its-person|//*/@its-org|//*/@its-tool"
 						+ "|//*/@its-person-ref|//*/@its-org-ref|//*/@its-tool-ref"
 						+ "|//*/@its-rev-person|//*/@its-rev-org|//*/@its-rev-tool"
 						+ "|//*/@its-rev-person-ref|//*/@its-rev-org-ref|//*/@its-rev-tool-ref"
 						+ "|//*/@its-prov-ref|//*/@its-provenance-records-ref");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":person|//"+Namespaces.ITS_NS_PREFIX+":span/@person"
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":person|//"+Namespaces.ITS_NS_PREFIX+":span/@person"
 						+ "|//*/@"+Namespaces.ITS_NS_PREFIX+":personRef|//"+Namespaces.ITS_NS_PREFIX+":span/@personRef"
 						+ "|//*/@"+Namespaces.ITS_NS_PREFIX+":org|//"+Namespaces.ITS_NS_PREFIX+":span/@org"
 						+ "|//*/@"+Namespaces.ITS_NS_PREFIX+":orgRef|//"+Namespaces.ITS_NS_PREFIX+":span/@orgRef"
@@ -2259,10 +2259,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Text Analysis
 			if (( (dataCategories & IProcessor.DC_TEXTANALYSIS) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-ta-class-ref|//*/@its-ta-ident|//*/@its-ta-ident-ref");
+					expr = compileXPath("//*/@its-ta-class-ref|//*/@its-ta-ident|//*/@its-ta-ident-ref");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":taClassRef|//"+Namespaces.ITS_NS_PREFIX+":span/@taClassRef"
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":taClassRef|//"+Namespaces.ITS_NS_PREFIX+":span/@taClassRef"
 						+"|//*/@"+Namespaces.ITS_NS_PREFIX+":taIdent|//"+Namespaces.ITS_NS_PREFIX+":span/@taIdent"
 						+"|//*/@"+Namespaces.ITS_NS_PREFIX+":taIdentRef|//"+Namespaces.ITS_NS_PREFIX+":span/@taIdentRef");
 				}
@@ -2297,10 +2297,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Localization Quality Rating
 			if (( (dataCategories & IProcessor.DC_LOCQUALITYRATING) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-loc-quality-rating-score|//*/@its-loc-quality-rating-vote");
+					expr = compileXPath("//*/@its-loc-quality-rating-score|//*/@its-loc-quality-rating-vote");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityRatingScore|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityRatingScore"
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityRatingScore|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityRatingScore"
 						+"|//*/@"+Namespaces.ITS_NS_PREFIX+":locQualityRatingVote|//"+Namespaces.ITS_NS_PREFIX+":span/@locQualityRatingVote");
 				}
 
@@ -2330,10 +2330,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Allowed characters
 			if (( (dataCategories & IProcessor.DC_ALLOWEDCHARS) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-allowed-characters");
+					expr = compileXPath("//*/@its-allowed-characters");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":allowedCharacters|//"+Namespaces.ITS_NS_PREFIX+":span/@allowedCharacters");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":allowedCharacters|//"+Namespaces.ITS_NS_PREFIX+":span/@allowedCharacters");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -2355,10 +2355,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// Storage size
 			if (( (dataCategories & IProcessor.DC_STORAGESIZE) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-storage-size");
+					expr = compileXPath("//*/@its-storage-size");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":storageSize|//"+Namespaces.ITS_NS_PREFIX+":span/@storageSize");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":storageSize|//"+Namespaces.ITS_NS_PREFIX+":span/@storageSize");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -2387,10 +2387,10 @@ public class ITSEngine implements IProcessor, ITraversal {
 			// MT Confidence
 			if (( (dataCategories & IProcessor.DC_MTCONFIDENCE) > 0 ) && isVersion2() ) {
 				if ( isHTML5 ) {
-					expr = xpath.compile("//*/@its-mt-confidence");
+					expr = compileXPath("//*/@its-mt-confidence");
 				}
 				else {
-					expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":mtConfidence|//"+Namespaces.ITS_NS_PREFIX+":span/@mtConfidence");
+					expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":mtConfidence|//"+Namespaces.ITS_NS_PREFIX+":span/@mtConfidence");
 				}
 				NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 				for ( int i=0; i<NL.getLength(); i++ ) {
@@ -2701,6 +2701,19 @@ public class ITSEngine implements IProcessor, ITraversal {
 		return data;
 	}
 
+	/**
+	 * Compiles an expression with the XPath object of this engine.
+	 * The compiled expressions are cached so they can be re-used across documents.
+	 * @param expression the expression to compile.
+	 * @return the compiled expression.
+	 * @throws XPathExpressionException if the expression cannot be compiled.
+	 */
+	private XPathExpression compileXPath (String expression)
+		throws XPathExpressionException
+	{
+		return XPathCache.compile(xpath, nsContext, expression);
+	}
+
 	private XPath createXPath () {
 		XPath xpath = xpFact.newXPath();
 		NSContextManager nsc = new NSContextManager();
@@ -3353,7 +3366,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 	private boolean isVersion2 () throws XPathExpressionException {
 		// If the version is not detected yet: detect it.
 		if ( version.equals("0") ) {
-			XPathExpression expr = xpath.compile("//*/@"+Namespaces.ITS_NS_PREFIX+":version|//"+Namespaces.ITS_NS_PREFIX+":span/@version");
+			XPathExpression expr = compileXPath("//*/@"+Namespaces.ITS_NS_PREFIX+":version|//"+Namespaces.ITS_NS_PREFIX+":span/@version");
 			NodeList NL = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 			if (( NL == null ) || ( NL.getLength() == 0 )) {
 				// No version detected: we assume it's a 2.0 behavior
@@ -3399,7 +3412,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 			if ( pointer.contains("id(") ) {
 				markDefaultIdentifiers();
 			}
-			XPathExpression expr = xpath.compile(pointer);
+			XPathExpression expr = compileXPath(pointer);
 			NodeList list = (NodeList)expr.evaluate(node, XPathConstants.NODESET);
 			if (( list == null ) || ( list.getLength() == 0 )) {
 				logger.debug("No node match the pointer '{}'.", pointer);
@@ -3429,7 +3442,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 	{
 		if ( defaultIdsDone ) return;
 		// For xml:id (for HTML5 too, just in case it's used)
-		XPathExpression expr = xpath.compile("//*[@xml:id]");
+		XPathExpression expr = compileXPath("//*[@xml:id]");
 		NodeList list = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 		if ( list != null ) {
 			for ( int i=0; i<list.getLength(); i++ ) {
@@ -3439,7 +3452,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 		}
 		// For HTML id
 		if ( isHTML5 ) {
-			expr = xpath.compile("//*[@xml:id]");
+			expr = compileXPath("//*[@xml:id]");
 			list = (NodeList)expr.evaluate(doc, XPathConstants.NODESET);
 			if ( list != null ) {
 				for ( int i=0; i<list.getLength(); i++ ) {
@@ -3458,7 +3471,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 			if ( expression.contains("id(") ) {
 				markDefaultIdentifiers();
 			}
-			XPathExpression expr = xpath.compile(expression);
+			XPathExpression expr = compileXPath(expression);
 			return (String)expr.evaluate(node, XPathConstants.STRING);
 		}
 		catch (XPathExpressionException e) {
@@ -3474,7 +3487,7 @@ public class ITSEngine implements IProcessor, ITraversal {
 			if ( expression.contains("id(") ) {
 				markDefaultIdentifiers();
 			}
-			XPathExpression expr = xpath.compile(expression);
+			XPathExpression expr = compileXPath(expression);
 			NodeList nl = (NodeList)expr.evaluate(node, XPathConstants.NODESET);
 			for ( int i=0; i<nl.getLength(); i++ ) {
 				Node tmpNode = nl.item(i);
@@ -19,6 +19,8 @@ package org.w3c.its;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
@@ -31,6 +33,7 @@ import javax.xml.namespace.NamespaceContext;
 public class NSContextManager implements NamespaceContext {
 
 	private Hashtable<String, String> table;
+	private String signature;
 	
 	public NSContextManager () {
 		table = new Hashtable<String, String>();
@@ -80,5 +83,22 @@ public class NSContextManager implements NamespaceContext {
 	public void addNamespace (String prefix,
 		String uri) {
 		table.put(prefix, uri);
+		signature = null;
+	}
+
+	/**
+	 * Gets a string representing all the prefix/uri pairs of this manager.
+	 * Two managers with the same pairs have the same signature.
+	 * @return the signature of this manager.
+	 */
+	public String getSignature () {
+		if ( signature == null ) {
+			StringBuilder tmp = new StringBuilder();
+			for ( Map.Entry<String, String> entry : new TreeMap<String, String>(table).entrySet() ) {
+				tmp.append(entry.getKey()).append('=').append(entry.getValue()).append(' ');
+			}
+			signature = tmp.toString();
+		}
+		return signature;
 	}
 }
@@ -0,0 +1,92 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package org.w3c.its;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * Cache of the compiled XPath expressions used by the {@link ITSEngine} objects.
+ * <p>The expressions are keyed by their text and by the namespace bindings they are compiled with,
+ * so documents sharing the same rules re-use the expressions compiled for the previous documents.
+ * <p>{@link XPathExpression} objects are not thread-safe: each thread has its own cache.
+ * Expressions using variables are not cached, because they are bound to the variable
+ * resolver of the engine that compiled them.
+ */
+class XPathCache {
+
+	/**
+	 * Maximum number of expressions cached per thread.
+	 */
+	static final int MAX_ENTRIES = 1024;
+
+	private static final ThreadLocal<Map<String, XPathExpression>> CACHE = new ThreadLocal<Map<String, XPathExpression>>() {
+		@Override
+		protected Map<String, XPathExpression> initialValue () {
+			// Access-ordered map to drop the least recently used expressions first
+			return new LinkedHashMap<String, XPathExpression>(64, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry (Map.Entry<String, XPathExpression> eldest) {
+					return size() > MAX_ENTRIES;
+				}
+			};
+		}
+	};
+
+	private XPathCache () {
+		// Not to be instantiated
+	}
+
+	/**
+	 * Gets the compiled form of a given expression, compiling it if needed.
+	 * @param xpath the XPath object to use to compile the expression.
+	 * @param nsContext the namespace context set for the given XPath object.
+	 * @param expression the expression to compile.
+	 * @return the compiled expression.
+	 * @throws XPathExpressionException if the expression cannot be compiled.
+	 */
+	static XPathExpression compile (XPath xpath,
+		NSContextManager nsContext,
+		String expression)
+		throws XPathExpressionException
+	{
+		if ( expression.indexOf('$') != -1 ) {
+			return xpath.compile(expression);
+		}
+		String key = nsContext.getSignature() + '\n' + expression;
+		Map<String, XPathExpression> map = CACHE.get();
+		XPathExpression expr = map.get(key);
+		if ( expr == null ) {
+			expr = xpath.compile(expression);
+			map.put(key, expr);
+		}
+		return expr;
+	}
+
+	/**
+	 * Removes all the expressions cached for the current thread.
+	 */
+	static void clear () {
+		CACHE.get().clear();
+	}
+
+}
@@ -0,0 +1,115 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package org.w3c.its;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+
+import net.sf.okapi.common.Namespaces;
+import net.sf.okapi.common.Util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+@RunWith(JUnit4.class)
+public class XPathCacheTest {
+
+	private NSContextManager nsc1;
+	private NSContextManager nsc2;
+	private XPath xpath1;
+	private XPath xpath2;
+
+	@Before
+	public void setUp () {
+		XPathCache.clear();
+		nsc1 = new NSContextManager();
+		nsc1.addNamespace("x", "urn:one");
+		xpath1 = Util.createXPathFactory().newXPath();
+		xpath1.setNamespaceContext(nsc1);
+		nsc2 = new NSContextManager();
+		nsc2.addNamespace("x", "urn:two");
+		xpath2 = Util.createXPathFactory().newXPath();
+		xpath2.setNamespaceContext(nsc2);
+	}
+
+	@Test
+	public void testSameExpressionIsReused () throws Exception {
+		XPathExpression expr1 = XPathCache.compile(xpath1, nsc1, "//x:p");
+		assertSame(expr1, XPathCache.compile(xpath1, nsc1, "//x:p"));
+		// Same bindings in a different context
+		NSContextManager nsc3 = new NSContextManager();
+		nsc3.addNamespace("x", "urn:one");
+		assertSame(expr1, XPathCache.compile(xpath1, nsc3, "//x:p"));
+	}
+
+	@Test
+	public void testDifferentNamespacesAreNotShared () throws Exception {
+		XPathExpression expr1 = XPathCache.compile(xpath1, nsc1, "//x:p");
+		XPathExpression expr2 = XPathCache.compile(xpath2, nsc2, "//x:p");
+		assertNotSame(expr1, expr2);
+		DocumentBuilderFactory fact = DocumentBuilderFactory.newInstance();
+		fact.setNamespaceAware(true);
+		Document doc = fact.newDocumentBuilder().parse(new InputSource(
+			new StringReader("<d><p xmlns='urn:one'/><p xmlns='urn:two'/><p xmlns='urn:two'/></d>")));
+		assertEquals(1, ((NodeList)expr1.evaluate(doc, XPathConstants.NODESET)).getLength());
+		assertEquals(2, ((NodeList)expr2.evaluate(doc, XPathConstants.NODESET)).getLength());
+		// Adding a namespace changes the signature
+		nsc1.addNamespace(Namespaces.ITS_NS_PREFIX, Namespaces.ITS_NS_URI);
+		assertNotSame(expr1, XPathCache.compile(xpath1, nsc1, "//x:p"));
+	}
+
+	@Test
+	public void testVariablesAreNotCached () throws Exception {
+		XPathExpression expr = XPathCache.compile(xpath1, nsc1, "//x:p[@a=$var]");
+		assertNotSame(expr, XPathCache.compile(xpath1, nsc1, "//x:p[@a=$var]"));
+	}
+
+	@Test
+	public void testCachePerThread () throws Exception {
+		final XPathExpression expr = XPathCache.compile(xpath1, nsc1, "//x:p");
+		final AtomicReference<XPathExpression> other = new AtomicReference<XPathExpression>();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run () {
+				try {
+					other.set(XPathCache.compile(xpath1, nsc1, "//x:p"));
+				}
+				catch ( Throwable e ) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		assertNotSame(expr, other.get());
+	}
+
+}
@@ -24,6 +24,7 @@ import net.sf.okapi.common.filters.InlineCodeFinder;
 import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.uidescription.EditorDescription;
 import net.sf.okapi.common.uidescription.IEditorDescriptionProvider;
+import net.sf.okapi.common.uidescription.SpinInputPart;
 import net.sf.okapi.core.simplifierrules.ParseException;
 import net.sf.okapi.core.simplifierrules.SimplifierRules;
 
@@ -35,6 +36,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 	public static final String PRESERVE_WHITESPACE = "preserveWhitespace";
 	public static final String LINE_SEPARATOR = "lineSeparator";
 	public static final String PARAGRAPH_SEPARATOR = "paragraphSeparator";
+	public static final String PAGES_PER_CHUNK = "pagesPerChunk";
 
 	public InlineCodeFinder codeFinder;
 
@@ -90,6 +92,14 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		setString(PARAGRAPH_SEPARATOR, value);
 	}
 	
+	public int getPagesPerChunk() {
+		return getInteger(PAGES_PER_CHUNK);
+	}
+
+	public void setPagesPerChunk(int value) {
+		setInteger(PAGES_PER_CHUNK, value);
+	}
+	
 	public void reset () {
 		super.reset();
 		codeFinder = new InlineCodeFinder();
@@ -99,6 +109,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		setLineSeparator("\n");
 		setParagraphSeparator("\n");
 		setPreserveWhitespace(false);
+		setPagesPerChunk(10);
 		codeFinder.setSample("&name; <tag></at><tag/> <tag attr='val'> </tag=\"val\">");
 		codeFinder.setUseAllRulesWhenTesting(true);
 		codeFinder.addRule("</?([A-Z0-9a-z]*)\\b[^>]*>");
@@ -141,6 +152,7 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		desc.add(INDENT_THRESHOLD, "Amount of indent needed to define a new paragraph (Default=2.0)", null);
 		desc.add(SPACING_TOLERANCE, "Amount of spacing needed to define a white space character (Default=0.5)", null);
 		desc.add(PRESERVE_WHITESPACE, "Preserve whitespace", null);
+		desc.add(PAGES_PER_CHUNK, "Number of pages to extract at a time", null);
 		return desc;
 	}
 
@@ -153,6 +165,8 @@ public class Parameters extends StringParameters implements IEditorDescriptionPr
 		desc.addTextInputPart(paramsDesc.get(SPACING_TOLERANCE));		
 		desc.addSeparatorPart();		
 		desc.addCheckboxPart(paramsDesc.get(PRESERVE_WHITESPACE));		
+		SpinInputPart sip = desc.addSpinInputPart(paramsDesc.get(PAGES_PER_CHUNK));
+		sip.setRange(1, 1000);
 		return desc;
 	}
 }
@@ -16,8 +16,12 @@
 
 package net.sf.okapi.filters.pdf;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,6 +31,7 @@ import org.apache.pdfbox.text.PDFTextStripper;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.MimeTypeMapper;
 import net.sf.okapi.common.UsingParameters;
 import net.sf.okapi.common.encoder.EncoderManager;
@@ -55,6 +60,8 @@ public class PdfFilter implements IFilter {
 	private EncoderManager encoderManager;
 	private RawDocument input;
 	private ParaPlainTextFilter textFilter;
+	private ExtractedTextDocument textDocument;
+	private PdfPageStream pageStream;
 
 	public PdfFilter() {
 		params = new Parameters();
@@ -72,6 +79,11 @@ public class PdfFilter implements IFilter {
 		if (textFilter != null) {
 			textFilter.close();
 		}
+		if (textDocument != null) {
+			textDocument.close();
+			textDocument = null;
+		}
+		pageStream = null;
 	}
 
 	@Override
@@ -146,7 +158,6 @@ public class PdfFilter implements IFilter {
 		}
 
 		PDDocument pdf = null;
-		StringWriter pdfWriter = new StringWriter();
 		try {
 			// load the PDF file. Only use MAX_BYTES memory, then offload to
 			// temp file
@@ -156,15 +167,16 @@ public class PdfFilter implements IFilter {
 			textStripper.setParagraphEnd(params.getParagraphSeparator());
 			textStripper.setIndentThreshold(Float.parseFloat(params.getIndentThreshold()));
 			textStripper.setSpacingTolerance(Float.parseFloat(params.getSpacingTolerance()));
-			textStripper.writeText(pdf, pdfWriter);
+
+			// the text is extracted a few pages at a time, as the plain text filter reads it
+			pageStream = new PdfPageStream(pdf, textStripper, params.getPagesPerChunk());
+			pdf = null; // now closed with the stream
 
 			// we have PDF text, now call Plain text filter on the contents
 			textFilter = new ParaPlainTextFilter();
-			@SuppressWarnings("resource")
-			RawDocument rd = new RawDocument(pdfWriter.toString(), input.getSourceLocale());
-			rd.setFilterConfigId(PlainTextFilter.FILTER_NAME);
-			rd.setEncoding(input.getEncoding());
-			rd.setId(input.getId());
+			textDocument = new ExtractedTextDocument(pageStream, input.getSourceLocale());
+			textDocument.setFilterConfigId(PlainTextFilter.FILTER_NAME);
+			textDocument.setId(input.getId());
 			
 			// transfer over parameters and setup for whitespace trimming on the assumption
 			// the PDF text extractor will mess up whitespace anyway
@@ -179,13 +191,14 @@ public class PdfFilter implements IFilter {
 			p.codeFinderRules = params.codeFinder.toString();
 			
 			textFilter.setParameters(p);
-			textFilter.open(rd, generateSkeleton);
+			textFilter.open(textDocument, generateSkeleton);
 		} catch (IOException e) {
 			throw new OkapiIOException("Error parsing PDF file", e);
 		} finally {
 			try {
-				pdfWriter.close();
-				pdf.close();
+				if (pdf != null) {
+					pdf.close();
+				}
 			} catch (IOException e) {
 				throw new OkapiIOException("Error closing the PDF parser.", e);
 			}
@@ -201,4 +214,78 @@ public class PdfFilter implements IFilter {
 	public Event next() {
 		return textFilter.next();
 	}
+
+	/**
+	 * Gets the number of pages of the current document extracted so far.
+	 * @return the number of pages extracted so far (0 if no document is open).
+	 */
+	public int getExtractedPageCount() {
+		return (pageStream == null) ? 0 : pageStream.getExtractedPageCount();
+	}
+
+	/**
+	 * Raw document for the plain text filter: its content is read from the text extracted
+	 * from the PDF pages, as the filter reads it, instead of from a string with the whole text.
+	 */
+	private static class ExtractedTextDocument extends RawDocument {
+
+		private final MarkableStream stream;
+		private Reader reader;
+
+		public ExtractedTextDocument(PdfPageStream pageStream, LocaleId sourceLocale) {
+			// The content given here is not used: it just sets the encoding to UTF-16
+			super("", sourceLocale);
+			// The encoding and line-break detection need mark/reset
+			stream = new MarkableStream(pageStream);
+		}
+
+		@Override
+		public InputStream getStream() {
+			resetStream();
+			return stream;
+		}
+
+		@Override
+		public Reader getReader() {
+			resetStream();
+			reader = new InputStreamReader(stream, StandardCharsets.UTF_16);
+			return reader;
+		}
+
+		@Override
+		public void close() {
+			super.close();
+			try {
+				stream.close();
+			} catch (IOException e) {
+				throw new OkapiIOException("Error closing the PDF parser.", e);
+			}
+		}
+
+		// Same semantics as the stream of a RawDocument: go back to the last mark, if any
+		private void resetStream() {
+			if (!stream.isMarked()) {
+				return; // No mark yet: use the current position
+			}
+			try {
+				stream.reset();
+			} catch (IOException e) {
+				throw new OkapiIOException("Error resetting the text extracted from the PDF file.", e);
+			}
+		}
+	}
+
+	/**
+	 * Buffered stream that tells whether it has a valid mark.
+	 */
+	private static class MarkableStream extends BufferedInputStream {
+
+		public MarkableStream(InputStream input) {
+			super(input);
+		}
+
+		public synchronized boolean isMarked() {
+			return markpos >= 0;
+		}
+	}
 }
@@ -0,0 +1,126 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.filters.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+/**
+ * Input stream providing the text of a PDF document in UTF-16 (big-endian, with a BOM).
+ * <p>The text is extracted a given number of pages at a time, only when the previous
+ * pages have been read, so only the text of the current range of pages is held in memory.
+ * The result is the same as the text extracted from all the pages at once.
+ * <p>Closing this stream closes the PDF document.
+ */
+public class PdfPageStream extends InputStream {
+
+	private static final byte[] BOM = {(byte)0xFE, (byte)0xFF};
+
+	private final PDDocument pdf;
+	private final PDFTextStripper stripper;
+	private final int pagesPerChunk;
+	private final int pageCount;
+	private int nextPage = 1;
+	private byte[] data = BOM;
+	private int pos = 0;
+	private boolean closed;
+
+	/**
+	 * Creates a new stream for a given PDF document.
+	 * @param pdf the PDF document to extract the text from.
+	 * @param stripper the text stripper to use (it must be set up already, its start and end pages are
+	 * modified by this stream).
+	 * @param pagesPerChunk the number of pages to extract at a time.
+	 */
+	public PdfPageStream (PDDocument pdf,
+		PDFTextStripper stripper,
+		int pagesPerChunk)
+	{
+		this.pdf = pdf;
+		this.stripper = stripper;
+		this.pagesPerChunk = Math.max(1, pagesPerChunk);
+		pageCount = pdf.getNumberOfPages();
+	}
+
+	/**
+	 * Gets the number of pages extracted so far.
+	 * @return the number of pages extracted so far.
+	 */
+	public int getExtractedPageCount () {
+		return nextPage-1;
+	}
+
+	@Override
+	public int read () throws IOException {
+		if (( pos >= data.length ) && !fill() ) return -1;
+		return data[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read (byte[] buf,
+		int off,
+		int len) throws IOException
+	{
+		if ( len == 0 ) return 0;
+		if (( pos >= data.length ) && !fill() ) return -1;
+		int count = Math.min(len, data.length-pos);
+		System.arraycopy(data, pos, buf, off, count);
+		pos += count;
+		return count;
+	}
+
+	@Override
+	public int available () {
+		return data.length-pos;
+	}
+
+	@Override
+	public void close () throws IOException {
+		if ( closed ) return;
+		closed = true;
+		data = BOM;
+		pos = data.length;
+		pdf.close();
+	}
+
+	/**
+	 * Extracts the text of the next range of pages.
+	 * @return true if some text was extracted, false if there are no more pages.
+	 * @throws IOException if an error occurs when extracting the text.
+	 */
+	private boolean fill () throws IOException {
+		if ( closed ) return false;
+		while ( nextPage <= pageCount ) {
+			int endPage = Math.min(pageCount, nextPage+pagesPerChunk-1);
+			StringWriter writer = new StringWriter();
+			stripper.setStartPage(nextPage);
+			stripper.setEndPage(endPage);
+			stripper.writeText(pdf, writer);
+			nextPage = endPage+1;
+			data = writer.toString().getBytes(StandardCharsets.UTF_16BE);
+			pos = 0;
+			if ( data.length > 0 ) return true;
+		}
+		return false;
+	}
+
+}
@@ -20,20 +20,27 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
+import java.io.InputStreamReader;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import net.sf.okapi.common.Event;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.filters.FilterConfiguration;
 import net.sf.okapi.common.filters.FilterTestDriver;
 import net.sf.okapi.common.filters.InputDocument;
 import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.RawDocument;
 
 @RunWith(JUnit4.class)
 public class PdfFilterTest {
@@ -103,4 +110,70 @@ public class PdfFilterTest {
 		first = FilterTestDriver.getTextUnit(filter, new InputDocument(url.toURI().getPath(), null), "UTF-8", locEN, locEN, 6);
 		assertTrue(first.getSource().getFirstContent().toString().startsWith("This document describes how the TAUS Dynamic Quality Framework"));
 	}
+
+	@Test
+	public void testPageStreamText() throws Exception {
+		for (String name : new String[] {"/PALC_2011_LT.pdf", "/OmegaT_documentation_en.PDF", "/TAUS-QualityDashboard-September.pdf"}) {
+			PDDocument pdf = PDDocument.load(PdfFilterTest.class.getResourceAsStream(name));
+			try {
+				String expected = new PDFTextStripper().getText(pdf);
+				for (int pages : new int[] {1, 3}) {
+					PdfPageStream stream = new PdfPageStream(pdf, new PDFTextStripper(), pages);
+					InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_16);
+					StringBuilder tmp = new StringBuilder();
+					char[] buf = new char[1024];
+					int n;
+					while ((n = reader.read(buf)) != -1) {
+						tmp.append(buf, 0, n);
+					}
+					assertEquals(name, expected, tmp.toString());
+					assertEquals(pdf.getNumberOfPages(), stream.getExtractedPageCount());
+				}
+			} finally {
+				pdf.close();
+			}
+		}
+	}
+
+	@Test
+	public void testPagesPerChunk() throws URISyntaxException {
+		URL url = PdfFilterTest.class.getResource("/OmegaT_documentation_en.PDF");
+		List<String> expected = getTextUnits(url, 1000);
+		assertTrue(expected.size() > 100);
+		assertEquals(expected, getTextUnits(url, 1));
+		assertEquals(expected, getTextUnits(url, 7));
+	}
+
+	@Test
+	public void testIncrementalExtraction() throws URISyntaxException {
+		URL url = PdfFilterTest.class.getResource("/OmegaT_documentation_en.PDF");
+		filter.getParameters().setPagesPerChunk(1);
+		filter.open(new RawDocument(url.toURI(), "UTF-8", locEN));
+		try {
+			// The first text unit comes before the last pages are extracted
+			while (filter.hasNext()) {
+				if (filter.next().isTextUnit()) break;
+			}
+			assertTrue(filter.getExtractedPageCount() < 10);
+		} finally {
+			filter.close();
+		}
+	}
+
+	private List<String> getTextUnits(URL url, int pagesPerChunk) throws URISyntaxException {
+		filter.getParameters().setPagesPerChunk(pagesPerChunk);
+		List<String> list = new ArrayList<String>();
+		filter.open(new RawDocument(url.toURI(), "UTF-8", locEN));
+		try {
+			while (filter.hasNext()) {
+				Event event = filter.next();
+				if (event.isTextUnit()) {
+					list.add(event.getTextUnit().getSource().toString());
+				}
+			}
+		} finally {
+			filter.close();
+		}
+		return list;
+	}
 }
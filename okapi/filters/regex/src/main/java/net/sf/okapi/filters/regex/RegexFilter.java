@@ -16,9 +16,9 @@
 
 package net.sf.okapi.filters.regex;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -62,6 +62,7 @@ import net.sf.okapi.common.skeleton.ISkeletonWriter;
 public class RegexFilter implements IFilter {
 
 	private static String MIMETYPE = "text/x-regex";
+	private static final int CHUNKSIZE = 131072;
 	
 	private boolean canceled;
 	private Parameters params;
@@ -81,6 +82,14 @@ public class RegexFilter implements IFilter {
 	private boolean hasUTF8BOM;
 	private EncoderManager encoderManager;
 	private RawDocument input;
+	private RuleScanner scanner;
+	private Reader reader;
+	private char[] buffer;
+	private boolean eof;
+	private boolean carryCR;
+	private int chunkSize = CHUNKSIZE;
+	private int overlap;
+	private int maxPending;
 	
 	public RegexFilter () {
 		params = new Parameters();
@@ -95,6 +104,8 @@ public class RegexFilter implements IFilter {
 			input.close();
 		}
 		inputText = null;
+		scanner = null;
+		closeReader();
 		parseState = 0;
 	}
 
@@ -178,23 +189,33 @@ public class RegexFilter implements IFilter {
 		// Get the first best match among the rules
 		// trying to match expression
 		Rule bestRule;
-		int maxPos = inputText.length() + 99;
-		int bestPosition = maxPos;
+		int bestPosition;
 		MatchResult result = null;
 		
 		while ( true ) {
-			bestRule = null;
-			for ( Rule rule : params.getRules() ) {
-				Matcher m = rule.pattern.matcher(inputText);
-				if ( m.find(startSearch) ) {
-					if ( m.start() < bestPosition ) {
-						bestPosition = m.start();
-						bestRule = rule;
+			bestRule = scanner.find(inputText, startSearch);
+			if ( !eof ) {
+				if ( bestRule == null ) {
+					if ( inputText.length()-startSkl > maxPending ) {
+						// Send the part of the skeleton that is too far back to be in a match
+						int cut = inputText.length()-overlap;
+						addSkeletonToQueue(inputText.substring(startSkl, cut), false);
+						startSkl = cut;
+						startSearch = Math.max(startSearch, cut);
+						readInput();
+						return nextEvent();
 					}
+					readInput();
+					continue;
+				}
+				if ( scanner.hitEnd() && ( inputText.length()-scanner.getStart() < overlap )) {
+					// The match may be different with more input
+					readInput();
+					continue;
 				}
 			}
-			
 			if ( bestRule != null ) {
+				bestPosition = scanner.getStart();
 				// Get the matching result
 				Matcher m = bestRule.pattern.matcher(inputText);
 				if ( m.find(bestPosition) ) {
@@ -203,8 +224,11 @@ public class RegexFilter implements IFilter {
 				// Check for empty content
 				if ( result.start() == result.end() ) {
 						startSearch = result.end() + 1;
-						bestPosition = maxPos;
 						if (startSearch >= inputText.length()) {
+							if ( !eof ) {
+								readInput();
+								continue;
+							}
 							startSearch--;
 							break;						
 						}
@@ -238,6 +262,76 @@ public class RegexFilter implements IFilter {
 		return nextEvent();
 	}
 	
+	/**
+	 * Sets the number of characters read from the input at a time.
+	 * <p>The filter keeps only a window of the input in memory. A match (or a longer
+	 * match of the same rule) that needs more than four times this number of characters
+	 * after its start may not be found; and when no rule matches, the skeleton is sent in
+	 * parts of about eight times this number of characters.
+	 * The value is used for the next call to {@link #open(RawDocument, boolean)}.
+	 * @param chunkSize the number of characters to read at a time (default: 131072).
+	 */
+	public void setChunkSize (int chunkSize) {
+		if ( chunkSize < 1 ) {
+			throw new IllegalArgumentException("The chunk size must be greater than 0.");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Reads the next chunk of the input and adds it to the current window.
+	 * The start of the window that is not needed anymore is removed.
+	 */
+	private void readInput () {
+		// Keep some text before the current positions for look-behind expressions
+		int drop = Math.max(0, Math.min(startSkl, startSearch)-overlap);
+		int count = 0;
+		try {
+			while ( count < buffer.length ) {
+				int n = reader.read(buffer, count, buffer.length-count);
+				if ( n == -1 ) {
+					eof = true;
+					break;
+				}
+				count += n;
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error reading the input.", e);
+		}
+		StringBuilder tmp = new StringBuilder(inputText.length()-drop+count+1);
+		tmp.append(inputText, drop, inputText.length());
+		String data = new String(buffer, 0, count);
+		if ( carryCR ) {
+			data = "\r" + data;
+			carryCR = false;
+		}
+		// Do not split a CR+LF line-break between two chunks
+		if ( !eof && lineBreak.length() > 1 && data.endsWith("\r") ) {
+			data = data.substring(0, data.length()-1);
+			carryCR = true;
+		}
+		tmp.append(data.replace(lineBreak, "\n"));
+		inputText = tmp.toString();
+		startSkl -= drop;
+		startSearch -= drop;
+		if ( eof ) closeReader();
+	}
+
+	private void closeReader () {
+		if ( reader != null ) {
+			try {
+				reader.close();
+			}
+			catch ( IOException e ) {
+				throw new OkapiIOException("Error closing the input.", e);
+			}
+			finally {
+				reader = null;
+			}
+		}
+	}
+
 	private void closeGroups () {
 		if ( groupStack.size() > 0 ) {
 			Ending ending = new Ending(otherId.createId());
@@ -275,9 +369,8 @@ public class RegexFilter implements IFilter {
 		input.setEncoding(detector.getEncoding());
 		encoding = input.getEncoding();
 		
-		BufferedReader reader = null;		
 		try {
-			reader = new BufferedReader(new InputStreamReader(detector.getInputStream(), encoding));
+			reader = new InputStreamReader(detector.getInputStream(), encoding);
 		}
 		catch ( UnsupportedEncodingException e ) {
 			throw new OkapiUnsupportedEncodingException(
@@ -290,42 +383,26 @@ public class RegexFilter implements IFilter {
 			docName = input.getInputURI().getPath();
 		}
 		
-		//TODO: Optimize this with a better 'readToEnd()'
-		StringBuilder tmp = new StringBuilder();
-		char[] buf = new char[2048];
-		int count = 0;
-		try {
-			while (( count = reader.read(buf)) != -1 ) {
-				tmp.append(buf, 0, count);
-			}
-		}
-		catch ( IOException e ) {
-			throw new OkapiIOException("Error reading the input.", e);
-		}
-		finally {
-			if ( reader != null ) {
-				try {
-					reader.close();
-				}
-				catch ( IOException e ) {
-					throw new OkapiIOException("Error closing the input.", e);
-				}
-			}
-		}
-		
-		// Set the input string
-		inputText = tmp.toString().replace(lineBreak, "\n");
+		// Read the first window of the input
+		buffer = new char[chunkSize];
+		overlap = chunkSize*4;
+		maxPending = chunkSize*8;
+		inputText = "";
+		eof = false;
+		carryCR = false;
+		startSearch = 0;
+		startSkl = 0;
+		readInput();
 
 		parseState = 1;
 		canceled = false;
 		groupStack = new Stack<StartGroup>();
-		startSearch = 0;
-		startSkl = 0;
 		tuId = 0;
 		otherId = new IdGenerator(null, "o");
 
 		// Prepare the filter rules
 		params.compileRules();
+		scanner = new RuleScanner(params.getRules(), params.getRegexOptions());
 
 		// Set the start event
 		queue = new LinkedList<Event>();
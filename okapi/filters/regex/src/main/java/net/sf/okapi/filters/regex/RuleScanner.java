@@ -0,0 +1,162 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.filters.regex;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds the next match among a set of compiled rules with a single search.
+ * <p>The expressions of all the rules are combined into one alternation where each rule
+ * is enclosed in its own capturing group. At a given position the alternation tries the rules
+ * in their order, so the match found is the one with the lowest start position, and for rules
+ * matching at the same position, the one of the first rule: the same result as searching each
+ * rule separately and keeping the first best one.
+ * <p>Some expressions cannot be combined safely (numbered back-references, quoted sections,
+ * in-line comments mode, or named groups used in several rules). In that case, or if the
+ * combined expression cannot be compiled, each rule is searched separately.
+ */
+public class RuleScanner {
+
+	// Constructs that would change meaning once the expression is inside the alternation
+	private static final Pattern UNSAFE = Pattern.compile("\\\\[1-9]|\\\\Q|\\(\\?[a-zA-Z-]*x");
+
+	private final List<Rule> rules;
+	private Pattern combined;
+	private int[] groups;
+	private Matcher matcher;
+	private CharSequence text;
+	private int start;
+	private boolean hitEnd;
+
+	/**
+	 * Creates a new scanner for a given list of rules.
+	 * The patterns of the rules must be compiled already (see {@link Parameters#compileRules()}).
+	 * @param rules the list of rules to use.
+	 * @param regexOptions the regular expression options used to compile the rules.
+	 */
+	public RuleScanner (List<Rule> rules,
+		int regexOptions)
+	{
+		this.rules = rules;
+		combine(regexOptions);
+	}
+
+	/**
+	 * Indicates if this scanner uses a single combined expression for all its rules.
+	 * @return true if the rules are combined, false if they are searched separately.
+	 */
+	public boolean isCombined () {
+		return (combined != null);
+	}
+
+	/**
+	 * Finds the first rule that matches in a given text from a given position.
+	 * @param text the text where to search.
+	 * @param from the position where to start the search.
+	 * @return the rule with the first match (the first one in the list if several
+	 * rules match at the same position), or null if none of the rules matches.
+	 * Use {@link #getStart()} to get the start position of the match.
+	 */
+	public Rule find (CharSequence text,
+		int from)
+	{
+		if ( combined == null ) {
+			return findEach(text, from);
+		}
+		if (( matcher == null ) || ( this.text != text )) {
+			matcher = combined.matcher(text);
+			this.text = text;
+		}
+		boolean found = matcher.find(from);
+		hitEnd = matcher.hitEnd();
+		if ( !found ) return null;
+		start = matcher.start();
+		for ( int i=0; i<groups.length; i++ ) {
+			if ( matcher.start(groups[i]) != -1 ) {
+				return rules.get(i);
+			}
+		}
+		return null; // Not reached
+	}
+
+	/**
+	 * Gets the start position of the last match found by {@link #find(CharSequence, int)}.
+	 * @return the start position of the last match.
+	 */
+	public int getStart () {
+		return start;
+	}
+
+	/**
+	 * Indicates if the last search done by {@link #find(CharSequence, int)} reached the end
+	 * of the text: if it did, more text after the end could change the result of the search.
+	 * @return true if the last search reached the end of the text.
+	 */
+	public boolean hitEnd () {
+		return hitEnd;
+	}
+
+	private Rule findEach (CharSequence text,
+		int from)
+	{
+		Rule bestRule = null;
+		int bestPosition = Integer.MAX_VALUE;
+		hitEnd = false;
+		for ( Rule rule : rules ) {
+			Matcher m = rule.pattern.matcher(text);
+			boolean found = m.find(from);
+			hitEnd |= m.hitEnd();
+			if ( found ) {
+				if ( m.start() < bestPosition ) {
+					bestPosition = m.start();
+					bestRule = rule;
+				}
+			}
+		}
+		start = bestPosition;
+		return bestRule;
+	}
+
+	private void combine (int regexOptions) {
+		if ( rules.size() < 2 ) return;
+		// In comments mode the closing parenthesis must not end up in a comment
+		String close = ((regexOptions & Pattern.COMMENTS) != 0) ? "\n)" : ")";
+		StringBuilder tmp = new StringBuilder();
+		int[] tmpGroups = new int[rules.size()];
+		int group = 1;
+		for ( int i=0; i<rules.size(); i++ ) {
+			Rule rule = rules.get(i);
+			if ( UNSAFE.matcher(rule.expr).find() ) return;
+			if ( i > 0 ) tmp.append('|');
+			tmp.append('(').append(rule.expr).append(close);
+			tmpGroups[i] = group;
+			group += rule.pattern.matcher("").groupCount() + 1;
+		}
+		try {
+			combined = Pattern.compile(tmp.toString(), regexOptions);
+			groups = tmpGroups;
+		}
+		catch ( PatternSyntaxException e ) {
+			// For example: the same named group in two rules
+			combined = null;
+		}
+	}
+
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -191,6 +192,143 @@ public class RegexFilterTest {
 		assertEquals("b", tu.getSource().toString());
 	}
 
+	@Test
+	public void testRuleScanner () {
+		Parameters params = new Parameters();
+		params.getRules().add(createRule("b+"));
+		params.getRules().add(createRule("(?<k>x)(a)"));
+		params.getRules().add(createRule("x(?i)A"));
+		params.compileRules();
+		RuleScanner scanner = new RuleScanner(params.getRules(), params.getRegexOptions());
+		assertTrue(scanner.isCombined());
+		String text = "..xa.XA.xA..bb";
+		// Same position for two rules: the first one wins
+		assertEquals(params.getRules().get(1), scanner.find(text, 0));
+		assertEquals(2, scanner.getStart());
+		// The in-line flag does not leak into the next rules
+		assertEquals(params.getRules().get(2), scanner.find(text, 3));
+		assertEquals(8, scanner.getStart());
+		assertEquals(params.getRules().get(0), scanner.find(text, 10));
+		assertEquals(12, scanner.getStart());
+		assertEquals(null, scanner.find(text, 14));
+
+		// Numbered back-references cannot be combined
+		params.getRules().add(createRule("(z)\\1"));
+		params.compileRules();
+		scanner = new RuleScanner(params.getRules(), params.getRegexOptions());
+		assertTrue(!scanner.isCombined());
+		assertEquals(params.getRules().get(1), scanner.find(text, 0));
+		assertEquals(2, scanner.getStart());
+		assertEquals(params.getRules().get(3), scanner.find("..zz.bb", 0));
+		assertEquals(2, scanner.getStart());
+	}
+
+	@Test
+	public void testSeveralRules () {
+		String snippet = "k1=\"v1\"\n#c1\nk2=\"v2\"\n[g]\nk3=\"v3\"\n";
+		Parameters params = new Parameters();
+		params.setRegexOptions(Pattern.MULTILINE);
+		Rule rule = createRule("^#(.*?)$");
+		rule.setRuleType(Rule.RULETYPE_COMMENT);
+		rule.setSourceGroup(1);
+		params.getRules().add(rule);
+		rule = createRule("^\\[.*?]$");
+		rule.setRuleType(Rule.RULETYPE_NOTRANS);
+		params.getRules().add(rule);
+		rule = createRule("^(.*?)=\"(.*?)\"$");
+		rule.setRuleType(Rule.RULETYPE_CONTENT);
+		rule.setNameGroup(1);
+		rule.setSourceGroup(2);
+		params.getRules().add(rule);
+		filter.setParameters(params);
+		ArrayList<Event> list = getEvents(snippet);
+		for ( int i=1; i<=3; i++ ) {
+			ITextUnit tu = FilterTestDriver.getTextUnit(list, i);
+			assertNotNull(tu);
+			assertEquals("v"+i, tu.getSource().toString());
+			assertEquals("k"+i, tu.getName());
+		}
+		assertEquals(null, FilterTestDriver.getTextUnit(list, 4));
+	}
+
+	@Test
+	public void testSmallChunks () {
+		String[][] docs = {
+			{"/Test01_srt_en.srt", "/okf_regex@SRT.fprm", "UTF-8"},
+			{"/Test01_stringinfo_en.info", "/okf_regex@StringInfo.fprm", "UTF-8"},
+			{"/TestRules01.txt", "/okf_regex@TestRules01.fprm", "UTF-8"},
+			{"/TestRules03.txt", "/okf_regex@TestRules03.fprm", "UTF-8"},
+			{"/TestRules05.txt", "/okf_regex@TestRules05.fprm", "UTF-8"},
+			{"/TestRules07.strings", "/okf_regex@macStrings.fprm", "Windows-1252"},
+			{"/TestFrenchISL.isl", "/okf_regex@INI.fprm", "Windows-1252"},
+			{"/SymbianRLSSample.rls", "/okf_regex@SymbianRLS.fprm", "UTF-8"}
+		};
+		for ( String[] doc : docs ) {
+			filter.getParameters().load(location.in(doc[1]).asUrl(), false);
+			List<Event> expected = getEvents(doc[0], doc[2]);
+			for ( int chunkSize : new int[] {128, 300, 1000} ) {
+				filter.setChunkSize(chunkSize);
+				List<Event> events = getEvents(doc[0], doc[2]);
+				assertEquals(doc[0], getTextUnits(expected), getTextUnits(events));
+				assertEquals(doc[0], FilterTestDriver.generateOutput(filter, expected, locFR, Charset.forName(doc[2])),
+					FilterTestDriver.generateOutput(filter, events, locFR, Charset.forName(doc[2])));
+			}
+			filter.setChunkSize(131072);
+		}
+	}
+
+	@Test
+	public void testSmallChunksWithLongSkeleton () {
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<50; i++ ) {
+			tmp.append("no text here\r\n");
+		}
+		tmp.append("key=\"text\"\r\nend\r\n");
+		String snippet = tmp.toString();
+		Parameters params = new Parameters();
+		params.setRegexOptions(Pattern.MULTILINE);
+		Rule rule = createRule("=(.+)$");
+		rule.setSourceGroup(1);
+		params.getRules().add(rule);
+		filter.setParameters(params);
+		filter.setChunkSize(5);
+		ArrayList<Event> list = getEvents(snippet);
+		ITextUnit tu = FilterTestDriver.getTextUnit(list, 1);
+		assertNotNull(tu);
+		assertEquals("text", tu.getSource().toString());
+		assertEquals(null, FilterTestDriver.getTextUnit(list, 2));
+		// The skeleton without match is sent in several parts
+		assertTrue(FilterTestDriver.countEventsByType(list, EventType.DOCUMENT_PART) > 2);
+		assertEquals(snippet, FilterTestDriver.generateOutput(filter, list, locEN, Charset.forName("UTF-8")));
+	}
+
+	private List<Event> getEvents (String path,
+		String encoding)
+	{
+		ArrayList<Event> list = new ArrayList<Event>();
+		filter.open(new RawDocument(location.in(path).asUri(), encoding, locEN, locFR));
+		while ( filter.hasNext() ) {
+			list.add(filter.next());
+		}
+		filter.close();
+		return list;
+	}
+
+	private String getTextUnits (List<Event> events) {
+		StringBuilder tmp = new StringBuilder();
+		for ( ITextUnit tu : FilterTestDriver.filterTextUnits(events) ) {
+			tmp.append(tu.getName()).append('=').append(tu.getSource().toString()).append('\n');
+		}
+		return tmp.toString();
+	}
+
+	private Rule createRule (String expr) {
+		Rule rule = new Rule();
+		rule.setRuleType(Rule.RULETYPE_STRING);
+		rule.setExpression(expr);
+		return rule;
+	}
+
 	private ArrayList<Event> getEvents(String snippet) {
 		return FilterTestDriver.getEvents(filter, snippet,  locEN);
 	}
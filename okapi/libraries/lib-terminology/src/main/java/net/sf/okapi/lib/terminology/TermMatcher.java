@@ -0,0 +1,297 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds all the occurrences of a set of strings in a text in a single pass (Aho-Corasick automaton).
+ * <p>The strings are added with {@link #add(String)}, each one gets the index of its call.
+ * The automaton is built on the first search after some strings have been added. Once built,
+ * a matcher can be used by several threads at the same time, as long as no string is added.
+ * <p>The matching can be case-sensitive or not. When it is not, the characters are folded
+ * one by one, so the position of an occurrence in the text is the same as with an exact match.
+ */
+public class TermMatcher {
+
+	/**
+	 * Occurrence of a string in a text.
+	 * The natural order of the occurrences is by string index, then by start position.
+	 */
+	public static class Match implements Comparable<Match> {
+
+		/**
+		 * Index of the string found.
+		 */
+		public final int term;
+
+		/**
+		 * Position of the first character of the occurrence.
+		 */
+		public final int start;
+
+		/**
+		 * Position of the character after the last character of the occurrence.
+		 */
+		public final int end;
+
+		public Match (int term,
+			int start,
+			int end)
+		{
+			this.term = term;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public int compareTo (Match other) {
+			if ( term != other.term ) return (term < other.term) ? -1 : 1;
+			if ( start != other.start ) return (start < other.start) ? -1 : 1;
+			return 0;
+		}
+
+		@Override
+		public String toString () {
+			return term + ":" + start + "-" + end;
+		}
+	}
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private final boolean ignoreCase;
+	private int termCount;
+	private int[] termNext = new int[16]; // Next string ending at the same node
+
+	// Nodes of the trie
+	private int nodeCount;
+	private char[] label = new char[64];
+	private int[] depth = new int[64];
+	private int[] firstChild = new int[64];
+	private int[] nextSibling = new int[64];
+	private int[] output = new int[64]; // First string ending at the node
+	private int[] fail;
+	private int[] dictLink; // Closest node with an output in the failure chain
+
+	// Transitions: open addressing table of (node, character) keys
+	private long[] keys = new long[128];
+	private int[] targets = new int[128];
+	private int edgeCount;
+
+	private volatile boolean built;
+
+	/**
+	 * Creates a new empty matcher.
+	 * @param ignoreCase true to find the strings regardless of their case, false to find exact matches.
+	 */
+	public TermMatcher (boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+		Arrays.fill(keys, NONE);
+		newNode((char)0, 0);
+	}
+
+	/**
+	 * Indicates if this matcher ignores the case.
+	 * @return true if the case is ignored, false if the matches are exact.
+	 */
+	public boolean getIgnoreCase () {
+		return ignoreCase;
+	}
+
+	/**
+	 * Gets the number of strings added to this matcher.
+	 * @return the number of strings in this matcher.
+	 */
+	public int size () {
+		return termCount;
+	}
+
+	/**
+	 * Adds a string to this matcher.
+	 * @param term the string to add (null or empty strings are never found, but they still get an index).
+	 * @return the index of the string, to use with {@link Match#term}.
+	 */
+	public synchronized int add (String term) {
+		int index = termCount++;
+		if ( index >= termNext.length ) {
+			termNext = Arrays.copyOf(termNext, termNext.length*2);
+		}
+		termNext[index] = NONE;
+		if (( term == null ) || term.isEmpty() ) return index;
+
+		int node = ROOT;
+		for ( int i=0; i<term.length(); i++ ) {
+			char ch = fold(term.charAt(i));
+			int next = getTarget(node, ch);
+			if ( next == NONE ) {
+				next = newNode(ch, depth[node]+1);
+				nextSibling[next] = firstChild[node];
+				firstChild[node] = next;
+				putTarget(node, ch, next);
+			}
+			node = next;
+		}
+		// Keep the strings ending at the same node in their index order
+		if ( output[node] == NONE ) {
+			output[node] = index;
+		}
+		else {
+			int last = output[node];
+			while ( termNext[last] != NONE ) last = termNext[last];
+			termNext[last] = index;
+		}
+		built = false;
+		return index;
+	}
+
+	/**
+	 * Finds all the occurrences of the strings of this matcher in a given text.
+	 * Overlapping occurrences are all reported.
+	 * @param text the text where to search.
+	 * @return the list of the occurrences, in the order of their end positions
+	 * (sort the list to get them by string index).
+	 */
+	public List<Match> find (CharSequence text) {
+		if ( !built ) build();
+		List<Match> res = new ArrayList<Match>();
+		int node = ROOT;
+		for ( int i=0; i<text.length(); i++ ) {
+			char ch = fold(text.charAt(i));
+			int next;
+			while ((( next = getTarget(node, ch)) == NONE ) && ( node != ROOT )) {
+				node = fail[node];
+			}
+			node = (next == NONE) ? ROOT : next;
+			int n = (output[node] != NONE) ? node : dictLink[node];
+			while ( n != NONE ) {
+				for ( int t=output[n]; t!=NONE; t=termNext[t] ) {
+					res.add(new Match(t, i+1-depth[n], i+1));
+				}
+				n = dictLink[n];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Computes the failure links of the automaton (breadth-first).
+	 */
+	private synchronized void build () {
+		if ( built ) return;
+		fail = new int[nodeCount];
+		dictLink = new int[nodeCount];
+		int[] queue = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+		fail[ROOT] = ROOT;
+		dictLink[ROOT] = NONE;
+		for ( int child=firstChild[ROOT]; child!=NONE; child=nextSibling[child] ) {
+			fail[child] = ROOT;
+			dictLink[child] = NONE;
+			queue[tail++] = child;
+		}
+		while ( head < tail ) {
+			int node = queue[head++];
+			for ( int child=firstChild[node]; child!=NONE; child=nextSibling[child] ) {
+				char ch = label[child];
+				int f = fail[node];
+				int target;
+				while ((( target = getTarget(f, ch)) == NONE ) && ( f != ROOT )) {
+					f = fail[f];
+				}
+				fail[child] = (target == NONE) ? ROOT : target;
+				dictLink[child] = (output[fail[child]] != NONE) ? fail[child] : dictLink[fail[child]];
+				queue[tail++] = child;
+			}
+		}
+		built = true;
+	}
+
+	private char fold (char ch) {
+		if ( !ignoreCase ) return ch;
+		return Character.toLowerCase(Character.toUpperCase(ch));
+	}
+
+	private int newNode (char ch,
+		int nodeDepth)
+	{
+		if ( nodeCount == label.length ) {
+			int size = label.length*2;
+			label = Arrays.copyOf(label, size);
+			depth = Arrays.copyOf(depth, size);
+			firstChild = Arrays.copyOf(firstChild, size);
+			nextSibling = Arrays.copyOf(nextSibling, size);
+			output = Arrays.copyOf(output, size);
+		}
+		int node = nodeCount++;
+		label[node] = ch;
+		depth[node] = nodeDepth;
+		firstChild[node] = NONE;
+		nextSibling[node] = NONE;
+		output[node] = NONE;
+		return node;
+	}
+
+	private int slot (long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & (keys.length-1);
+	}
+
+	private int getTarget (int node,
+		char ch)
+	{
+		long key = ((long)node << 16) | ch;
+		for ( int i=slot(key); ; i=(i+1) & (keys.length-1) ) {
+			if ( keys[i] == key ) return targets[i];
+			if ( keys[i] == NONE ) return NONE;
+		}
+	}
+
+	private void putTarget (int node,
+		char ch,
+		int target)
+	{
+		// Keep the table at most half full
+		if ( (edgeCount+1)*2 > keys.length ) {
+			long[] oldKeys = keys;
+			int[] oldTargets = targets;
+			keys = new long[oldKeys.length*2];
+			targets = new int[oldKeys.length*2];
+			Arrays.fill(keys, NONE);
+			for ( int i=0; i<oldKeys.length; i++ ) {
+				if ( oldKeys[i] != NONE ) insert(oldKeys[i], oldTargets[i]);
+			}
+		}
+		insert(((long)node << 16) | ch, target);
+		edgeCount++;
+	}
+
+	private void insert (long key,
+		int target)
+	{
+		int i = slot(key);
+		while ( keys[i] != NONE ) {
+			i = (i+1) & (keys.length-1);
+		}
+		keys[i] = key;
+		targets[i] = target;
+	}
+
+}
@@ -0,0 +1,539 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology.h2tb;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.lib.terminology.ConceptEntry;
+import net.sf.okapi.lib.terminology.IGlossaryReader;
+import net.sf.okapi.lib.terminology.LangEntry;
+import net.sf.okapi.lib.terminology.TermEntry;
+import net.sf.okapi.lib.terminology.TermHit;
+import net.sf.okapi.lib.terminology.TermMatcher;
+import net.sf.okapi.lib.terminology.csv.CSVReader;
+import net.sf.okapi.lib.terminology.simpletb.Entry;
+import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
+import net.sf.okapi.lib.terminology.tbx.TBXReader;
+import net.sf.okapi.lib.terminology.tsv.TSVReader;
+
+/**
+ * Simple termbase stored on disk in an H2 database.
+ * <p>The glossaries are imported one entry at a time, so their size is not limited by the memory,
+ * and a termbase imported once can be re-opened later without importing anything again.
+ * New entries can be added to an existing termbase at any time.
+ * <p>Each term is indexed by its first lowercase word (for {@link #getExistingTerms(TextFragment, LocaleId, LocaleId)})
+ * and by its leading run of letters and digits (for {@link #getExistingStrings(TextFragment, LocaleId, LocaleId)}),
+ * so a search reads only the entries that may be found in the text. The results are the same as the ones
+ * of {@link SimpleTB} with the same entries.
+ */
+public class H2TB {
+
+	public static final String DATAFILE_EXT = ".h2.db";
+
+	private static final String SIGNATURE = "H2TB-v1";
+	private static final int BATCHSIZE = 1000;
+
+	private static final String TBLINFO = "Info";
+	private static final String NNAME = "Name";
+	private static final String NVALUE = "Value";
+
+	private static final String TBLTERMS = "Terms";
+	private static final String NKEY = "Key";
+	private static final String NSRCTERM = "SrcTerm";
+	private static final String NTRGTERM = "TrgTerm";
+	private static final String NDEFINITION = "Definition";
+	// Columns used for the lookups, in the order of the lookup statements
+	private static final String[] LOOKUPS = {"SrcWord", "TrgWord", "SrcStart", "TrgStart"};
+	private static final int SRCWORD = 0;
+	private static final int SRCSTART = 2;
+
+	private LocaleId srcLoc;
+	private LocaleId trgLoc;
+	private Connection conn;
+	private PreparedStatement istm;
+	private PreparedStatement[] lookups;
+	private int pending;
+	private boolean stringSearch;
+	private boolean betweenCodes;
+
+	public H2TB (LocaleId srcLoc,
+		LocaleId trgLoc)
+	{
+		this.srcLoc = srcLoc;
+		this.trgLoc = trgLoc;
+		try {
+			// Initialize the driver
+			Class.forName("org.h2.Driver");
+		}
+		catch ( ClassNotFoundException e ) {
+			throw new OkapiException(e);
+		}
+	}
+
+	/**
+	 * Opens a termbase, or creates it if it does not exist yet.
+	 * When an existing termbase is opened, its source and target locales replace the ones of this object.
+	 * @param path the path of the termbase file (with or without {@link #DATAFILE_EXT}).
+	 * @return true if a new termbase was created, false if an existing one was opened.
+	 */
+	public boolean open (String path) {
+		close();
+		String pathNoExt = path;
+		if ( pathNoExt.endsWith(DATAFILE_EXT) ) {
+			pathNoExt = pathNoExt.substring(0, pathNoExt.length()-DATAFILE_EXT.length());
+		}
+		boolean exists = (new File(pathNoExt+DATAFILE_EXT)).exists();
+		if ( !exists ) Util.createDirectories(pathNoExt);
+		try {
+			conn = DriverManager.getConnection("jdbc:h2:"+pathNoExt, "sa", "");
+			conn.setAutoCommit(false);
+			if ( exists ) readInfo();
+			else createTables();
+			return !exists;
+		}
+		catch ( SQLException e ) {
+			close();
+			throw new OkapiIOException("Error opening the termbase.\n"+e.getMessage(), e);
+		}
+		catch ( OkapiIOException e ) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes this termbase. The entries added are committed.
+	 */
+	public void close () {
+		try {
+			if ( conn == null ) return;
+			flush();
+			if ( istm != null ) {
+				istm.close();
+				istm = null;
+			}
+			if ( lookups != null ) {
+				for ( PreparedStatement pstm : lookups ) {
+					if ( pstm != null ) pstm.close();
+				}
+				lookups = null;
+			}
+			conn.close();
+			conn = null;
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	public LocaleId getSourceLocale () {
+		return srcLoc;
+	}
+
+	public LocaleId getTargetLocale () {
+		return trgLoc;
+	}
+
+	public void initialize (boolean stringSearch,
+		boolean betweenCodes)
+	{
+		this.stringSearch = stringSearch;
+		this.betweenCodes = betweenCodes;
+	}
+
+	public void guessAndImport (File file) {
+		String ext = Util.getExtension(file.getPath());
+		if ( ext.equalsIgnoreCase(".tbx") ) {
+			importTBX(file);
+		}
+		else if ( ext.equalsIgnoreCase(".csv") ) {
+			importCSV(file);
+		}
+		else { // Try tab-delimited
+			importTSV(file);
+		}
+	}
+
+	public void importTBX (File file) {
+		importGlossary(new TBXReader(), file);
+	}
+
+	public void importCSV (File file) {
+		importGlossary(new CSVReader(srcLoc, trgLoc), file);
+	}
+
+	public void importTSV (File file) {
+		importGlossary(new TSVReader(srcLoc, trgLoc), file);
+	}
+
+	private void importGlossary (IGlossaryReader reader,
+		File file)
+	{
+		try {
+			reader.open(file);
+			while ( reader.hasNext() ) {
+				ConceptEntry cent = reader.next();
+				if ( !cent.hasLocale(srcLoc) || !cent.hasLocale(trgLoc) ) continue;
+				LangEntry srcLent = cent.getEntries(srcLoc);
+				LangEntry trgLent = cent.getEntries(trgLoc);
+				if ( !srcLent.hasTerm() || !trgLent.hasTerm() ) continue;
+				addEntry(srcLent.getTerm(0).getText(), trgLent.getTerm(0).getText());
+			}
+			flush();
+		}
+		finally {
+			if ( reader != null ) reader.close();
+		}
+	}
+
+	/**
+	 * Adds an entry to this termbase.
+	 * The entries are written by batches, see {@link #flush()}.
+	 * @param srcTerm the source term.
+	 * @param trgTerm the target term.
+	 * @return the new entry.
+	 */
+	public synchronized Entry addEntry (String srcTerm,
+		String trgTerm)
+	{
+		Entry ent = new Entry(srcTerm);
+		ent.setTargetTerm(trgTerm);
+		try {
+			if ( istm == null ) {
+				istm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?)",
+					TBLTERMS, NSRCTERM, NTRGTERM, NDEFINITION, LOOKUPS[0], LOOKUPS[1], LOOKUPS[2], LOOKUPS[3]));
+			}
+			istm.setString(1, srcTerm);
+			istm.setString(2, trgTerm);
+			istm.setString(3, ent.getDefinition());
+			istm.setString(4, getFirstWord(srcTerm));
+			istm.setString(5, getFirstWord(trgTerm));
+			istm.setString(6, getStartKey(srcTerm));
+			istm.setString(7, getStartKey(trgTerm));
+			istm.addBatch();
+			if ( ++pending >= BATCHSIZE ) {
+				flush();
+			}
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+		return ent;
+	}
+
+	/**
+	 * Writes the entries added since the last call, and commits them.
+	 */
+	public synchronized void flush () {
+		try {
+			if ( pending > 0 ) {
+				istm.executeBatch();
+				pending = 0;
+			}
+			conn.commit();
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	public synchronized void removeAll () {
+		Statement stm = null;
+		try {
+			flush();
+			stm = conn.createStatement();
+			stm.execute("DELETE FROM " + TBLTERMS);
+			conn.commit();
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+		finally {
+			closeStatement(stm);
+		}
+	}
+
+	public synchronized int getEntryCount () {
+		Statement stm = null;
+		try {
+			flush();
+			stm = conn.createStatement();
+			ResultSet result = stm.executeQuery("SELECT COUNT(" + NKEY + ") FROM " + TBLTERMS);
+			if ( !result.next() ) return 0;
+			return result.getInt(1);
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+		finally {
+			closeStatement(stm);
+		}
+	}
+
+	/*
+	 * Same search as SimpleTB.getExistingTerms(), on the entries with a term
+	 * that starts with one of the words of the text.
+	 */
+	public synchronized List<TermHit> getExistingTerms (TextFragment frag,
+		LocaleId fragmentLoc,
+		LocaleId otherLoc)
+	{
+		List<TermHit> res = new ArrayList<TermHit>();
+
+		// Determine if the termbase has the searched locale
+		boolean searchSource = fragmentLoc.equals(srcLoc);
+		if ( !searchSource ) {
+			if ( !fragmentLoc.equals(trgLoc) ) {
+				return res; // Nothing
+			}
+		}
+
+		String[] words = SimpleTB.toWords(TextUnitUtil.getText(frag)); // Strip inline codes and convert to lowercase
+		Set<String> keys = new LinkedHashSet<String>();
+		Collections.addAll(keys, words);
+		TreeMap<Integer, Entry> candidates = getCandidates(keys, SRCWORD+(searchSource ? 0 : 1));
+
+		for ( Entry ent : getSearchOrder(candidates) ) {
+			String termToMatch = (searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+			String otherTerm = (searchSource ? ent.getTargetTerm() : ent.getSourceTerm());
+			if ( otherTerm == null ) continue;
+			String[] termWords = SimpleTB.toWords(termToMatch);
+			for ( int i=0; i<words.length; i++ ) {
+				if ( SimpleTB.hasWordsAt(words, i, termWords) ) {
+					TermHit th = new TermHit();
+					th.sourceTerm = new TermEntry(termToMatch);
+					th.targetTerm = new TermEntry(otherTerm);
+					res.add(th);
+					break;
+				}
+			}
+		}
+
+		return res;
+	}
+
+	/*
+	 * Same search as SimpleTB.getExistingStrings(), on the entries with a term
+	 * that starts like one of the possible matches in the text.
+	 */
+	public synchronized List<TermHit> getExistingStrings (TextFragment frag,
+		LocaleId fragmentLoc,
+		LocaleId otherLoc)
+	{
+		// Determine if the termbase has the searched locale
+		boolean searchSource = fragmentLoc.equals(srcLoc);
+		if ( !searchSource ) {
+			if ( !fragmentLoc.equals(trgLoc) ) {
+				return new ArrayList<TermHit>(); // Nothing
+			}
+		}
+
+		StringBuilder text = new StringBuilder(frag);
+		// A match cannot start inside a word: collect the keys of the other positions
+		Set<String> keys = new LinkedHashSet<String>();
+		for ( int i=0; i<text.length(); i++ ) {
+			if (( i > 0 ) && SimpleTB.isWordCharacter(Character.codePointAt(text, i-1))
+				&& SimpleTB.isWordCharacter(Character.codePointAt(text, i)) ) continue;
+			keys.add(getStartKey(text, i));
+		}
+		TreeMap<Integer, Entry> candidates = getCandidates(keys, SRCSTART+(searchSource ? 0 : 1));
+
+		List<Entry> entries = getSearchOrder(candidates);
+		TermMatcher matcher = new TermMatcher(false);
+		for ( Entry ent : entries ) {
+			matcher.add(searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+		}
+		return SimpleTB.selectStrings(text, entries, matcher.find(text), searchSource, betweenCodes);
+	}
+
+	/**
+	 * Gets a list of entries in the order SimpleTB uses after {@link SimpleTB#initialize(boolean, boolean)}.
+	 * @param candidates the entries sorted by their order of creation.
+	 * @return the list of entries in search order.
+	 */
+	private List<Entry> getSearchOrder (TreeMap<Integer, Entry> candidates) {
+		List<Entry> entries = new ArrayList<Entry>(candidates.values());
+		if ( stringSearch ) {
+			Collections.sort(entries);
+		}
+		return entries;
+	}
+
+	/**
+	 * Gets the entries with a given lookup column equal to one of the given keys.
+	 * @param keys the keys to look up.
+	 * @param lookup the index of the lookup column.
+	 * @return the entries found, sorted by their order of creation.
+	 */
+	private TreeMap<Integer, Entry> getCandidates (Set<String> keys,
+		int lookup)
+	{
+		TreeMap<Integer, Entry> candidates = new TreeMap<Integer, Entry>();
+		try {
+			flush();
+			if ( lookups == null ) {
+				lookups = new PreparedStatement[LOOKUPS.length];
+			}
+			if ( lookups[lookup] == null ) {
+				lookups[lookup] = conn.prepareStatement(String.format("SELECT %s,%s,%s,%s FROM %s WHERE %s=?",
+					NKEY, NSRCTERM, NTRGTERM, NDEFINITION, TBLTERMS, LOOKUPS[lookup]));
+			}
+			PreparedStatement pstm = lookups[lookup];
+			for ( String key : keys ) {
+				pstm.setString(1, key);
+				ResultSet result = pstm.executeQuery();
+				while ( result.next() ) {
+					Entry ent = new Entry(result.getString(2));
+					ent.setTargetTerm(result.getString(3));
+					ent.setdefinition(result.getString(4));
+					candidates.put(result.getInt(1), ent);
+				}
+				result.close();
+			}
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+		return candidates;
+	}
+
+	private void createTables ()
+		throws SQLException
+	{
+		Statement stm = null;
+		try {
+			stm = conn.createStatement();
+			stm.execute("CREATE TABLE " + TBLINFO + " ("
+				+ NNAME + " VARCHAR PRIMARY KEY,"
+				+ NVALUE + " VARCHAR"
+				+ ")");
+			stm.execute("CREATE TABLE " + TBLTERMS + " ("
+				+ NKEY + " INTEGER IDENTITY PRIMARY KEY,"
+				+ NSRCTERM + " VARCHAR,"
+				+ NTRGTERM + " VARCHAR,"
+				+ NDEFINITION + " VARCHAR,"
+				+ LOOKUPS[0] + " VARCHAR,"
+				+ LOOKUPS[1] + " VARCHAR,"
+				+ LOOKUPS[2] + " VARCHAR,"
+				+ LOOKUPS[3] + " VARCHAR"
+				+ ")");
+			for ( String name : LOOKUPS ) {
+				stm.execute(String.format("CREATE INDEX Idx%s ON %s (%s)", name, TBLTERMS, name));
+			}
+			PreparedStatement pstm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s) VALUES(?,?)",
+				TBLINFO, NNAME, NVALUE));
+			String[][] info = {{"signature", SIGNATURE}, {"sourceLocale", srcLoc.toString()},
+				{"targetLocale", trgLoc.toString()}};
+			for ( String[] pair : info ) {
+				pstm.setString(1, pair[0]);
+				pstm.setString(2, pair[1]);
+				pstm.execute();
+			}
+			pstm.close();
+			conn.commit();
+		}
+		finally {
+			closeStatement(stm);
+		}
+	}
+
+	private void readInfo ()
+		throws SQLException
+	{
+		Statement stm = null;
+		try {
+			stm = conn.createStatement();
+			ResultSet result = stm.executeQuery(String.format("SELECT %s,%s FROM %s", NNAME, NVALUE, TBLINFO));
+			String signature = null;
+			while ( result.next() ) {
+				String name = result.getString(1);
+				if ( "signature".equals(name) ) signature = result.getString(2);
+				else if ( "sourceLocale".equals(name) ) srcLoc = LocaleId.fromString(result.getString(2));
+				else if ( "targetLocale".equals(name) ) trgLoc = LocaleId.fromString(result.getString(2));
+			}
+			if ( !SIGNATURE.equals(signature) ) {
+				throw new OkapiIOException("Invalid signature: This database is not an H2TB termbase, or is corrupted.");
+			}
+		}
+		finally {
+			closeStatement(stm);
+		}
+	}
+
+	private void closeStatement (Statement stm) {
+		try {
+			if ( stm != null ) stm.close();
+		}
+		catch ( SQLException e ) {
+			throw new OkapiIOException(e);
+		}
+	}
+
+	private static String getFirstWord (String term) {
+		String[] words = SimpleTB.toWords(term);
+		if (( words == null ) || ( words.length == 0 )) return null;
+		return words[0];
+	}
+
+	private static String getStartKey (String term) {
+		if ( Util.isEmpty(term) ) return null;
+		return getStartKey(term, 0);
+	}
+
+	/**
+	 * Gets the lookup key of the string-based search for a given position in a text:
+	 * the run of letters and digits starting at that position,
+	 * or the character at that position if it is not a letter or a digit.
+	 * A term found at a given position has the same key as that position.
+	 * @param text the text.
+	 * @param start the position in the text.
+	 * @return the key for the given position.
+	 */
+	private static String getStartKey (CharSequence text,
+		int start)
+	{
+		int cp = Character.codePointAt(text, start);
+		int end = start+Character.charCount(cp);
+		if ( SimpleTB.isWordCharacter(cp) ) {
+			while ( end < text.length() ) {
+				cp = Character.codePointAt(text, end);
+				if ( !SimpleTB.isWordCharacter(cp) ) break;
+				end += Character.charCount(cp);
+			}
+		}
+		return text.subSequence(start, end).toString();
+	}
+
+}
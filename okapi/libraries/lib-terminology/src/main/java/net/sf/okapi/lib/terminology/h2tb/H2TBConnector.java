@@ -0,0 +1,133 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology.h2tb;
+
+import java.io.File;
+import java.util.List;
+
+import net.sf.okapi.common.IParameters;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.lib.terminology.ITermAccess;
+import net.sf.okapi.lib.terminology.TermHit;
+import net.sf.okapi.lib.terminology.simpletb.Entry;
+
+/**
+ * Connector for a termbase stored on disk (see {@link H2TB}).
+ * The glossary set in the parameters is imported only when the termbase is created.
+ */
+public class H2TBConnector implements ITermAccess {
+
+	private Parameters params;
+	private H2TB tb;
+
+	public H2TBConnector () {
+		params = new Parameters();
+	}
+
+	@Override
+	public IParameters getParameters () {
+		return params;
+	}
+
+	@Override
+	public void setParameters (IParameters params) {
+		this.params = (Parameters)params;
+	}
+
+	@Override
+	public void open () {
+		close();
+		tb = new H2TB(params.getSourceLocale(), params.getTargetLocale());
+		if ( tb.open(params.getDbPath()) ) {
+			// Import from file, if a path is defined
+			if ( !Util.isEmpty(params.getGlossaryPath()) ) {
+				tb.guessAndImport(new File(params.getGlossaryPath()));
+			}
+		}
+	}
+
+	/**
+	 * Sets the path and the locales of the termbase in the parameters, and opens it.
+	 * @param dbPath the path of the termbase.
+	 * @param srcLoc the source locale.
+	 * @param trgLoc the target locale.
+	 */
+	public void open (String dbPath,
+		LocaleId srcLoc,
+		LocaleId trgLoc)
+	{
+		params.setDbPath(dbPath);
+		params.setSourceLocale(srcLoc);
+		params.setTargetLocale(trgLoc);
+		open();
+	}
+
+	@Override
+	public void close () {
+		if ( tb != null ) {
+			tb.close();
+			tb = null;
+		}
+	}
+
+	@Override
+	public List<TermHit> getExistingTerms (TextFragment fragment,
+		LocaleId fragmentLocId,
+		LocaleId otherLocId)
+	{
+		return tb.getExistingTerms(fragment, fragmentLocId, otherLocId);
+	}
+
+	@Override
+	public List<TermHit> getExistingStrings (TextFragment fragment,
+		LocaleId fragmentLocId,
+		LocaleId otherLocId)
+	{
+		return tb.getExistingStrings(fragment, fragmentLocId, otherLocId);
+	}
+
+	public void initializeSearch (boolean stringSearch,
+		boolean betweenCodes)
+	{
+		tb.initialize(stringSearch, betweenCodes);
+	}
+
+	public Entry addEntry (String srcTerm,
+		String trgTerm)
+	{
+		return tb.addEntry(srcTerm, trgTerm);
+	}
+
+	/**
+	 * Imports a glossary into the open termbase.
+	 * @param file the TBX, CSV or tab-delimited file to import.
+	 */
+	public void importGlossary (File file) {
+		tb.guessAndImport(file);
+	}
+
+	/**
+	 * Gets the termbase used by this connector.
+	 * @return the termbase (null if the connector is not open).
+	 */
+	public H2TB getTermbase () {
+		return tb;
+	}
+
+}
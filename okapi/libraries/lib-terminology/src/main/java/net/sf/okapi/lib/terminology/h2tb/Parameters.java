@@ -0,0 +1,97 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology.h2tb;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.ParametersDescription;
+import net.sf.okapi.common.StringParameters;
+import net.sf.okapi.common.uidescription.EditorDescription;
+import net.sf.okapi.common.uidescription.IEditorDescriptionProvider;
+
+public class Parameters extends StringParameters implements IEditorDescriptionProvider {
+
+	private static final String DBPATH = "dbPath";
+	private static final String GLOSSARYPATH = "glossaryPath";
+	private static final String SOURCELOCALE = "sourceLocale";
+	private static final String TARGETLOCALE = "targetLocale";
+
+	public Parameters () {
+		super();
+	}
+
+	public String getDbPath () {
+		return getString(DBPATH);
+	}
+
+	public void setDbPath (String dbPath) {
+		setString(DBPATH, dbPath);
+	}
+
+	public String getGlossaryPath () {
+		return getString(GLOSSARYPATH);
+	}
+
+	public void setGlossaryPath (String glossaryPath) {
+		setString(GLOSSARYPATH, glossaryPath);
+	}
+
+	public LocaleId getSourceLocale () {
+		return LocaleId.fromString(getString(SOURCELOCALE));
+	}
+
+	public void setSourceLocale (LocaleId locId) {
+		setString(SOURCELOCALE, locId.toString());
+	}
+
+	public LocaleId getTargetLocale () {
+		return LocaleId.fromString(getString(TARGETLOCALE));
+	}
+
+	public void setTargetLocale (LocaleId locId) {
+		setString(TARGETLOCALE, locId.toString());
+	}
+
+	@Override
+	public void reset () {
+		super.reset();
+		setDbPath("");
+		setGlossaryPath("");
+		setSourceLocale(LocaleId.ENGLISH);
+		setTargetLocale(LocaleId.FRENCH);
+	}
+
+	@Override
+	public ParametersDescription getParametersDescription () {
+		ParametersDescription desc = new ParametersDescription(this);
+		desc.add(DBPATH, "Termbase file", "Full path of the termbase file (created if it does not exist)");
+		desc.add(GLOSSARYPATH, "Glossary to import", "Full path of the TBX, CSV or tab-delimited glossary to import when the termbase is created");
+		desc.add(SOURCELOCALE, "Source locale", "Locale identifier for the source (for a new termbase)");
+		desc.add(TARGETLOCALE, "Target locale", "Locale identifier for the target (for a new termbase)");
+		return desc;
+	}
+
+	@Override
+	public EditorDescription createEditorDescription (ParametersDescription paramsDesc) {
+		EditorDescription desc = new EditorDescription("H2TB Connector Settings", true, false);
+		desc.addPathInputPart(paramsDesc.get(Parameters.DBPATH), "Termbase File", true);
+		desc.addPathInputPart(paramsDesc.get(Parameters.GLOSSARYPATH), "Glossary File", false);
+		desc.addTextInputPart(paramsDesc.get(Parameters.SOURCELOCALE));
+		desc.addTextInputPart(paramsDesc.get(Parameters.TARGETLOCALE));
+		return desc;
+	}
+
+}
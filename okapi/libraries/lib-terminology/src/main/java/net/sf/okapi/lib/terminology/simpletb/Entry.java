@@ -21,9 +21,12 @@ public class Entry implements Comparable<Entry> {
 	String srcTerm;
 	String trgTerm;
 	String definition;
+	// Normalized forms of the terms, for the word-based search
+	String[] srcWords;
+	String[] trgWords;
 
 	public Entry (String srcTerm) {
-		this.srcTerm = srcTerm;
+		setSourceTerm(srcTerm);
 	}
 
 	@Override
@@ -32,6 +35,7 @@ public class Entry implements Comparable<Entry> {
 	}
 	public void setSourceTerm (String term) {
 		srcTerm = term;
+		srcWords = SimpleTB.toWords(term);
 	}
 
 	public String getSourceTerm () {
@@ -40,6 +44,7 @@ public class Entry implements Comparable<Entry> {
 	
 	public void setTargetTerm (String term) {
 		trgTerm = term;
+		trgWords = SimpleTB.toWords(term);
 	}
 
 	public String getTargetTerm () {
@@ -24,8 +24,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Range;
@@ -38,6 +42,7 @@ import net.sf.okapi.lib.terminology.IGlossaryReader;
 import net.sf.okapi.lib.terminology.LangEntry;
 import net.sf.okapi.lib.terminology.TermEntry;
 import net.sf.okapi.lib.terminology.TermHit;
+import net.sf.okapi.lib.terminology.TermMatcher;
 import net.sf.okapi.lib.terminology.csv.CSVReader;
 import net.sf.okapi.lib.terminology.tbx.TBXReader;
 import net.sf.okapi.lib.terminology.tsv.TSVReader;
@@ -49,11 +54,16 @@ import net.sf.okapi.lib.terminology.tsv.TSVReader;
 public class SimpleTB {
 	
 	private static final String SIGNATURE = "SimpleTB-v1";
+	private static final Pattern WORDSEPARATORS = Pattern.compile("\\s+");
 	
 	LocaleId srcLoc;
 	LocaleId trgLoc;
 	private List<Entry> entries;
 	private boolean betweenCodes;
+	private TermMatcher srcMatcher;
+	private TermMatcher trgMatcher;
+	private Map<String, int[]> srcWordIndex;
+	private Map<String, int[]> trgWordIndex;
 	
 	public SimpleTB (LocaleId srcLoc,
 		LocaleId trgLoc)
@@ -65,6 +75,64 @@ public class SimpleTB {
 	
 	private void reset () {
 		entries = new ArrayList<Entry>();
+		resetIndexes();
+	}
+	
+	private synchronized void resetIndexes () {
+		srcMatcher = null;
+		trgMatcher = null;
+		srcWordIndex = null;
+		trgWordIndex = null;
+	}
+	
+	/**
+	 * Gets the index of the source or target terms by their first word, creating it if needed.
+	 * Each word is mapped to the indices of the entries where the term starts with that word
+	 * (in the order of the entries).
+	 * @param source true for the index of the source terms, false for the target terms.
+	 * @return the index for the given side.
+	 */
+	private synchronized Map<String, int[]> getWordIndex (boolean source) {
+		Map<String, int[]> index = (source ? srcWordIndex : trgWordIndex);
+		if ( index == null ) {
+			index = new HashMap<String, int[]>();
+			for ( int i=0; i<entries.size(); i++ ) {
+				Entry ent = entries.get(i);
+				String[] words = (source ? ent.srcWords : ent.trgWords);
+				if (( words == null ) || ( words.length == 0 )) continue;
+				int[] list = index.get(words[0]);
+				if ( list == null ) {
+					list = new int[] { i };
+				}
+				else {
+					list = Arrays.copyOf(list, list.length+1);
+					list[list.length-1] = i;
+				}
+				index.put(words[0], list);
+			}
+			if ( source ) srcWordIndex = index;
+			else trgWordIndex = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Gets the matcher for the source or target terms, creating it if needed.
+	 * The index of each string in the matcher is the index of its entry.
+	 * @param source true for the matcher of the source terms, false for the target terms.
+	 * @return the matcher for the given side.
+	 */
+	private synchronized TermMatcher getMatcher (boolean source) {
+		TermMatcher matcher = (source ? srcMatcher : trgMatcher);
+		if ( matcher == null ) {
+			matcher = new TermMatcher(false);
+			for ( Entry ent : entries ) {
+				matcher.add(source ? ent.getSourceTerm() : ent.getTargetTerm());
+			}
+			if ( source ) srcMatcher = matcher;
+			else trgMatcher = matcher;
+		}
+		return matcher;
 	}
 	
 	public void initialize (boolean stringSearch,
@@ -74,6 +142,7 @@ public class SimpleTB {
 		// In case of a string-based search: we sort the source terms: longer first
 		if ( stringSearch ) {
 			Collections.sort(entries);
+			resetIndexes();
 		}
 	}
 	
@@ -119,12 +188,14 @@ public class SimpleTB {
 			}
 		}
 		finally {
+			resetIndexes();
 			if ( reader != null ) reader.close();
 		}
 	}
 	
 	public void removeAll () {
 		entries.clear();
+		resetIndexes();
 	}
 
 	public Entry addEntry (String srcTerm,
@@ -133,6 +204,7 @@ public class SimpleTB {
 		Entry ent = new Entry(srcTerm);
 		ent.setTargetTerm(trgTerm);
 		entries.add(ent);
+		resetIndexes();
 		return ent;
 	}
 
@@ -150,38 +222,60 @@ public class SimpleTB {
 			}
 		}
 
-		String stringToMatch;
-		String otherString;
 		StringBuilder text = new StringBuilder(frag);
-		Range location = new Range(0, 0);
 		
-		// For each term in the list
-		for ( Entry ent : entries ) {
-			// Select the source and target terms to search for
-			if ( searchSource ) {
-				stringToMatch = ent.getSourceTerm();
-				otherString = ent.getTargetTerm();
-			}
-			else {
-				stringToMatch = ent.getTargetTerm();
-				otherString = ent.getSourceTerm();
-			}
-			
-			if (( stringToMatch == null ) || ( otherString == null )) continue;
+		// Find all the terms of the searched locale in one pass
+		List<TermMatcher.Match> matches = getMatcher(searchSource).find(text);
+		return selectStrings(text, entries, matches, searchSource, betweenCodes);
+	}
+
+	/**
+	 * Selects the valid matches among the occurrences of the terms of a list of entries.
+	 * The entries are processed in their order, and the occurrences of each term from left to right.
+	 * An occurrence is kept if it does not overlap a match already kept and if it is a valid match
+	 * (see {@link #isValidMatch(CharSequence, int, int, boolean)}).
+	 * @param text the text where the terms were found. The matches kept are obliterated in it.
+	 * @param entries the list of entries.
+	 * @param matches the occurrences of the terms in the text (their term index must be the index of their entry).
+	 * @param searchSource true if the text was searched for the source terms, false for the target terms.
+	 * @param betweenCodes true if the matches must be between codes.
+	 * @return the list of the terms found.
+	 */
+	public static List<TermHit> selectStrings (StringBuilder text,
+		List<Entry> entries,
+		List<TermMatcher.Match> matches,
+		boolean searchSource,
+		boolean betweenCodes)
+	{
+		List<TermHit> res = new ArrayList<TermHit>();
+		if ( matches.isEmpty() ) return res;
+		// Process the terms in the order of the entries, and each term from left to right
+		Collections.sort(matches);
+		BitSet used = new BitSet(text.length());
+		
+		for ( TermMatcher.Match match : matches ) {
+			// Skip the parts of the text already matched by a previous term
+			int n = used.nextSetBit(match.start);
+			if (( n != -1 ) && ( n < match.end )) continue;
+			if ( !isValidMatch(text, match.start, match.end, betweenCodes) ) continue;
+
+			// Select the source and target terms
+			Entry ent = entries.get(match.term);
+			String stringToMatch = (searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+			String otherString = (searchSource ? ent.getTargetTerm() : ent.getSourceTerm());
+			if ( otherString == null ) continue;
 			
-			while ( true ) {
-				if ( !isValidMatch(text, stringToMatch, location, betweenCodes) ) break;
-				// Else: Save the term
-				TermHit th = new TermHit();
-				th.sourceTerm = new TermEntry(stringToMatch);
-				th.targetTerm = new TermEntry(otherString);
-				th.range = new Range(location.start, location.end);
-				res.add(th);
-				// Obliterate the match so we don't re-match it 
-				for ( int i=location.start; i<location.end; i++ ) {
-					text.setCharAt(i, '`');
-				}
+			// Save the term
+			TermHit th = new TermHit();
+			th.sourceTerm = new TermEntry(stringToMatch);
+			th.targetTerm = new TermEntry(otherString);
+			th.range = new Range(match.start, match.end);
+			res.add(th);
+			// Obliterate the match so we don't re-match it 
+			for ( int i=match.start; i<match.end; i++ ) {
+				text.setCharAt(i, '`');
 			}
+			used.set(match.start, match.end);
 		}
 		
 		return res;
@@ -202,14 +296,30 @@ public class SimpleTB {
 	{
 		int n = text.indexOf(stringToMatch);
 		if ( n == -1 ) return false; // No more of that term
+		int last = n+stringToMatch.length();
+		if ( !isValidMatch(text, n, last, betweenCodes) ) return false;
+		location.start = n;
+		location.end = last;
+		return true;
+	}
+	
+	/**
+	 * Checks if a given occurrence of a string in a text is a valid match: if it is a whole "word",
+	 * and, if requested, if it is between inline codes.
+	 * @param text the text where the string was found.
+	 * @param n the position of the first character of the occurrence.
+	 * @param last the position of the character after the last one of the occurrence.
+	 * @param betweenCodes true if the occurrence must be between codes.
+	 * @return true if it's a valid match, false otherwise.
+	 */
+	public static boolean isValidMatch (CharSequence text,
+		int n,
+		int last,
+		boolean betweenCodes)
+	{
 		// Check "word boundaries"
 		if ( n > 0 ) {
-			int cp = text.codePointAt(n-1);
-			if (( Character.getType(cp) == Character.LOWERCASE_LETTER ) ||
-				( Character.getType(cp) == Character.UPPERCASE_LETTER ) ||
-				( Character.getType(cp) == Character.TITLECASE_LETTER ) ||
-				( Character.getType(cp) == Character.DECIMAL_DIGIT_NUMBER ))
-			{
+			if ( isWordCharacter(Character.codePointAt(text, n-1)) ) {
 				// If the preceding character is a letter, it's not a "word"
 				return false;
 			}
@@ -221,14 +331,8 @@ public class SimpleTB {
 			}
 		}
 		
-		int last = n+stringToMatch.length();
 		if ( last < text.length() ) {
-			int cp = text.codePointAt(last);
-			if (( Character.getType(cp) == Character.LOWERCASE_LETTER ) ||
-				( Character.getType(cp) == Character.UPPERCASE_LETTER ) ||
-				( Character.getType(cp) == Character.TITLECASE_LETTER ) ||
-				( Character.getType(cp) == Character.DECIMAL_DIGIT_NUMBER ))
-			{
+			if ( isWordCharacter(Character.codePointAt(text, last)) ) {
 				// If the following character is a letter, it's not a "word"
 				return false;
 			}
@@ -239,20 +343,66 @@ public class SimpleTB {
 				return false;
 			}
 		}
-		location.start = n;
-		location.end = last;
+		return true;
+	}
+	
+	/**
+	 * Indicates if a given character is part of a "word" for the string search:
+	 * if it is a letter (lowercase, uppercase or titlecase) or a decimal digit.
+	 * @param cp the code point to check.
+	 * @return true if the character is part of a word, false otherwise.
+	 */
+	public static boolean isWordCharacter (int cp) {
+		switch ( Character.getType(cp) ) {
+		case Character.LOWERCASE_LETTER:
+		case Character.UPPERCASE_LETTER:
+		case Character.TITLECASE_LETTER:
+		case Character.DECIMAL_DIGIT_NUMBER:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Splits a text into its lowercase words. The words are the parts separated by white spaces.
+	 * @param text the text to split (can be null).
+	 * @return the array of the words (empty if there are none), or null if the text is null.
+	 */
+	public static String[] toWords (String text) {
+		if ( text == null ) return null;
+		String[] words = WORDSEPARATORS.split(text.toLowerCase().trim());
+		if (( words.length == 1 ) && words[0].isEmpty() ) return new String[0];
+		return words;
+	}
+	
+	/**
+	 * Indicates if a sequence of words is in a list of words, at a given position.
+	 * @param words the list of words where to look.
+	 * @param start the position in the list where the sequence should start.
+	 * @param sequence the sequence of words to look for.
+	 * @return true if the sequence is at the given position, false otherwise.
+	 */
+	public static boolean hasWordsAt (String[] words,
+		int start,
+		String[] sequence)
+	{
+		if ( start+sequence.length > words.length ) return false;
+		for ( int i=0; i<sequence.length; i++ ) {
+			if ( !words[start+i].equals(sequence[i]) ) return false;
+		}
 		return true;
 	}
 	
 	/*
-	 * Very crude implementation of the search terms function.
+	 * Simple word-based implementation of the search terms function.
+	 * A term is found if all its words are in the text, in sequence.
+	 * Only the entries starting with one of the words of the text are checked.
 	 */
 	public List<TermHit> getExistingTerms (TextFragment frag,
 		LocaleId fragmentLoc,
 		LocaleId otherLoc)
 	{
-		String text = TextUnitUtil.getText(frag).toLowerCase(); // Strip inline codes and convert to lowercase
-		List<String> parts = Arrays.asList(text.split("\\s"));
 		List<TermHit> res = new ArrayList<TermHit>();
 	
 		// Determine if the termbase has the searched locale
@@ -263,25 +413,32 @@ public class SimpleTB {
 			}
 		}
 
-		String termToMatch;
-		String otherTerm;
-		for ( Entry ent : entries ) {
-			if ( searchSource ) {
-				termToMatch = ent.getSourceTerm();
-				otherTerm = ent.getTargetTerm();
-			}
-			else {
-				termToMatch = ent.getTargetTerm();
-				otherTerm = ent.getSourceTerm();
-			}
-			if (( termToMatch == null ) || ( otherTerm == null )) continue;
-			if ( parts.contains(termToMatch.toLowerCase()) ) {
-				TermHit th = new TermHit();
-				th.sourceTerm = new TermEntry(termToMatch);
-				th.targetTerm = new TermEntry(otherTerm);
-				res.add(th);
+		String[] words = toWords(TextUnitUtil.getText(frag)); // Strip inline codes and convert to lowercase
+		Map<String, int[]> index = getWordIndex(searchSource);
+		// Collect the entries found, in their order
+		BitSet found = new BitSet(entries.size());
+		for ( int i=0; i<words.length; i++ ) {
+			int[] candidates = index.get(words[i]);
+			if ( candidates == null ) continue;
+			for ( int n : candidates ) {
+				if ( found.get(n) ) continue;
+				Entry ent = entries.get(n);
+				if ( hasWordsAt(words, i, (searchSource ? ent.srcWords : ent.trgWords)) ) {
+					found.set(n);
+				}
 			}
 		}
+
+		for ( int n=found.nextSetBit(0); n!=-1; n=found.nextSetBit(n+1) ) {
+			Entry ent = entries.get(n);
+			String termToMatch = (searchSource ? ent.getSourceTerm() : ent.getTargetTerm());
+			String otherTerm = (searchSource ? ent.getTargetTerm() : ent.getSourceTerm());
+			if ( otherTerm == null ) continue;
+			TermHit th = new TermHit();
+			th.sourceTerm = new TermEntry(termToMatch);
+			th.targetTerm = new TermEntry(otherTerm);
+			res.add(th);
+		}
 		
 		return res;
 	}
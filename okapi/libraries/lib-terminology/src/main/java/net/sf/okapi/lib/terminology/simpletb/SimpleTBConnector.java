@@ -35,6 +35,15 @@ public class SimpleTBConnector implements ITermAccess {
 		params = new Parameters();
 	}
 
+	/**
+	 * Creates a connector for an existing termbase. Do not call {@link #open()} in that case.
+	 * @param tb the termbase to use.
+	 */
+	public SimpleTBConnector (SimpleTB tb) {
+		this();
+		this.tb = tb;
+	}
+
 	@Override
 	public IParameters getParameters () {
 		return params;
@@ -74,7 +74,38 @@ public class GlossaryTest {
 
 		ta.close();
 	}
-	
+
+	@Test
+	public void testGetExistingMultiWordTerms () {
+		SimpleTBConnector ta = new SimpleTBConnector();
+		Parameters params = (Parameters)ta.getParameters();
+		params.setSourceLocale(locEN);
+		params.setTargetLocale(locFR);
+		ta.open();
+		ta.addEntry("time", "temps");
+		ta.addEntry("Wrist  Watch", "montre bracelet");
+		ta.addEntry("watch", "montre");
+		ta.addEntry("watch strap", "bracelet de montre");
+
+		TextFragment srcFrag = new TextFragment("The wrist watch\tshows the TIME");
+		List<TermHit> found1 = ta.getExistingTerms(srcFrag, locEN, locFR);
+		assertEquals(3, found1.size());
+		assertEquals("time", found1.get(0).sourceTerm.getText());
+		assertEquals("Wrist  Watch", found1.get(1).sourceTerm.getText());
+		assertEquals("watch", found1.get(2).sourceTerm.getText());
+
+		TextFragment trgFrag = new TextFragment("Le bracelet de montre");
+		List<TermHit> found2 = ta.getExistingTerms(trgFrag, locFR, locEN);
+		assertEquals(2, found2.size());
+		assertEquals("montre", found2.get(0).sourceTerm.getText());
+		assertEquals("bracelet de montre", found2.get(1).sourceTerm.getText());
+
+		// The index is updated when entries are added
+		ta.addEntry("shows", "marque");
+		assertEquals(4, ta.getExistingTerms(srcFrag, locEN, locFR).size());
+		ta.close();
+	}
+
 	@Test
 	public void testGetExistingStrings () {
 		SimpleTBConnector ta = new SimpleTBConnector();
@@ -93,7 +124,22 @@ public class GlossaryTest {
 		assertEquals(2, found1.size());
 		assertEquals("Src1 src2", found1.get(0).sourceTerm.getText());
 		assertEquals("src2", found1.get(1).sourceTerm.getText());
-		
+
+		// The occurrence inside a word does not prevent finding the next ones
+		srcFrag = new TextFragment("Srcsrc src and src.");
+		found1 = ta.getExistingStrings(srcFrag, locEN, locFR);
+		assertEquals(2, found1.size());
+		assertEquals(7, found1.get(0).range.start);
+		assertEquals(15, found1.get(1).range.start);
+
+		// Search the target side
+		TextFragment trgFrag = new TextFragment("trg2 et Trg1 trg2");
+		List<TermHit> found2 = ta.getExistingStrings(trgFrag, locFR, locEN);
+		assertEquals(2, found2.size());
+		assertEquals("Trg1 trg2", found2.get(0).sourceTerm.getText());
+		assertEquals("Src1 src2", found2.get(0).targetTerm.getText());
+		assertEquals("trg2", found2.get(1).sourceTerm.getText());
+		assertEquals(0, found2.get(1).range.start);
 	}
 
 }
@@ -0,0 +1,104 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TermMatcherTest {
+
+	@Test
+	public void testOverlappingTerms () {
+		TermMatcher matcher = new TermMatcher(false);
+		assertEquals(0, matcher.add("he"));
+		assertEquals(1, matcher.add("she"));
+		assertEquals(2, matcher.add("his"));
+		assertEquals(3, matcher.add("hers"));
+		assertEquals(4, matcher.add(""));
+		assertEquals(5, matcher.add("she"));
+		List<TermMatcher.Match> res = matcher.find("ushers");
+		Collections.sort(res);
+		assertEquals("[0:2-4, 1:1-4, 3:2-6, 5:1-4]", res.toString());
+	}
+
+	@Test
+	public void testIgnoreCase () {
+		TermMatcher matcher = new TermMatcher(true);
+		matcher.add("Watch");
+		matcher.add("TIME");
+		List<TermMatcher.Match> res = matcher.find("This WATCH shows a time");
+		assertEquals("[0:5-10, 1:19-23]", res.toString());
+
+		matcher = new TermMatcher(false);
+		matcher.add("Watch");
+		matcher.add("time");
+		res = matcher.find("This WATCH shows a time");
+		assertEquals("[1:19-23]", res.toString());
+	}
+
+	@Test
+	public void testAddAfterSearch () {
+		TermMatcher matcher = new TermMatcher(false);
+		matcher.add("abc");
+		assertEquals(1, matcher.find("xabcabd").size());
+		matcher.add("abd");
+		assertEquals("[0:1-4, 1:4-7]", matcher.find("xabcabd").toString());
+	}
+
+	@Test
+	public void testSameAsIndexOf () {
+		Random rand = new Random(42);
+		TermMatcher matcher = new TermMatcher(false);
+		List<String> terms = new ArrayList<String>();
+		for ( int i=0; i<500; i++ ) {
+			String term = randomString(rand, 1+rand.nextInt(4));
+			terms.add(term);
+			matcher.add(term);
+		}
+		String text = randomString(rand, 2000);
+		List<TermMatcher.Match> expected = new ArrayList<TermMatcher.Match>();
+		for ( int t=0; t<terms.size(); t++ ) {
+			String term = terms.get(t);
+			for ( int n=text.indexOf(term); n!=-1; n=text.indexOf(term, n+1) ) {
+				expected.add(new TermMatcher.Match(t, n, n+term.length()));
+			}
+		}
+		List<TermMatcher.Match> res = matcher.find(text);
+		Collections.sort(res);
+		assertEquals(expected.toString(), res.toString());
+	}
+
+	private String randomString (Random rand,
+		int length)
+	{
+		StringBuilder tmp = new StringBuilder();
+		for ( int i=0; i<length; i++ ) {
+			tmp.append((char)('a'+rand.nextInt(3)));
+		}
+		return tmp.toString();
+	}
+
+}
@@ -0,0 +1,183 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.terminology.h2tb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import net.sf.okapi.common.FileLocation;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextFragment.TagType;
+import net.sf.okapi.lib.terminology.TermHit;
+import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class H2TBTest {
+
+	private LocaleId locEN = LocaleId.ENGLISH;
+	private LocaleId locFR = LocaleId.FRENCH;
+	private FileLocation location = FileLocation.fromClass(H2TBTest.class);
+
+	private static final String[][] ENTRIES = {
+		{"src", "trg"},
+		{"src2", "trg2"},
+		{"Src1 src2", "Trg1 trg2"},
+		{"src5", "trg5"},
+		{"watch", "montre"},
+		{"wrist watch", "montre bracelet"},
+		{"-bar", "-barre"},
+		{"foo", "truc"},
+		{"e-mail", "courriel"},
+		{"time", "temps"},
+		{"東京", "Tokyo"},
+		{"src", "autre"},
+	};
+
+	private static final String[] TEXTS = {
+		">src2< and Src1 src2. Also: WithiWordsrcWord",
+		"Srcsrc src and src.",
+		"The wrist watch shows the TIME, the watch.",
+		"foo-bar and foo -bar",
+		"Send an e-mail to 東京都.",
+		"",
+	};
+
+	@Test
+	public void testSameResultsAsSimpleTB () {
+		H2TB tb = new H2TB(locEN, locFR);
+		tb.open(getPath("same"));
+		SimpleTB stb = new SimpleTB(locEN, locFR);
+		for ( String[] pair : ENTRIES ) {
+			tb.addEntry(pair[0], pair[1]);
+			stb.addEntry(pair[0], pair[1]);
+		}
+		for ( boolean stringSearch : new boolean[] {false, true} ) {
+			tb.initialize(stringSearch, false);
+			stb.initialize(stringSearch, false);
+			for ( String text : TEXTS ) {
+				TextFragment frag = new TextFragment(text);
+				assertEquals(toString(stb.getExistingStrings(frag, locEN, locFR)),
+					toString(tb.getExistingStrings(frag, locEN, locFR)));
+				assertEquals(toString(stb.getExistingTerms(frag, locEN, locFR)),
+					toString(tb.getExistingTerms(frag, locEN, locFR)));
+			}
+		}
+		TextFragment frag = new TextFragment("La montre bracelet: Trg1 trg2");
+		assertEquals(toString(stb.getExistingStrings(frag, locFR, locEN)),
+			toString(tb.getExistingStrings(frag, locFR, locEN)));
+		assertEquals(toString(stb.getExistingTerms(frag, locFR, locEN)),
+			toString(tb.getExistingTerms(frag, locFR, locEN)));
+		assertEquals(0, tb.getExistingTerms(frag, LocaleId.GERMAN, locEN).size());
+		tb.close();
+	}
+
+	@Test
+	public void testBetweenCodes () {
+		H2TB tb = new H2TB(locEN, locFR);
+		tb.open(getPath("codes"));
+		tb.addEntry("watch", "montre");
+		tb.initialize(true, true);
+		TextFragment frag = new TextFragment("A ");
+		frag.append(TagType.OPENING, "b", "<b>");
+		frag.append("watch");
+		frag.append(TagType.CLOSING, "b", "</b>");
+		frag.append(" and a watch");
+		List<TermHit> hits = tb.getExistingStrings(frag, locEN, locFR);
+		assertEquals(1, hits.size());
+		assertEquals(4, hits.get(0).range.start);
+		tb.close();
+	}
+
+	@Test
+	public void testReopenAndUpdate () {
+		String path = getPath("reopen");
+		H2TB tb = new H2TB(locEN, locFR);
+		assertTrue(tb.open(path));
+		tb.importTSV(location.in("/test01.tsv").asFile());
+		int count = tb.getEntryCount();
+		assertTrue(count > 0);
+		tb.close();
+
+		// Re-open: the locales come from the termbase
+		tb = new H2TB(LocaleId.GERMAN, LocaleId.SPANISH);
+		assertFalse(tb.open(path+H2TB.DATAFILE_EXT));
+		assertEquals(locEN, tb.getSourceLocale());
+		assertEquals(locFR, tb.getTargetLocale());
+		assertEquals(count, tb.getEntryCount());
+		List<TermHit> hits = tb.getExistingTerms(new TextFragment("The Source 1 text"), locEN, locFR);
+		assertEquals(1, hits.size());
+		assertEquals("target 1", hits.get(0).targetTerm.getText());
+
+		// Add entries to the existing termbase
+		tb.addEntry("text", "texte");
+		assertEquals(count+1, tb.getEntryCount());
+		assertEquals(2, tb.getExistingTerms(new TextFragment("The Source 1 text"), locEN, locFR).size());
+		tb.removeAll();
+		assertEquals(0, tb.getEntryCount());
+		tb.close();
+	}
+
+	@Test
+	public void testConnector () {
+		H2TBConnector ta = new H2TBConnector();
+		Parameters params = (Parameters)ta.getParameters();
+		params.setDbPath(getPath("connector"));
+		params.setGlossaryPath(location.in("/test01.tbx").asFile().getPath());
+		params.setSourceLocale(locEN);
+		params.setTargetLocale(LocaleId.fromString("hu"));
+		ta.open();
+		int count = ta.getTermbase().getEntryCount();
+		assertEquals(1, count);
+		ta.close();
+		// Not imported again
+		ta.open();
+		assertEquals(count, ta.getTermbase().getEntryCount());
+		ta.initializeSearch(true, false);
+		List<TermHit> hits = ta.getExistingStrings(new TextFragment("The alpha smoothing factor."),
+			locEN, LocaleId.fromString("hu"));
+		assertEquals(1, hits.size());
+		ta.close();
+	}
+
+	private String getPath (String name) {
+		File file = location.out("/h2tb/"+name+H2TB.DATAFILE_EXT).asFile();
+		file.delete();
+		return file.getPath().substring(0, file.getPath().length()-H2TB.DATAFILE_EXT.length());
+	}
+
+	private String toString (List<TermHit> hits) {
+		StringBuilder tmp = new StringBuilder();
+		for ( TermHit th : hits ) {
+			tmp.append(th.sourceTerm.getText()).append('=').append(th.targetTerm.getText());
+			if ( th.range != null ) {
+				tmp.append('@').append(th.range.start).append('-').append(th.range.end);
+			}
+			tmp.append(';');
+		}
+		return tmp.toString();
+	}
+
+}
@@ -27,6 +27,7 @@ import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.lib.terminology.TermMatcher;
 
 public class BlacklistChecker {
 
@@ -60,69 +61,54 @@ public class BlacklistChecker {
 		String searchTxtUpperCase = UCharacter.toUpperCase(loc.toIcuLocale(), searchTxtAsIs);
 		mrkPositions = updateMarkerPositions(mrkPositions);
 
-		for (BlackTerm bterm : termList) {
+		// All the occurrences of all the terms, from a single pass on each version of the text
+		for (TermMatcher.Match match : ta.find(searchTxtAsIs, searchTxtUpperCase)) {
+			BlackTerm bterm = termList.get(match.term);
 			String search = bterm.doCaseSensitiveMatch ? searchTxtAsIs : searchTxtUpperCase;
-			int idx = 0;
-			while ((idx = search.indexOf(bterm.searchTerm, idx)) != -1) {
-				// check boundaries
-				if ((bterm.searchTerm.length()) != search.length() && !allowBlacklistSub) {
-					if ((idx > 0) && (idx < search.length() - bterm.searchTerm.length())) {
-						if ((Character.isLetter(search.charAt(idx - 1))) || (Character.isLetter(search.charAt(idx + bterm.searchTerm.length())))) {
-							// BlackTerm is a substring
-							break;
-						}
-					}
-					else if (idx == 0) { // check end
-						if (Character.isLetter(search.charAt(idx + bterm.searchTerm.length()))) {
-							// BlackTerm is a substring
-							break;
-						}
-					}
-					else { // check start
-						if (Character.isLetter(search.charAt(idx - 1))) {
-							// BlackTerm is a substring
-							break;
-						}
-					}
-				}
-				
-				// Calculate offset
-				int rangeStart;
-				int rangeEnd;
-				int offset;
-				if (!mrkPositions.isEmpty()) {
-					offset = getOffset(idx, mrkPositions, true);
-					rangeStart = idx + offset;
-					rangeEnd = idx + bterm.searchTerm.length();
-					offset = getOffset(rangeEnd, mrkPositions, false);
-					rangeEnd += offset;
-				}
-				else {
-					rangeStart = idx;
-					rangeEnd = rangeStart + bterm.searchTerm.length();
-				}
-				
-				// Create issue
-				String message;
-				if (!bterm.suggestion.isEmpty()) {
-					message = String.format("The term \"%s\" is a blacklisted term. Consider using \"%s\".", bterm.text, bterm.suggestion);
-				}
-				else {
-					message = String.format("The term \"%s\" is a blacklisted term. Consider revising.", bterm.text);
-				}
-				if (bterm.comment != null && !bterm.comment.isEmpty()) {
-					message += " More details: " + bterm.comment;
+			int idx = match.start;
+			// check boundaries
+			if ((bterm.searchTerm.length()) != search.length() && !allowBlacklistSub) {
+				int end = idx + bterm.searchTerm.length();
+				if (((idx > 0) && Character.isLetter(search.charAt(idx - 1)))
+					|| ((end < search.length()) && Character.isLetter(search.charAt(end)))) {
+					// BlackTerm is a substring
+					continue;
 				}
-				Issue issue;
-				if(isSrc)
-					issue = new Issue(docId, subDocId, IssueType.TERMINOLOGY, tu.getId(), segment.getId(), message, TextFragment.fromFragmentToString(segment.text, rangeStart), TextFragment.fromFragmentToString(segment.text, rangeEnd), 0, -1, Issue.DISPSEVERITY_LOW, tu.getName());
-				else
-					issue = new Issue(docId, subDocId, IssueType.TERMINOLOGY, tu.getId(), segment.getId(), message, 0, -1, TextFragment.fromFragmentToString(segment.text, rangeStart), TextFragment.fromFragmentToString(segment.text, rangeEnd), Issue.DISPSEVERITY_LOW, tu.getName());
-				issues.add(issue);
-
-				// iterate
-				idx++;
 			}
+			
+			// Calculate offset
+			int rangeStart;
+			int rangeEnd;
+			int offset;
+			if (!mrkPositions.isEmpty()) {
+				offset = getOffset(idx, mrkPositions, true);
+				rangeStart = idx + offset;
+				rangeEnd = idx + bterm.searchTerm.length();
+				offset = getOffset(rangeEnd, mrkPositions, false);
+				rangeEnd += offset;
+			}
+			else {
+				rangeStart = idx;
+				rangeEnd = rangeStart + bterm.searchTerm.length();
+			}
+			
+			// Create issue
+			String message;
+			if (!bterm.suggestion.isEmpty()) {
+				message = String.format("The term \"%s\" is a blacklisted term. Consider using \"%s\".", bterm.text, bterm.suggestion);
+			}
+			else {
+				message = String.format("The term \"%s\" is a blacklisted term. Consider revising.", bterm.text);
+			}
+			if (bterm.comment != null && !bterm.comment.isEmpty()) {
+				message += " More details: " + bterm.comment;
+			}
+			Issue issue;
+			if(isSrc)
+				issue = new Issue(docId, subDocId, IssueType.TERMINOLOGY, tu.getId(), segment.getId(), message, TextFragment.fromFragmentToString(segment.text, rangeStart), TextFragment.fromFragmentToString(segment.text, rangeEnd), 0, -1, Issue.DISPSEVERITY_LOW, tu.getName());
+			else
+				issue = new Issue(docId, subDocId, IssueType.TERMINOLOGY, tu.getId(), segment.getId(), message, 0, -1, TextFragment.fromFragmentToString(segment.text, rangeStart), TextFragment.fromFragmentToString(segment.text, rangeEnd), Issue.DISPSEVERITY_LOW, tu.getName());
+			issues.add(issue);
 		}
 		return issues.size();
 	}
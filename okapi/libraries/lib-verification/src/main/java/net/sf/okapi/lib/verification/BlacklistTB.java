@@ -19,15 +19,26 @@ package net.sf.okapi.lib.verification;
 import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Util;
+import net.sf.okapi.lib.terminology.TermMatcher;
 
 class BlacklistTB {
 	
 	private List<BlackTerm> entries;
 	private LocaleId locale = new LocaleId(Locale.getDefault());
+	private Matchers matchers; // Null when the list of terms has changed since they were built
+
+	/**
+	 * Matchers of the case-sensitive terms and of the upper-case forms of the other terms.
+	 */
+	private static class Matchers {
+		final TermMatcher caseMatcher = new TermMatcher(false);
+		final TermMatcher upperMatcher = new TermMatcher(false);
+	}
 
 	public BlacklistTB() {
 		reset();
@@ -51,13 +62,48 @@ class BlacklistTB {
 		}
 	}
 	
-	public void removeAll() {
+	public synchronized void removeAll() {
 		entries.clear();
+		matchers = null;
 	}
 	
 	public List<BlackTerm> getBlacklistStrings() {
 		return entries;
 	}
+
+	/**
+	 * Finds all the occurrences of the terms of this blacklist in a given text, in a single pass.
+	 * @param text the text as it is (for the case-sensitive terms).
+	 * @param upperText the upper-case version of the text (for the other terms).
+	 * @return the list of the occurrences, sorted by term index (in {@link #getBlacklistStrings()})
+	 * and then by position.
+	 */
+	List<TermMatcher.Match> find(String text,
+		String upperText)
+	{
+		Matchers current = getMatchers();
+		List<TermMatcher.Match> matches = new ArrayList<TermMatcher.Match>();
+		matches.addAll(current.caseMatcher.find(text));
+		matches.addAll(current.upperMatcher.find(upperText));
+		Collections.sort(matches);
+		return matches;
+	}
+
+	/**
+	 * Gets the matchers, and builds them if the list of terms has changed since they were built.
+	 * Both matchers use the index of the terms in the list: a term is added as null
+	 * in the matcher that does not apply to it.
+	 */
+	private synchronized Matchers getMatchers() {
+		if (matchers == null) {
+			matchers = new Matchers();
+			for (BlackTerm bterm : entries) {
+				matchers.caseMatcher.add(bterm.doCaseSensitiveMatch ? bterm.searchTerm : null);
+				matchers.upperMatcher.add(bterm.doCaseSensitiveMatch ? null : bterm.searchTerm);
+			}
+		}
+		return matchers;
+	}
 	
 	private void importTSV(File file) {
 		importBlacklist(new BlacklistReader(locale), file);
@@ -85,11 +131,12 @@ class BlacklistTB {
 		}
 	}
 
-	private void importBlacklist(BlacklistReader reader) {
+	private synchronized void importBlacklist(BlacklistReader reader) {
 		while (reader.hasNext()) {
 			BlackTerm bterm = reader.next();
 			entries.add(bterm);
 		}
+		matchers = null;
 	}
 
 	void loadBlacklistStream(InputStream input) {
@@ -0,0 +1,431 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.annotation.GenericAnnotation;
+import net.sf.okapi.common.annotation.GenericAnnotationType;
+import net.sf.okapi.common.annotation.GenericAnnotations;
+import net.sf.okapi.common.annotation.IssueType;
+import net.sf.okapi.common.exceptions.OkapiIOException;
+import net.sf.okapi.common.resource.Code;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.common.resource.TextContainer;
+
+/**
+ * Stores the issues found for each text unit of a session, along with a fingerprint
+ * of the text unit content. This allows a re-check to run the checkers only on the
+ * text units that changed since the previous check.
+ * <p>The store is valid only for a given configuration (parameters, locales and
+ * term files). If the configuration changes the store is emptied.
+ */
+class IssueStore {
+
+	private static final String SIGNATURE = "OQCC";
+	private static final long VERSION = 1L;
+
+	/**
+	 * Issues of a text unit.
+	 */
+	static class Entry {
+		final long print;
+		final List<Issue> issues;
+
+		Entry (long print,
+			List<Issue> issues)
+		{
+			this.print = print;
+			this.issues = issues;
+		}
+	}
+
+	/**
+	 * Issues of a document.
+	 */
+	static class Document {
+		final String print;
+		final Map<String, Entry> entries;
+
+		Document (String print,
+			Map<String, Entry> entries)
+		{
+			this.print = print;
+			this.entries = entries;
+		}
+	}
+
+	private long configPrint;
+	private Map<URI, Document> docs = new HashMap<URI, Document>();
+
+	/**
+	 * Sets the configuration for the next check, and empties the store
+	 * if it is not the configuration of the stored issues.
+	 * @param params the parameters to use.
+	 * @param srcLoc the source locale.
+	 * @param trgLoc the target locale.
+	 */
+	public void setConfiguration (Parameters params,
+		LocaleId srcLoc,
+		LocaleId trgLoc)
+	{
+		StringBuilder tmp = new StringBuilder(params.toString());
+		tmp.append('\n').append(srcLoc).append('\n').append(trgLoc);
+		// The content of the external lists is not in the parameters
+		if ( params.getCheckTerms() ) appendFileStamp(tmp, params.getTermsPath());
+		if ( params.getCheckBlacklist() ) appendFileStamp(tmp, params.getBlacklistPath());
+		long print = fingerprint(tmp);
+		if ( print != configPrint ) {
+			clear();
+			configPrint = print;
+		}
+	}
+
+	/**
+	 * Empties the store, so the next check is done from scratch.
+	 */
+	public void clear () {
+		docs.clear();
+		configPrint = 0;
+	}
+
+	public boolean isEmpty () {
+		return docs.isEmpty();
+	}
+
+	/**
+	 * Removes a document from the store and returns its issues.
+	 * @param docId the URI of the document.
+	 * @return the stored issues of the document, or null if there are none.
+	 */
+	public Document remove (URI docId) {
+		return docs.remove(docId);
+	}
+
+	/**
+	 * Sets the issues of a document.
+	 * @param docId the URI of the document.
+	 * @param doc the issues to set.
+	 */
+	public void put (URI docId,
+		Document doc)
+	{
+		docs.put(docId, doc);
+	}
+
+	/**
+	 * Gets a string that changes when the file of a given document changes.
+	 * <p>The stamp includes a checksum of the file content, so edits that keep the same
+	 * length and modification time (within the file system granularity) are detected too.
+	 * @param rd the document.
+	 * @return the stamp of the document, or null if it has no file.
+	 */
+	public static String getDocumentPrint (RawDocument rd) {
+		URI uri = rd.getInputURI();
+		if (( uri == null ) || !"file".equals(uri.getScheme()) ) return null;
+		File file = new File(uri);
+		if ( !file.isFile() ) return null;
+		return String.format("%d-%d-%x-%s-%s", file.lastModified(), file.length(),
+			getChecksum(file), rd.getFilterConfigId(), rd.getEncoding());
+	}
+
+	private static long getChecksum (File file) {
+		CRC32 crc = new CRC32();
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			byte[] buffer = new byte[8192];
+			int count;
+			while (( count = input.read(buffer) ) != -1 ) {
+				crc.update(buffer, 0, count);
+			}
+			return crc.getValue();
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while reading "+file.getPath(), e);
+		}
+		finally {
+			if ( input != null ) {
+				try {
+					input.close();
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error closing "+file.getPath(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the key of a text unit within its document.
+	 * @param subDocId the sub-document of the text unit (can be null).
+	 * @param tu the text unit.
+	 * @return the key of the text unit.
+	 */
+	public static String getKey (String subDocId,
+		ITextUnit tu)
+	{
+		return (subDocId == null ? "" : subDocId) + '\u0000' + tu.getId();
+	}
+
+	/**
+	 * Computes the fingerprint of the parts of a text unit that the checkers use.
+	 * @param tu the text unit.
+	 * @param trgLoc the target locale.
+	 * @return the fingerprint of the text unit.
+	 */
+	public static long getTextUnitPrint (ITextUnit tu,
+		LocaleId trgLoc)
+	{
+		StringBuilder tmp = new StringBuilder();
+		tmp.append(tu.getName()).append('\u0000');
+		tmp.append(tu.isTranslatable()).append('\u0000');
+		appendContainer(tmp, tu.getSource());
+		appendContainer(tmp, tu.getTarget(trgLoc));
+		return fingerprint(tmp);
+	}
+
+	private static void appendContainer (StringBuilder tmp,
+		TextContainer tc)
+	{
+		if ( tc == null ) {
+			tmp.append('\u0001');
+			return;
+		}
+		tmp.append(TextContainer.contentToString(tc)).append('\u0000');
+		for ( String name : new TreeSet<String>(tc.getPropertyNames()) ) {
+			tmp.append(name).append('=').append(tc.getProperty(name).getValue()).append('\u0000');
+		}
+		GenericAnnotations anns = tc.getAnnotation(GenericAnnotations.class);
+		if ( anns != null ) {
+			tmp.append(anns.toString());
+		}
+		tmp.append('\u0000');
+	}
+
+	private static void appendFileStamp (StringBuilder tmp,
+		String path)
+	{
+		tmp.append('\n').append(path);
+		if ( path != null ) {
+			File file = new File(path);
+			tmp.append('-').append(file.lastModified()).append('-').append(file.length());
+			if ( file.isFile() ) {
+				tmp.append('-').append(getChecksum(file));
+			}
+		}
+	}
+
+	/**
+	 * Gets the 64-bit fingerprint (FNV-1a) of a string.
+	 */
+	private static long fingerprint (CharSequence text) {
+		long h = 0xCBF29CE484222325L;
+		for ( int i=0; i<text.length(); i++ ) {
+			h = (h ^ text.charAt(i)) * 0x100000001B3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Saves this store to a file.
+	 * @param path the full path of the file.
+	 */
+	public void save (String path) {
+		DataOutputStream dos = null;
+		try {
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+			dos.writeBytes(SIGNATURE);
+			dos.writeLong(VERSION);
+			dos.writeLong(configPrint);
+			dos.writeInt(docs.size());
+			for ( Map.Entry<URI, Document> docEntry : docs.entrySet() ) {
+				Document doc = docEntry.getValue();
+				dos.writeUTF(docEntry.getKey().toString());
+				writeString(dos, doc.print);
+				dos.writeInt(doc.entries.size());
+				for ( Map.Entry<String, Entry> entry : doc.entries.entrySet() ) {
+					writeString(dos, entry.getKey());
+					dos.writeLong(entry.getValue().print);
+					dos.writeInt(entry.getValue().issues.size());
+					for ( Issue issue : entry.getValue().issues ) {
+						writeIssue(dos, issue);
+					}
+				}
+			}
+		}
+		catch ( IOException e ) {
+			throw new OkapiIOException("Error while saving the issues.", e);
+		}
+		finally {
+			if ( dos != null ) {
+				try {
+					dos.close();
+				}
+				catch ( IOException e ) {
+					throw new OkapiIOException("Error closing the issues file.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads this store from a file. The store is left empty if the file cannot be used.
+	 * @param path the full path of the file.
+	 */
+	public void load (String path) {
+		clear();
+		DataInputStream dis = null;
+		try {
+			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+			byte[] buf = new byte[4];
+			dis.readFully(buf);
+			if ( !new String(buf, "US-ASCII").equals(SIGNATURE) || ( dis.readLong() != VERSION )) {
+				return; // Not a file we can use
+			}
+			long print = dis.readLong();
+			int docCount = dis.readInt();
+			for ( int i=0; i<docCount; i++ ) {
+				URI docId = new URI(dis.readUTF());
+				String docPrint = readString(dis);
+				int count = dis.readInt();
+				Map<String, Entry> entries = new LinkedHashMap<String, Entry>(count*2);
+				for ( int j=0; j<count; j++ ) {
+					String key = readString(dis);
+					long tuPrint = dis.readLong();
+					int issueCount = dis.readInt();
+					List<Issue> issues = Collections.emptyList();
+					if ( issueCount > 0 ) {
+						issues = new ArrayList<Issue>(issueCount);
+						for ( int k=0; k<issueCount; k++ ) {
+							issues.add(readIssue(dis));
+						}
+					}
+					entries.put(key, new Entry(tuPrint, issues));
+				}
+				docs.put(docId, new Document(docPrint, entries));
+			}
+			configPrint = print;
+		}
+		catch ( Throwable e ) {
+			// The stored issues are only an optimization: start from scratch
+			clear();
+		}
+		finally {
+			if ( dis != null ) {
+				try {
+					dis.close();
+				}
+				catch ( IOException e ) {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	private void writeIssue (DataOutputStream dos,
+		Issue issue)
+		throws IOException
+	{
+		writeString(dos, issue.getDocumentURI().toString());
+		writeString(dos, issue.getSubDocumentId());
+		dos.writeUTF(issue.getIssueType().name());
+		writeString(dos, issue.getTuId());
+		writeString(dos, issue.getSegId());
+		writeString(dos, issue.getTuName());
+		dos.writeInt(issue.getTargetStart());
+		dos.writeInt(issue.getTargetEnd());
+		writeString(dos, issue.getCodes() == null ? null : Code.codesToString(issue.getCodes()));
+		writeString(dos, issue.getSource());
+		writeString(dos, issue.getTarget());
+		// Message, source range, severity, enabled flag, etc.
+		writeString(dos, ((GenericAnnotation)issue).toString());
+	}
+
+	private Issue readIssue (DataInputStream dis)
+		throws Exception
+	{
+		URI docId = new URI(readString(dis));
+		String subDocId = readString(dis);
+		IssueType issueType = IssueType.valueOf(dis.readUTF());
+		String tuId = readString(dis);
+		String segId = readString(dis);
+		String tuName = readString(dis);
+		int trgStart = dis.readInt();
+		int trgEnd = dis.readInt();
+		String codes = readString(dis);
+		String source = readString(dis);
+		String target = readString(dis);
+		String fields = readString(dis);
+		GenericAnnotation ann = new GenericAnnotation(GenericAnnotationType.LQI);
+		ann.fromString(fields);
+		Issue issue = new Issue(docId, subDocId, issueType, tuId, segId,
+			ann.getString(GenericAnnotationType.LQI_COMMENT),
+			ann.getInteger(GenericAnnotationType.LQI_XSTART),
+			ann.getInteger(GenericAnnotationType.LQI_XEND),
+			trgStart, trgEnd, ann.getDouble(GenericAnnotationType.LQI_SEVERITY), tuName);
+		issue.fromString(fields); // All other fields
+		if ( codes != null ) issue.setCodes(Code.stringToCodes(codes));
+		issue.setSource(source);
+		issue.setTarget(target);
+		return issue;
+	}
+
+	private static void writeString (DataOutputStream dos,
+		String text)
+		throws IOException
+	{
+		if ( text == null ) {
+			dos.writeInt(-1);
+			return;
+		}
+		dos.writeInt(text.length());
+		dos.writeChars(text);
+	}
+
+	private static String readString (DataInputStream dis)
+		throws IOException
+	{
+		int length = dis.readInt();
+		if ( length < 0 ) return null;
+		char[] buf = new char[length];
+		for ( int i=0; i<length; i++ ) {
+			buf[i] = dis.readChar();
+		}
+		return new String(buf);
+	}
+
+}
@@ -93,6 +93,7 @@ public class Parameters extends StringParameters {
 	private static final String BETWEENCODES = "betweenCodes";
 	private static final String TYPESTOIGNORE = "typesToIgnore";
 	private static final String SHOWFULLPATH = "showFullPath";
+	private static final String THREADCOUNT = "threadCount";
 
 	List<PatternItem> patterns;
 	List<String> extraCodesAllowed;
@@ -519,6 +520,18 @@ public class Parameters extends StringParameters {
 		setBoolean(SHOWFULLPATH, showFullPath);
 	}
 
+	/**
+	 * Gets the number of threads used to check the text units when a session re-checks its documents.
+	 * @return the number of threads (1 to check sequentially, 0 for one per processor).
+	 */
+	public int getThreadCount() {
+		return getInteger(THREADCOUNT);
+	}
+
+	public void setThreadCount(int threadCount) {
+		setInteger(THREADCOUNT, threadCount);
+	}
+
 	@ReferenceParameter
 	public String getTermsPath() {
 		return getString(TERMSPATH);
@@ -600,6 +613,7 @@ public class Parameters extends StringParameters {
 		setStringMode(false);
 		setBetweenCodes(false);
 		setShowFullPath(true);
+		setThreadCount(1);
 		setCheckBlacklist(false);
 		setAllowBlacklistSub(false);
 		setBlacklistSrc(false);
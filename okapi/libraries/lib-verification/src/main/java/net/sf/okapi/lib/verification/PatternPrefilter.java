@@ -0,0 +1,269 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.lib.terminology.TermMatcher;
+
+/**
+ * Pre-screening of the patterns of the {@link PatternsChecker}.
+ * <p>For each enabled pattern, the literal strings that any match must contain are extracted
+ * from the regular expression of its base side (source or target). All these literals are then
+ * searched in a single pass on each text, and only the patterns with at least one literal found
+ * (or without literals) need to be run on the segment.
+ */
+class PatternPrefilter {
+
+	private final TermMatcher srcMatcher = new TermMatcher(false);
+	private final TermMatcher trgMatcher = new TermMatcher(false);
+	private final List<Integer> srcItems = new ArrayList<Integer>(); // Item of each source literal
+	private final List<Integer> trgItems = new ArrayList<Integer>(); // Item of each target literal
+	private final boolean[] always; // Items to run on all segments
+
+	/**
+	 * Creates a prefilter for a given list of patterns.
+	 * @param patterns the list of patterns, as used by the checker.
+	 */
+	public PatternPrefilter (List<PatternItem> patterns) {
+		always = new boolean[patterns.size()];
+		for ( int i=0; i<patterns.size(); i++ ) {
+			PatternItem item = patterns.get(i);
+			if ( !item.enabled ) continue;
+			String base = item.fromSource ? item.source : item.target;
+			List<String> literals = null;
+			if ( !base.equals(PatternItem.SAME) ) {
+				literals = getRequiredLiterals(base);
+			}
+			if ( literals == null ) {
+				always[i] = true;
+				continue;
+			}
+			for ( String literal : literals ) {
+				if ( item.fromSource ) {
+					srcMatcher.add(literal);
+					srcItems.add(i);
+				}
+				else {
+					trgMatcher.add(literal);
+					trgItems.add(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the patterns that may have a match in a given segment.
+	 * @param srcText the coded text of the source segment.
+	 * @param trgText the coded text of the target segment.
+	 * @return an array with one flag per pattern: true if the pattern must be run on
+	 * this segment, false if it cannot match.
+	 */
+	public boolean[] getCandidates (String srcText,
+		String trgText)
+	{
+		boolean[] res = always.clone();
+		if ( srcMatcher.size() > 0 ) {
+			for ( TermMatcher.Match match : srcMatcher.find(srcText) ) {
+				res[srcItems.get(match.term)] = true;
+			}
+		}
+		if ( trgMatcher.size() > 0 ) {
+			for ( TermMatcher.Match match : trgMatcher.find(trgText) ) {
+				res[trgItems.get(match.term)] = true;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Gets the literal strings required by a given regular expression (compiled without flags).
+	 * <p>There is one literal per top-level alternative: any match contains at least one of them.
+	 * The extraction is conservative: groups, classes and quantified characters are skipped,
+	 * and expressions with constructs that may change the meaning of the literals (inline flags,
+	 * quoting, back-references, etc.) have no literals.
+	 * @param regex the regular expression.
+	 * @return the list of the required literals, or null if some matches may have none.
+	 */
+	static List<String> getRequiredLiterals (String regex) {
+		List<String> res = new ArrayList<String>();
+		StringBuilder run = new StringBuilder();
+		String best = "";
+		boolean lastIsLiteral = false;
+		int pos = 0;
+		while ( pos < regex.length() ) {
+			char ch = regex.charAt(pos++);
+			switch ( ch ) {
+			case '\\':
+				if ( pos >= regex.length() ) return null;
+				char esc = regex.charAt(pos++);
+				if ( Character.isLetterOrDigit(esc) ) {
+					// Only the escapes without arguments are allowed
+					if ( "dDsSwWbBnrtfaeAzZGRhHvVX".indexOf(esc) == -1 ) return null;
+					best = longest(best, run);
+					lastIsLiteral = false;
+				}
+				else {
+					run.append(esc);
+					lastIsLiteral = true;
+				}
+				break;
+			case '[':
+				if (( pos = skipClass(regex, pos) ) == -1 ) return null;
+				best = longest(best, run);
+				lastIsLiteral = false;
+				break;
+			case '(':
+				if (( pos = skipGroup(regex, pos) ) == -1 ) return null;
+				best = longest(best, run);
+				lastIsLiteral = false;
+				break;
+			case '|':
+				best = longest(best, run);
+				if ( best.isEmpty() ) return null;
+				res.add(best);
+				best = "";
+				lastIsLiteral = false;
+				break;
+			case '?':
+			case '*':
+			case '+':
+			case '{':
+				if ( ch == '{' ) {
+					if (( pos = regex.indexOf('}', pos) ) == -1 ) return null;
+					pos++;
+				}
+				// Lazy or possessive quantifier
+				if (( pos < regex.length() ) && (( regex.charAt(pos) == '?' ) || ( regex.charAt(pos) == '+' ))) {
+					pos++;
+				}
+				// The quantified character is not part of the literal
+				if ( lastIsLiteral ) {
+					run.setLength(run.length()-1);
+					if (( run.length() > 0 ) && Character.isHighSurrogate(run.charAt(run.length()-1)) ) {
+						run.setLength(run.length()-1);
+					}
+				}
+				best = longest(best, run);
+				lastIsLiteral = false;
+				break;
+			case '.':
+			case '^':
+			case '$':
+				best = longest(best, run);
+				lastIsLiteral = false;
+				break;
+			case ')':
+				return null;
+			default:
+				run.append(ch);
+				lastIsLiteral = true;
+				break;
+			}
+		}
+		best = longest(best, run);
+		if ( best.isEmpty() ) return null;
+		res.add(best);
+		return res;
+	}
+
+	/**
+	 * Ends a run of literal characters.
+	 * @return the longest of the current best literal and the run.
+	 */
+	private static String longest (String best,
+		StringBuilder run)
+	{
+		if ( run.length() > best.length() ) {
+			best = run.toString();
+		}
+		run.setLength(0);
+		return best;
+	}
+
+	/**
+	 * Skips a character class.
+	 * @param regex the regular expression.
+	 * @param pos the position after the opening bracket.
+	 * @return the position after the closing bracket, or -1 if the class cannot be skipped safely.
+	 */
+	private static int skipClass (String regex,
+		int pos)
+	{
+		if (( pos < regex.length() ) && ( regex.charAt(pos) == '^' )) pos++;
+		if (( pos < regex.length() ) && ( regex.charAt(pos) == ']' )) pos++;
+		int depth = 1;
+		while ( pos < regex.length() ) {
+			char ch = regex.charAt(pos++);
+			switch ( ch ) {
+			case '\\':
+				if (( pos >= regex.length() ) || ( regex.charAt(pos) == 'Q' )) return -1;
+				pos++;
+				break;
+			case '[':
+				depth++;
+				break;
+			case ']':
+				if ( --depth == 0 ) return pos;
+				break;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips a group.
+	 * @param regex the regular expression.
+	 * @param pos the position after the opening parenthesis.
+	 * @return the position after the closing parenthesis, or -1 if the group cannot be skipped safely.
+	 */
+	private static int skipGroup (String regex,
+		int pos)
+	{
+		if ( hasInlineFlags(regex, pos) ) return -1;
+		int depth = 1;
+		while ( pos < regex.length() ) {
+			char ch = regex.charAt(pos++);
+			switch ( ch ) {
+			case '\\':
+				if (( pos >= regex.length() ) || ( regex.charAt(pos) == 'Q' )) return -1;
+				pos++;
+				break;
+			case '[':
+				if (( pos = skipClass(regex, pos) ) == -1 ) return -1;
+				break;
+			case '(':
+				if ( hasInlineFlags(regex, pos) ) return -1;
+				depth++;
+				break;
+			case ')':
+				if ( --depth == 0 ) return pos;
+				break;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean hasInlineFlags (String regex,
+		int pos)
+	{
+		return (( pos+1 < regex.length() ) && ( regex.charAt(pos) == '?' )
+			&& ( "idmsuxU-".indexOf(regex.charAt(pos+1)) != -1 ));
+	}
+
+}
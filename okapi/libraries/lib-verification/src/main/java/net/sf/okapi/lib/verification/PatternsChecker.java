@@ -32,6 +32,7 @@ import net.sf.okapi.common.resource.TextFragment;
 
 public class PatternsChecker extends AbstractChecker {
 	private List<PatternItem> patterns;
+	private PatternPrefilter prefilter;
 
 	@Override
 	public void startProcess(LocaleId sourceLocale, LocaleId targetLocale, Parameters params, List<Issue> issues) {
@@ -44,6 +45,7 @@ public class PatternsChecker extends AbstractChecker {
 				item.compile();
 			}
 		}
+		prefilter = new PatternPrefilter(patterns);
 	}
 
 	@Override
@@ -99,13 +101,19 @@ public class PatternsChecker extends AbstractChecker {
 	}
 
 	private void checkPatterns(Segment srcSeg, Segment trgSeg, ITextUnit tu) {
-		// --- Source-based search
-		// Get the source text
+		// Get the source and target texts
 		String srcCText = srcSeg.text.getCodedText();
+		String trgCText = trgSeg.text.getCodedText();
+		// Get the patterns that may match in this segment
+		boolean[] candidates = prefilter.getCandidates(srcCText, trgCText);
+
+		// --- Source-based search
 		// Search for any enabled pattern in the source
-		for (PatternItem item : patterns) {
-			// Skip disabled items and items that use the target as the base
-			if (!item.enabled || !item.fromSource) {
+		for (int i = 0; i < patterns.size(); i++) {
+			PatternItem item = patterns.get(i);
+			// Skip disabled items, items that use the target as the base
+			// and items that cannot match this segment
+			if (!item.enabled || !item.fromSource || !candidates[i]) {
 				continue;
 			}
 
@@ -168,12 +176,12 @@ public class PatternsChecker extends AbstractChecker {
 		}
 
 		//--- Target-based search
-		// Get the target text
-		String trgCText = trgSeg.text.getCodedText();
 		// Search for any enabled pattern in the source
-		for (PatternItem item : patterns) {
-			// Skip disabled items and items that use the source as the base
-			if (!item.enabled || item.fromSource) {
+		for (int i = 0; i < patterns.size(); i++) {
+			PatternItem item = patterns.get(i);
+			// Skip disabled items, items that use the source as the base
+			// and items that cannot match this segment
+			if (!item.enabled || item.fromSource || !candidates[i]) {
 				continue;
 			}
 
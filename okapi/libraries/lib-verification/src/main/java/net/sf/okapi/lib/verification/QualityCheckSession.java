@@ -27,10 +27,17 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.okapi.common.Event;
 import net.sf.okapi.common.LocaleId;
@@ -48,12 +55,18 @@ import net.sf.okapi.common.resource.StartSubDocument;
 public class QualityCheckSession {
 
 	public static final String FILE_EXTENSION = ".qcs";
+	/**
+	 * Extension added to the path of a session file for the file storing the issues of each text unit.
+	 */
+	public static final String ISSUES_EXTENSION = ".issues";
 	
 	private static final String SERIALSIGNATURE = "OQCS";
 	private static final long SERIALVERSIONUID = 2L;
 	private static final long SERIALVERSIONUID_1BLOCK = 1L; // Versions using a simple writeUTF for the parameters
 	// Keep block size way below 64K because of UTF character size for non-ASCII
 	private static final int MAXBLOCKLEN = (65000/3);
+	// Maximum number of text units waiting for the worker threads
+	private static final int MAXPENDING = 1000;
 
 	Map<URI, RawDocument> rawDocs; // Temporary solution waiting for the DB
 	IFilterConfigurationMapper fcMapper;
@@ -61,6 +74,11 @@ public class QualityCheckSession {
 	private Parameters params;
 	private List<Issue> issues;
 	private QualityChecker checker;
+	private IssueStore store;
+	private QualityChecker[] workers; // Checkers of the worker threads, null for sequential checks
+	private List<List<Issue>> workerIssues;
+	private ExecutorService executor;
+	private List<PendingUnit> pending = new ArrayList<PendingUnit>();
 	private LocaleId sourceLocale = LocaleId.ENGLISH;
 	private LocaleId targetLocale = LocaleId.FRENCH;
 	private IFilter filter;
@@ -157,10 +175,23 @@ public class QualityCheckSession {
 	}
 
 	public void reset() {
+		close();
 		rawDocs = new HashMap<URI, RawDocument>();
 		issues = new ArrayList<Issue>();
 		params = new Parameters();
 		checker = new QualityChecker();
+		store = new IssueStore();
+	}
+
+	/**
+	 * Releases the resources used by the checks (e.g. an open termbase).
+	 * The session can still be used: the next check allocates them again.
+	 */
+	public void close() {
+		stopWorkers();
+		if (checker != null) {
+			checker.close();
+		}
 	}
 
 	public void resetDisabledIssues() {
@@ -175,10 +206,16 @@ public class QualityCheckSession {
 	}
 
 	public void recheckDocument(URI docId) {
+		store.setConfiguration(params, sourceLocale, targetLocale);
 		startProcess(sourceLocale, targetLocale);
-		RawDocument rd = rawDocs.get(docId);
-		if (rd != null) {
-			executeRecheck(rd, null);
+		try {
+			RawDocument rd = rawDocs.get(docId);
+			if (rd != null) {
+				startWorkers();
+				executeRecheck(rd, null);
+			}
+		} finally {
+			close();
 		}
 	}
 
@@ -187,14 +224,43 @@ public class QualityCheckSession {
 			issues.clear();
 			return;
 		}
+		store.setConfiguration(params, sourceLocale, targetLocale);
 		startProcess(sourceLocale, targetLocale);
-		for (RawDocument rd : rawDocs.values()) {
-			executeRecheck(rd, sigList);
+		startWorkers();
+		try {
+			for (RawDocument rd : rawDocs.values()) {
+				executeRecheck(rd, sigList);
+			}
+		} finally {
+			close();
 		}
 	}
 
+	/**
+	 * Re-checks a document. The text units that have not changed since the last check
+	 * get their stored issues back instead of being checked again, and the document is
+	 * not parsed at all if its file has not changed.
+	 */
 	private void executeRecheck(RawDocument rd,
 			List<String> sigList) {
+		URI docId = rd.getInputURI();
+		String docPrint = IssueStore.getDocumentPrint(rd);
+		IssueStore.Document oldDoc = store.remove(docId);
+		if ((oldDoc != null) && (docPrint != null) && docPrint.equals(oldDoc.print)) {
+			// Same file: re-use all its issues
+			if (sigList == null) {
+				sigList = clearIssues(docId, true);
+			} else {
+				clearIssues(docId, false);
+			}
+			for (IssueStore.Entry entry : oldDoc.entries.values()) {
+				restoreIssues(entry.issues, sigList);
+			}
+			store.put(docId, oldDoc);
+			return;
+		}
+		Map<String, IssueStore.Entry> entries = new LinkedHashMap<String, IssueStore.Entry>();
+		String subDocId = null;
 		try {
 			// Process the document
 			filter = fcMapper.createFilter(rd.getFilterConfigId(), filter);
@@ -221,24 +287,236 @@ public class QualityCheckSession {
 							clearIssues(rd.getInputURI(), false);
 						}
 						processStartDocument(sd, sigList);
+						if (workers != null) {
+							for (QualityChecker worker : workers) {
+								worker.processStartDocument(sd, sigList);
+							}
+						}
 						break;
 					case START_SUBDOCUMENT:
-						processStartSubDocument(event.getStartSubDocument());
+						// The pending text units are checked with the previous sub-document
+						flushPending(entries, sigList);
+						StartSubDocument ssd = event.getStartSubDocument();
+						subDocId = (ssd.getName() == null) ? ssd.getId() : ssd.getName();
+						processStartSubDocument(ssd);
+						if (workers != null) {
+							for (QualityChecker worker : workers) {
+								worker.processStartSubDocument(ssd);
+							}
+						}
 						break;
 					case TEXT_UNIT:
-						processTextUnit(event.getTextUnit());
+						recheckTextUnit(event.getTextUnit(), subDocId, oldDoc, entries, sigList);
+						if (pending.size() >= MAXPENDING) {
+							flushPending(entries, sigList);
+						}
 						break;
 					default: // Do nothing
 						break;
 				}
 			}
+			flushPending(entries, sigList);
+			store.put(docId, new IssueStore.Document(docPrint, entries));
 		} finally {
+			pending.clear();
 			if (filter != null) {
 				filter.close();
 			}
 		}
 	}
 
+	private void recheckTextUnit(ITextUnit tu,
+			String subDocId,
+			IssueStore.Document oldDoc,
+			Map<String, IssueStore.Entry> entries,
+			List<String> sigList) {
+		String key = IssueStore.getKey(subDocId, tu);
+		if (entries.containsKey(key)) {
+			// Duplicated key: always check and do not store
+			checkTextUnit(tu, null, 0, entries);
+			return;
+		}
+		long print = IssueStore.getTextUnitPrint(tu, targetLocale);
+		IssueStore.Entry entry = (oldDoc == null) ? null : oldDoc.entries.get(key);
+		if ((entry != null) && (entry.print == print)) {
+			if (workers == null) {
+				restoreIssues(entry.issues, sigList);
+			} else {
+				// Keep the order of the issues
+				pending.add(new PendingUnit(null, key, print, entry.issues));
+			}
+			entries.put(key, entry);
+			return;
+		}
+		// New or modified text unit
+		checkTextUnit(tu, key, print, entries);
+	}
+
+	/**
+	 * Checks a text unit, or adds it to the text units to check with the worker threads.
+	 * @param key the key of the text unit, or null to not store its issues.
+	 */
+	private void checkTextUnit(ITextUnit tu,
+			String key,
+			long print,
+			Map<String, IssueStore.Entry> entries) {
+		if (workers != null) {
+			pending.add(new PendingUnit(tu, key, print, null));
+			if (key != null) {
+				entries.put(key, null); // Set when checked
+			}
+			return;
+		}
+		int start = issues.size();
+		processTextUnit(tu);
+		List<Issue> newIssues = Collections.emptyList();
+		if (issues.size() > start) {
+			newIssues = new ArrayList<Issue>(issues.subList(start, issues.size()));
+		}
+		storeIssues(key, print, newIssues, entries);
+	}
+
+	private void storeIssues(String key,
+			long print,
+			List<Issue> newIssues,
+			Map<String, IssueStore.Entry> entries) {
+		for (Issue issue : newIssues) {
+			if (issue.getSourceEnd() == -99) {
+				// Server error from LanguageTool: next check must be done from scratch
+				store.clear();
+			}
+		}
+		if (key != null) {
+			entries.put(key, new IssueStore.Entry(print, newIssues));
+		}
+	}
+
+	private void restoreIssues(List<Issue> list,
+			List<String> sigList) {
+		for (Issue issue : list) {
+			issue.setEnabled((sigList == null) || !sigList.contains(issue.getSignature()));
+			issues.add(issue);
+		}
+	}
+
+	/**
+	 * Creates the checkers for the worker threads, if the parameters ask for more than one thread.
+	 * Each worker has its own checkers, and they all share the same parameters.
+	 */
+	private void startWorkers() {
+		stopWorkers();
+		int threadCount = params.getThreadCount();
+		if (threadCount <= 0) {
+			threadCount = Runtime.getRuntime().availableProcessors();
+		}
+		// A blacklist stream can be read only once
+		if ((threadCount <= 1) || (params.getBlacklistStream() != null)) {
+			return;
+		}
+		workers = new QualityChecker[threadCount];
+		workerIssues = new ArrayList<List<Issue>>(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			List<Issue> list = new ArrayList<Issue>();
+			workerIssues.add(list);
+			workers[i] = new QualityChecker();
+			workers[i].startProcess(sourceLocale, targetLocale, params, list);
+		}
+		executor = Executors.newFixedThreadPool(threadCount);
+	}
+
+	private void stopWorkers() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if (workers != null) {
+			for (QualityChecker worker : workers) {
+				worker.close();
+			}
+			workers = null;
+			workerIssues = null;
+		}
+	}
+
+	/**
+	 * Checks the pending text units with the worker threads, and adds their issues
+	 * to the session in the order of the text units.
+	 */
+	private void flushPending(Map<String, IssueStore.Entry> entries,
+			List<String> sigList) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		final List<PendingUnit> units = new ArrayList<PendingUnit>();
+		for (PendingUnit unit : pending) {
+			if (unit.tu != null) {
+				units.add(unit);
+			}
+		}
+		int chunks = Math.min(workers.length, units.size());
+		// Contiguous ranges of text units, one per worker
+		List<Future<?>> futures = new ArrayList<Future<?>>(chunks);
+		for (int n = 0; n < chunks; n++) {
+			final int start = (int) ((long) units.size() * n / chunks);
+			final int end = (int) ((long) units.size() * (n + 1) / chunks);
+			final QualityChecker worker = workers[n];
+			final List<Issue> list = workerIssues.get(n);
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = start; i < end; i++) {
+						PendingUnit unit = units.get(i);
+						worker.processTextUnit(unit.tu);
+						unit.issues = list.isEmpty() ? Collections.<Issue>emptyList() : new ArrayList<Issue>(list);
+						list.clear();
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while checking the text units.", e);
+		} catch (ExecutionException e) {
+			throw new OkapiException("Error while checking the text units.", e.getCause());
+		}
+		// Merge in the order of the text units
+		for (PendingUnit unit : pending) {
+			if (unit.tu == null) {
+				restoreIssues(unit.issues, sigList);
+			} else {
+				issues.addAll(unit.issues);
+				storeIssues(unit.key, unit.print, unit.issues, entries);
+			}
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Text unit waiting for the worker threads, or stored issues waiting for
+	 * the previous text units to be checked.
+	 */
+	private static class PendingUnit {
+		final ITextUnit tu; // Null for stored issues
+		final String key;
+		final long print;
+		List<Issue> issues;
+
+		PendingUnit(ITextUnit tu,
+				String key,
+				long print,
+				List<Issue> issues) {
+			this.tu = tu;
+			this.key = key;
+			this.print = print;
+			this.issues = issues;
+		}
+	}
+
 	// Gets all signatures 
 	private List<String> getAllSignatures() {
 		ArrayList<String> list = new ArrayList<String>();
@@ -281,6 +559,12 @@ public class QualityCheckSession {
 		} catch (IOException e) {
 			throw new OkapiIOException("Error while saving session.", e);
 		}
+		// Issues of each text unit, for faster re-checks
+		if (store.isEmpty()) {
+			new File(path + ISSUES_EXTENSION).delete();
+		} else {
+			store.save(path + ISSUES_EXTENSION);
+		}
 	}
 
 	private void saveSessionToStream(OutputStream outputStream) {
@@ -338,13 +622,14 @@ public class QualityCheckSession {
 
 	public void loadSession(String path) {
 		try {
-			loadSessionFromStream(new FileInputStream(path));
+			loadSessionFromStream(new FileInputStream(path), path + ISSUES_EXTENSION);
 		} catch (Throwable e) {
 			throw new OkapiIOException("Error reading session file.\n" + e.getMessage(), e);
 		}
 	}
 
-	private void loadSessionFromStream(InputStream inputStream) {
+	private void loadSessionFromStream(InputStream inputStream,
+			String issuesPath) {
 		reset();
 		DataInputStream dis = null;
 		try {
@@ -397,6 +682,9 @@ public class QualityCheckSession {
 			for (int i = 0; i < count; i++) {
 				sigList.add(dis.readUTF());
 			}
+			if ((issuesPath != null) && new File(issuesPath).exists()) {
+				store.load(issuesPath);
+			}
 			recheckAll(sigList);
 			modified = false;
 		} catch (Throwable e) {
@@ -35,6 +35,8 @@ import net.sf.okapi.common.resource.StartDocument;
 import net.sf.okapi.common.resource.StartSubDocument;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.lib.terminology.h2tb.H2TB;
+import net.sf.okapi.lib.terminology.h2tb.H2TBConnector;
 import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
 
 class QualityChecker extends AbstractChecker {
@@ -43,6 +45,7 @@ class QualityChecker extends AbstractChecker {
 	private LocaleId trgLoc;
 	private LanguageToolConnector ltConn;
 	private TermChecker termChecker;
+	private H2TBConnector termbase;
 	private BlacklistChecker blacklistChecker;
 	private Parameters params;
 	private URI currentDocId;
@@ -85,12 +88,25 @@ class QualityChecker extends AbstractChecker {
 
 		// Terminology check
 		termChecker = null;
+		if (termbase != null) {
+			termbase.close();
+			termbase = null;
+		}
 		if (params.getCheckTerms()) {
-			// Direct use of SimpleTB for now
 			termChecker = new TermChecker();
-			SimpleTB ta = new SimpleTB(srcLoc, trgLoc);
-			ta.guessAndImport(new File(params.getTermsPath()));
-			termChecker.initialize(ta, srcLoc, trgLoc, params.getStringMode(), params.getBetweenCodes());
+			if (params.getTermsPath().endsWith(H2TB.DATAFILE_EXT)) {
+				// Termbase stored on disk: no import needed
+				termbase = new H2TBConnector();
+				termbase.open(params.getTermsPath(), srcLoc, trgLoc);
+				termbase.initializeSearch(params.getStringMode(), params.getBetweenCodes());
+				termChecker.initialize(termbase, srcLoc, trgLoc, params.getStringMode(), params.getBetweenCodes());
+			}
+			else {
+				// Direct use of SimpleTB for now
+				SimpleTB ta = new SimpleTB(srcLoc, trgLoc);
+				ta.guessAndImport(new File(params.getTermsPath()));
+				termChecker.initialize(ta, srcLoc, trgLoc, params.getStringMode(), params.getBetweenCodes());
+			}
 		}
 
 		// Blacklist check
@@ -109,6 +125,16 @@ class QualityChecker extends AbstractChecker {
 
 	}
 
+	/**
+	 * Releases the resources used by this checker (e.g. an open termbase).
+	 */
+	public void close () {
+		if (termbase != null) {
+			termbase.close();
+			termbase = null;
+		}
+	}
+
 	@Override
 	public void processStartDocument (StartDocument sd,
 		List<String> sigList)
@@ -18,26 +18,29 @@ package net.sf.okapi.lib.verification;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import net.sf.okapi.common.LocaleId;
-import net.sf.okapi.common.Range;
 import net.sf.okapi.common.annotation.IssueType;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnitUtil;
+import net.sf.okapi.lib.terminology.ITermAccess;
 import net.sf.okapi.lib.terminology.TermHit;
+import net.sf.okapi.lib.terminology.TermMatcher;
 import net.sf.okapi.lib.terminology.simpletb.SimpleTB;
+import net.sf.okapi.lib.terminology.simpletb.SimpleTBConnector;
 
 public class TermChecker {
 
 	private ArrayList<Issue> issues;
 	private LocaleId srcLoc;
 	private LocaleId trgLoc;
-	private SimpleTB ta;
+	private ITermAccess ta;
 	private boolean stringSearch;
 	private boolean betweenCodes;
 	
@@ -46,6 +49,25 @@ public class TermChecker {
 		LocaleId trgLoc,
 		boolean stringSearch,
 		boolean betweenCodes)
+	{
+		termAccess.initialize(stringSearch, betweenCodes);
+		initialize(new SimpleTBConnector(termAccess), srcLoc, trgLoc, stringSearch, betweenCodes);
+	}
+	
+	/**
+	 * Initializes this checker for a given termbase connector.
+	 * The search options of the termbase must be set already, with the same values.
+	 * @param termAccess the termbase to use.
+	 * @param srcLoc the source locale.
+	 * @param trgLoc the target locale.
+	 * @param stringSearch true to search strings, false to search words.
+	 * @param betweenCodes true if the strings must be between codes.
+	 */
+	public void initialize (ITermAccess termAccess,
+		LocaleId srcLoc,
+		LocaleId trgLoc,
+		boolean stringSearch,
+		boolean betweenCodes)
 	{
 		issues = new ArrayList<Issue>();
 		this.ta = termAccess;
@@ -53,7 +75,6 @@ public class TermChecker {
 		this.trgLoc = trgLoc;
 		this.stringSearch = stringSearch;
 		this.betweenCodes = betweenCodes;
-		ta.initialize(stringSearch, betweenCodes);
 	}
 	
 	public int verify (URI docId,
@@ -144,12 +165,11 @@ public class TermChecker {
 	public static List<TermHit> getExistingTargetTerms (TextFragment frag,
 		List<TermHit> sourceHits)
 	{
-		String text = TextUnitUtil.getText(frag).toLowerCase(); // Strip inline codes and convert to lowercase
-		List<String> parts = Arrays.asList(text.split("\\s"));
+		String[] words = SimpleTB.toWords(TextUnitUtil.getText(frag)); // Strip inline codes and convert to lowercase
 		List<TermHit> res = new ArrayList<TermHit>();
 	
 		for ( TermHit th : sourceHits) {
-			if ( parts.contains(th.targetTerm.getText().toLowerCase()) ) {
+			if ( hasWords(words, SimpleTB.toWords(th.targetTerm.getText())) ) {
 				TermHit hit = new TermHit();
 				hit.sourceTerm = th.targetTerm;
 				hit.targetTerm = th.sourceTerm;
@@ -160,27 +180,56 @@ public class TermChecker {
 		return res;
 	}
 
+	private static boolean hasWords (String[] words,
+		String[] sequence)
+	{
+		if ( sequence.length == 0 ) return false;
+		for ( int i=0; i<words.length; i++ ) {
+			if ( SimpleTB.hasWordsAt(words, i, sequence) ) return true;
+		}
+		return false;
+	}
+
 	public static List<TermHit> getExistingTargetStrings (TextFragment frag,
 		List<TermHit> sourceHits,
 		boolean betweenCodes)
 	{
 		StringBuilder text = new StringBuilder(frag);
 		List<TermHit> res = new ArrayList<TermHit>();
-		Range location = new Range(0, 0);
+		if ( sourceHits.isEmpty() ) return res;
 		
-		for ( TermHit th : sourceHits) {
-			if ( !SimpleTB.isValidMatch(text, th.targetTerm.getText(), location, betweenCodes) ) continue;
-			// Else: Save the term
-			TermHit hit = new TermHit();
-			hit.sourceTerm = th.targetTerm;
-			hit.targetTerm = th.sourceTerm;
-			res.add(hit);
-			// Obliterate the match so we don't re-match it 
-			for ( int i=location.start; i<location.end; i++ ) {
-				text.setCharAt(i, '`');
-			}
+		// Find all the expected target terms in one pass
+		TermMatcher matcher = new TermMatcher(false);
+		for ( TermHit th : sourceHits ) {
+			matcher.add(th.targetTerm.getText());
 		}
+		List<TermMatcher.Match> matches = matcher.find(text);
+		Collections.sort(matches);
+		BitSet used = new BitSet(text.length());
 		
+		// Take the first available occurrence for each hit, in the order of the hits
+		int m = 0;
+		for ( int h=0; h<sourceHits.size(); h++ ) {
+			while (( m < matches.size() ) && ( matches.get(m).term < h )) m++;
+			for ( ; ( m < matches.size() ) && ( matches.get(m).term == h ); m++ ) {
+				TermMatcher.Match match = matches.get(m);
+				int n = used.nextSetBit(match.start);
+				if (( n != -1 ) && ( n < match.end )) continue;
+				if ( !SimpleTB.isValidMatch(text, match.start, match.end, betweenCodes) ) continue;
+				// Save the term
+				TermHit th = sourceHits.get(h);
+				TermHit hit = new TermHit();
+				hit.sourceTerm = th.targetTerm;
+				hit.targetTerm = th.sourceTerm;
+				res.add(hit);
+				// Obliterate the match so we don't re-match it 
+				for ( int i=match.start; i<match.end; i++ ) {
+					text.setCharAt(i, '`');
+				}
+				used.set(match.start, match.end);
+				break;
+			}
+		}
 			
 		return res;
 	}
@@ -0,0 +1,85 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PatternPrefilterTest {
+
+	@Test
+	public void testRequiredLiterals () {
+		assertEquals(Arrays.asList("abc"), PatternPrefilter.getRequiredLiterals("abc"));
+		assertEquals(Arrays.asList("foo bar"), PatternPrefilter.getRequiredLiterals("\\bfoo bar\\b"));
+		assertEquals(Arrays.asList("a.b"), PatternPrefilter.getRequiredLiterals("^a\\.b$"));
+		assertEquals(Arrays.asList("@"), PatternPrefilter.getRequiredLiterals("[\\w\\.\\-]+@[\\w\\.\\-]+"));
+		assertEquals(Arrays.asList("%"), PatternPrefilter.getRequiredLiterals(
+			"%(([-0+#]?)[-0+#]?)((\\d\\$)?)(([\\d\\*]*)(\\.[\\d\\*]*)?)[dioxXucsfeEgGpn]"));
+		// Quantified characters and groups are not required
+		assertEquals(Arrays.asList("colo"), PatternPrefilter.getRequiredLiterals("colou?r"));
+		assertEquals(Arrays.asList("xyz"), PatternPrefilter.getRequiredLiterals("ab*xyz(foo)?"));
+		assertEquals(Arrays.asList("ab"), PatternPrefilter.getRequiredLiterals("abc{0,2}"));
+		// One literal per alternative
+		assertEquals(Arrays.asList("http", "www.", "ftp:"), PatternPrefilter.getRequiredLiterals(
+			"https?:[\\w/\\.:;+\\-~\\%#\\$?=&,()]+[\\w/:;+\\-~\\%#\\$?=&,()]+|www\\.[\\w/\\.:;+\\-~\\%#\\$?=&,()]+|ftp:[\\w/\\.:;+\\-~\\%#?=&,]+"));
+		// No literal
+		assertNull(PatternPrefilter.getRequiredLiterals("[\\(\\uFF08]"));
+		assertNull(PatternPrefilter.getRequiredLiterals("\\b(?:\\d{1,3}\\.){3}\\d{1,3}\\b"));
+		assertNull(PatternPrefilter.getRequiredLiterals("abc|\\d+"));
+		assertNull(PatternPrefilter.getRequiredLiterals("a?"));
+		// Constructs changing the meaning of the literals
+		assertNull(PatternPrefilter.getRequiredLiterals("(?i)abc"));
+		assertNull(PatternPrefilter.getRequiredLiterals("(x(?i))abc"));
+		assertNull(PatternPrefilter.getRequiredLiterals("\\Qa.b\\E"));
+		assertNull(PatternPrefilter.getRequiredLiterals("(a)\\12"));
+		assertNull(PatternPrefilter.getRequiredLiterals("\\u0041bc"));
+	}
+
+	@Test
+	public void testCandidates () {
+		List<PatternItem> patterns = new ArrayList<PatternItem>();
+		patterns.add(new PatternItem("abc", PatternItem.SAME, true, Issue.DISPSEVERITY_LOW));
+		patterns.add(new PatternItem("\\d+", PatternItem.SAME, true, Issue.DISPSEVERITY_LOW));
+		patterns.add(new PatternItem("xyz", PatternItem.SAME, false, Issue.DISPSEVERITY_LOW));
+		PatternItem item = new PatternItem(PatternItem.SAME, "def|ghi", true, Issue.DISPSEVERITY_LOW);
+		item.fromSource = false;
+		patterns.add(item);
+
+		PatternPrefilter prefilter = new PatternPrefilter(patterns);
+		boolean[] res = prefilter.getCandidates("no match xyz", "abc def");
+		assertFalse(res[0]); // Literal in the target only
+		assertTrue(res[1]); // No literal
+		assertFalse(res[2]); // Disabled
+		assertTrue(res[3]);
+		res = prefilter.getCandidates("xabcx", "gh");
+		assertTrue(res[0]);
+		assertTrue(res[1]);
+		assertFalse(res[3]);
+	}
+
+}
@@ -0,0 +1,177 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.lib.verification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import net.sf.okapi.common.FileLocation;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.filters.FilterConfigurationMapper;
+import net.sf.okapi.common.resource.RawDocument;
+import net.sf.okapi.lib.terminology.h2tb.H2TB;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QualityCheckSessionTest {
+
+	private LocaleId locEN = LocaleId.ENGLISH;
+	private LocaleId locFR = LocaleId.FRENCH;
+	private FileLocation location = FileLocation.fromClass(QualityCheckSessionTest.class);
+	private FilterConfigurationMapper fcMapper;
+	private File docFile;
+
+	@Before
+	public void setUp () throws IOException {
+		fcMapper = new FilterConfigurationMapper();
+		fcMapper.addConfigurations("net.sf.okapi.filters.xliff.XLIFFFilter");
+		docFile = location.out("/session/test01.xlf").asFile();
+		docFile.getParentFile().mkdirs();
+		Files.copy(location.in("/test01.xlf").asFile().toPath(), docFile.toPath(),
+			StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Test
+	public void testRecheckAfterChanges () throws IOException {
+		QualityCheckSession session = createSession();
+		session.recheckAll(null);
+		String before = toString(session.getIssues());
+		assertFalse(before.isEmpty());
+
+		// Nothing changed
+		session.recheckAll(null);
+		assertEquals(before, toString(session.getIssues()));
+
+		// Change one target: same results as a new session
+		// (same length and same modification time: only the content differs)
+		long lastModified = docFile.lastModified();
+		String content = new String(Files.readAllBytes(docFile.toPath()), "windows-1252");
+		content = content.replace("<target xml:lang=\"fr\">Paragraph.</target>",
+			"<target xml:lang=\"fr\">Paragrafe.</target>");
+		Files.write(docFile.toPath(), content.getBytes("windows-1252"));
+		docFile.setLastModified(lastModified);
+		session.recheckAll(null);
+		String after = toString(session.getIssues());
+		assertTrue(after.length() < before.length());
+		QualityCheckSession fresh = createSession();
+		fresh.recheckAll(null);
+		assertEquals(toString(fresh.getIssues()), after);
+
+		// Change the parameters
+		session.getParameters().setTargetSameAsSource(false);
+		fresh.getParameters().setTargetSameAsSource(false);
+		session.recheckAll(null);
+		fresh.recheckAll(null);
+		assertEquals(toString(fresh.getIssues()), toString(session.getIssues()));
+	}
+
+	@Test
+	public void testTermbaseClosed () {
+		File tbFile = location.out("/session/terms"+H2TB.DATAFILE_EXT).asFile();
+		tbFile.delete();
+		H2TB tb = new H2TB(locEN, locFR);
+		tb.open(tbFile.getPath());
+		tb.addEntry("Paragraph", "Paragraphe");
+		tb.close();
+		String path = tbFile.getPath();
+		File lockFile = new File(path.substring(0, path.length()-H2TB.DATAFILE_EXT.length())+".lock.db");
+
+		QualityCheckSession session = createSession();
+		session.getParameters().setCheckTerms(true);
+		session.getParameters().setTermsPath(path);
+		session.startProcess(locEN, locFR);
+		assertTrue(lockFile.exists());
+		session.close();
+		assertFalse(lockFile.exists());
+
+		// The termbase is released after each check
+		session.recheckAll(null);
+		assertFalse(session.getIssues().isEmpty());
+		assertFalse(lockFile.exists());
+	}
+
+	@Test
+	public void testSaveAndLoadSession () {
+		QualityCheckSession session = createSession();
+		session.recheckAll(null);
+		session.getIssues().get(0).setEnabled(false);
+		String before = toString(session.getIssues());
+		String path = location.out("/session/test.qcs").asFile().getPath();
+		session.saveSession(path);
+		assertTrue(new File(path+QualityCheckSession.ISSUES_EXTENSION).exists());
+
+		QualityCheckSession loaded = new QualityCheckSession();
+		loaded.setFilterConfigurationMapper(fcMapper);
+		loaded.loadSession(path);
+		assertEquals(before, toString(loaded.getIssues()));
+		assertFalse(loaded.getIssues().get(0).getEnabled());
+	}
+
+	@Test
+	public void testParallelCheck () {
+		QualityCheckSession session = createSession();
+		addDocument(session, "/test02.xlf");
+		addDocument(session, "/test03.xlf");
+		session.recheckAll(null);
+		String expected = toString(session.getIssues());
+
+		QualityCheckSession parallel = createSession();
+		addDocument(parallel, "/test02.xlf");
+		addDocument(parallel, "/test03.xlf");
+		parallel.getParameters().setThreadCount(3);
+		parallel.recheckAll(null);
+		// Same issues in the same order
+		assertEquals(expected, toString(parallel.getIssues()));
+	}
+
+	private QualityCheckSession createSession () {
+		QualityCheckSession session = new QualityCheckSession();
+		session.setFilterConfigurationMapper(fcMapper);
+		RawDocument rd = new RawDocument(docFile.toURI(), "windows-1252", locEN, locFR);
+		rd.setFilterConfigId("okf_xliff");
+		session.addRawDocument(rd);
+		return session;
+	}
+
+	private void addDocument (QualityCheckSession session,
+		String name)
+	{
+		RawDocument rd = new RawDocument(location.in(name).asUri(), "UTF-8", locEN, locFR);
+		rd.setFilterConfigId("okf_xliff");
+		session.addRawDocument(rd);
+	}
+
+	private String toString (List<Issue> issues) {
+		StringBuilder tmp = new StringBuilder();
+		for ( Issue issue : issues ) {
+			tmp.append(issue.toString()).append(issue.getEnabled()).append('\n');
+		}
+		return tmp.toString();
+	}
+
+}
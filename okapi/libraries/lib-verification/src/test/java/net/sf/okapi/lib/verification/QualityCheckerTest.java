@@ -640,6 +640,18 @@ public class QualityCheckerTest {
 		assertAllGood(tb.getBlacklistStrings());
 	}
 
+	@Test
+	public void testReloadBlacklistOfSameSize() {
+		BlacklistTB tb = new BlacklistTB(locEN);
+		tb.loadBlacklistStream(new ByteArrayInputStream("Foo\tSuggestion\n".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(1, tb.find("a Foo b", "A FOO B").size());
+		tb.removeAll();
+		tb.loadBlacklistStream(new ByteArrayInputStream("Bar\tSuggestion\n".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(1, tb.getBlacklistStrings().size());
+		assertTrue(tb.find("a Foo b", "A FOO B").isEmpty());
+		assertEquals(1, tb.find("a Bar b", "A BAR B").size());
+	}
+
 	@Test
 	public void testLoadBlacklistForLocale_EN() {
 		final String content = ""
@@ -823,6 +835,33 @@ public class QualityCheckerTest {
 		assertEquals(4, issues.size());
 	}
 
+	@Test
+	public void testBlacklistChecker_AllOccurrences() {
+		// Setup
+		String inPath = location.in("/black_tsv_simple.txt").toString();
+		Parameters params = session.getParameters();
+		params.setCheckBlacklist(true);
+		params.setblacklistPath(inPath);
+
+		// Configure data
+		ITextUnit tu = new TextUnit("id", "Srcwrd srcwrd srcwrd srcwrd srcwrd");
+		tu.setTarget(locFR, new TextContainer(
+				"xBlackTerm2 BlackTerm2, blackterm1 and BLACKTERM1 BlackTerm2x"));
+
+		// Reinitialize
+		session.startProcess(locEN, locFR);
+		session.processTextUnit(tu);
+
+		// Get results: sorted by term, then by position, substrings ignored
+		List<Issue> issues = session.getIssues();
+		assertEquals(3, issues.size());
+		assertTrue(issues.get(0).getMessage().contains("\"BlackTerm1\""));
+		assertEquals(24, issues.get(0).getTargetStart());
+		assertEquals(39, issues.get(1).getTargetStart());
+		assertTrue(issues.get(2).getMessage().contains("\"BlackTerm2\""));
+		assertEquals(12, issues.get(2).getTargetStart());
+	}
+
 	@Test
 	public void testBlacklistChecker_JA() {
 		// Setup
@@ -18,26 +18,20 @@ package net.sf.okapi.steps.inconsistencycheck;
 
 class Duplicate {
 
-    private String text;
     private String display;
     private String docId;
     private String subDocId;
     private String tuId;
     private String segId;
 
-    public Duplicate(String docId, String subDocId, String tuId, String segId, String text, String display) {
+    public Duplicate(String docId, String subDocId, String tuId, String segId, String display) {
         this.display = display;
-        this.text = text;
         this.docId = docId;
         this.subDocId = subDocId;
         this.tuId = tuId;
         this.segId = segId;
     }
 
-    public String getText() {
-        return text;
-    }
-
     public String getDisplay() {
         return display;
     }
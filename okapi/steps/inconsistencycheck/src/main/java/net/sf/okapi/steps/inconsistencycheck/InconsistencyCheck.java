@@ -16,45 +16,88 @@
 
 package net.sf.okapi.steps.inconsistencycheck;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.XMLWriter;
+import net.sf.okapi.common.exceptions.OkapiIOException;
 import net.sf.okapi.common.filterwriter.GenericContent;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnitUtil;
 
+/**
+ * Collects source-target pairs and reports the sources with different targets
+ * and the targets with different sources.
+ * <p>The groups are keyed by a fingerprint of their text, and each group tracks whether
+ * its entries differ as they are stored. Once more than a given number of entries
+ * is stored, the entries and the display text of the groups are written to a temporary file:
+ * they are read back only for the groups with issues, when the report is created.
+ * <p>This bounds the memory used by the entries, but not by the groups: memory still grows
+ * with the number of distinct source and target texts, as each of them keeps a small group
+ * object (plus the comparison text for the texts seen more than once).
+ */
 public class InconsistencyCheck {
 
+    /**
+     * Default number of entries kept in memory before they are written to a temporary file.
+     */
+    public static final int DEFAULT_SPILLTHRESHOLD = 500000;
+
+    private static final byte TRGDIFFERENCES = 0;
+    private static final byte SRCDIFFERENCES = 1;
+    private static final byte KEYDISPLAY = 2; // Added to the map type for a key record
+
     class Group {
 
-        String keyDisplay;
-        List<Duplicate> entries;
+        int id;
+        String keyDisplay; // Null when written to the temporary file
+        String keyCompare; // Set only when the group has more than one entry
+        long firstText;
+        boolean inconsistent;
+        List<Duplicate> entries; // Null when written to the temporary file
 
-        public Group(String keyDisplay) {
+        public Group(int id, String keyDisplay) {
+            this.id = id;
             this.keyDisplay = keyDisplay;
-            entries = new ArrayList<Duplicate>();
         }
     }
     private Parameters params;
-    private Map<String, Group> trgDifferences;
-    private Map<String, Group> srcDifferences;
+    private Map<Long, Group> trgDifferences;
+    private Map<Long, Group> srcDifferences;
+    private List<Group> trgIssues;
+    private List<Group> srcIssues;
+    private Comparator<String> keyComparator;
     private GenericContent fmt;
     private XMLWriter writer;
+    private int nextGroupId;
+    private int spillThreshold;
+    private int entriesInMemory;
+    private File spillFile;
+    private DataOutputStream spillOutput;
 
     public InconsistencyCheck() {
- 	Comparator<String> keyComparator = Util.createComparatorHandlingNullKeys(String.class);
-
+        this.keyComparator = Util.createComparatorHandlingNullKeys(String.class);
         this.params = new Parameters();
         this.fmt = new GenericContent();
-        this.trgDifferences = new TreeMap<String, Group>(keyComparator);
-        this.srcDifferences = new TreeMap<String, Group>(keyComparator);
+        this.trgDifferences = new HashMap<Long, Group>();
+        this.srcDifferences = new HashMap<Long, Group>();
+        this.trgIssues = new ArrayList<Group>();
+        this.srcIssues = new ArrayList<Group>();
+        this.spillThreshold = DEFAULT_SPILLTHRESHOLD;
         this.writer = null;
     }
 
@@ -65,6 +108,11 @@ public class InconsistencyCheck {
         }
         this.trgDifferences.clear();
         this.srcDifferences.clear();
+        this.trgIssues.clear();
+        this.srcIssues.clear();
+        this.nextGroupId = 0;
+        this.entriesInMemory = 0;
+        deleteSpillFile();
     }
     
     public Parameters getParameters() {
@@ -75,6 +123,14 @@ public class InconsistencyCheck {
         this.params = params;
     }
 
+    /**
+     * Sets the number of entries kept in memory before they are written to a temporary file.
+     * @param spillThreshold the maximum number of entries to keep in memory.
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
     /***
      * Stores the source-target pair for comparison
      * @param docId the full path to the document
@@ -91,13 +147,30 @@ public class InconsistencyCheck {
 		TextFragment srcTf,
 		TextFragment trgTf)
 	{
-		addToMap(trgDifferences, docId, subDocId, tuId, segId, srcTf, trgTf);
-		addToMap(srcDifferences, docId, subDocId, tuId, segId, trgTf, srcTf);
+		String srcCompare = toCompareFormat(srcTf);
+		String trgCompare = toCompareFormat(trgTf);
+		long srcPrint = fingerprint(srcCompare);
+		long trgPrint = fingerprint(trgCompare);
+		String srcDisplay = toDisplayFormat(srcTf);
+		String trgDisplay = toDisplayFormat(trgTf);
+		addToMap(trgDifferences, TRGDIFFERENCES, docId, subDocId, tuId, segId,
+			srcCompare, srcPrint, srcDisplay, trgPrint, trgDisplay);
+		addToMap(srcDifferences, SRCDIFFERENCES, docId, subDocId, tuId, segId,
+			trgCompare, trgPrint, trgDisplay, srcPrint, srcDisplay);
+		if (( spillOutput == null ) && ( entriesInMemory > spillThreshold )) {
+			spill();
+		}
 	}
 
     private void detectIssues() {
-        computeIssues(trgDifferences);
-        computeIssues(srcDifferences);
+        if (spillOutput != null) {
+            closeSpillOutput();
+        }
+        computeIssues(trgDifferences, trgIssues);
+        computeIssues(srcDifferences, srcIssues);
+        if (spillFile != null) {
+            readSpilledEntries();
+        }
     }
 
     /***
@@ -141,63 +214,225 @@ public class InconsistencyCheck {
         return TextUnitUtil.removeCodes(tf.getCodedText());
     }
 
-	private void addToMap (Map<String, Group> map,
+    /**
+     * Gets the 64-bit fingerprint (FNV-1a) of a string.
+     *
+     * @param text the string to process.
+     * @return the fingerprint of the string.
+     */
+    private static long fingerprint(String text) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+	private void addToMap (Map<Long, Group> map,
+		byte mapId,
 		String docId,
 		String subDocId,
 		String tuId,
 		String segId,
-		TextFragment keyTf,
-		TextFragment dataTf)
+		String keyCompare,
+		long keyPrint,
+		String keyDisplay,
+		long dataPrint,
+		String dataDisplay)
 	{
-		// Format issue display text
-		// Create the entry for the data
-		Duplicate dup = new Duplicate(docId, subDocId, tuId, segId,
-			toCompareFormat(dataTf),
-			toDisplayFormat(dataTf));
-		// Create the key
-		String key = toCompareFormat(keyTf);
 		// Check existing entries
-		Group grp = map.get(key);
+		Group grp = map.get(keyPrint);
 		if ( grp == null ) {
-			grp = new Group(toDisplayFormat(keyTf));
-			map.put(key, grp);
+			grp = new Group(nextGroupId++, keyDisplay);
+			grp.firstText = dataPrint;
+			map.put(keyPrint, grp);
+			if ( spillOutput == null ) {
+				grp.entries = new ArrayList<Duplicate>(1);
+			}
+			else {
+				writeKey(mapId, grp);
+			}
+		}
+		else {
+			if ( grp.keyCompare == null ) grp.keyCompare = keyCompare;
+			if ( grp.firstText != dataPrint ) grp.inconsistent = true;
+		}
+		// Add the entry for the data to the group
+		Duplicate dup = new Duplicate(docId, subDocId, tuId, segId, dataDisplay);
+		if ( spillOutput == null ) {
+			grp.entries.add(dup);
+			entriesInMemory++;
+		}
+		else {
+			writeEntry(mapId, grp.id, dup);
 		}
-		// Add to group
-		grp.entries.add(dup);
 	}
 
     /***
      * Detect any potential issues in consistency.
+     * The groups are checked as their entries are stored, so this only
+     * collects the groups with issues, sorted by their text.
      * 
      * @param map the list of strings to compare
+     * @param issues the list where to put the groups with issues.
      */
-    private void computeIssues(Map<String, Group> map) {
-        Iterator<Group> iter = map.values().iterator();
-        while (iter.hasNext()) {
-            Group group = iter.next();
-            List<Duplicate> list = group.entries;
-            if (list.size() < 2) {
-                iter.remove();
-            } else {
-                boolean keep = false;
-                int i = 0;
-                while (i < list.size() && !keep) {
-                    String text1 = list.get(i).getText();
-                    int j = i + 1;
-                    while (j < list.size()) {
-                        String text2 = list.get(j).getText();
-                        if (!text1.equals(text2)) {
-                            keep = true;
-                            break;
-                        }
-                        j++;
+    private void computeIssues(Map<Long, Group> map, List<Group> issues) {
+        issues.clear();
+        for (Group group : map.values()) {
+            if (group.inconsistent) {
+                issues.add(group);
+            }
+        }
+        Collections.sort(issues, new Comparator<Group>() {
+            @Override
+            public int compare(Group g1, Group g2) {
+                return keyComparator.compare(g1.keyCompare, g2.keyCompare);
+            }
+        });
+    }
+
+    /**
+     * Moves all the entries in memory and the display text of the groups to a temporary file.
+     * The entries and the groups stored after this call are written directly to that file.
+     */
+    private void spill() {
+        try {
+            spillFile = File.createTempFile("~okapi-inconsistencycheck-", ".tmp");
+            spillFile.deleteOnExit();
+            spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+        } catch (IOException e) {
+            throw new OkapiIOException("Cannot create the temporary file for the entries.", e);
+        }
+        spillGroups(trgDifferences, TRGDIFFERENCES);
+        spillGroups(srcDifferences, SRCDIFFERENCES);
+        entriesInMemory = 0;
+    }
+
+    private void spillGroups(Map<Long, Group> map, byte mapId) {
+        for (Group group : map.values()) {
+            writeKey(mapId, group);
+            for (Duplicate dup : group.entries) {
+                writeEntry(mapId, group.id, dup);
+            }
+            group.entries = null;
+        }
+    }
+
+    private void writeKey(byte mapId, Group group) {
+        try {
+            spillOutput.writeByte(mapId+KEYDISPLAY);
+            spillOutput.writeInt(group.id);
+            writeString(group.keyDisplay);
+            group.keyDisplay = null;
+        } catch (IOException e) {
+            throw new OkapiIOException("Cannot write to the temporary file for the entries.", e);
+        }
+    }
+
+    private void writeEntry(byte mapId, int groupId, Duplicate dup) {
+        try {
+            spillOutput.writeByte(mapId);
+            spillOutput.writeInt(groupId);
+            writeString(dup.getDocId());
+            writeString(dup.getSubDocId());
+            writeString(dup.getTuId());
+            writeString(dup.getSegId());
+            writeString(dup.getDisplay());
+        } catch (IOException e) {
+            throw new OkapiIOException("Cannot write to the temporary file for the entries.", e);
+        }
+    }
+
+    private void writeString(String text) throws IOException {
+        if (text == null) {
+            spillOutput.writeInt(-1);
+        } else {
+            spillOutput.writeInt(text.length());
+            spillOutput.writeChars(text);
+        }
+    }
+
+    /**
+     * Reads back the display text and the entries of the groups with issues from the temporary file.
+     * Records of the other groups are skipped.
+     */
+    private void readSpilledEntries() {
+        Map<Integer, Group> trgGroups = new HashMap<Integer, Group>();
+        for (Group group : trgIssues) {
+            trgGroups.put(group.id, group);
+        }
+        Map<Integer, Group> srcGroups = new HashMap<Integer, Group>();
+        for (Group group : srcIssues) {
+            srcGroups.put(group.id, group);
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+            while (true) {
+                byte mapId;
+                try {
+                    mapId = input.readByte();
+                } catch (EOFException e) {
+                    break; // Done
+                }
+                int groupId = input.readInt();
+                Group group = (mapId % KEYDISPLAY == TRGDIFFERENCES ? trgGroups : srcGroups).get(groupId);
+                if (mapId >= KEYDISPLAY) {
+                    String keyDisplay = readString(input);
+                    if (group != null) {
+                        group.keyDisplay = keyDisplay;
+                        group.entries = new ArrayList<Duplicate>();
                     }
-                    i++;
+                    continue;
                 }
-                if (!keep) {
-                    iter.remove();
+                Duplicate dup = new Duplicate(readString(input), readString(input),
+                    readString(input), readString(input), readString(input));
+                if (group != null) {
+                    group.entries.add(dup);
                 }
             }
+        } catch (IOException e) {
+            throw new OkapiIOException("Cannot read the temporary file for the entries.", e);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = input.readChar();
+        }
+        return new String(chars);
+    }
+
+    private void closeSpillOutput() {
+        try {
+            spillOutput.close();
+        } catch (IOException e) {
+            throw new OkapiIOException("Cannot close the temporary file for the entries.", e);
+        } finally {
+            spillOutput = null;
+        }
+    }
+
+    private void deleteSpillFile() {
+        if (spillOutput != null) {
+            closeSpillOutput();
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
         }
     }
 
@@ -217,10 +452,10 @@ public class InconsistencyCheck {
             }
 
             // Process the target differences
-            writeIssues(writer, trgDifferences, true);
+            writeIssues(writer, trgIssues, true);
 
             // Process the source differences
-            writeIssues(writer, srcDifferences, false);
+            writeIssues(writer, srcIssues, false);
 
             // Write end of report
             if (isEndBatch) {
@@ -254,15 +489,14 @@ public class InconsistencyCheck {
     }
 
     private void writeIssues(XMLWriter writer,
-            Map<String, Group> map,
+            List<Group> issues,
             boolean isKeyTheSource) {
-        for (String key : map.keySet()) {
+        for (Group grp : issues) {
             // Group element
             writer.writeStartElement(isKeyTheSource ? "targetDifferences" : "sourceDifferences");
             writer.writeLineBreak();
 
             // Key
-            Group grp = map.get(key);
             writer.writeElementString(isKeyTheSource ? "source" : "target", grp.keyDisplay);
             writer.writeLineBreak();
 
@@ -0,0 +1,83 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.inconsistencycheck;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import net.sf.okapi.common.TestUtil;
+import net.sf.okapi.common.resource.TextFragment;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InconsistencyCheckTest {
+
+    private String root;
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        root = TestUtil.getParentDir(this.getClass(), "/SameSource.html.xlf");
+    }
+
+    @Test
+    public void SpilledEntriesTest() throws IOException {
+        String memPath = root + "memory-report.xml";
+        String spillPath = root + "spill-report.xml";
+        createReport(memPath, InconsistencyCheck.DEFAULT_SPILLTHRESHOLD);
+        // Entries written to the temporary file after the second one
+        createReport(spillPath, 2);
+
+        String report = TestUtil.getFileAsString(new File(memPath));
+        assertEquals(report, TestUtil.getFileAsString(new File(spillPath)));
+        // Sorted by key
+        assertTrue(report.indexOf("<source>Apple</source>") < report.indexOf("<source>Banana</source>"));
+        assertTrue(report.contains("<target>Pomme</target>"));
+        // No issues for consistent entries
+        assertFalse(report.contains("Cherry"));
+        assertEquals(6, report.split("<issue ", -1).length - 1);
+    }
+
+    private void createReport(String path, int spillThreshold) {
+        InconsistencyCheck checker = new InconsistencyCheck();
+        checker.getParameters().setAutoOpen(false);
+        checker.setSpillThreshold(spillThreshold);
+        String[][] pairs = {
+            {"Banana", "Banane"},
+            {"Cherry", "Cerise"},
+            {"Apple", "Pomme"},
+            {"Cherry", "Cerise"},
+            {"Banana", "Banane jaune"},
+            {"Apple", "Pomme verte"},
+            {"Cherry", "Cerise"},
+            {"Apples", "Pomme"},
+        };
+        for (int i = 0; i < pairs.length; i++) {
+            checker.store("doc", "1", "tu" + (i + 1), "0",
+                new TextFragment(pairs[i][0]), new TextFragment(pairs[i][1]));
+        }
+        checker.generateReport(path, true);
+    }
+}
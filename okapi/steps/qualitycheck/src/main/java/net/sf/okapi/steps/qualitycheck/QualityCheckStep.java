@@ -189,7 +189,14 @@ public class QualityCheckStep extends BasePipelineStep {
 			if (session.getParameters().getAutoOpen()) {
 				Util.openURL((new File(finalPath)).getAbsolutePath());
 			}
+			// Release the termbase until the next batch
+			session.close();
 		}
 		return event;
 	}
+
+	@Override
+	public void destroy() {
+		session.close();
+	}
 }
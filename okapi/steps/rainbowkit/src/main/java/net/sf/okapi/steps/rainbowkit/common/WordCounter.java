@@ -20,8 +20,8 @@ import java.text.BreakIterator;
 
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Util;
-import net.sf.okapi.common.resource.Code;
 import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.PlainTextView;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
@@ -30,6 +30,7 @@ public class WordCounter {
 
 	private final BreakIterator breaker;
 	private final boolean replaceApos;
+	private final PlainTextView view = new PlainTextView();
 	
 	public WordCounter (LocaleId locId) {
 		breaker = BreakIterator.getWordInstance(locId.toJavaLocale());
@@ -53,31 +54,39 @@ public class WordCounter {
 	public long getWordCount (TextContainer cont) {
 		long res = 0;
 		for ( Segment seg : cont.getSegments() ) {
-			res += getWordCount(prepareFragment(seg.text));
+			res += getWordCount(seg.text);
 		}
 		return res;
 	}
 	
 	public long getWordCount (Segment seg) {
-		return getWordCount(prepareFragment(seg.text));
+		return getWordCount(seg.text);
 	}
 	
 	public long getWordCount (TextFragment frag) {
-		return getWordCount(prepareFragment(frag));
+		// Strip the inline codes, keeping the line-breaks
+		view.set(frag, true);
+		return countWords();
 	}
 	
 	public long getWordCount (String text) {
 		if ( Util.isEmpty(text) ) return 0;
+		view.set(text);
+		return countWords();
+	}
+	
+	private long countWords () {
+		if ( view.length() == 0 ) return 0;
 		long res = 0;
 		if ( replaceApos ) {
-			text = text.replace('\'', ' ');
-			text = text.replace('\u2019', ' ');
+			view.replace('\'', ' ');
+			view.replace('\u2019', ' ');
 		}
-		breaker.setText(text);
+		breaker.setText(view);
 		int start = breaker.first();
 		for ( int end=breaker.next(); end!=BreakIterator.DONE; start=end, end=breaker.next() ) {
 			for ( int i=start; i<end; i++) {
-                if ( Character.isLetterOrDigit(text.codePointAt(i)) ) {
+                if ( Character.isLetterOrDigit(Character.codePointAt(view, i)) ) {
                 	res++;
                 	break;
                 }
@@ -86,39 +95,4 @@ public class WordCounter {
 		return res;
 	}
 	
-	private String prepareFragment (TextFragment tf) {
-		String text = tf.getCodedText();
-		if ( !tf.hasCode() ) {
-			return text;
-		}
-		// Else: strip the inline codes
-		StringBuilder sb = new StringBuilder();
-		int startPos = -1;
-		for ( int i=0; i<text.length(); i++ ) {
-			if ( TextFragment.isMarker(text.charAt(i)) ) {
-				if ( i > startPos && startPos >= 0) {
-					sb.append(text.substring(startPos, i));
-				}
-				if ( tf.getCode(text.charAt(++i)).getType().equals(Code.TYPE_LB) ) {
-					sb.append('\n');
-				}
-				startPos = -1;
-			}
-			else {
-				if ( startPos < 0 ) {
-					startPos = i;
-				}
-			}
-		}
-
-		if ( startPos < 0 && sb.length() == 0 ) { // Whole string 
-			startPos = 0;
-		}
-		else if ( startPos > -1 && startPos < text.length() ) {
-			sb.append(text.substring(startPos));
-		}
-		
-		return sb.toString();
-	}
-	
 }
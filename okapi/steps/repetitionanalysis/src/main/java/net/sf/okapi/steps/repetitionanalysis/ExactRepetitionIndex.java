@@ -0,0 +1,185 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.repetitionanalysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory index of the segments already seen, for the detection of exact repetitions.
+ * <p>Each distinct text is stored only as a 128-bit fingerprint, with the first occurrences
+ * of that text (up to a given maximum). Everything is kept in arrays of primitive values,
+ * so a distinct text costs about 60 bytes and an occurrence about 24 bytes.
+ */
+public class ExactRepetitionIndex {
+
+	private static final int EMPTY = -1;
+
+	private final int maxOccurrences;
+
+	// Open addressing table of the fingerprints
+	private long[] keys1;
+	private long[] keys2;
+	private int[] firsts; // First occurrence of each text, EMPTY for a free slot
+	private int[] lasts;
+	private int[] counts;
+	private int size;
+
+	// Occurrences, linked by text
+	private long[] tuids = new long[1024];
+	private long[] groupIds = new long[1024];
+	private int[] segIds = new int[1024];
+	private int[] nexts = new int[1024];
+	private int occCount;
+
+	/**
+	 * Creates a new empty index.
+	 * @param maxOccurrences the maximum number of occurrences to keep for each text.
+	 */
+	public ExactRepetitionIndex (int maxOccurrences) {
+		this.maxOccurrences = Math.max(1, maxOccurrences);
+		allocate(1024);
+	}
+
+	/**
+	 * Gets the number of distinct texts in this index.
+	 * @return the number of distinct texts.
+	 */
+	public int size () {
+		return size;
+	}
+
+	/**
+	 * Adds an occurrence of a given text to this index, and gets the previous occurrences of that text.
+	 * @param text the text of the segment.
+	 * @param tuid the global segment counter of the occurrence.
+	 * @param groupId the global TU counter of the occurrence.
+	 * @param segId the local segment counter of the occurrence.
+	 * @return the list of the first previous occurrences of the same text
+	 * (empty if the text was not seen before).
+	 */
+	public List<SegmentInfo> add (CharSequence text,
+		long tuid,
+		long groupId,
+		int segId)
+	{
+		long h1 = 0xCBF29CE484222325L; // FNV-1a
+		long h2 = text.length();
+		for ( int i=0; i<text.length(); i++ ) {
+			char ch = text.charAt(i);
+			h1 = (h1 ^ ch) * 0x100000001B3L;
+			h2 = (h2 + ch) * 0x9E3779B97F4A7C15L;
+		}
+		h1 = mix(h1);
+		h2 = mix(h2);
+
+		int slot = findSlot(h1, h2);
+		List<SegmentInfo> res = new ArrayList<SegmentInfo>();
+		if ( firsts[slot] == EMPTY ) {
+			keys1[slot] = h1;
+			keys2[slot] = h2;
+			int occ = newOccurrence(tuid, groupId, segId);
+			firsts[slot] = occ;
+			lasts[slot] = occ;
+			counts[slot] = 1;
+			if ( ++size*2 > firsts.length ) grow();
+			return res;
+		}
+
+		for ( int occ=firsts[slot]; occ!=EMPTY; occ=nexts[occ] ) {
+			res.add(new SegmentInfo(Long.toString(tuids[occ]), Long.toString(groupIds[occ]),
+				Integer.toString(segIds[occ])));
+		}
+		if ( counts[slot] < maxOccurrences ) {
+			int occ = newOccurrence(tuid, groupId, segId);
+			nexts[lasts[slot]] = occ;
+			lasts[slot] = occ;
+			counts[slot]++;
+		}
+		return res;
+	}
+
+	private int findSlot (long h1,
+		long h2)
+	{
+		int mask = firsts.length-1;
+		int slot = (int)h1 & mask;
+		while (( firsts[slot] != EMPTY ) && (( keys1[slot] != h1 ) || ( keys2[slot] != h2 ))) {
+			slot = (slot+1) & mask;
+		}
+		return slot;
+	}
+
+	private int newOccurrence (long tuid,
+		long groupId,
+		int segId)
+	{
+		if ( occCount == tuids.length ) {
+			int newSize = tuids.length*2;
+			tuids = Arrays.copyOf(tuids, newSize);
+			groupIds = Arrays.copyOf(groupIds, newSize);
+			segIds = Arrays.copyOf(segIds, newSize);
+			nexts = Arrays.copyOf(nexts, newSize);
+		}
+		tuids[occCount] = tuid;
+		groupIds[occCount] = groupId;
+		segIds[occCount] = segId;
+		nexts[occCount] = EMPTY;
+		return occCount++;
+	}
+
+	private void allocate (int capacity) {
+		keys1 = new long[capacity];
+		keys2 = new long[capacity];
+		firsts = new int[capacity];
+		lasts = new int[capacity];
+		counts = new int[capacity];
+		Arrays.fill(firsts, EMPTY);
+	}
+
+	private void grow () {
+		long[] oldKeys1 = keys1;
+		long[] oldKeys2 = keys2;
+		int[] oldFirsts = firsts;
+		int[] oldLasts = lasts;
+		int[] oldCounts = counts;
+		allocate(oldFirsts.length*2);
+		for ( int i=0; i<oldFirsts.length; i++ ) {
+			if ( oldFirsts[i] == EMPTY ) continue;
+			int slot = findSlot(oldKeys1[i], oldKeys2[i]);
+			keys1[slot] = oldKeys1[i];
+			keys2[slot] = oldKeys2[i];
+			firsts[slot] = oldFirsts[i];
+			lasts[slot] = oldLasts[i];
+			counts[slot] = oldCounts[i];
+		}
+	}
+
+	/**
+	 * Final mixing of a hash value (from MurmurHash3).
+	 */
+	private static long mix (long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
@@ -17,7 +17,9 @@
 package net.sf.okapi.steps.repetitionanalysis;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import net.sf.okapi.common.Event;
@@ -51,6 +53,9 @@ import net.sf.okapi.tm.pensieve.writer.TmWriterFactory;
  * AltTranslationsAnnotation's are attached to target segments, corresponding to repetitive source segments.
  * AltTranslationsAnnotation is not attached for the first repetitive segment not to be counted by counting steps
  * twice as repetitive with itself.
+ * <p>
+ * Exact repetitions are found with an in-memory index of the texts already seen (see {@link ExactRepetitionIndex}).
+ * A Pensieve TM is used only for the fuzzy search, when the fuzzy threshold is below 100.
  */
 public class RepetitionAnalysisStep extends BasePipelineStep {
 
@@ -71,6 +76,7 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 	private String tmDir;
 	private PensieveWriter tmWriter;
 	private ITmSeeker currentTm;
+	private ExactRepetitionIndex exactIndex;
 	private LocaleId sourceLocale;
 	private LocaleId targetLocale;
 
@@ -127,24 +133,31 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 			currentTm.close();
 			currentTm = null;
 		}
-		if (tmDir != null) Util.deleteDirectory(tmDir, false);
+		exactIndex = null;
+		if (tmDir != null) {
+			Util.deleteDirectory(tmDir, false);
+			tmDir = null;
+		}
 	}
 	
 	@Override
 	protected Event handleStartDocument(Event event) {
 		close();
-		// For concurrent pipelines 
-		tmDir = String.format("%s~okapi-step-repetitionanalysis-%s/", 
-				Util.ensureSeparator(Util.getTempDirectory(), true), 
-				UUID.randomUUID().toString());
-		Util.createDirectories(tmDir);
 		searchExact = params.getFuzzyThreshold() >= 100;
 		
 		tuCounter = 0;
 		groupCounter = 1;
 		
-		tmWriter = (PensieveWriter) TmWriterFactory.createFileBasedTmWriter(tmDir, true);
-		currentTm = new PensieveSeeker(tmWriter.getIndexWriter());
+		exactIndex = new ExactRepetitionIndex(params.getMaxHits());
+		if (!searchExact) {
+			// For concurrent pipelines 
+			tmDir = String.format("%s~okapi-step-repetitionanalysis-%s/", 
+					Util.ensureSeparator(Util.getTempDirectory(), true), 
+					UUID.randomUUID().toString());
+			Util.createDirectories(tmDir);
+			tmWriter = (PensieveWriter) TmWriterFactory.createFileBasedTmWriter(tmDir, true);
+			currentTm = new PensieveSeeker(tmWriter.getIndexWriter());
+		}
 		
 		return super.handleStartDocument(event);
 	}
@@ -155,6 +168,21 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 		return super.handleEndDocument(event);
 	}
 	
+	/**
+	 * Previous segment found for the current one.
+	 */
+	private static class Repetition {
+		final SegmentInfo info;
+		final String source;
+		final float score;
+		
+		Repetition(SegmentInfo info, String source, float score) {
+			this.info = info;
+			this.source = source;
+			this.score = score;
+		}
+	}
+	
 	public static boolean checkSegments(Segment sseg, Segment tseg) {
 		// tseg is allowed to be null
 		return	sseg != null && 
@@ -199,24 +227,34 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 				
 				SegmentInfo info = new SegmentInfo(tuid, groupId, segId); 
 				
-				List<TmHit> hits = new ArrayList<TmHit>();
-				hits.addAll(currentTm.searchExact(tf, null));
+				// Exact repetitions come from the index, fuzzy ones from the TM
+				List<Repetition> hits = new ArrayList<Repetition>();
+				for (SegmentInfo refInfo : exactIndex.add(tf.getText(), tuCounter, groupCounter, segCounter)) {
+					hits.add(new Repetition(refInfo, tf.getText(), 100.0f));
+				}
 				if (!searchExact) {
-					hits.addAll(currentTm.searchFuzzy(tf, params.getFuzzyThreshold(), params.getMaxHits(), null));
+					for (TmHit hit : currentTm.searchFuzzy(tf, params.getFuzzyThreshold(), params.getMaxHits(), null)) {
+						TranslationUnit hitTu = hit.getTu();
+						hits.add(new Repetition(new SegmentInfo(hitTu.getMetadata()),
+								hitTu.getSource().getContent().getText(), hit.getScore()));
+					}
 				}
 								
 				if (hits.size() > 0) {
+					Map<SegmentInfo, Float> map = new HashMap<SegmentInfo, Float>();
+					for (Repetition hit : hits) {
+						map.put(hit.info, hit.score);
+					}
 					RepetitiveSegmentAnnotation ann =
-							new RepetitiveSegmentAnnotation(info, hits);
+							new RepetitiveSegmentAnnotation(info, map);
 					seg.setAnnotation(ann);
 					
-					for (TmHit hit : hits) {
-						TranslationUnit hitTu = hit.getTu();
-						
+					for (Repetition hit : hits) {
 						if (tsegments != null) {
 							TextFragment otf = new TextFragment(tf.getText());
-							TextFragment stf = new TextFragment(hitTu.getSource().getContent().getText());
-							TextFragment ttf = new TextFragment(hitTu.getTarget().getContent().getText());
+							TextFragment stf = new TextFragment(hit.source);
+							// The target of a TM entry is its tuid
+							TextFragment ttf = new TextFragment(hit.info.getTuid());
 							
 							// For word counts
 							AltTranslationsAnnotation ata = tseg.getAnnotation(AltTranslationsAnnotation.class);
@@ -228,21 +266,11 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 									otf, stf, ttf, MatchType.EXACT_DOCUMENT_CONTEXT,
 									//tf, stf, ttf, MatchType.EXACT_DOCUMENT_CONTEXT,
 									//Math.round(hit.getScore() * 100), ""));
-									(int) Math.floor(hit.getScore()), ""));							
+									(int) Math.floor(hit.score), ""));							
 						}
 					}					
 				}
 				
-				TranslationUnit ntu = new TranslationUnit(
-						new TranslationUnitVariant(sourceLocale, tf),
-						new TranslationUnitVariant(targetLocale == null ? sourceLocale : targetLocale, 
-								new TextFragment(tuid))); // To have a unique target
-				ntu.setMetadataValue(MetadataType.ID, tuid);
-				
-				// TODO create real MetadataTypes for these
-				ntu.setMetadataValue(MetadataType.GROUP_NAME, groupId);
-				ntu.setMetadataValue(MetadataType.FILE_NAME, segId);
-				
 				// The segment can be referenced from the maps in RSA of other segments, so we create a RSA for it
 				if (seg.getAnnotation(RepetitiveSegmentAnnotation.class) == null) {
 					RepetitiveSegmentAnnotation ann = 
@@ -250,11 +278,23 @@ public class RepetitionAnalysisStep extends BasePipelineStep {
 					seg.setAnnotation(ann);
 				}
 				
-				tmWriter.indexTranslationUnit(ntu);
-				
-				// Should be called here after every segment addition to the TM for the situations 
-				// of repetitive segments within a tu
-				tmWriter.commit();
+				if (tmWriter != null) {
+					TranslationUnit ntu = new TranslationUnit(
+							new TranslationUnitVariant(sourceLocale, tf),
+							new TranslationUnitVariant(targetLocale == null ? sourceLocale : targetLocale, 
+									new TextFragment(tuid))); // To have a unique target
+					ntu.setMetadataValue(MetadataType.ID, tuid);
+					
+					// TODO create real MetadataTypes for these
+					ntu.setMetadataValue(MetadataType.GROUP_NAME, groupId);
+					ntu.setMetadataValue(MetadataType.FILE_NAME, segId);
+					
+					tmWriter.indexTranslationUnit(ntu);
+					
+					// Should be called here after every segment addition to the TM for the situations 
+					// of repetitive segments within a tu
+					tmWriter.commit();
+				}
 			}
 			if (hasTranslationUnits) groupCounter++;
 		}
@@ -0,0 +1,66 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.repetitionanalysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestExactRepetitionIndex {
+
+	@Test
+	public void testRepetitions() {
+		ExactRepetitionIndex index = new ExactRepetitionIndex(2);
+		assertEquals(0, index.add("Text 1", 1, 1, 1).size());
+		assertEquals(0, index.add("Text 2", 2, 1, 2).size());
+		
+		List<SegmentInfo> res = index.add("Text 1", 3, 2, 1);
+		assertEquals(1, res.size());
+		assertEquals("1", res.get(0).getTuid());
+		assertEquals("1", res.get(0).getGroupId());
+		assertEquals("1", res.get(0).getSegId());
+		
+		assertEquals(2, index.add("Text 1", 4, 3, 1).size());
+		// Only the first 2 occurrences are kept
+		res = index.add("Text 1", 5, 4, 1);
+		assertEquals(2, res.size());
+		assertEquals("1", res.get(0).getTuid());
+		assertEquals("3", res.get(1).getTuid());
+		
+		assertEquals(0, index.add("text 1", 6, 5, 1).size());
+		assertEquals(3, index.size());
+	}
+	
+	@Test
+	public void testManyTexts() {
+		ExactRepetitionIndex index = new ExactRepetitionIndex(20);
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(0, index.add("Segment " + i, i, i, 1).size());
+		}
+		for (int i = 0; i < 10000; i++) {
+			List<SegmentInfo> res = index.add("Segment " + i, i + 10000, i + 10000, 1);
+			assertEquals(1, res.size());
+			assertEquals(String.valueOf(i), res.get(0).getTuid());
+		}
+		assertEquals(10000, index.size());
+	}
+}
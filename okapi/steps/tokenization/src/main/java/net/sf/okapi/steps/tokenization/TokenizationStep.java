@@ -312,11 +312,6 @@ public class TokenizationStep extends AbstractPipelineStep {
 		if (positions == null) return null;		
 		positions.clear();
 		
-		Tokens tokens = new Tokens();
-		Tokens tempTokens = new Tokens();
-		int textShift = 0;
-		rawtextLexems.clear();
-		
 		// Remove codes, store to positions
 		String text;
 		if ( tc.contentIsOneSegment() ) {
@@ -326,6 +321,41 @@ public class TokenizationStep extends AbstractPipelineStep {
 			text = TextUnitUtil.getText(tc.getUnSegmentedContentCopy(), positions);
 		}
 		
+		Tokens tokens = tokenizeText(text, language);
+		return tokens.getFilteredList(ListUtil.stringListAsArray(params.getTokenNames()));
+	}
+	
+	/**
+	 * Tokenizes a given plain text directly, without pipeline events.<p>
+	 * Unlike the event-driven processing, the language is not checked against the locale filter of the parameters.
+	 * The lexers of a step keep state while processing: a step instance must not be used by several threads
+	 * at the same time.
+	 * @param text the text to tokenize (without inline codes).
+	 * @param language the language of the text.
+	 * @param result the list where to place the tokens. It is cleared before the tokens are added.
+	 * @param tokenNames optional names of the tokens to extract. If omitted, all tokens are extracted.
+	 * @return the given result list.
+	 */
+	public Tokens tokenize (String text, LocaleId language, Tokens result, String... tokenNames) {
+		result.clear();
+		if (text == null) return result;
+		if (Util.isNullOrEmpty(language)) return result;
+		if (params == null) {
+			component_init();
+		}
+		
+		positions.clear();
+		Tokens tokens = tokenizeText(text, language);
+		result.addAll(tokens.getFilteredList(tokenNames));
+		return result;
+	}
+	
+	private Tokens tokenizeText (String text, LocaleId language) {
+		Tokens tokens = new Tokens();
+		Tokens tempTokens = new Tokens();
+		int textShift = 0;
+		rawtextLexems.clear();
+		
 		allowNewRawText = true;
 		runLexers(lexers, text, language, tokens, textShift);
 
@@ -367,7 +397,7 @@ public class TokenizationStep extends AbstractPipelineStep {
 		if (tokens != null)
 			tokens.fixRanges(positions);
 		
-		return tokens.getFilteredList(ListUtil.stringListAsArray(params.getTokenNames()));
+		return tokens;
 	}
 	
 	private void tokenizeSource(ITextUnit tu) {
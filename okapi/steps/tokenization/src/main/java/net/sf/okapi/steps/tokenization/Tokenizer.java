@@ -16,17 +16,12 @@
 
 package net.sf.okapi.steps.tokenization;
 
-import net.sf.okapi.common.Event;
-import net.sf.okapi.common.EventType;
-import net.sf.okapi.common.LocaleFilter;
 import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.Util;
 import net.sf.okapi.common.resource.ITextUnit;
-import net.sf.okapi.common.resource.StartDocument;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnitUtil;
-import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
 import net.sf.okapi.steps.tokenization.tokens.Tokens;
 
 import org.slf4j.Logger;
@@ -40,7 +35,16 @@ import org.slf4j.LoggerFactory;
 
 public class Tokenizer {
 
-	protected static TokenizationStep ts = new TokenizationStep();
+	/**
+	 * Tokenization engine of each thread: the lexers keep state while processing a string,
+	 * so they cannot be shared, but they are costly to load and are re-used for all the strings.
+	 */
+	private static final ThreadLocal<TokenizationStep> engines = new ThreadLocal<TokenizationStep>() {
+		@Override
+		protected TokenizationStep initialValue() {
+			return new TokenizationStep();
+		}
+	};
 	
 	/**
 	 * Extracts tokens from the given text.
@@ -49,41 +53,21 @@ public class Tokenizer {
 	 * @param tokenNames Optional list of token names. If omitted, all tokens will be extracted.
 	 * @return A list of Token objects.
 	 */
-	protected static synchronized Tokens tokenizeString(String text, LocaleId language, String... tokenNames) {
-			
-		Tokens res = new Tokens();
-		
-		if (ts == null)	return res;
-		
-		Parameters params = (Parameters) ts.getParameters();		
-		params.reset();
-		
-		params.tokenizeSource = true;
-		params.tokenizeTargets = false;
-		
-		params.setLocaleFilter(LocaleFilter.anyOf(language));		
-		params.setTokenNames(tokenNames);
-					
-		ts.handleEvent(new Event(EventType.START_BATCH)); // Calls component_init();
-		
-		StartDocument startDoc = new StartDocument("tokenization");
-		startDoc.setLocale(language);
-		startDoc.setMultilingual(false);		
-		Event event = new Event(EventType.START_DOCUMENT, startDoc);		
-		ts.handleEvent(event);
-				
-		ITextUnit tu = TextUnitUtil.buildTU(text);
-		event = new Event(EventType.TEXT_UNIT, tu);		
-		ts.handleEvent(event);
-		
-		// Move tokens from the event's annotation to result
-		TokensAnnotation ta = TextUnitUtil.getSourceAnnotation(tu, TokensAnnotation.class);
-		if (ta != null)
-			res.addAll(ta.getTokens());
-		
-		ts.handleEvent(new Event(EventType.END_BATCH)); // Calls component_done();
-		
-		return res;
+	protected static Tokens tokenizeString(String text, LocaleId language, String... tokenNames) {
+		return tokenizeString(text, language, new Tokens(), tokenNames);
+	}
+	
+	/**
+	 * Extracts tokens from the given text into a given list. This method is thread-safe and does not
+	 * lock: each thread uses its own tokenization engine.
+	 * @param text Text to tokenize.
+	 * @param language Language of the text.
+	 * @param result List where to place the tokens. It is cleared first, so it can be re-used from one call to the next. 
+	 * @param tokenNames Optional list of token names. If omitted, all tokens will be extracted.
+	 * @return The given result list.
+	 */
+	public static Tokens tokenizeString(String text, LocaleId language, Tokens result, String... tokenNames) {
+		return engines.get().tokenize(text, language, result, tokenNames);
 	}
 	
 	private static Tokens doTokenize(Object text, LocaleId language, String... tokenNames) {
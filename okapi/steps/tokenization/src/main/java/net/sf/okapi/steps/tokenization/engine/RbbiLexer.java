@@ -81,19 +81,17 @@ public class RbbiLexer extends AbstractLexer {
 		return buffer;
 	}
 	
-	@Override
-	public void lexer_open(String text, LocaleId language, Tokens tokens) {
-		
-		if (Util.isEmpty(text)) {
-			cancel();
-			return;
-		}
-		this.text = text;
+	/**
+	 * Gets the break iterator of this lexer for a given language: the default ICU word rules
+	 * combined with the rules of this lexer that apply to the language. The iterator is created
+	 * on the first call for the language, and re-used for the next calls.
+	 * @param language the language of the text to process.
+	 * @return the break iterator for the given language.
+	 */
+	public RuleBasedBreakIterator getIterator(LocaleId language) {
 		
-		if ( iterators.containsKey(language) ) {
-			iterator = iterators.get(language);
-		}
-		else {
+		RuleBasedBreakIterator iterator = iterators.get(language);
+		if ( iterator == null ) {
 			iterator = (RuleBasedBreakIterator)BreakIterator.getWordInstance(
 				ULocale.createCanonical(language.toString()));
 			String defaultRules = iterator.toString();
@@ -115,6 +113,18 @@ public class RbbiLexer extends AbstractLexer {
 			iterator = new RuleBasedBreakIterator(newRules); 
 			iterators.put(language, iterator);
 		}
+		return iterator;
+	}
+	
+	@Override
+	public void lexer_open(String text, LocaleId language, Tokens tokens) {
+		
+		if (Util.isEmpty(text)) {
+			cancel();
+			return;
+		}
+		this.text = text;
+		iterator = getIterator(language);
 
 		if ( iterator == null ) return;		
 		iterator.setText(text);
@@ -253,6 +253,47 @@ public class TokenizationTest {
 		assertEquals("word3", tokens.get(2).getValue());
 	}
 	
+	@Test
+	public void testTokenizerReusedBuffer() {
+		Tokens expected = Tokenizer.tokenize(text, locENUS);
+		Tokens buffer = new Tokens();
+		assertTrue(buffer == Tokenizer.tokenizeString(text, locENUS, buffer));
+		assertEquals(expected.toString(), buffer.toString());
+		Tokenizer.tokenizeString("word1 word2", locENUS, buffer, "WORD");
+		assertEquals(2, buffer.size());
+		assertEquals("word2", buffer.get(1).getValue());
+	}
+	
+	@Test
+	public void testTokenizerThreads() throws InterruptedException {
+		final String expected = Tokenizer.tokenize(text, locENUS).toString();
+		final List<String> results = new ArrayList<String>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Tokens buffer = new Tokens();
+					for (int j = 0; j < 5; j++) {
+						String res = Tokenizer.tokenizeString(text, locENUS, buffer).toString();
+						synchronized (results) {
+							results.add(res);
+						}
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(20, results.size());
+		for (String res : results) {
+			assertEquals(expected, res);
+		}
+	}
+	
 	@Test
 	public void testJavaCC() {
 		
@@ -141,7 +141,23 @@ public class CharacterCounter extends BaseCounter {
 		if (text == null) {
 			return new Counts();
 		}
-		
+		return countText(text);
+	}
+	
+	/**
+	 * Counts the characters of a given plain text (GMX TotalCharacterCount).
+	 * The text is not copied unless it needs to be normalized.
+	 * @param text the text to count (without inline codes)
+	 * @return number of characters
+	 */
+	public static long countCharacters(CharSequence text) {
+		if (text == null) {
+			return 0L;
+		}
+		return countText(text).total;
+	}
+	
+	private static Counts countText(CharSequence text) {
 		if (!Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
             text = Normalizer.normalize(text, Normalizer.Form.NFC);
 		}
@@ -150,7 +166,7 @@ public class CharacterCounter extends BaseCounter {
 		long whiteSpace = 0;
 		long punctuation = 0;
 		for (int cp, cc, i = 0, len = text.length(); i < len; i += cc) {
-			cp = text.codePointAt(i);
+			cp = Character.codePointAt(text, i);
 			cc = Character.charCount(cp);
 			// GMX TotalCharacterCount excludes whitespace. Definition is same as Java's.
 			if (Character.isWhitespace(cp)) {
@@ -159,8 +175,8 @@ public class CharacterCounter extends BaseCounter {
 			}
 			boolean isInWord = false;
 			if (i > 0 && i < len - cc) {
-				int prev = text.codePointBefore(i);
-				int next = text.codePointAt(i + cc);
+				int prev = Character.codePointBefore(text, i);
+				int next = Character.codePointAt(text, i + cc);
 				isInWord = Character.isLetterOrDigit(prev) && Character.isLetterOrDigit(next);
 			}
 			// Punctuation characters are excluded, but hyphens and apostrophes are included
@@ -0,0 +1,427 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.wordcount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.IResource;
+import net.sf.okapi.common.IdGenerator;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.UsingParameters;
+import net.sf.okapi.common.exceptions.OkapiException;
+import net.sf.okapi.common.resource.Ending;
+import net.sf.okapi.common.resource.ISegments;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.IWithAnnotations;
+import net.sf.okapi.common.resource.MultiEvent;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.lib.extra.steps.AbstractPipelineStep;
+import net.sf.okapi.steps.tokenization.Tokenizer;
+import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
+import net.sf.okapi.steps.tokenization.tokens.Tokens;
+import net.sf.okapi.steps.wordcount.CharacterCounter.Counts;
+import net.sf.okapi.steps.wordcount.common.GMX;
+import net.sf.okapi.steps.wordcount.common.Metrics;
+import net.sf.okapi.steps.wordcount.common.MetricsAnnotation;
+
+/**
+ * Word and character count step using a pool of worker threads.
+ * <p>The annotations are the same as the ones created by the {@link WordCountStep} followed by
+ * the {@link CharacterCountStep}. The events of each document are buffered and the text units are
+ * counted in parallel when the document ends, or when {@link ParametersParallelCountStep#getMaxTextUnits()}
+ * text units are buffered. The per-unit {@link Metrics} are then merged, in the order of the events,
+ * into the totals of the groups, sub-documents, documents, batch items and batch, and the buffered
+ * events are sent down the pipeline together.
+ */
+@UsingParameters(ParametersParallelCountStep.class)
+public class ParallelCountStep extends AbstractPipelineStep {
+
+	private ParametersParallelCountStep params;
+	private IdGenerator gen = new IdGenerator("ending");
+	private ExecutorService executor;
+	private List<Event> events = new ArrayList<Event>();
+	private int textUnitCount;
+	private boolean inDocument;
+
+	private Metrics batchMetrics = new Metrics();
+	private Metrics batchItemMetrics = new Metrics();
+	private Metrics documentMetrics = new Metrics();
+	private Metrics subDocumentMetrics = new Metrics();
+	private Metrics groupMetrics = new Metrics();
+
+	public ParallelCountStep () {
+		super();
+		params = new ParametersParallelCountStep();
+		setParameters(params);
+		setName(getName());
+		setDescription(getName());
+	}
+
+	@Override
+	public String getName () {
+		return "Parallel Word and Character Count";
+	}
+
+	@Override
+	public String getDescription () {
+		return "Count the number of words and characters in the text units of a set of documents or/and in its parts,"
+			+ " using several threads. Expects: filter events. Sends back: filter events.";
+	}
+
+	@Override
+	protected void component_init () {
+		params = getParameters(ParametersParallelCountStep.class);
+		events = new ArrayList<Event>();
+		textUnitCount = 0;
+		inDocument = false;
+
+		batchMetrics = new Metrics();
+		batchItemMetrics = new Metrics();
+		documentMetrics = new Metrics();
+		subDocumentMetrics = new Metrics();
+		groupMetrics = new Metrics();
+		// The pool is re-created with the current number of threads when needed
+		shutdown();
+	}
+
+	@Override
+	protected void component_done () {
+		shutdown();
+	}
+
+	@Override
+	public void destroy () {
+		shutdown();
+	}
+
+	private void shutdown () {
+		if ( executor != null ) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	@Override
+	public Event handleEvent (Event event) {
+		if ( event == null ) return null;
+
+		switch ( event.getEventType() ) {
+		case START_DOCUMENT:
+			event = super.handleEvent(event); // Sets the source locale
+			documentMetrics = new Metrics();
+			subDocumentMetrics = new Metrics();
+			groupMetrics = new Metrics();
+			inDocument = true;
+			return event;
+		case END_DOCUMENT:
+			inDocument = false;
+			events.add(event);
+			return flush();
+		case TEXT_UNIT:
+			if ( !inDocument ) break;
+			events.add(event);
+			if ( ++textUnitCount >= Math.max(1, params.getMaxTextUnits()) ) {
+				return flush();
+			}
+			return Event.NOOP_EVENT;
+		case CANCELED:
+			events.clear();
+			textUnitCount = 0;
+			inDocument = false;
+			return event;
+		case START_BATCH:
+		case END_BATCH:
+		case START_BATCH_ITEM:
+		case END_BATCH_ITEM:
+		case PIPELINE_PARAMETERS:
+		case RAW_DOCUMENT:
+			break;
+		default:
+			// Keep the order of the events inside the document
+			if ( !inDocument ) break;
+			events.add(event);
+			return Event.NOOP_EVENT;
+		}
+		return super.handleEvent(event);
+	}
+
+	@Override
+	protected Event handleStartBatch (Event event) {
+		batchMetrics = new Metrics();
+		return event;
+	}
+
+	@Override
+	protected Event handleEndBatch (Event event) {
+		if ( params.getCountInBatch() ) saveToMetrics(event, batchMetrics);
+		return event;
+	}
+
+	@Override
+	protected Event handleStartBatchItem (Event event) {
+		batchItemMetrics = new Metrics();
+		return event;
+	}
+
+	@Override
+	protected Event handleEndBatchItem (Event event) {
+		if ( params.getCountInBatchItems() ) saveToMetrics(event, batchItemMetrics);
+		return event;
+	}
+
+	/**
+	 * Counts the buffered text units, merges their metrics into the totals and
+	 * returns the buffered events.
+	 */
+	private Event flush () {
+		List<Event> list = events;
+		events = new ArrayList<Event>();
+		textUnitCount = 0;
+
+		List<ITextUnit> units = new ArrayList<ITextUnit>();
+		for ( Event event : list ) {
+			if ( event.isTextUnit() && !event.getTextUnit().isEmpty() ) {
+				units.add(event.getTextUnit());
+			}
+		}
+		Metrics[] results = countAll(units);
+
+		// Merge in the order of the events, to keep the group and sub-document totals
+		int i = 0;
+		for ( Event event : list ) {
+			switch ( event.getEventType() ) {
+			case TEXT_UNIT:
+				if ( event.getTextUnit().isEmpty() ) break;
+				Metrics unit = results[i++];
+				saveToMetrics(event, unit); // Saves in annotations of the whole TU
+				if ( params.getCountInBatch() ) batchMetrics.merge(unit);
+				if ( params.getCountInBatchItems() ) batchItemMetrics.merge(unit);
+				if ( params.getCountInDocuments() ) documentMetrics.merge(unit);
+				if ( params.getCountInSubDocuments() ) subDocumentMetrics.merge(unit);
+				if ( params.getCountInGroups() ) groupMetrics.merge(unit);
+				break;
+			case START_SUBDOCUMENT:
+				subDocumentMetrics = new Metrics();
+				break;
+			case END_SUBDOCUMENT:
+				if ( params.getCountInSubDocuments() ) saveToMetrics(event, subDocumentMetrics);
+				break;
+			case START_GROUP:
+				groupMetrics = new Metrics();
+				break;
+			case END_GROUP:
+				if ( params.getCountInGroups() ) saveToMetrics(event, groupMetrics);
+				break;
+			case END_DOCUMENT:
+				if ( params.getCountInDocuments() ) saveToMetrics(event, documentMetrics);
+				break;
+			default:
+				break;
+			}
+		}
+
+		if ( list.size() == 1 ) return list.get(0);
+		return new Event(EventType.MULTI_EVENT, new MultiEvent(list));
+	}
+
+	private Metrics[] countAll (final List<ITextUnit> units) {
+		final Metrics[] results = new Metrics[units.size()];
+		final LocaleId locale = getSourceLocale();
+		final boolean fast = params.getFastCounting();
+		int threadCount = params.getThreadCount();
+		if ( threadCount <= 0 ) {
+			threadCount = Runtime.getRuntime().availableProcessors();
+		}
+		int chunks = Math.min(threadCount, units.size());
+		if ( chunks <= 1 ) {
+			for ( int i=0; i<results.length; i++ ) {
+				results[i] = countInTextUnit(units.get(i), locale, fast);
+			}
+			return results;
+		}
+
+		if ( executor == null ) {
+			executor = Executors.newFixedThreadPool(threadCount);
+		}
+		// Contiguous ranges of text units, one per thread
+		List<Future<?>> futures = new ArrayList<Future<?>>(chunks);
+		for ( int n=0; n<chunks; n++ ) {
+			final int start = (int)((long)units.size() * n / chunks);
+			final int end = (int)((long)units.size() * (n+1) / chunks);
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call () {
+					for ( int i=start; i<end; i++ ) {
+						results[i] = countInTextUnit(units.get(i), locale, fast);
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for ( Future<?> future : futures ) {
+				future.get();
+			}
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new OkapiException("Interrupted while counting the text units.", e);
+		}
+		catch ( ExecutionException e ) {
+			throw new OkapiException("Error while counting the text units.", e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Counts the words and characters of the source of a text unit, and annotates its
+	 * segments and its source container. This method is called on the worker threads.
+	 * @param fast true to count the words without creating tokens, false to use the tokenizer.
+	 * @return the metrics of the whole text unit.
+	 */
+	private static Metrics countInTextUnit (ITextUnit textUnit,
+		LocaleId locale,
+		boolean fast)
+	{
+		TextContainer source = textUnit.getSource();
+
+		// Individual segments metrics
+		long segmentsWords = 0;
+		Counts segmentsChars = new Counts();
+		ISegments segs = source.getSegments();
+		for ( Segment seg : segs ) {
+			long words = countWords(seg, locale, fast);
+			Counts chars = CharacterCounter.fullCount(seg, locale);
+			segmentsWords += words;
+			segmentsChars = segmentsChars.add(chars);
+			if (( words != 0 ) || !chars.isAllZeros() ) {
+				saveCount(getMetrics(seg), words, chars);
+			}
+		}
+		// TC metrics
+		long words = countWords(source, locale, fast);
+		Counts chars = CharacterCounter.fullCount(source, locale);
+		Metrics m = getMetrics(source);
+		saveCount(m, words, chars);
+
+		Metrics unit = new Metrics();
+		saveCount(unit,
+			(words > 0) ? words : segmentsWords,
+			chars.isAllZeros() ? segmentsChars : chars);
+		return unit;
+	}
+
+	/**
+	 * Counts the words of a segment, like {@link WordCountStep}.
+	 */
+	private static long countWords (Segment segment,
+		LocaleId locale,
+		boolean fast)
+	{
+		if ( GMX.isLogographicScript(locale) ) {
+			return WordCounter.countLogographicScript(segment, locale);
+		}
+		TokensAnnotation ta = segment.getAnnotation(TokensAnnotation.class);
+		if ( ta != null ) {
+			return countWords(ta.getTokens());
+		}
+		if ( fast ) {
+			return WordCounter.countFast(segment, locale);
+		}
+		return countWords(Tokenizer.tokenize(segment.getContent(), locale));
+	}
+
+	/**
+	 * Counts the words of the whole content of a container, like {@link WordCountStep}.
+	 */
+	private static long countWords (TextContainer textContainer,
+		LocaleId locale,
+		boolean fast)
+	{
+		if ( GMX.isLogographicScript(locale) ) {
+			return WordCounter.countLogographicScript(textContainer, locale);
+		}
+		TokensAnnotation ta = textContainer.getAnnotation(TokensAnnotation.class);
+		if ( ta != null ) {
+			return countWords(ta.getTokens());
+		}
+		if ( fast ) {
+			return WordCounter.countFast(textContainer, locale);
+		}
+		return countWords(Tokenizer.tokenize(textContainer, locale));
+	}
+
+	private static long countWords (Tokens tokens) {
+		if ( tokens == null ) return 0;
+		return tokens.getFilteredList(WordCounter.getTokenName()).size();
+	}
+
+	private static void saveCount (Metrics metrics,
+		long words,
+		Counts chars)
+	{
+		metrics.setMetric(GMX.TotalWordCount, words);
+		metrics.setMetric(GMX.TotalCharacterCount, chars.total);
+		metrics.setMetric(GMX.PunctuationCharacterCount, chars.punctuation);
+		metrics.setMetric(GMX.WhiteSpaceCharacterCount, chars.whiteSpace);
+		metrics.setMetric(GMX.OverallCharacterCount, chars.total + chars.punctuation + chars.whiteSpace);
+	}
+
+	private static Metrics getMetrics (IWithAnnotations res) {
+		MetricsAnnotation ma = res.getAnnotation(MetricsAnnotation.class);
+		if ( ma == null ) {
+			ma = new MetricsAnnotation();
+			res.setAnnotation(ma);
+		}
+		return ma.getMetrics();
+	}
+
+	private void saveToMetrics (Event event,
+		Metrics values)
+	{
+		if ( !values.iterator().hasNext() ) return; // Only non-zero values are set
+		IResource res = event.getResource();
+		if ( res == null ) {
+			switch ( event.getEventType() ) {
+			case END_BATCH:
+			case END_BATCH_ITEM:
+			case END_DOCUMENT:
+			case END_SUBDOCUMENT:
+			case END_GROUP:
+				res = new Ending(gen.createId());
+				event.setResource(res);
+				break;
+			default:
+				return;
+			}
+		}
+		Metrics m = getMetrics((IWithAnnotations)res);
+		for ( String name : values ) {
+			m.setMetric(name, values.getMetric(name));
+		}
+	}
+
+}
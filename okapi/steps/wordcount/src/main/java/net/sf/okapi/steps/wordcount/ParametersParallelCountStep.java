@@ -0,0 +1,113 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.wordcount;
+
+import net.sf.okapi.common.EditorFor;
+import net.sf.okapi.common.ParametersDescription;
+import net.sf.okapi.common.ParametersString;
+import net.sf.okapi.common.uidescription.EditorDescription;
+import net.sf.okapi.steps.wordcount.common.Parameters;
+
+/**
+ * Parameters of the {@link ParallelCountStep}: the resources to annotate, as for the
+ * other count steps, plus the size of the worker pool. The text buffer size of the
+ * other count steps is not used.
+ */
+@EditorFor(ParametersParallelCountStep.class)
+public class ParametersParallelCountStep extends Parameters {
+
+	private static final String COUNTINTEXTUNITS = "countInTextUnits";
+	private static final String COUNTINBATCH = "countInBatch";
+	private static final String COUNTINBATCHITEMS = "countInBatchItems";
+	private static final String COUNTINDOCUMENTS = "countInDocuments";
+	private static final String COUNTINSUBDOCUMENTS = "countInSubDocuments";
+	private static final String COUNTINGROUPS = "countInGroups";
+	private static final String THREADCOUNT = "threadCount";
+	private static final String MAXTEXTUNITS = "maxTextUnits";
+
+	private int threadCount;
+	private int maxTextUnits;
+
+	/**
+	 * Gets the number of worker threads.
+	 * @return the number of threads, or 0 to use one thread per available processor.
+	 */
+	public int getThreadCount () {
+		return threadCount;
+	}
+
+	public void setThreadCount (int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Gets the maximum number of text units buffered before they are counted.
+	 * @return the maximum number of text units counted together.
+	 */
+	public int getMaxTextUnits () {
+		return maxTextUnits;
+	}
+
+	public void setMaxTextUnits (int maxTextUnits) {
+		this.maxTextUnits = maxTextUnits;
+	}
+
+	@Override
+	protected void parameters_load (ParametersString buffer) {
+		super.parameters_load(buffer);
+		threadCount = buffer.getInteger(THREADCOUNT, threadCount);
+		maxTextUnits = buffer.getInteger(MAXTEXTUNITS, maxTextUnits);
+	}
+
+	@Override
+	protected void parameters_reset () {
+		super.parameters_reset();
+		threadCount = 0;
+		maxTextUnits = 1000;
+	}
+
+	@Override
+	protected void parameters_save (ParametersString buffer) {
+		super.parameters_save(buffer);
+		buffer.setInteger(THREADCOUNT, threadCount);
+		buffer.setInteger(MAXTEXTUNITS, maxTextUnits);
+	}
+
+	@Override
+	public ParametersDescription getParametersDescription () {
+		ParametersDescription desc = super.getParametersDescription();
+		desc.add(THREADCOUNT, "Number of threads (0 for one per processor):", null);
+		desc.add(MAXTEXTUNITS, "Maximum number of text units counted together:", null);
+		return desc;
+	}
+
+	@Override
+	public EditorDescription createEditorDescription (ParametersDescription paramsDesc) {
+		EditorDescription desc = new EditorDescription("Parallel Word and Character Count", true, false);
+		desc.addTextLabelPart("Create word and character count annotations for each of the following resources:");
+		desc.addCheckboxPart(paramsDesc.get(COUNTINTEXTUNITS));
+		desc.addCheckboxPart(paramsDesc.get(COUNTINBATCH));
+		desc.addCheckboxPart(paramsDesc.get(COUNTINBATCHITEMS));
+		desc.addCheckboxPart(paramsDesc.get(COUNTINDOCUMENTS));
+		desc.addCheckboxPart(paramsDesc.get(COUNTINSUBDOCUMENTS));
+		desc.addCheckboxPart(paramsDesc.get(COUNTINGROUPS));
+		desc.addSpinInputPart(paramsDesc.get(THREADCOUNT));
+		desc.addSpinInputPart(paramsDesc.get(MAXTEXTUNITS));
+		return desc;
+	}
+
+}
@@ -0,0 +1,373 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.wordcount;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
+import net.sf.okapi.common.resource.PlainTextView;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.steps.tokenization.TokenizationStep;
+import net.sf.okapi.steps.tokenization.common.ILexer;
+import net.sf.okapi.steps.tokenization.common.LexerRule;
+import net.sf.okapi.steps.tokenization.common.RegexRule;
+import net.sf.okapi.steps.tokenization.engine.JavaCcLexer;
+import net.sf.okapi.steps.tokenization.engine.RbbiLexer;
+import net.sf.okapi.steps.tokenization.engine.TextScanner;
+import net.sf.okapi.steps.tokenization.engine.TokenMatcher;
+import net.sf.okapi.steps.tokenization.engine.TokenScanner;
+import net.sf.okapi.steps.tokenization.engine.javacc.WordTokenizerConstants;
+import net.sf.okapi.steps.tokenization.tokens.Tokens;
+import net.sf.okapi.steps.wordcount.common.GMX;
+
+import com.ibm.icu.text.BreakIterator;
+import com.ibm.icu.text.RuleBasedBreakIterator;
+
+/**
+ * Counts the words of a text by running the break iterator of the tokenizer directly
+ * on a {@link PlainTextView}, without creating token objects.
+ * <p>The break iterator combines the ICU word rules with the rules of the tokenizer's
+ * {@link RbbiLexer} lexers, and the segments are counted when their rule produces the
+ * counted token. The regular expression rules of the other lexers are then applied to the
+ * counted segments:
+ * <ul>
+ * <li>{@link TokenScanner} rules that split a word in several words (for example "l'homme" in French),
+ * <li>{@link TokenMatcher} rules that turn a word into another token (for example a URL),
+ * <li>{@link TextScanner} rules that cover words with another token (for example a date).
+ * </ul>
+ * <p>One instance must be used by a single thread.
+ */
+class WordBreakCounter {
+
+	private final int tokenId;
+	private final List<RbbiLexer> breakers = new ArrayList<RbbiLexer>();
+	private final List<RegexRule> splitRules = new ArrayList<RegexRule>();
+	private final List<RegexRule> replaceRules = new ArrayList<RegexRule>();
+	private final List<RegexRule> coverRules = new ArrayList<RegexRule>();
+	private LexerRule companyRule;
+	private final Map<LocaleId, LocaleCounter> counters = new HashMap<LocaleId, LocaleCounter>();
+	private final PlainTextView view = new PlainTextView();
+	private int[] covering = new int[16];
+	private int coveringCount;
+	private int[] joined = new int[24];
+	private int joinedCount;
+
+	/**
+	 * Equivalent of the COMPANY token of the JavaCC lexer (e.g. "AT&amp;T"),
+	 * when it is not part of a longer token of that lexer.
+	 */
+	private static final Pattern COMPANY = Pattern.compile(
+		"(?<![\\p{L}\\p{N}._\\-@&'])"
+		+ "[A-Za-z\\u00c0-\\u00d6\\u00d8-\\u00f6\\u00f8-\\u1fff]+[&@][A-Za-z\\u00c0-\\u00d6\\u00d8-\\u00f6\\u00f8-\\u1fff]+"
+		+ "(?![\\p{L}\\p{N}]|[._\\-@&'][\\p{L}\\p{N}])");
+
+	/**
+	 * Compiled rule.
+	 */
+	private static class RuleMatcher {
+		final RegexRule rule;
+		final Matcher matcher;
+		final BitSet statuses = new BitSet();
+
+		RuleMatcher (RegexRule rule) {
+			this.rule = rule;
+			matcher = Pattern.compile(rule.getPattern(), rule.getRegexOptions()).matcher("");
+		}
+	}
+
+	/**
+	 * Set of objects for a given language.
+	 */
+	private static class LocaleCounter {
+		final List<RuleBasedBreakIterator> iterators = new ArrayList<RuleBasedBreakIterator>();
+		final BitSet wordStatuses = new BitSet();
+		final BitSet patternStatuses = new BitSet();
+		final List<RuleMatcher> splitters = new ArrayList<RuleMatcher>();
+		final List<RuleMatcher> replacers = new ArrayList<RuleMatcher>();
+		final List<RuleMatcher> coverers = new ArrayList<RuleMatcher>();
+		Matcher company;
+		boolean logographic;
+	}
+
+	/**
+	 * Creates a new counter for a given token.
+	 * @param tokenName the name of the token to count (e.g. "WORD").
+	 */
+	WordBreakCounter (String tokenName) {
+		tokenId = Tokens.getTokenId(tokenName);
+		TokenizationStep step = new TokenizationStep();
+		for ( ILexer lexer : step.getLexers() ) {
+			if ( lexer instanceof RbbiLexer ) {
+				breakers.add((RbbiLexer)lexer);
+				continue;
+			}
+			if ( lexer instanceof JavaCcLexer ) {
+				companyRule = lexer.getRules().getRule(WordTokenizerConstants.COMPANY);
+				continue;
+			}
+			for ( LexerRule rule : lexer.getRules() ) {
+				if ( !rule.isEnabled() || ( rule.getPattern() == null ) ) continue;
+				boolean inWord = rule.getInTokenIDs().contains(tokenId);
+				boolean outWord = rule.getOutTokenIDs().contains(tokenId);
+				if ( lexer instanceof TokenScanner ) {
+					if ( inWord && outWord ) splitRules.add((RegexRule)rule);
+				}
+				else if ( lexer instanceof TokenMatcher ) {
+					if ( !rule.getInTokenIDs().isEmpty() && !outWord && !rule.getKeepInput() ) {
+						replaceRules.add((RegexRule)rule);
+					}
+				}
+				else if ( lexer instanceof TextScanner ) {
+					coverRules.add((RegexRule)rule);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the view used by this counter. It can be filled directly by the caller
+	 * before calling {@link #count(LocaleId)}.
+	 * @return the view of this counter.
+	 */
+	PlainTextView getView () {
+		return view;
+	}
+
+	/**
+	 * Counts the words in the current content of the view.
+	 * @param language the language of the text.
+	 * @return the number of words.
+	 */
+	long count (LocaleId language) {
+		if ( view.length() == 0 ) return 0;
+		LocaleCounter lc = getLocaleCounter(language);
+		if ( lc.logographic ) {
+			return WordCounter.countFromLogographicCharacterCount(
+				CharacterCounter.countCharacters(view), language);
+		}
+		if ( lc.iterators.isEmpty() ) return 0;
+
+		// Collect the tokens found by the regular expressions: like in the tokenizer,
+		// they remove the words they contain, and some of them are words themselves
+		coveringCount = 0;
+		joinedCount = 0;
+		for ( RuleMatcher rm : lc.coverers ) {
+			Matcher m = rm.matcher.reset(view);
+			int group = rm.rule.getRegexGroup();
+			boolean isWord = rm.rule.getOutTokenIDs().contains(tokenId);
+			while ( m.find() ) {
+				if ( m.start(group) < 0 ) continue;
+				addCovering(m.start(group), m.end(group));
+				if ( isWord ) addJoined(m.start(group), m.end(group), -1);
+			}
+		}
+		if ( lc.company != null ) {
+			Matcher m = lc.company.reset(view);
+			while ( m.find() ) {
+				addCovering(m.start(), m.end());
+			}
+		}
+		for ( int i=1; i<lc.iterators.size(); i++ ) {
+			RuleBasedBreakIterator iterator = lc.iterators.get(i);
+			iterator.setText(view);
+			int start = iterator.first();
+			for ( int end=iterator.next(); end!=BreakIterator.DONE; start=end, end=iterator.next() ) {
+				int status = iterator.getRuleStatus();
+				if ( !lc.patternStatuses.get(status) ) continue;
+				addCovering(start, end);
+				if ( lc.wordStatuses.get(status) ) addJoined(start, end, status);
+			}
+		}
+
+		long count = 0;
+		RuleBasedBreakIterator iterator = lc.iterators.get(0);
+		iterator.setText(view);
+		int start = iterator.first();
+		for ( int end=iterator.next(); end!=BreakIterator.DONE; start=end, end=iterator.next() ) {
+			int status = iterator.getRuleStatus();
+			if ( !lc.wordStatuses.get(status) ) continue;
+			if ( isJoined(start, end) ) continue; // Counted below
+			count += countWord(lc, start, end, status);
+		}
+		for ( int i=0; i<joinedCount; i+=3 ) {
+			count += countWord(lc, joined[i], joined[i+1], joined[i+2]);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts a word, after applying the rules that can remove or split it.
+	 * @param status the status of the break iterator for the word, or -1 if the
+	 * word does not come from a break iterator.
+	 */
+	private int countWord (LocaleCounter lc,
+		int start,
+		int end,
+		int status)
+	{
+		if ( isCovered(start, end) ) return 0;
+		for ( RuleMatcher rm : lc.replacers ) {
+			// The rule applies to the word, or to another token of the same lexem
+			if ( !rm.rule.getInTokenIDs().contains(tokenId)
+				&& (( status < 0 ) || !rm.statuses.get(status)) ) continue;
+			if ( rm.matcher.reset(view).region(start, end).matches() ) return 0;
+		}
+		// Each match of a split rule is a new word, the original word
+		// is removed unless the rule keeps it
+		int count = 1;
+		boolean deleted = false;
+		for ( RuleMatcher rm : lc.splitters ) {
+			Matcher m = rm.matcher.reset(view).region(start, end);
+			int group = rm.rule.getRegexGroup();
+			while ( m.find() ) {
+				if ( m.start(group) < 0 ) continue;
+				count++;
+				if ( !rm.rule.getKeepInput() ) deleted = true;
+			}
+		}
+		return deleted ? count-1 : count;
+	}
+
+	/**
+	 * Counts the words in the whole content of a given container.
+	 * For logographic scripts, only the characters of the segments are counted.
+	 * @param container the container to process.
+	 * @param language the language of the text.
+	 * @return the number of words.
+	 */
+	long count (TextContainer container,
+		LocaleId language)
+	{
+		if ( getLocaleCounter(language).logographic ) {
+			long characterCount = 0;
+			for ( Segment segment : container.getSegments() ) {
+				characterCount += CharacterCounter.countCharacters(view.set(segment.getContent()));
+			}
+			return WordCounter.countFromLogographicCharacterCount(characterCount, language);
+		}
+		view.set(container);
+		return count(language);
+	}
+
+	private void addCovering (int start,
+		int end)
+	{
+		if ( coveringCount+2 > covering.length ) {
+			int[] tmp = new int[covering.length*2];
+			System.arraycopy(covering, 0, tmp, 0, coveringCount);
+			covering = tmp;
+		}
+		covering[coveringCount++] = start;
+		covering[coveringCount++] = end;
+	}
+
+	private void addJoined (int start,
+		int end,
+		int status)
+	{
+		if ( joinedCount+3 > joined.length ) {
+			int[] tmp = new int[joined.length*2];
+			System.arraycopy(joined, 0, tmp, 0, joinedCount);
+			joined = tmp;
+		}
+		joined[joinedCount++] = start;
+		joined[joinedCount++] = end;
+		joined[joinedCount++] = status;
+	}
+
+	private boolean isJoined (int start,
+		int end)
+	{
+		for ( int i=0; i<joinedCount; i+=3 ) {
+			if (( joined[i] == start ) && ( joined[i+1] == end )) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Indicates if a given range is strictly within one of the covering ranges.
+	 */
+	private boolean isCovered (int start,
+		int end)
+	{
+		for ( int i=0; i<coveringCount; i+=2 ) {
+			if ((( covering[i] < start ) && ( covering[i+1] >= end ))
+				|| (( covering[i] <= start ) && ( covering[i+1] > end ))) return true;
+		}
+		return false;
+	}
+
+	private LocaleCounter getLocaleCounter (LocaleId language) {
+		LocaleCounter lc = counters.get(language);
+		if ( lc != null ) return lc;
+		lc = new LocaleCounter();
+		lc.logographic = GMX.isLogographicScript(language);
+		if ( !lc.logographic ) {
+			for ( RbbiLexer lexer : breakers ) {
+				for ( LexerRule rule : lexer.getRules() ) {
+					if ( !rule.isEnabled() || !rule.supportsLanguage(language) ) continue;
+					if ( rule.getOutTokenIDs().contains(tokenId) ) {
+						lc.wordStatuses.set(rule.getLexemId());
+					}
+					if ( !Util.isEmpty(rule.getPattern()) && !rule.getOutTokenIDs().isEmpty() ) {
+						lc.patternStatuses.set(rule.getLexemId());
+					}
+				}
+				lc.iterators.add((RuleBasedBreakIterator)lexer.getIterator(language).clone());
+			}
+			addMatchers(splitRules, lc.splitters, language);
+			addMatchers(replaceRules, lc.replacers, language);
+			// Statuses of the lexems that have a token the replacing rules apply to
+			for ( RuleMatcher rm : lc.replacers ) {
+				for ( RbbiLexer lexer : breakers ) {
+					for ( LexerRule rule : lexer.getRules() ) {
+						for ( int id : rule.getOutTokenIDs() ) {
+							if ( rm.rule.getInTokenIDs().contains(id) ) rm.statuses.set(rule.getLexemId());
+						}
+					}
+				}
+			}
+			addMatchers(coverRules, lc.coverers, language);
+			if (( companyRule != null ) && companyRule.isEnabled() && companyRule.supportsLanguage(language)
+				&& !companyRule.getOutTokenIDs().isEmpty() ) {
+				lc.company = COMPANY.matcher("");
+			}
+		}
+		counters.put(language, lc);
+		return lc;
+	}
+
+	private void addMatchers (List<RegexRule> rules,
+		List<RuleMatcher> matchers,
+		LocaleId language)
+	{
+		for ( RegexRule rule : rules ) {
+			if ( rule.supportsLanguage(language) ) {
+				matchers.add(new RuleMatcher(rule));
+			}
+		}
+	}
+
+}
@@ -20,6 +20,7 @@ import net.sf.okapi.common.LocaleId;
 import net.sf.okapi.common.UsingParameters;
 import net.sf.okapi.common.resource.Segment;
 import net.sf.okapi.common.resource.TextContainer;
+import net.sf.okapi.steps.tokenization.common.TokensAnnotation;
 import net.sf.okapi.steps.wordcount.common.GMX;
 import net.sf.okapi.steps.wordcount.common.Parameters;
 import net.sf.okapi.steps.wordcount.common.TokenCountStep;
@@ -67,6 +68,9 @@ public class WordCountStep extends TokenCountStep {
 	protected long count(Segment segment, LocaleId locale) {
 		if (GMX.isLogographicScript(locale)) {
 			return WordCounter.countLogographicScript(segment, locale);
+		} else if (isFastCounting() && segment.getAnnotation(TokensAnnotation.class) == null) {
+			// No tokens from a previous step: count without creating them
+			return WordCounter.countFast(segment, locale);
 		} else {
 			return super.count(segment, locale);
 		}
@@ -76,8 +80,14 @@ public class WordCountStep extends TokenCountStep {
 	protected long count(TextContainer textContainer, LocaleId locale) {
 		if (GMX.isLogographicScript(locale)) {
 			return WordCounter.countLogographicScript(textContainer, locale);
+		} else if (isFastCounting() && textContainer.getAnnotation(TokensAnnotation.class) == null) {
+			return WordCounter.countFast(textContainer, locale);
 		} else {
 			return super.count(textContainer, locale);
 		}
 	}
+
+	private boolean isFastCounting() {
+		return getParameters(Parameters.class).getFastCounting();
+	}
 }
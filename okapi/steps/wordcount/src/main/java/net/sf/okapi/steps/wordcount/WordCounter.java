@@ -18,6 +18,7 @@ package net.sf.okapi.steps.wordcount;
 
 import net.sf.okapi.common.IResource;
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.Util;
 import net.sf.okapi.common.resource.ISegments;
 import net.sf.okapi.common.resource.ITextUnit;
 import net.sf.okapi.common.resource.IWithAnnotations;
@@ -44,6 +45,13 @@ public class WordCounter extends BaseCounter {
 
 	private static StructureParameters params;
 	
+	private static final ThreadLocal<WordBreakCounter> breakCounters = new ThreadLocal<WordBreakCounter>() {
+		@Override
+		protected WordBreakCounter initialValue() {
+			return new WordBreakCounter(getTokenName());
+		}
+	};
+	
 	protected static void loadParameters() {
 		
 		if (params != null) return; // Already loaded
@@ -162,6 +170,67 @@ public class WordCounter extends BaseCounter {
 		return counter.doCount(string, language);		
 	}
 	
+	/**
+	 * Counts words in a given text fragment, without creating token objects. The words are
+	 * found with the break iterator rules of the tokenizer, and the logographic scripts are
+	 * counted like with {@link #countLogographicScript(Object, LocaleId)}. The rules of the other
+	 * lexers of the tokenizer (numbers, e-mail addresses, URLs, etc.) are applied to the ranges found
+	 * by the break iterators, so the result is usually the same as {@link #count(TextFragment, LocaleId)}
+	 * with the default tokenizer rules. It differs in some cases: the tokenizer reports the parts of
+	 * a time directly followed by letters more than once ("10:30am" is 3 words instead of 2), and
+	 * it does not count a company name followed by a possessive ("AT&amp;T's" is 0 word instead of 1).
+	 * For this reason the count steps use it only when their fast counting option is set.
+	 * This method is thread-safe.
+	 * @param textFragment the given text fragment
+	 * @param language the language of the text
+	 * @return number of words
+	 */
+	public static long countFast(TextFragment textFragment, LocaleId language) {
+		if (textFragment == null || Util.isNullOrEmpty(language)) return 0L;
+		WordBreakCounter bc = breakCounters.get();
+		bc.getView().set(textFragment);
+		return bc.count(language);
+	}
+	
+	/**
+	 * Counts words in a given segment, without creating token objects.
+	 * @param segment the given segment
+	 * @param language the language of the text
+	 * @return number of words
+	 * @see #countFast(TextFragment, LocaleId)
+	 */
+	public static long countFast(Segment segment, LocaleId language) {
+		if (segment == null) return 0L;
+		return countFast(segment.getContent(), language);
+	}
+	
+	/**
+	 * Counts words in the whole content of a given text container, without creating token objects.
+	 * For logographic scripts the characters of the segments are counted.
+	 * @param textContainer the given text container
+	 * @param language the language of the text
+	 * @return number of words
+	 * @see #countFast(TextFragment, LocaleId)
+	 */
+	public static long countFast(TextContainer textContainer, LocaleId language) {
+		if (textContainer == null || Util.isNullOrEmpty(language)) return 0L;
+		return breakCounters.get().count(textContainer, language);
+	}
+	
+	/**
+	 * Counts words in a given plain text, without creating token objects.
+	 * @param text the given text
+	 * @param language the language of the text
+	 * @return number of words
+	 * @see #countFast(TextFragment, LocaleId)
+	 */
+	public static long countFast(CharSequence text, LocaleId language) {
+		if (text == null || Util.isNullOrEmpty(language)) return 0L;
+		WordBreakCounter bc = breakCounters.get();
+		bc.getView().set(text);
+		return bc.count(language);
+	}
+	
 	@Override
 	protected String getMetricNameForRetrieval() {
 		return GMX.TotalWordCount;
@@ -19,6 +19,7 @@ package net.sf.okapi.steps.wordcount.common;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 
 import net.sf.okapi.common.Util;
 
@@ -90,6 +91,24 @@ public class Metrics extends HashSet<String> {
 		return true;
 	}
 
+	/**
+	 * Adds the values of the metrics of a given object to the values of the same metrics in this object.
+	 * The operation is associative and commutative: metrics computed separately (for example on
+	 * different threads) can be merged in any order.
+	 * @param other the metrics to add (can be null)
+	 * @return this object
+	 */
+	public Metrics merge(Metrics other) {
+		if (other == null || other.metrics == null) return this;
+		if (metrics == null) return this;
+		
+		for (Map.Entry<String, Long> entry : other.metrics.entrySet()) {
+			Long value = metrics.get(entry.getKey());
+			metrics.put(entry.getKey(), value == null ? entry.getValue() : value + entry.getValue());
+		}
+		return this;
+	}
+	
 	@Override
 	public Iterator<String> iterator() {
 		return metrics.keySet().iterator();
@@ -33,6 +33,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 	private static final String COUNTINSUBDOCUMENTS = "countInSubDocuments";
 	private static final String COUNTINGROUPS = "countInGroups";
 	private static final String BUFFERSIZE = "bufferSize";
+	private static final String FASTCOUNTING = "fastCounting";
 	
 	private boolean countInBatch;
 	private boolean countInBatchItems;
@@ -40,6 +41,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 	private boolean countInSubDocuments;
 	private boolean countInGroups;
 	private int bufferSize;
+	private boolean fastCounting;
 	
 	public boolean getCountInBatch () {
 		return countInBatch;
@@ -92,6 +94,20 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 	public int getBufferSize() {
 		return bufferSize;
 	}
+
+	/**
+	 * Indicates if the words are counted without creating tokens when no tokens are attached
+	 * to the content (see {@code WordCounter.countFast()}).
+	 * The fast count may differ slightly from the tokenizer-based count.
+	 * @return true to use the fast count, false to use the tokenizer (the default).
+	 */
+	public boolean getFastCounting() {
+		return fastCounting;
+	}
+
+	public void setFastCounting(boolean fastCounting) {
+		this.fastCounting = fastCounting;
+	}
 	
 	@Override
 	protected void parameters_init() {
@@ -105,6 +121,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 		countInSubDocuments = buffer.getBoolean(COUNTINSUBDOCUMENTS, countInSubDocuments);
 		countInGroups = buffer.getBoolean(COUNTINGROUPS, countInGroups);
 		bufferSize = buffer.getInteger(BUFFERSIZE, bufferSize);
+		fastCounting = buffer.getBoolean(FASTCOUNTING, fastCounting);
 	}
 
 	@Override
@@ -115,6 +132,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 		countInSubDocuments = false;
 		countInGroups = false;
 		bufferSize = 0;
+		fastCounting = false;
 	}
 
 	@Override
@@ -125,6 +143,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 		buffer.setBoolean(COUNTINSUBDOCUMENTS, countInSubDocuments);
 		buffer.setBoolean(COUNTINGROUPS, countInGroups);
 		buffer.setInteger(BUFFERSIZE, bufferSize);
+		buffer.setBoolean(FASTCOUNTING, fastCounting);
 	}
 	
 	@Override
@@ -137,6 +156,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 		desc.add(COUNTINSUBDOCUMENTS, "Sub-documents", null);
 		desc.add(COUNTINGROUPS, "Groups", null);
 		desc.add(BUFFERSIZE, "Size of text buffer:", null);
+		desc.add(FASTCOUNTING, "Count words without the tokenizer (faster, may differ slightly)", null);
 		return desc;
 	}	
 
@@ -151,6 +171,7 @@ public class Parameters extends AbstractParameters implements IEditorDescription
 		desc.addCheckboxPart(paramsDesc.get(COUNTINSUBDOCUMENTS));
 		desc.addCheckboxPart(paramsDesc.get(COUNTINGROUPS));
 		desc.addSpinInputPart(paramsDesc.get(BUFFERSIZE));
+		desc.addCheckboxPart(paramsDesc.get(FASTCOUNTING));
 		return desc;
 	}
 
@@ -0,0 +1,228 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.steps.wordcount;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.okapi.common.Event;
+import net.sf.okapi.common.EventType;
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.pipeline.IPipelineStep;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.IWithAnnotations;
+import net.sf.okapi.common.resource.MultiEvent;
+import net.sf.okapi.common.resource.Segment;
+import net.sf.okapi.common.resource.StartDocument;
+import net.sf.okapi.common.resource.StartGroup;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.steps.wordcount.common.GMX;
+import net.sf.okapi.steps.wordcount.common.Metrics;
+import net.sf.okapi.steps.wordcount.common.MetricsAnnotation;
+import net.sf.okapi.steps.wordcount.common.Parameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestParallelCountStep {
+
+	private static final String[] TEXTS = {
+		"The number of words in this segment is 9.",
+		"",
+		"Can't stop: 12.5% of \u201Cwords\u201D, e.g. john.doe@example.com!",
+		"   ",
+		"Al Capone was an Italian-American.",
+		"A&B, AT&T's plan",
+		"Meet at 10:30am today.",
+	};
+
+	@Test
+	public void testSameAsSequentialSteps () {
+		testSameAsSequentialSteps(LocaleId.ENGLISH, false);
+		testSameAsSequentialSteps(LocaleId.JAPANESE, false);
+		testSameAsSequentialSteps(LocaleId.ENGLISH, true);
+	}
+
+	@Test
+	public void testTokenizerCounts () {
+		// The tokenizer is used by default, the fast count only when requested
+		assertEquals(2, countSegment("A&B, AT&T's plan", false));
+		assertEquals(6, countSegment("Meet at 10:30am today.", false));
+		assertEquals(WordCounter.count("A&B, AT&T's plan", LocaleId.ENGLISH),
+			countSegment("A&B, AT&T's plan", false));
+		assertEquals(3, countSegment("A&B, AT&T's plan", true));
+		assertEquals(5, countSegment("Meet at 10:30am today.", true));
+	}
+
+	private long countSegment (String text,
+		boolean fast)
+	{
+		ParallelCountStep step = new ParallelCountStep();
+		((ParametersParallelCountStep)step.getParameters()).setFastCounting(fast);
+		List<Event> events = new ArrayList<Event>();
+		StartDocument sd = new StartDocument("sd");
+		sd.setLocale(LocaleId.ENGLISH);
+		events.add(new Event(EventType.START_DOCUMENT, sd));
+		ITextUnit tu = new TextUnit("tu1", text);
+		events.add(new Event(EventType.TEXT_UNIT, tu));
+		events.add(new Event(EventType.END_DOCUMENT));
+		run(events, step);
+		step.destroy();
+		return WordCounter.getCount(tu, 0);
+	}
+
+	private void testSameAsSequentialSteps (LocaleId locale,
+		boolean fast)
+	{
+		WordCountStep words = new WordCountStep();
+		CharacterCountStep chars = new CharacterCountStep();
+		setLevels((Parameters)words.getParameters());
+		setLevels((Parameters)chars.getParameters());
+		((Parameters)words.getParameters()).setFastCounting(fast);
+		List<Event> expected = createEvents(locale);
+		run(expected, words, chars);
+
+		ParallelCountStep step = new ParallelCountStep();
+		ParametersParallelCountStep params = (ParametersParallelCountStep)step.getParameters();
+		setLevels(params);
+		params.setFastCounting(fast);
+		params.setThreadCount(3);
+		params.setMaxTextUnits(7);
+		List<Event> actual = createEvents(locale);
+		List<Event> output = run(actual, step);
+		step.destroy();
+
+		// Same events in the same order
+		assertEquals(actual.size(), output.size());
+		for ( int i=0; i<actual.size(); i++ ) {
+			assertTrue(actual.get(i) == output.get(i));
+		}
+		// Same annotations
+		for ( int i=0; i<expected.size(); i++ ) {
+			assertSameMetrics(expected.get(i), actual.get(i));
+			if ( expected.get(i).isTextUnit() ) {
+				ITextUnit tu1 = expected.get(i).getTextUnit();
+				ITextUnit tu2 = actual.get(i).getTextUnit();
+				assertSameMetrics(tu1.getSource(), tu2.getSource());
+				for ( int j=0; j<tu1.getSource().getSegments().count(); j++ ) {
+					assertSameMetrics(tu1.getSource().getSegments().get(j),
+						tu2.getSource().getSegments().get(j));
+				}
+			}
+		}
+		Metrics m = getMetrics(actual.get(actual.size()-1));
+		assertTrue(m.getMetric(WordCountStep.METRIC) > 0);
+		assertTrue(m.getMetric(GMX.TotalCharacterCount) > 0);
+	}
+
+	private void setLevels (Parameters params) {
+		params.setCountInBatch(true);
+		params.setCountInBatchItems(true);
+		params.setCountInDocuments(true);
+		params.setCountInSubDocuments(true);
+		params.setCountInGroups(true);
+	}
+
+	private List<Event> createEvents (LocaleId locale) {
+		List<Event> list = new ArrayList<Event>();
+		list.add(new Event(EventType.START_BATCH));
+		list.add(new Event(EventType.START_BATCH_ITEM));
+		StartDocument sd = new StartDocument("sd");
+		sd.setLocale(locale);
+		list.add(new Event(EventType.START_DOCUMENT, sd));
+		int id = 0;
+		for ( int g=0; g<4; g++ ) {
+			list.add(new Event(EventType.START_GROUP, new StartGroup("sd", "g"+g)));
+			for ( int i=0; i<TEXTS.length+g; i++ ) {
+				ITextUnit tu = new TextUnit("tu"+(++id));
+				tu.getSource().getSegments().append(new TextFragment(TEXTS[i%TEXTS.length]));
+				tu.getSource().getSegments().append(new Segment("s2", new TextFragment("\u65E5\u672C\u8A9E text.")));
+				list.add(new Event(EventType.TEXT_UNIT, tu));
+			}
+			list.add(new Event(EventType.END_GROUP));
+		}
+		list.add(new Event(EventType.END_DOCUMENT));
+		list.add(new Event(EventType.END_BATCH_ITEM));
+		list.add(new Event(EventType.END_BATCH));
+		return list;
+	}
+
+	private List<Event> run (List<Event> events,
+		IPipelineStep... steps)
+	{
+		List<Event> output = new ArrayList<Event>();
+		for ( Event event : events ) {
+			List<Event> current = new ArrayList<Event>();
+			current.add(event);
+			for ( IPipelineStep step : steps ) {
+				List<Event> next = new ArrayList<Event>();
+				for ( Event e : current ) {
+					Event res = step.handleEvent(e);
+					if ( res.isMultiEvent() ) {
+						for ( Event me : (MultiEvent)res.getResource() ) {
+							next.add(me);
+						}
+					}
+					else if ( !res.isNoop() ) {
+						next.add(res);
+					}
+				}
+				current = next;
+			}
+			output.addAll(current);
+		}
+		return output;
+	}
+
+	private void assertSameMetrics (Event expected,
+		Event actual)
+	{
+		if ( expected.getResource() == null ) {
+			assertTrue(actual.getResource() == null);
+			return;
+		}
+		assertSameMetrics((IWithAnnotations)expected.getResource(), (IWithAnnotations)actual.getResource());
+	}
+
+	private void assertSameMetrics (IWithAnnotations expected,
+		IWithAnnotations actual)
+	{
+		MetricsAnnotation ma1 = expected.getAnnotation(MetricsAnnotation.class);
+		MetricsAnnotation ma2 = actual.getAnnotation(MetricsAnnotation.class);
+		if ( ma1 == null ) {
+			assertTrue(ma2 == null);
+			return;
+		}
+		for ( String name : ma1.getMetrics() ) {
+			assertEquals(name, ma1.getMetrics().getMetric(name), ma2.getMetrics().getMetric(name));
+		}
+		for ( String name : ma2.getMetrics() ) {
+			assertEquals(name, ma1.getMetrics().getMetric(name), ma2.getMetrics().getMetric(name));
+		}
+	}
+
+	private Metrics getMetrics (Event event) {
+		return ((IWithAnnotations)event.getResource()).getAnnotation(MetricsAnnotation.class).getMetrics();
+	}
+
+}
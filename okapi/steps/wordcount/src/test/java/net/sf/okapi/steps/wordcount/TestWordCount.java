@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextFragment.TagType;
 
@@ -102,4 +103,67 @@ public class TestWordCount {
 			// Can't do WordCounter.countLogographicScript on a non-logographic script.
 		}
 	}
+
+	@Test
+	public void testCountFast () {
+		String[] texts = {
+			"Test word count is correct.",
+			"The quick (\u201Cbrown\u201D) fox can\u2019t jump 32.3 feet, right?",
+			"  Al Capone was an Italian-American.  ",
+			"This sentence/text unit has a word count of 11 words.",
+			"123 123.4 123,5",
+			"( ) \" \' { } [ ] / % $ @ # ? ! * _ -",
+			"Send it to john.doe@example.com or see http://okapi.example.org/a?b=c today.",
+			"AT&T and P&G, on 12/31/2016 at 10:30.",
+			"",
+		};
+		for ( String text : texts ) {
+			assertEquals(text, WordCounter.count(text, locEN), WordCounter.countFast(text, locEN));
+		}
+		assertEquals(4, WordCounter.countFast("L'objectif est defini.", locFR));
+		assertEquals(11, WordCounter.countFast("Elle a \u00E9t\u00E9 la " +
+			"premi\u00E8re Fran\u00E7aise d\u2019une famille d\u2019\u00E9migr\u00E9s.", locFR));
+
+		TextFragment tf = new TextFragment("abc");
+		tf.append(TagType.PLACEHOLDER, "b", "[b]");
+		tf.append("def ghi");
+		assertEquals(2, WordCounter.countFast(tf, locEN));
+		TextContainer tc = new TextContainer("First sentence here.");
+		tc.getSegments().append(new TextFragment(" Second one."), true);
+		assertEquals(5, WordCounter.countFast(tc, locEN));
+		assertEquals(WordCounter.count(tc, locEN), WordCounter.countFast(tc, locEN));
+
+		assertEquals(1, WordCounter.countFast("\u65E5\u672C\u8A9E", LocaleId.JAPANESE));
+		assertEquals(0, WordCounter.countFast("\u0E9E\u0EB2\u0EAA\u0EB2\u0EA5\u0EB2\u0EA7",
+			LocaleId.fromString("lo")));
+	}
+
+	@Test
+	public void testCountFastAgainstTokenizer () {
+		// Punctuation, ampersands, apostrophes and times: same count
+		String[] same = {
+			"Hello, world! (Really?) Yes; no: maybe...",
+			"AT&T",
+			"R&D, Q&A.",
+			"it's",
+			"John's and O'Neil's",
+			"rock 'n' roll",
+			"Meet at 10:30 today.",
+			"at 9am",
+			"5 p.m.",
+			"12:00:00",
+		};
+		for ( String text : same ) {
+			assertEquals(text, WordCounter.count(text, locEN), WordCounter.countFast(text, locEN));
+		}
+		// Known differences (the reason why the fast count is not the default)
+		// Company name followed by a possessive
+		assertEquals(2, WordCounter.count("A&B, AT&T's plan", locEN));
+		assertEquals(3, WordCounter.countFast("A&B, AT&T's plan", locEN));
+		// Time directly followed by letters
+		assertEquals(6, WordCounter.count("Meet at 10:30am today.", locEN));
+		assertEquals(5, WordCounter.countFast("Meet at 10:30am today.", locEN));
+		assertEquals(3, WordCounter.count("10:30pm", locEN));
+		assertEquals(2, WordCounter.countFast("10:30pm", locEN));
+	}
 }
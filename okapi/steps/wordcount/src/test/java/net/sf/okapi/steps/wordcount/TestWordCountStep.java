@@ -26,6 +26,7 @@ import net.sf.okapi.common.resource.StartDocument;
 import net.sf.okapi.common.resource.TextContainer;
 import net.sf.okapi.common.resource.TextFragment;
 import net.sf.okapi.common.resource.TextUnit;
+import net.sf.okapi.steps.wordcount.common.Parameters;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -96,7 +97,20 @@ public class TestWordCountStep {
 				new long[] { 0, 0, 0, 0 });
 	}
 	
+	@Test
+	public void testFastCounting() {
+		String[] frags = { "A&B, AT&T's plan ", "Meet at 10:30am today. ", "Test word count is correct." };
+		// Default: the tokenizer counts
+		testTextUnitCounts(LocaleId.ENGLISH, frags, new long[] { 2, 6, 5, 13 }, false);
+		// Fast count, as documented in WordCounter.countFast()
+		testTextUnitCounts(LocaleId.ENGLISH, frags, new long[] { 3, 5, 5, 13 }, true);
+	}
+	
 	private void testTextUnitCounts(LocaleId locale, String[] frags, long[] counts) {
+		testTextUnitCounts(locale, frags, counts, false);
+	}
+	
+	private void testTextUnitCounts(LocaleId locale, String[] frags, long[] counts, boolean fast) {
 		ITextUnit tu = new TextUnit("tu");
 		TextContainer tc = tu.getSource();
 		ISegments segments = tc.getSegments();
@@ -105,6 +119,7 @@ public class TestWordCountStep {
 		segments.append(new TextFragment(frags[2]));
 		
 		WordCountStep step = new WordCountStep();
+		((Parameters)step.getParameters()).setFastCounting(fast);
 		StartDocument sd = new StartDocument("sd");
 		sd.setLocale(locale);
 		step.handleEvent(new Event(EventType.START_DOCUMENT, sd));
@@ -19,6 +19,7 @@ package net.sf.okapi.tm.simpletm;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -46,6 +47,12 @@ import net.sf.okapi.common.resource.TextUnit;
 /**
  * Simple database to store align source and target with some context info.
  * This is for simple exact match retrieval for now.
+ * <p>The source text is looked up through an indexed hash column ({@link #NSRCHASH}).
+ * Databases created before that column existed are upgraded when they are opened for writing
+ * ({@link #open(String, LocaleId)}). When they are opened for reading only ({@link #open(String)})
+ * they are not modified, and the queries use the source text only.
+ * New entries are inserted by batches, each batch in its own transaction: they are written
+ * when a batch is full, before any query, and when the database is closed.
  */
 public class Database {
 
@@ -69,11 +76,21 @@ public class Database {
 	public static final String NGRPNAME   = "GroupName";
 	public static final int  FILENAME     = 8;
 	public static final String NFILENAME  = "FileName";
+	public static final int  SRCHASH      = 9;
+	public static final String NSRCHASH   = "SrcHash";
+
+	public static final String IDX_SRCHASH = "IdxSrcHash";
+	public static final String IDX_CONTEXT = "IdxContext";
 	
 	public static final String DATAFILE_EXT = ".h2.db"; //".data.db";
 
+	private static final int BATCHSIZE = 1000;
+
 	private Connection  conn = null;
 	private PreparedStatement qstm = null;
+	private PreparedStatement istm = null;
+	private int pending = 0;
+	private boolean hasSrcHash;
 	private LocaleId trgLoc;
 	private boolean penalizeSourceWithDifferentCodes = true;
 	private boolean penalizeTargetWithDifferentCodes = true;
@@ -93,6 +110,13 @@ public class Database {
 	
 	public void close () {
 		try {
+			if ( conn != null ) {
+				flush();
+			}
+			if ( istm != null ) {
+				istm.close();
+				istm = null;
+			}
 			if ( qstm != null ) {
 				qstm.close();
 				qstm = null;
@@ -162,8 +186,12 @@ public class Database {
 				+ NTRGCODES + " VARCHAR,"
 				+ NGRPNAME + " VARCHAR,"
 				+ NFILENAME + " VARCHAR,"
+				+ NSRCHASH + " INTEGER,"
 				+ ")");
+			stm.execute("CREATE INDEX " + IDX_SRCHASH + " ON " + TBLNAME + " (" + NSRCHASH + ")");
+			conn.setAutoCommit(false);
 			trgLoc = targetLocale;
+			hasSrcHash = true;
 		}
 		catch ( SQLException e ) {
 			throw new OkapiException(e);
@@ -181,7 +209,31 @@ public class Database {
 		}
 	}
 	
+	/**
+	 * Opens an existing database for reading only. The database is not modified,
+	 * even if it was created by a previous version.
+	 * @param path the path of the database.
+	 */
 	public void open (String path) {
+		open(path, false, null);
+	}
+	
+	/**
+	 * Opens an existing database for reading and writing. A database created by a previous
+	 * version is upgraded to the current schema.
+	 * @param path the path of the database.
+	 * @param targetLocale the target locale of the entries to add.
+	 */
+	public void open (String path,
+		LocaleId targetLocale)
+	{
+		open(path, true, targetLocale);
+	}
+	
+	private void open (String path,
+		boolean forWriting,
+		LocaleId targetLocale)
+	{
 		try {
 			close();
 			String pathNoExt = path;
@@ -189,17 +241,133 @@ public class Database {
 				pathNoExt = pathNoExt.substring(0, pathNoExt.length()-DATAFILE_EXT.length());
 			}
 			if ( !(new File(pathNoExt+DATAFILE_EXT)).exists() ) return;
-			conn = DriverManager.getConnection("jdbc:h2:"+pathNoExt, "sa", "");
+			conn = DriverManager.getConnection("jdbc:h2:"+pathNoExt
+				+ (forWriting ? "" : ";ACCESS_MODE_DATA=r"), "sa", "");
 			origin = Util.getFilename(path, true);
+			conn.setAutoCommit(false);
+			trgLoc = targetLocale;
+			hasSrcHash = hasSrcHashColumn();
+			if ( forWriting && !hasSrcHash ) {
+				upgrade();
+				hasSrcHash = true;
+			}
+		}
+		catch ( SQLException e ) {
+			throw new OkapiException(e);
+		}
+	}
+	
+	private boolean hasSrcHashColumn ()
+		throws SQLException
+	{
+		DatabaseMetaData meta = conn.getMetaData();
+		ResultSet columns = meta.getColumns(null, null, TBLNAME.toUpperCase(), NSRCHASH.toUpperCase());
+		try {
+			return columns.next();
+		}
+		finally {
+			columns.close();
+		}
+	}
+	
+	/**
+	 * Adds the source hash column and its index to a database created by a previous version.
+	 * @throws SQLException if an error occurs.
+	 */
+	private void upgrade ()
+		throws SQLException
+	{
+		Statement stm = null;
+		PreparedStatement ustm = null;
+		try {
+			stm = conn.createStatement();
+			stm.execute("ALTER TABLE " + TBLNAME + " ADD COLUMN " + NSRCHASH + " INTEGER");
+			// Compute the hash of the existing entries
+			ustm = conn.prepareStatement(String.format("UPDATE %s SET %s=? WHERE %s=?",
+				TBLNAME, NSRCHASH, NKEY));
+			ResultSet result = stm.executeQuery(String.format("SELECT %s,%s FROM %s",
+				NKEY, NSRCTEXT, TBLNAME));
+			int count = 0;
+			while ( result.next() ) {
+				ustm.setInt(1, getHash(result.getString(2)));
+				ustm.setInt(2, result.getInt(1));
+				ustm.addBatch();
+				if ( ++count % BATCHSIZE == 0 ) {
+					ustm.executeBatch();
+				}
+			}
+			ustm.executeBatch();
+			stm.execute("CREATE INDEX IF NOT EXISTS " + IDX_SRCHASH + " ON " + TBLNAME + " (" + NSRCHASH + ")");
+			conn.commit();
+		}
+		catch ( SQLException e ) {
+			conn.rollback();
+			throw e;
+		}
+		finally {
+			if ( ustm != null ) ustm.close();
+			if ( stm != null ) stm.close();
+		}
+	}
+	
+	/**
+	 * Creates the optional index on the group name and file name columns, if it does not exist yet.
+	 * This index speeds up the lookups done by context only (the queries done by
+	 * {@link #query(TextFragment, LinkedHashMap, int, int)} use the source hash index).
+	 */
+	public void createContextIndex () {
+		Statement stm = null;
+		try {
+			flush();
+			stm = conn.createStatement();
+			stm.execute(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s,%s)",
+				IDX_CONTEXT, TBLNAME, NGRPNAME, NFILENAME));
+			conn.commit();
+		}
+		catch ( SQLException e ) {
+			throw new OkapiException(e);
+		}
+		finally {
+			try {
+				if ( stm != null ) {
+					stm.close();
+				}
+			}
+			catch ( SQLException e ) {
+				throw new OkapiException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the entries added since the last call, and commits them.
+	 */
+	public void flush () {
+		try {
+			if ( pending > 0 ) {
+				istm.executeBatch();
+				pending = 0;
+			}
+			conn.commit();
 		}
 		catch ( SQLException e ) {
 			throw new OkapiException(e);
 		}
 	}
 	
+	/**
+	 * Gets the hash of a given source text, as stored in the {@link #NSRCHASH} column.
+	 * @param codedText the coded text of the source.
+	 * @return the hash of the given text.
+	 */
+	private static int getHash (String codedText) {
+		return (codedText == null) ? 0 : codedText.hashCode();
+	}
+	
 	public int getEntryCount () {
 		Statement stm = null;
 		try {
+			flush();
 			stm = conn.createStatement();
 			ResultSet result = stm.executeQuery("SELECT COUNT(" + NKEY + ") FROM " + TBLNAME);
 			if ( !result.first() ) return 0;
@@ -225,7 +393,6 @@ public class Database {
 		String fileName)
 	{
 		int count = 0;
-		PreparedStatement pstm = null;
 		try {
 			if ( !tu.hasTarget(trgLoc) ) return 0;
 
@@ -233,40 +400,43 @@ public class Database {
 			TextContainer srcCont = tu.getSource();
 			TextContainer trgCont = tu.getTarget(trgLoc);
 			
+			if ( istm == null ) {
+				istm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?,?,?);",
+					TBLNAME, NNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME, NSRCHASH));
+			}
+			istm.setString(2, tu.getType());
+			istm.setString(7, grpName);
+			istm.setString(8, fileName);
+			
 			// Store the segments if possible
 			if ( srcCont.hasBeenSegmented() && trgCont.hasBeenSegmented() ) {
-				pstm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?);",
-					TBLNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME));
-				pstm.setString(1, tu.getType());
-				pstm.setString(6, grpName);
-				pstm.setString(7, fileName);
+				istm.setString(1, null);
 				ISegments trgSegs = trgCont.getSegments();
 				for ( Segment srcSeg : srcCont.getSegments() ) {
-					pstm.setString(2, srcSeg.text.getCodedText());
+					String srcText = srcSeg.text.getCodedText();
+					istm.setString(3, srcText);
 					// We don't keep the outerData of the codes
-					pstm.setString(3, Code.codesToString(srcSeg.text.getCodes(), true));
+					istm.setString(4, Code.codesToString(srcSeg.text.getCodes(), true));
+					istm.setInt(9, getHash(srcText));
 					Segment trgSeg = trgSegs.get(srcSeg.id);
 					if ( trgSeg != null ) { // Skip source without target
-						pstm.setString(4, trgSeg.text.getCodedText());
-						pstm.setString(5, Code.codesToString(trgSeg.text.getCodes(), true));
-						pstm.execute();
+						istm.setString(5, trgSeg.text.getCodedText());
+						istm.setString(6, Code.codesToString(trgSeg.text.getCodes(), true));
+						addBatch();
 						count++;
 					}
 				}
 			}
 			else { // Save the whole TU
-				pstm = conn.prepareStatement(String.format("INSERT INTO %s (%s,%s,%s,%s,%s,%s,%s,%s) VALUES(?,?,?,?,?,?,?,?);",
-					TBLNAME, NNAME, NTYPE, NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, NGRPNAME, NFILENAME));
-				pstm.setString(1, tu.getName());
-				pstm.setString(2, tu.getType());
-				pstm.setString(3, srcCont.getCodedText());
+				String srcText = srcCont.getCodedText();
+				istm.setString(1, tu.getName());
+				istm.setString(3, srcText);
 				// We don't keep the outrerData
-				pstm.setString(4, Code.codesToString(srcCont.getFirstContent().getCodes(), true));
-				pstm.setString(5, trgCont.getCodedText());
-				pstm.setString(6, Code.codesToString(trgCont.getFirstContent().getCodes(), true));
-				pstm.setString(7, grpName);
-				pstm.setString(8, fileName);
-				pstm.execute();
+				istm.setString(4, Code.codesToString(srcCont.getFirstContent().getCodes(), true));
+				istm.setString(5, trgCont.getCodedText());
+				istm.setString(6, Code.codesToString(trgCont.getFirstContent().getCodes(), true));
+				istm.setInt(9, getHash(srcText));
+				addBatch();
 				count++;
 			}
 			return count;
@@ -274,16 +444,14 @@ public class Database {
 		catch ( SQLException e ) {
 			throw new OkapiException(e);
 		}
-		finally {
-			try {
-				if ( pstm != null ) {
-					pstm.close();
-					pstm = null;
-				}
-			}
-			catch ( SQLException e ) {
-				throw new OkapiException(e);
-			}
+	}
+	
+	private void addBatch ()
+		throws SQLException
+	{
+		istm.addBatch();
+		if ( ++pending >= BATCHSIZE ) {
+			flush();
 		}
 	}
 	
@@ -293,18 +461,24 @@ public class Database {
 	
 	public void createStatement (LinkedHashMap<String, String> attributes) {
 		try {
+			flush();
+			if ( qstm != null ) {
+				qstm.close();
+				qstm = null;
+			}
 			// Default match types
 			exactMatchType = MatchType.EXACT;
 			fuzzyMatchType = MatchType.FUZZY;
 			// prepare the query with or without context condition
-			if ( attributes == null ) {
-				qstm = conn.prepareStatement(String.format("SELECT %s,%s,%s,%s FROM %s WHERE %s=?",
-					NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, TBLNAME, NSRCTEXT));
+			// (databases not upgraded yet have no hash column)
+			StringBuilder tmp = new StringBuilder();
+			tmp.append(String.format("SELECT %s,%s,%s,%s FROM %s WHERE ",
+				NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, TBLNAME));
+			if ( hasSrcHash ) {
+				tmp.append(NSRCHASH).append("=? AND ");
 			}
-			else {
-				StringBuilder tmp = new StringBuilder();
-				tmp.append(String.format("SELECT %s,%s,%s,%s FROM %s WHERE %s=?",
-					NSRCTEXT, NSRCCODES, NTRGTEXT, NTRGCODES, TBLNAME, NSRCTEXT));
+			tmp.append(NSRCTEXT).append("=?");
+			if ( attributes != null ) {
 				for ( String name : attributes.keySet() ) {
 					tmp.append(" AND ").append(name).append("=?");
 					if ( name.equals(NGRPNAME) ) {
@@ -312,8 +486,8 @@ public class Database {
 						fuzzyMatchType = MatchType.FUZZY_UNIQUE_ID;
 					}
 				}
-				qstm = conn.prepareStatement(tmp.toString());
 			}
+			qstm = conn.prepareStatement(tmp.toString());
 		}
 		catch ( SQLException e ) {
 			throw new OkapiException(e);
@@ -331,15 +505,22 @@ public class Database {
 				// Create the statement if needed
 				createStatement(attributes);
 			}
+			else if ( pending > 0 ) {
+				flush();
+			}
 			// Fill the parameters
+			String codedText = query.getCodedText();
+			int i = 1;
+			if ( hasSrcHash ) {
+				qstm.setInt(i++, getHash(codedText));
+			}
+			qstm.setString(i++, codedText);
 			if ( attributes != null ) {
-				int i = 2;
 				for ( String name : attributes.keySet() ) {
 					qstm.setString(i, attributes.get(name));
 					i++;
 				}
 			}
-			qstm.setString(1, query.getCodedText());
 			ResultSet result = qstm.executeQuery();
 			if ( !result.first() ) return null;
 			ArrayList<QueryResult> list = new ArrayList<QueryResult>();
@@ -389,6 +570,7 @@ public class Database {
 		Statement stm = null;
 		TMXWriter writer = null;
 		try {
+			flush();
 			writer = new TMXWriter(outputPath);
 			writer.writeStartDocument(sourceLocale, targetLocale,
 				null, null, "sentence", "simpleTM", null);
@@ -0,0 +1,225 @@
+/*===========================================================================
+  Copyright (C) 2017 by the Okapi Framework contributors
+-----------------------------------------------------------------------------
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+===========================================================================*/
+
+package net.sf.okapi.tm.simpletm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import net.sf.okapi.common.LocaleId;
+import net.sf.okapi.common.query.MatchType;
+import net.sf.okapi.common.query.QueryResult;
+import net.sf.okapi.common.resource.ITextUnit;
+import net.sf.okapi.common.resource.TextFragment;
+import net.sf.okapi.common.resource.TextUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DatabaseTest {
+
+	private static final LocaleId locEN = LocaleId.ENGLISH;
+	private static final LocaleId locFR = LocaleId.FRENCH;
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private String path;
+	private Database db;
+
+	@Before
+	public void setUp () {
+		path = new File(tmp.getRoot(), "test").getPath();
+		db = new Database();
+	}
+
+	@After
+	public void tearDown () {
+		db.close();
+	}
+
+	@Test
+	public void testPendingEntries () throws Exception {
+		db.create(path, true, locFR);
+		db.addEntry(createTextUnit("1", "Source 1", "Cible 1"), "grp1", "file1");
+		db.addEntry(createTextUnit("2", "Source 2", "Cible 2"), "grp2", "file1");
+
+		// The entries are still in the pending batch
+		assertEquals(2, db.getEntryCount());
+		db.addEntry(createTextUnit("3", "Source 3", "Cible 3"), "grp1", "file1");
+		List<QueryResult> res = db.query(new TextFragment("Source 3"), null, 10, 90);
+		assertEquals(1, res.size());
+		assertEquals("Cible 3", res.get(0).target.toText());
+		assertEquals(MatchType.EXACT, res.get(0).matchType);
+
+		// Query with context, the statement is already prepared
+		db.addEntry(createTextUnit("4", "Source 4", "Cible 4"), "grp2", "file1");
+		LinkedHashMap<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(Database.NGRPNAME, "grp2");
+		db.createStatement(attributes);
+		db.addEntry(createTextUnit("5", "Source 4", "Cible 4 bis"), "grp1", "file1");
+		res = db.query(new TextFragment("Source 4"), attributes, 10, 90);
+		assertEquals(1, res.size());
+		assertEquals("Cible 4", res.get(0).target.toText());
+		assertEquals(MatchType.EXACT_UNIQUE_ID, res.get(0).matchType);
+		db.clearAttributes();
+		db.addEntry(createTextUnit("6", "Source 4", "Cible 4 ter"), "grp3", "file1");
+		res = db.query(new TextFragment("Source 4"), null, 10, 90);
+		assertEquals(3, res.size());
+
+		db.addEntry(createTextUnit("7", "Source 7", "Cible 7"), "grp1", "file1");
+		File tmx = new File(tmp.getRoot(), "out.tmx");
+		db.exportToTMX(tmx.getPath(), locEN, locFR);
+		String text = new String(Files.readAllBytes(tmx.toPath()), StandardCharsets.UTF_8);
+		assertTrue(text.contains("Cible 1"));
+		assertTrue(text.contains("Cible 7"));
+		assertEquals(7, db.getEntryCount());
+	}
+
+	@Test
+	public void testCloseWithoutFlush () {
+		db.create(path, true, locFR);
+		db.addEntry(createTextUnit("1", "Source 1", "Cible 1"), null, null);
+		db.addEntry(createTextUnit("2", "Source 2", "Cible 2"), null, null);
+		db.close();
+
+		db.open(path);
+		assertEquals(2, db.getEntryCount());
+		List<QueryResult> res = db.query(new TextFragment("Source 2"), null, 10, 90);
+		assertEquals(1, res.size());
+		assertEquals("Cible 2", res.get(0).target.toText());
+	}
+
+	@Test
+	public void testOpenOldSchemaForReading () throws Exception {
+		createOldDatabase();
+
+		db.open(path);
+		assertEquals(2, db.getEntryCount());
+		List<QueryResult> res = db.query(new TextFragment("Source 1"), null, 10, 90);
+		assertEquals(1, res.size());
+		assertEquals("Cible 1", res.get(0).target.toText());
+		assertNull(db.query(new TextFragment("Source 3"), null, 10, 90));
+		LinkedHashMap<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(Database.NGRPNAME, "grp2");
+		db.createStatement(attributes);
+		res = db.query(new TextFragment("Source 2"), attributes, 10, 90);
+		assertEquals(1, res.size());
+		db.close();
+
+		// The database has not been upgraded
+		assertFalse(hasSrcHashColumn());
+	}
+
+	@Test
+	public void testOpenOldSchemaForWriting () throws Exception {
+		createOldDatabase();
+
+		db.open(path, locFR);
+		assertTrue(hasSrcHashColumn());
+		db.addEntry(createTextUnit("3", "Source 3", "Cible 3"), null, null);
+		assertEquals(3, db.getEntryCount());
+		List<QueryResult> res = db.query(new TextFragment("Source 1"), null, 10, 90);
+		assertEquals(1, res.size());
+		assertEquals("Cible 1", res.get(0).target.toText());
+		res = db.query(new TextFragment("Source 3"), null, 10, 90);
+		assertEquals(1, res.size());
+		db.close();
+
+		assertTrue(hasSrcHashColumn());
+		db.open(path);
+		res = db.query(new TextFragment("Source 2"), null, 10, 90);
+		assertEquals(1, res.size());
+		assertEquals("Cible 2", res.get(0).target.toText());
+	}
+
+	private ITextUnit createTextUnit (String id,
+		String src,
+		String trg)
+	{
+		ITextUnit tu = new TextUnit(id, src);
+		tu.setTargetContent(locFR, new TextFragment(trg));
+		return tu;
+	}
+
+	/**
+	 * Creates a database with the schema used before the source hash column was added.
+	 */
+	private void createOldDatabase () throws SQLException {
+		Connection conn = DriverManager.getConnection("jdbc:h2:"+path, "sa", "");
+		try {
+			Statement stm = conn.createStatement();
+			stm.execute("CREATE TABLE " + Database.TBLNAME + " ("
+				+ Database.NKEY + " INTEGER IDENTITY PRIMARY KEY,"
+				+ Database.NNAME + " VARCHAR,"
+				+ Database.NTYPE + " VARCHAR,"
+				+ Database.NSRCTEXT + " VARCHAR,"
+				+ Database.NSRCCODES + " VARCHAR,"
+				+ Database.NTRGTEXT + " VARCHAR,"
+				+ Database.NTRGCODES + " VARCHAR,"
+				+ Database.NGRPNAME + " VARCHAR,"
+				+ Database.NFILENAME + " VARCHAR,"
+				+ ")");
+			stm.execute("INSERT INTO " + Database.TBLNAME + " VALUES (0,'1',null,'Source 1','','Cible 1','','grp1','file1')");
+			stm.execute("INSERT INTO " + Database.TBLNAME + " VALUES (1,'2',null,'Source 2','','Cible 2','','grp2','file1')");
+			stm.close();
+		}
+		finally {
+			conn.close();
+		}
+	}
+
+	private boolean hasSrcHashColumn () throws SQLException {
+		Connection conn = DriverManager.getConnection("jdbc:h2:"+path, "sa", "");
+		try {
+			return hasSrcHashColumn(conn);
+		}
+		finally {
+			conn.close();
+		}
+	}
+
+	private boolean hasSrcHashColumn (Connection conn) throws SQLException {
+		ResultSet columns = conn.getMetaData().getColumns(null, null,
+			Database.TBLNAME.toUpperCase(), Database.NSRCHASH.toUpperCase());
+		try {
+			return columns.next();
+		}
+		finally {
+			columns.close();
+		}
+	}
+
+}